@@ -0,0 +1,132 @@
+package org.example.wallet.benchmark;
+
+import org.example.wallet.WalletApplication;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервисный путь с движком балансов (wallet.engine.enabled=true): операция ждёт только
+ * записи в журнал раздела, Postgres получает изменения контрольными точками в фоне.
+ * Сравнивается с {@link WalletServiceBenchmark} при тех же {@code walletCount} и {@code -t};
+ * SampleTime даёт перцентили задержки, в том числе p99.
+ * <p>
+ * {@code syncOnAck = true} — ответ после fsync журнала (один на пачку раздела),
+ * {@code false} — журнал сбрасывается фоном раз в sync-interval.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class BalanceEngineBenchmark {
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000");
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+    @Param({"1", "10000"})
+    public int walletCount;
+
+    @Param({"false", "true"})
+    public boolean syncOnAck;
+
+    private BenchmarkDatabase database;
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private UUID[] walletIds;
+    private Path journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = BenchmarkDatabase.start();
+        journal = Files.createTempDirectory("engine-journal");
+        List<String> args = new ArrayList<>(database.applicationArgs());
+        args.add("--wallet.engine.enabled=true");
+        args.add("--wallet.engine.journal.directory=" + journal);
+        args.add("--wallet.engine.journal.sync-on-ack=" + syncOnAck);
+        context = new SpringApplicationBuilder(WalletApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+        walletService = context.getBean(WalletService.class);
+        walletIds = LoadMix.walletIds(walletCount);
+        // Импорт CSV с движком недоступен: начальные балансы вносятся через сам движок
+        for (UUID walletId : walletIds) {
+            walletService.processTransaction(request(walletId, OperationType.DEPOSIT, INITIAL_BALANCE));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        database.close();
+        Files.deleteIfExists(journal);
+    }
+
+    @Benchmark
+    public WalletResponse deposit() {
+        return walletService.processTransaction(request(randomWallet(), OperationType.DEPOSIT, AMOUNT));
+    }
+
+    @Benchmark
+    public WalletResponse withdraw() {
+        return walletService.processTransaction(request(randomWallet(), OperationType.WITHDRAW, AMOUNT));
+    }
+
+    @Benchmark
+    public WalletResponse transfer() {
+        int source = ThreadLocalRandom.current().nextInt(walletIds.length);
+        int target = walletIds.length == 1 ? source : (source + 1 + ThreadLocalRandom.current()
+                .nextInt(walletIds.length - 1)) % walletIds.length;
+        if (target == source) {
+            // С одним кошельком переводить некуда: измеряется пополнение того же кошелька
+            return walletService.processTransaction(request(walletIds[source], OperationType.DEPOSIT, AMOUNT));
+        }
+        WalletRequest request = request(walletIds[source], OperationType.TRANSFER, AMOUNT);
+        request.setTargetWalletId(walletIds[target].toString());
+        return walletService.processTransaction(request);
+    }
+
+    @Benchmark
+    public WalletResponse getBalance() {
+        return walletService.getBalance(randomWallet());
+    }
+
+    private static WalletRequest request(UUID walletId, OperationType operationType, BigDecimal amount) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId.toString());
+        request.setOperationType(operationType);
+        request.setAmount(amount);
+        return request;
+    }
+
+    private UUID randomWallet() {
+        return walletIds[ThreadLocalRandom.current().nextInt(walletIds.length)];
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.wallet.benchmark;
+
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * База для бенчмарков. По умолчанию запускает Postgres в контейнере, чтобы прогоны
+ * были воспроизводимыми; {@code -Dbenchmark.jdbc-url} подключает уже запущенную базу.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    private final PostgreSQLContainer<?> container;
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private BenchmarkDatabase(PostgreSQLContainer<?> container, String url, String username, String password) {
+        this.container = container;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    static BenchmarkDatabase start() {
+        String url = System.getProperty("benchmark.jdbc-url");
+        if (url != null) {
+            return new BenchmarkDatabase(null, url,
+                    System.getProperty("benchmark.jdbc-user", "root"),
+                    System.getProperty("benchmark.jdbc-password", "root"));
+        }
+        PostgreSQLContainer<?> container = new PostgreSQLContainer<>(
+                DockerImageName.parse(System.getProperty("benchmark.postgres-image", "postgres:15-alpine")))
+                .withDatabaseName("wallet_db");
+        container.start();
+        return new BenchmarkDatabase(container, container.getJdbcUrl(), container.getUsername(), container.getPassword());
+    }
+
+    /**
+     * Аргументы запуска приложения с подключением к базе. Они важнее application.yml.
+     */
+    List<String> applicationArgs() {
+        return List.of(
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + username,
+                "--spring.datasource.password=" + password);
+    }
+
+    /**
+     * То же подключение для реактивного варианта: R2DBC для запросов, JDBC для Liquibase.
+     */
+    List<String> reactiveApplicationArgs() {
+        return List.of(
+                "--spring.r2dbc.url=r2dbc:" + url.substring("jdbc:".length()),
+                "--spring.r2dbc.username=" + username,
+                "--spring.r2dbc.password=" + password,
+                "--spring.liquibase.url=" + url,
+                "--spring.liquibase.user=" + username,
+                "--spring.liquibase.password=" + password);
+    }
+
+    /**
+     * Прямое соединение JDBC для сценариев, которые нагружают базу без приложения.
+     */
+    Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    @Override
+    public void close() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.wallet.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Профили нагрузки: доля чтений и распределение обращений по кошелькам.
+ */
+enum LoadMix {
+    /** Записи и чтения поровну по всем кошелькам. */
+    UNIFORM(0.5, 0),
+    /** Небольшая группа горячих кошельков получает большую часть записей (Zipf, s = 1.1). */
+    ZIPFIAN(0.5, 1.1),
+    /** Преобладают чтения баланса. */
+    READ_HEAVY(0.95, 0);
+
+    private final double readShare;
+    private final double zipfExponent;
+
+    LoadMix(double readShare, double zipfExponent) {
+        this.readShare = readShare;
+        this.zipfExponent = zipfExponent;
+    }
+
+    static LoadMix parse(String value) {
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+
+    boolean isRead(SplittableRandom random) {
+        return random.nextDouble() < readShare;
+    }
+
+    KeySampler sampler(int walletCount) {
+        if (zipfExponent == 0) {
+            return random -> random.nextInt(walletCount);
+        }
+        double[] cumulative = new double[walletCount];
+        double sum = 0;
+        for (int rank = 0; rank < walletCount; rank++) {
+            sum += 1 / Math.pow(rank + 1, zipfExponent);
+            cumulative[rank] = sum;
+        }
+        double total = sum;
+        return random -> {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            return Math.min(index >= 0 ? index : -index - 1, walletCount - 1);
+        };
+    }
+
+    /**
+     * Одинаковый набор идентификаторов версии 4 при каждом запуске, чтобы прогоны были сравнимы.
+     */
+    static UUID[] walletIds(int count) {
+        Random random = new Random(42);
+        UUID[] ids = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+            long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+            ids[i] = new UUID(mostSigBits, leastSigBits);
+        }
+        return ids;
+    }
+
+    @FunctionalInterface
+    interface KeySampler {
+        int next(SplittableRandom random);
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.wallet.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Раз в секунду читает через actuator занятую память JVM сервиса (jvm.memory.used по областям
+ * heap и nonheap) и число живых потоков (jvm.threads.live) и запоминает наибольшие значения
+ * за прогон. Сборка мусора перед замерами не вызывается: значения — то, что процесс
+ * действительно держал под нагрузкой, включая ещё не собранный мусор.
+ * Если сервис запущен в одном процессе со сценарием, в память входят и объекты клиента.
+ */
+final class MemorySampler {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client;
+    private final String metricsUri;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicLong maxHeapBytes = new AtomicLong(-1);
+    private final AtomicLong maxNonHeapBytes = new AtomicLong(-1);
+    private final AtomicLong maxLiveThreads = new AtomicLong(-1);
+
+    private MemorySampler(HttpClient client, String baseUrl) {
+        this.client = client;
+        this.metricsUri = baseUrl + "/actuator/metrics/";
+    }
+
+    static MemorySampler start(HttpClient client, String baseUrl) {
+        MemorySampler sampler = new MemorySampler(client, baseUrl);
+        sampler.timer.scheduleAtFixedRate(sampler::sample, 0, 1, TimeUnit.SECONDS);
+        return sampler;
+    }
+
+    void stop() {
+        timer.shutdownNow();
+        sample();
+    }
+
+    /**
+     * Наибольшая занятая куча в байтах или -1, если actuator метрику не отдал.
+     */
+    long maxHeapBytes() {
+        return maxHeapBytes.get();
+    }
+
+    long maxNonHeapBytes() {
+        return maxNonHeapBytes.get();
+    }
+
+    long maxLiveThreads() {
+        return maxLiveThreads.get();
+    }
+
+    String describe() {
+        return String.format(Locale.ROOT, "heapMaxMB=%s nonHeapMaxMB=%s threadsMax=%s",
+                megabytes(maxHeapBytes()), megabytes(maxNonHeapBytes()), maxLiveThreads() < 0 ? "n/a" : maxLiveThreads());
+    }
+
+    String json() {
+        return String.format(Locale.ROOT, "\"heapMaxBytes\":%s,\"nonHeapMaxBytes\":%s,\"liveThreadsMax\":%s",
+                orNull(maxHeapBytes()), orNull(maxNonHeapBytes()), orNull(maxLiveThreads()));
+    }
+
+    private void sample() {
+        record(maxHeapBytes, read("jvm.memory.used?tag=area:heap"));
+        record(maxNonHeapBytes, read("jvm.memory.used?tag=area:nonheap"));
+        record(maxLiveThreads, read("jvm.threads.live"));
+    }
+
+    private static void record(AtomicLong max, double value) {
+        if (!Double.isNaN(value)) {
+            max.accumulateAndGet((long) value, Math::max);
+        }
+    }
+
+    private double read(String metric) {
+        try {
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create(metricsUri + metric)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return Double.NaN;
+            }
+            return MAPPER.readTree(response.body()).path("measurements").path(0).path("value").asDouble(Double.NaN);
+        } catch (IOException ex) {
+            return Double.NaN;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Double.NaN;
+        }
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes < 0 ? "n/a" : Long.toString(bytes / (1024 * 1024));
+    }
+
+    private static String orNull(long value) {
+        return value < 0 ? "null" : Long.toString(value);
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.wallet.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.example.wallet.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Денежная часть одной операции: разбор суммы из JSON, проверка остатка, списание
+ * и запись нового баланса — на {@link BigDecimal} и на {@link Money}.
+ * Выделение памяти на операцию показывает {@code -prof gc} (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+    private ObjectReader bigDecimalReader;
+    private ObjectReader moneyReader;
+    private ObjectWriter bigDecimalWriter;
+    private ObjectWriter moneyWriter;
+    private byte[] amount;
+    private BigDecimal bigDecimalBalance;
+    private BigDecimal bigDecimalDeposit;
+    private BigDecimal bigDecimalFee;
+    private Money moneyBalance;
+    private Money moneyDeposit;
+    private Money moneyFee;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        bigDecimalReader = objectMapper.readerFor(BigDecimal.class);
+        moneyReader = objectMapper.readerFor(Money.class);
+        bigDecimalWriter = objectMapper.writerFor(BigDecimal.class);
+        moneyWriter = objectMapper.writerFor(Money.class);
+        amount = "1000.50".getBytes(StandardCharsets.UTF_8);
+        bigDecimalBalance = new BigDecimal("123456.7890");
+        bigDecimalDeposit = new BigDecimal("1000.50");
+        bigDecimalFee = new BigDecimal("0.01");
+        moneyBalance = Money.of(bigDecimalBalance);
+        moneyDeposit = Money.of(bigDecimalDeposit);
+        moneyFee = Money.of(bigDecimalFee);
+    }
+
+    @Benchmark
+    public byte[] bigDecimalWithdraw() throws Exception {
+        BigDecimal requested = bigDecimalReader.readValue(amount);
+        if (bigDecimalBalance.compareTo(requested) < 0) {
+            throw new IllegalStateException("Недостаточно средств");
+        }
+        return bigDecimalWriter.writeValueAsBytes(bigDecimalBalance.subtract(requested));
+    }
+
+    @Benchmark
+    public byte[] moneyWithdraw() throws Exception {
+        Money requested = moneyReader.readValue(amount);
+        if (moneyBalance.isLessThan(requested)) {
+            throw new IllegalStateException("Недостаточно средств");
+        }
+        return moneyWriter.writeValueAsBytes(moneyBalance.minus(requested));
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalArithmetic() {
+        return bigDecimalBalance.add(bigDecimalDeposit).subtract(bigDecimalFee);
+    }
+
+    @Benchmark
+    public long moneyArithmetic() {
+        return moneyBalance.plus(moneyDeposit).minus(moneyFee).units();
+    }
+}
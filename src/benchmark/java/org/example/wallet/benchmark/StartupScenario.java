@@ -0,0 +1,192 @@
+package org.example.wallet.benchmark;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время от запуска процесса до первого обслуженного запроса: обычный {@code java -jar}
+ * против образа быстрого старта (слои jar, контекст Spring AOT, архив AppCDS, профиль fast-startup).
+ * Перед замерами схема применяется разовым запуском с профилем migrate, как в docker-compose.yml.
+ * Готовность — любой HTTP-ответ на GET баланса несуществующего кошелька: к этому моменту
+ * подняты контроллер, сервис и пул соединений, а запрос прошёл до базы.
+ * <p>
+ * Jar собирается с профилем fast-startup. Для режима {@code fast} он распаковывается
+ * в target/startup/extracted, архив AppCDS создаётся обучающим запуском один раз.
+ * Журналы запусков пишутся в target/startup.
+ * <p>
+ * Ключи: {@code --jar=target/Wallet-0.0.1-SNAPSHOT.jar}, {@code --runs=5}, {@code --modes=plain,fast},
+ * {@code --timeout=120} (секунды на один запуск).
+ */
+public final class StartupScenario {
+    private static final Path WORK_DIRECTORY = Path.of("target", "startup");
+    private static final String JAVA = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+    private final Path jar;
+    private final List<String> databaseArgs;
+    private final Duration timeout;
+
+    private StartupScenario(Path jar, List<String> databaseArgs, Duration timeout) {
+        this.jar = jar;
+        this.databaseArgs = databaseArgs;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 2) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        Path jar = Path.of(options.getOrDefault("jar", "target/Wallet-0.0.1-SNAPSHOT.jar")).toAbsolutePath();
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        List<Mode> modes = Arrays.stream(options.getOrDefault("modes", "plain,fast").split(","))
+                .map(mode -> Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT)))
+                .toList();
+        Duration timeout = Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout", "120")));
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("Нет " + jar + ": соберите mvn -Pfast-startup -DskipTests package");
+        }
+        Files.createDirectories(WORK_DIRECTORY);
+
+        try (BenchmarkDatabase database = BenchmarkDatabase.start()) {
+            StartupScenario scenario = new StartupScenario(jar, database.applicationArgs(), timeout);
+            scenario.migrate();
+            for (Mode mode : modes) {
+                Path directory = scenario.prepare(mode);
+                long[] millis = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    millis[run] = scenario.timeToFirstRequest(mode, directory, run);
+                }
+                Arrays.sort(millis);
+                System.out.printf(Locale.ROOT, "%-5s  запусков %d  медиана %d мс  min %d мс  max %d мс%n",
+                        mode.name().toLowerCase(Locale.ROOT), runs, millis[runs / 2], millis[0], millis[runs - 1]);
+            }
+        }
+    }
+
+    private void migrate() throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(JAVA, "-jar", jar.toString(), "--spring.profiles.active=migrate"));
+        command.addAll(databaseArgs);
+        Process process = start(command, jar.getParent(), "migrate");
+        if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("Миграции не завершились за " + timeout);
+        }
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException("Миграции завершились с кодом " + process.exitValue()
+                    + ", журнал в " + WORK_DIRECTORY.resolve("migrate.log"));
+        }
+    }
+
+    /**
+     * Для режима fast распаковывает jar и один раз создаёт архив AppCDS,
+     * так же как Dockerfile. Возвращает каталог, из которого запускается приложение.
+     */
+    private Path prepare(Mode mode) throws IOException, InterruptedException {
+        if (mode == Mode.PLAIN) {
+            return jar.getParent();
+        }
+        Path extracted = WORK_DIRECTORY.resolve("extracted").toAbsolutePath();
+        Path archive = extracted.resolve("app.jsa");
+        if (Files.isRegularFile(archive)
+                && Files.getLastModifiedTime(archive).compareTo(Files.getLastModifiedTime(jar)) > 0) {
+            return extracted;
+        }
+        run(List.of(JAVA, "-Djarmode=tools", "-jar", jar.toString(), "extract", "--force",
+                "--application-filename", "app.jar", "--destination", extracted.toString()), WORK_DIRECTORY, "extract");
+        List<String> training = new ArrayList<>(List.of(JAVA, "-XX:ArchiveClassesAtExit=app.jsa",
+                "-Dspring.context.exit=onRefresh", "-Dspring.aot.enabled=true", "-jar", "app.jar",
+                "--spring.profiles.active=fast-startup"));
+        training.addAll(databaseArgs);
+        run(training, extracted, "training");
+        return extracted;
+    }
+
+    private long timeToFirstRequest(Mode mode, Path directory, int run) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>(List.of(JAVA));
+        if (mode == Mode.FAST) {
+            command.addAll(List.of("-XX:SharedArchiveFile=app.jsa", "-Dspring.aot.enabled=true", "-jar", "app.jar",
+                    "--spring.profiles.active=fast-startup"));
+        } else {
+            command.addAll(List.of("-jar", jar.toString()));
+        }
+        command.add("--server.port=" + port);
+        command.addAll(databaseArgs);
+        URI balanceUri = URI.create("http://localhost:" + port + "/api/v1/wallets/" + UUID.randomUUID());
+        HttpRequest request = HttpRequest.newBuilder(balanceUri)
+                .timeout(Duration.ofSeconds(5))
+                .build();
+
+        long startedAt = System.nanoTime();
+        Process process = start(command, directory, mode.name().toLowerCase(Locale.ROOT) + "-" + run);
+        try {
+            long deadline = startedAt + timeout.toNanos();
+            while (System.nanoTime() < deadline) {
+                try {
+                    client.send(request, HttpResponse.BodyHandlers.discarding());
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+                } catch (ConnectException e) {
+                    if (!process.isAlive()) {
+                        throw new IllegalStateException("Приложение завершилось с кодом " + process.exitValue());
+                    }
+                    Thread.sleep(5);
+                }
+            }
+            throw new IllegalStateException("Нет ответа за " + timeout);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private void run(List<String> command, Path directory, String name) throws IOException, InterruptedException {
+        int exitCode = start(command, directory, name).waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException(name + " завершился с кодом " + exitCode
+                    + ", журнал в " + WORK_DIRECTORY.resolve(name + ".log"));
+        }
+    }
+
+    private static Process start(List<String> command, Path directory, String name) throws IOException {
+        return new ProcessBuilder(command)
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(WORK_DIRECTORY.resolve(name + ".log").toAbsolutePath().toFile())
+                .start();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private enum Mode {
+        PLAIN, FAST
+    }
+}
@@ -0,0 +1,264 @@
+package org.example.wallet.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.wallet.WalletApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Потоковый импорт и экспорт балансов через HTTP: POST /api/v1/wallets/import и
+ * GET /api/v1/wallets/export (WalletBulkService). Запускает приложение на свободном порту
+ * с базой из {@link BenchmarkDatabase} или обращается к уже запущенному сервису по
+ * {@code --base-url}. Строки импорта генерируются на лету и не держатся в памяти клиента,
+ * экспорт читается потоком и только считается. Печатаются строки в секунду для обеих
+ * операций и наибольшая занятая память сервиса ({@link MemorySampler}).
+ * <p>
+ * Ключи: {@code --rows=1000000}, {@code --format=ndjson|csv}, {@code --base-url=http://host:port},
+ * {@code --report=target/bulk-<format>-<rows>.json}. Остальные ключи передаются приложению.
+ * Ключи сценария можно писать и без {@code --}, как у {@link WalletLoadScenario}.
+ * Для замера, где память сервиса не включает клиента, сервис запускают отдельно и передают
+ * {@code --base-url}; импорт в базу с уже импортированными кошельками считает их пропущенными.
+ */
+public final class WalletBulkScenario {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final Format format;
+    private final long rows;
+
+    private WalletBulkScenario(String baseUrl, Format format, long rows) {
+        this.baseUrl = baseUrl;
+        this.format = format;
+        this.rows = rows;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            int start = arg.startsWith("--") ? 2 : 0;
+            String name = separator > start ? arg.substring(start, separator) : "";
+            switch (name) {
+                case "rows", "format", "base-url", "report" -> options.put(name, arg.substring(separator + 1));
+                default -> applicationArgs.add(arg);
+            }
+        }
+        long rows = Long.parseLong(options.getOrDefault("rows", "1000000"));
+        Format format = Format.valueOf(options.getOrDefault("format", "ndjson").toUpperCase(Locale.ROOT));
+        Path report = Path.of(options.getOrDefault("report",
+                "target/bulk-" + format.name().toLowerCase(Locale.ROOT) + "-" + rows + ".json"));
+
+        BenchmarkDatabase database = null;
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.get("base-url");
+        try {
+            if (baseUrl == null) {
+                database = BenchmarkDatabase.start();
+                applicationArgs.addAll(0, database.applicationArgs());
+                context = new SpringApplicationBuilder(WalletApplication.class)
+                        .properties("server.port=0")
+                        .run(applicationArgs.toArray(String[]::new));
+                baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            }
+            WalletBulkScenario scenario = new WalletBulkScenario(baseUrl, format, rows);
+            Result imported = scenario.importRows();
+            imported.print();
+            Result exported = scenario.exportRows();
+            exported.print();
+            write(report, List.of(imported, exported));
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (database != null) {
+                database.close();
+            }
+        }
+    }
+
+    private Result importRows() throws IOException, InterruptedException {
+        MemorySampler memory = MemorySampler.start(client, baseUrl);
+        long startedAt = System.nanoTime();
+        HttpResponse<String> response;
+        try {
+            response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/wallets/import"))
+                            .header("Content-Type", format.mediaType)
+                            .timeout(Duration.ofHours(1))
+                            .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new GeneratedRows(format, rows)))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+        } finally {
+            memory.stop();
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Импорт завершился с кодом " + response.statusCode() + ": " + response.body());
+        }
+        JsonNode body = MAPPER.readTree(response.body());
+        return new Result("import", format, body.path("received").asLong(), body.path("imported").asLong(),
+                seconds, -1, memory);
+    }
+
+    private Result exportRows() throws IOException, InterruptedException {
+        MemorySampler memory = MemorySampler.start(client, baseUrl);
+        long startedAt = System.nanoTime();
+        long lines = 0;
+        long bytes = 0;
+        try {
+            HttpResponse<InputStream> response = client.send(
+                    HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/wallets/export"))
+                            .header("Accept", format.mediaType)
+                            .timeout(Duration.ofHours(1))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Экспорт завершился с кодом " + response.statusCode());
+            }
+            try (InputStream body = response.body()) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = body.read(buffer)) > 0) {
+                    bytes += read;
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] == '\n') {
+                            lines++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            memory.stop();
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        // У CSV первая строка — заголовок
+        long exported = format == Format.CSV ? Math.max(0, lines - 1) : lines;
+        return new Result("export", format, exported, exported, seconds, bytes, memory);
+    }
+
+    private static void write(Path path, List<Result> results) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < results.size(); i++) {
+            json.append(i > 0 ? "," : "").append(results.get(i).json());
+        }
+        json.append("]\n");
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.writeString(path, json);
+        System.out.println("Отчёт: " + path.toAbsolutePath());
+    }
+
+    private enum Format {
+        NDJSON("application/x-ndjson", null),
+        CSV("text/csv", "walletId,balance\n");
+
+        private final String mediaType;
+        private final String header;
+
+        Format(String mediaType, String header) {
+            this.mediaType = mediaType;
+            this.header = header;
+        }
+
+        String line(UUID walletId, long balanceUnits) {
+            String balance = balanceUnits / 10000 + "." + String.format(Locale.ROOT, "%04d", balanceUnits % 10000);
+            return this == NDJSON
+                    ? "{\"walletId\":\"" + walletId + "\",\"balance\":" + balance + "}\n"
+                    : walletId + "," + balance + "\n";
+        }
+    }
+
+    /**
+     * Тело импорта, которое строится по строке при чтении: идентификаторы — случайные UUID
+     * версии 4 от постоянного зерна, поэтому повторный прогон по той же базе ничего не добавляет.
+     */
+    private static final class GeneratedRows extends InputStream {
+        private final Format format;
+        private final long rows;
+        private final SplittableRandom random = new SplittableRandom(42);
+        private long produced;
+        private byte[] line;
+        private int position;
+
+        private GeneratedRows(Format format, long rows) {
+            this.format = format;
+            this.rows = rows;
+            this.line = format.header != null ? format.header.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            int written = 0;
+            while (written < length) {
+                if (position == line.length) {
+                    if (produced == rows) {
+                        break;
+                    }
+                    produced++;
+                    long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+                    long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+                    line = format.line(new UUID(mostSigBits, leastSigBits), random.nextLong(1, 100_000_000_000L))
+                            .getBytes(StandardCharsets.US_ASCII);
+                    position = 0;
+                }
+                int chunk = Math.min(length - written, line.length - position);
+                System.arraycopy(line, position, buffer, offset + written, chunk);
+                position += chunk;
+                written += chunk;
+            }
+            return written == 0 && length > 0 ? -1 : written;
+        }
+    }
+
+    private record Result(String operation, Format format, long rows, long applied, double seconds, long bytes,
+                          MemorySampler memory) {
+
+        double rowsPerSecond() {
+            return rows / seconds;
+        }
+
+        void print() {
+            System.out.printf(Locale.ROOT, "operation=%s format=%s rows=%d applied=%d seconds=%.1f rowsPerSecond=%.0f %s%n",
+                    operation, format.name().toLowerCase(Locale.ROOT), rows, applied, seconds, rowsPerSecond(),
+                    memory.describe());
+        }
+
+        String json() {
+            return String.format(Locale.ROOT,
+                    "{\"operation\":\"%s\",\"format\":\"%s\",\"rows\":%d,\"applied\":%d,\"seconds\":%.3f,"
+                            + "\"rowsPerSecond\":%.1f,\"bytes\":%s,%s}",
+                    operation, format.name().toLowerCase(Locale.ROOT), rows, applied, seconds, rowsPerSecond(),
+                    bytes < 0 ? "null" : Long.toString(bytes), memory.json());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.wallet.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор запроса и запись ответа тем же ObjectMapper, что строит Spring MVC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletJsonBenchmark {
+    private ObjectReader requestReader;
+    private ObjectWriter responseWriter;
+    private byte[] requestBody;
+    private WalletResponse response;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        requestReader = objectMapper.readerFor(WalletRequest.class);
+        responseWriter = objectMapper.writerFor(WalletResponse.class);
+        UUID walletId = UUID.randomUUID();
+        requestBody = """
+                {"walletId":"%s","operationType":"DEPOSIT","amount":1000.50}""".formatted(walletId)
+                .getBytes(StandardCharsets.UTF_8);
+        response = new WalletResponse(walletId, Money.of("123456.7890"));
+    }
+
+    @Benchmark
+    public WalletRequest readRequest() throws Exception {
+        return requestReader.readValue(requestBody);
+    }
+
+    @Benchmark
+    public UUID readAndValidateRequest() throws Exception {
+        WalletRequest request = requestReader.readValue(requestBody);
+        if (!request.validate().isEmpty()) {
+            throw new IllegalStateException("Запрос отклонён");
+        }
+        return request.getWalletIdAsUUID();
+    }
+
+    @Benchmark
+    public byte[] writeResponse() throws Exception {
+        return responseWriter.writeValueAsBytes(response);
+    }
+}
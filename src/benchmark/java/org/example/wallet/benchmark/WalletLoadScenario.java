@@ -0,0 +1,417 @@
+package org.example.wallet.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.wallet.WalletApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Сквозной нагрузочный сценарий через HTTP. Запускает приложение на свободном порту
+ * (база из {@link BenchmarkDatabase}) или нагружает уже запущенный сервис по {@code --base-url},
+ * заводит кошельки пакетными пополнениями и печатает TPS и перцентили задержек.
+ * <p>
+ * Ключи: {@code --mix=uniform|zipfian|read-heavy}, {@code --threads=64}, {@code --wallets=10000},
+ * {@code --warmup=10}, {@code --duration=60} (секунды), {@code --base-url=http://host:port},
+ * {@code --report=target/load-<app>-<mix>.json}. Пороги {@code --min-tps} и {@code --max-p99-ms}
+ * завершают процесс с кодом 1, если прогон хуже. {@code --combining=true} включает у запускаемого
+ * приложения объединение операций одного кошелька (wallet.combining.enabled), отчёт получает
+ * суффикс {@code -combining}: с {@code --mix=zipfian} это сравнение на горячих кошельках.
+ * {@code --ledger=false} отключает у запускаемого приложения журнал операций (wallet.ledger.enabled),
+ * отчёт получает суффикс {@code -no-ledger}: разница TPS с прогоном по умолчанию — накладные расходы журнала.
+ * {@code --virtual=true} запускает приложение на виртуальных потоках (spring.threads.virtual.enabled),
+ * отчёт получает суффикс {@code -virtual}; для сравнения с платформенными потоками берутся p99
+ * и наибольшие занятая память и число потоков сервиса из отчётов обоих прогонов.
+ * Остальные ключи передаются приложению.
+ * Ключи сценария можно писать и без {@code --} ({@code app=reactive}): так их удобно передавать
+ * через {@code -Dbenchmark.args} из комментариев pom.xml, где двойной дефис запрещён.
+ * <p>
+ * {@code --app=mvc|reactive} выбирает запускаемый вариант API; реактивный доступен при сборке
+ * с профилями {@code benchmark,reactive}. Для сравнения вариантов отчёт содержит TPS на ядро:
+ * занятые ядра считаются по метрике process.cpu.usage сервиса, которая раз в секунду читается
+ * через actuator. Если сервис запущен в одном процессе со сценарием, в ядра входит и нагрузка
+ * клиента; точное сравнение — с сервисом в отдельном процессе и {@code --base-url}.
+ */
+public final class WalletLoadScenario {
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] PERCENTILE_LABELS = {"p50", "p90", "p99", "p99_9"};
+    private static final String INITIAL_BALANCE = "1000000000";
+    private static final int SEED_BATCH_SIZE = 5000;
+    private static final String REACTIVE_APPLICATION = "org.example.wallet.reactive.ReactiveWalletApplication";
+
+    private final LoadMix mix;
+    private final int threads;
+    private final UUID[] walletIds;
+    private final LoadMix.KeySampler sampler;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String app;
+    private final String baseUrl;
+    private final URI transactionsUri;
+    private final String walletsUri;
+    private final AtomicLong errors = new AtomicLong();
+
+    private WalletLoadScenario(String app, LoadMix mix, int threads, int wallets, String baseUrl) {
+        this.app = app;
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.threads = threads;
+        this.walletIds = LoadMix.walletIds(wallets);
+        this.sampler = mix.sampler(wallets);
+        this.transactionsUri = URI.create(baseUrl + "/api/v1/wallets");
+        this.walletsUri = baseUrl + "/api/v1/wallets/";
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            int start = arg.startsWith("--") ? 2 : 0;
+            String name = separator > start ? arg.substring(start, separator) : "";
+            switch (name) {
+                case "app", "mix", "threads", "wallets", "warmup", "duration", "base-url", "report", "min-tps",
+                     "max-p99-ms", "combining", "ledger", "virtual" ->
+                        options.put(name, arg.substring(separator + 1));
+                default -> applicationArgs.add(arg);
+            }
+        }
+        String app = options.getOrDefault("app", "mvc");
+        LoadMix mix = LoadMix.parse(options.getOrDefault("mix", "uniform"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "64"));
+        int wallets = Integer.parseInt(options.getOrDefault("wallets", "10000"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        boolean combining = Boolean.parseBoolean(options.getOrDefault("combining", "false"));
+        boolean ledger = Boolean.parseBoolean(options.getOrDefault("ledger", "true"));
+        boolean virtual = Boolean.parseBoolean(options.getOrDefault("virtual", "false"));
+        Path report = Path.of(options.getOrDefault("report",
+                "target/load-" + app + "-" + mix.name().toLowerCase(Locale.ROOT).replace('_', '-')
+                        + (combining ? "-combining" : "") + (ledger ? "" : "-no-ledger")
+                        + (virtual ? "-virtual" : "") + ".json"));
+        applicationArgs.add("--wallet.combining.enabled=" + combining);
+        applicationArgs.add("--wallet.ledger.enabled=" + ledger);
+        applicationArgs.add("--spring.threads.virtual.enabled=" + virtual);
+
+        BenchmarkDatabase database = null;
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.get("base-url");
+        try {
+            if (baseUrl == null) {
+                database = BenchmarkDatabase.start();
+                SpringApplicationBuilder application;
+                if (app.equals("reactive")) {
+                    applicationArgs.addAll(0, database.reactiveApplicationArgs());
+                    application = reactiveApplication();
+                } else {
+                    applicationArgs.addAll(0, database.applicationArgs());
+                    application = new SpringApplicationBuilder(WalletApplication.class);
+                }
+                context = application
+                        .properties("server.port=0")
+                        .run(applicationArgs.toArray(String[]::new));
+                baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            }
+            WalletLoadScenario scenario = new WalletLoadScenario(app, mix, threads, wallets, baseUrl);
+            scenario.seedWallets();
+            scenario.run(warmup, new SimpleMeterRegistry());
+            Result result = scenario.run(duration, new SimpleMeterRegistry());
+            result.print();
+            result.write(report);
+            boolean passed = result.meets(options.get("min-tps"), options.get("max-p99-ms"));
+            if (context != null) {
+                context.close();
+                context = null;
+            }
+            if (!passed) {
+                System.exit(1);
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (database != null) {
+                database.close();
+            }
+        }
+    }
+
+    private static SpringApplicationBuilder reactiveApplication() throws ReflectiveOperationException {
+        try {
+            return (SpringApplicationBuilder) Class.forName(REACTIVE_APPLICATION).getMethod("builder").invoke(null);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Реактивный вариант не собран: запустите с профилями -Pbenchmark,reactive", ex);
+        }
+    }
+
+    /**
+     * Заводит кошельки пакетными пополнениями: пакетный API есть у обоих вариантов сервиса.
+     */
+    private void seedWallets() throws IOException, InterruptedException {
+        for (int from = 0; from < walletIds.length; from += SEED_BATCH_SIZE) {
+            StringBuilder json = new StringBuilder("{\"mode\":\"ALL_OR_NOTHING\",\"operations\":[");
+            for (int i = from; i < Math.min(from + SEED_BATCH_SIZE, walletIds.length); i++) {
+                json.append(i > from ? "," : "")
+                        .append("{\"walletId\":\"").append(walletIds[i])
+                        .append("\",\"operationType\":\"DEPOSIT\",\"amount\":").append(INITIAL_BALANCE).append('}');
+            }
+            json.append("]}");
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(walletsUri + "batch"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(json.toString(), StandardCharsets.UTF_8))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Не удалось создать кошельки: " + response.body());
+            }
+        }
+    }
+
+    private Result run(Duration duration, SimpleMeterRegistry registry) throws Exception {
+        Timer reads = timer(registry, "read");
+        Timer writes = timer(registry, "write");
+        errors.set(0);
+        long deadline = System.nanoTime() + duration.toNanos();
+        long startedAt = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CpuSampler cpu = CpuSampler.start(client, baseUrl);
+        MemorySampler memory = MemorySampler.start(client, baseUrl);
+        try {
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                long seed = i;
+                workers.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    while (System.nanoTime() < deadline) {
+                        call(random, reads, writes);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+            cpu.stop();
+            memory.stop();
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        return new Result(app, mix, threads, walletIds.length, seconds, reads.takeSnapshot(), writes.takeSnapshot(),
+                errors.get(), cpu.averageCores(), memory);
+    }
+
+    private void call(SplittableRandom random, Timer reads, Timer writes) {
+        UUID walletId = walletIds[sampler.next(random)];
+        boolean read = mix.isRead(random);
+        HttpRequest request = read
+                ? HttpRequest.newBuilder(URI.create(walletsUri + walletId)).build()
+                : HttpRequest.newBuilder(transactionsUri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("""
+                                {"walletId":"%s","operationType":"%s","amount":1}"""
+                                .formatted(walletId, random.nextBoolean() ? "DEPOSIT" : "WITHDRAW")))
+                        .build();
+        long startedAt = System.nanoTime();
+        try {
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status != 200) {
+                errors.incrementAndGet();
+            }
+        } catch (IOException ex) {
+            errors.incrementAndGet();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        (read ? reads : writes).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer timer(SimpleMeterRegistry registry, String operation) {
+        return Timer.builder("load.requests")
+                .tag("operation", operation)
+                .publishPercentiles(PERCENTILES)
+                .percentilePrecision(3)
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(registry);
+    }
+
+    private record Result(String app, LoadMix mix, int threads, int wallets, double seconds,
+                          HistogramSnapshot reads, HistogramSnapshot writes, long errors, double cores,
+                          MemorySampler memory) {
+
+        double tps() {
+            return (reads.count() + writes.count()) / seconds;
+        }
+
+        double tpsPerCore() {
+            return cores > 0 ? tps() / cores : Double.NaN;
+        }
+
+        double worstP99Millis() {
+            return Math.max(percentileMillis(reads, 0.99), percentileMillis(writes, 0.99));
+        }
+
+        boolean meets(String minTps, String maxP99Millis) {
+            boolean passed = true;
+            if (minTps != null && tps() < Double.parseDouble(minTps)) {
+                System.out.printf(Locale.ROOT, "РЕГРЕССИЯ: TPS %.0f ниже порога %s%n", tps(), minTps);
+                passed = false;
+            }
+            if (maxP99Millis != null && worstP99Millis() > Double.parseDouble(maxP99Millis)) {
+                System.out.printf(Locale.ROOT, "РЕГРЕССИЯ: p99 %.1f мс выше порога %s%n", worstP99Millis(), maxP99Millis);
+                passed = false;
+            }
+            return passed;
+        }
+
+        void print() {
+            System.out.printf(Locale.ROOT,
+                    "app=%s mix=%s threads=%d wallets=%d seconds=%.1f tps=%.0f errors=%d cores=%.2f tpsPerCore=%.0f %s%n",
+                    app, mix, threads, wallets, seconds, tps(), errors, cores, tpsPerCore(), memory.describe());
+            print("read", reads);
+            print("write", writes);
+        }
+
+        void write(Path path) throws IOException {
+            StringBuilder json = new StringBuilder();
+            json.append(String.format(Locale.ROOT,
+                    "{\"app\":\"%s\",\"mix\":\"%s\",\"threads\":%d,\"wallets\":%d,\"seconds\":%.3f,\"tps\":%.1f,\"errors\":%d",
+                    app, mix, threads, wallets, seconds, tps(), errors));
+            json.append(",\"cpuCores\":").append(Double.isNaN(cores) ? "null" : String.format(Locale.ROOT, "%.3f", cores));
+            json.append(",\"tpsPerCore\":").append(Double.isNaN(tpsPerCore())
+                    ? "null" : String.format(Locale.ROOT, "%.1f", tpsPerCore()));
+            json.append(',').append(memory.json());
+            appendJson(json, "read", reads);
+            appendJson(json, "write", writes);
+            json.append("}\n");
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, json);
+            System.out.println("Отчёт: " + path.toAbsolutePath());
+        }
+
+        private static void print(String operation, HistogramSnapshot snapshot) {
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "  %-5s count=%d", operation, snapshot.count()));
+            ValueAtPercentile[] percentiles = snapshot.percentileValues();
+            for (int i = 0; i < percentiles.length; i++) {
+                line.append(String.format(Locale.ROOT, " %s=%.2fms",
+                        PERCENTILE_LABELS[i], percentiles[i].value(TimeUnit.MILLISECONDS)));
+            }
+            line.append(String.format(Locale.ROOT, " max=%.2fms", snapshot.max(TimeUnit.MILLISECONDS)));
+            System.out.println(line);
+        }
+
+        private static void appendJson(StringBuilder json, String operation, HistogramSnapshot snapshot) {
+            json.append(",\"").append(operation).append("\":{\"count\":").append(snapshot.count());
+            ValueAtPercentile[] percentiles = snapshot.percentileValues();
+            for (int i = 0; i < percentiles.length; i++) {
+                json.append(String.format(Locale.ROOT, ",\"%sMs\":%.3f",
+                        PERCENTILE_LABELS[i], percentiles[i].value(TimeUnit.MILLISECONDS)));
+            }
+            json.append(String.format(Locale.ROOT, ",\"maxMs\":%.3f}", snapshot.max(TimeUnit.MILLISECONDS)));
+        }
+
+        private static double percentileMillis(HistogramSnapshot snapshot, double percentile) {
+            for (ValueAtPercentile value : snapshot.percentileValues()) {
+                if (value.percentile() == percentile) {
+                    return value.value(TimeUnit.MILLISECONDS);
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Раз в секунду читает process.cpu.usage (доля всех ядер) и system.cpu.count сервиса через actuator.
+     */
+    private static final class CpuSampler {
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+
+        private final HttpClient client;
+        private final String metricsUri;
+        private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        private final DoubleAdder usage = new DoubleAdder();
+        private final AtomicLong samples = new AtomicLong();
+        private volatile double cpuCount = Double.NaN;
+
+        private CpuSampler(HttpClient client, String baseUrl) {
+            this.client = client;
+            this.metricsUri = baseUrl + "/actuator/metrics/";
+        }
+
+        static CpuSampler start(HttpClient client, String baseUrl) {
+            CpuSampler sampler = new CpuSampler(client, baseUrl);
+            sampler.cpuCount = sampler.read("system.cpu.count");
+            if (!Double.isNaN(sampler.cpuCount)) {
+                sampler.timer.scheduleAtFixedRate(sampler::sample, 1, 1, TimeUnit.SECONDS);
+            }
+            return sampler;
+        }
+
+        void stop() {
+            timer.shutdownNow();
+        }
+
+        double averageCores() {
+            long count = samples.get();
+            return count == 0 ? Double.NaN : usage.sum() / count * cpuCount;
+        }
+
+        private void sample() {
+            double value = read("process.cpu.usage");
+            if (!Double.isNaN(value)) {
+                usage.add(value);
+                samples.incrementAndGet();
+            }
+        }
+
+        private double read(String metric) {
+            try {
+                HttpResponse<String> response = client.send(
+                        HttpRequest.newBuilder(URI.create(metricsUri + metric)).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    return Double.NaN;
+                }
+                return MAPPER.readTree(response.body()).path("measurements").path(0).path("value").asDouble(Double.NaN);
+            } catch (IOException ex) {
+                return Double.NaN;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.wallet.benchmark;
+
+import org.example.wallet.WalletApplication;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.service.WalletBulkService;
+import org.example.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервисный путь с настоящей базой, без HTTP. {@code walletCount = 1} измеряет
+ * конкуренцию за одну строку, большое значение — независимые кошельки.
+ * Число потоков задаётся ключом JMH {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class WalletServiceBenchmark {
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000");
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+    @Param({"1", "10000"})
+    public int walletCount;
+
+    private BenchmarkDatabase database;
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private UUID[] walletIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.start();
+        context = new SpringApplicationBuilder(WalletApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(database.applicationArgs().toArray(String[]::new));
+        walletService = context.getBean(WalletService.class);
+        walletIds = LoadMix.walletIds(walletCount);
+
+        StringBuilder csv = new StringBuilder("walletId,balance\n");
+        for (UUID walletId : walletIds) {
+            csv.append(walletId).append(',').append(INITIAL_BALANCE).append('\n');
+        }
+        context.getBean(WalletBulkService.class)
+                .importCsv(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        database.close();
+    }
+
+    @Benchmark
+    public WalletResponse deposit() {
+        return walletService.processTransaction(request(OperationType.DEPOSIT));
+    }
+
+    @Benchmark
+    public WalletResponse withdraw() {
+        return walletService.processTransaction(request(OperationType.WITHDRAW));
+    }
+
+    @Benchmark
+    public WalletResponse getBalance() {
+        return walletService.getBalance(randomWallet());
+    }
+
+    private WalletRequest request(OperationType operationType) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(randomWallet().toString());
+        request.setOperationType(operationType);
+        request.setAmount(AMOUNT);
+        return request;
+    }
+
+    private UUID randomWallet() {
+        return walletIds[ThreadLocalRandom.current().nextInt(walletIds.length)];
+    }
+}
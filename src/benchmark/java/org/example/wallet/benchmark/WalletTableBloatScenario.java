@@ -0,0 +1,261 @@
+package org.example.wallet.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Пропускная способность обновлений баланса и разбухание таблицы кошельков до и после
+ * секционирования. Обе раскладки создаются рядом в одной базе: {@code plain} — таблица
+ * wallets в прежнем виде (одна куча, fillfactor 100), {@code partitioned} — как после
+ * миграции wallets-hash-partitioned-v1 (16 секций по хешу id, fillfactor 70). Нагрузка —
+ * тот же запрос пополнения, что у {@code WalletSql.DEPOSIT}, из отдельного соединения
+ * на поток, без приложения.
+ * <p>
+ * Для каждой раскладки печатаются обновления в секунду, доля HOT-обновлений
+ * (n_tup_hot_upd / n_tup_upd), мёртвые строки и прирост размера кучи и индексов за прогон.
+ * <p>
+ * Ключи: {@code --layout=both|plain|partitioned}, {@code --mix=uniform|zipfian},
+ * {@code --threads=32}, {@code --wallets=10000}, {@code --duration=60} (секунды),
+ * {@code --report=target/table-bloat.json}. Ключи принимаются и без {@code --}: {@code mix=zipfian}.
+ */
+public final class WalletTableBloatScenario {
+    private static final String INITIAL_BALANCE = "1000000000";
+
+    private final LoadMix mix;
+    private final int threads;
+    private final UUID[] walletIds;
+    private final LoadMix.KeySampler sampler;
+    private final BenchmarkDatabase database;
+
+    private WalletTableBloatScenario(BenchmarkDatabase database, LoadMix mix, int threads, int wallets) {
+        this.database = database;
+        this.mix = mix;
+        this.threads = threads;
+        this.walletIds = LoadMix.walletIds(wallets);
+        this.sampler = mix.sampler(wallets);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            int start = arg.startsWith("--") ? 2 : 0;
+            if (separator > start) {
+                options.put(arg.substring(start, separator), arg.substring(separator + 1));
+            }
+        }
+        String layoutOption = options.getOrDefault("layout", "both");
+        List<Layout> layouts = layoutOption.equals("both")
+                ? List.of(Layout.values())
+                : List.of(Layout.valueOf(layoutOption.toUpperCase(Locale.ROOT)));
+        LoadMix mix = LoadMix.parse(options.getOrDefault("mix", "uniform"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "32"));
+        int wallets = Integer.parseInt(options.getOrDefault("wallets", "10000"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        Path report = Path.of(options.getOrDefault("report", "target/table-bloat.json"));
+
+        try (BenchmarkDatabase database = BenchmarkDatabase.start()) {
+            WalletTableBloatScenario scenario = new WalletTableBloatScenario(database, mix, threads, wallets);
+            List<Result> results = new ArrayList<>();
+            for (Layout layout : layouts) {
+                Result result = scenario.run(layout, duration);
+                result.print();
+                results.add(result);
+            }
+            write(report, results);
+        }
+    }
+
+    private Result run(Layout layout, Duration duration) throws Exception {
+        try (Connection connection = database.connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + layout.table());
+            for (String ddl : layout.ddl()) {
+                statement.execute(ddl);
+            }
+            try (PreparedStatement seed = connection.prepareStatement("INSERT INTO " + layout.table()
+                    + " (id, balance) SELECT unnest(?), " + INITIAL_BALANCE)) {
+                seed.setArray(1, connection.createArrayOf("uuid", walletIds));
+                seed.executeUpdate();
+            }
+            statement.execute("VACUUM ANALYZE " + layout.table());
+        }
+        TableStats before = stats(layout);
+
+        String deposit = """
+                INSERT INTO %1$s (id, balance, version, created_at, updated_at)
+                VALUES (?, 1, 1, NOW(), NOW())
+                ON CONFLICT (id) DO UPDATE
+                SET balance = %1$s.balance + EXCLUDED.balance,
+                    version = %1$s.version + 1,
+                    updated_at = NOW()
+                RETURNING balance, version""".formatted(layout.table());
+        long deadline = System.nanoTime() + duration.toNanos();
+        long startedAt = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long updates = 0;
+        try {
+            List<Future<Long>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                long seed = i;
+                workers.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    long done = 0;
+                    try (Connection connection = database.connect();
+                         PreparedStatement update = connection.prepareStatement(deposit)) {
+                        while (System.nanoTime() < deadline) {
+                            update.setObject(1, walletIds[sampler.next(random)]);
+                            try (ResultSet rs = update.executeQuery()) {
+                                rs.next();
+                            }
+                            done++;
+                        }
+                        // Накопленная статистика соединения передаётся в pg_stat_user_tables при его закрытии
+                    }
+                    return done;
+                }));
+            }
+            for (Future<Long> worker : workers) {
+                updates += worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        Thread.sleep(1000);
+        return new Result(layout, mix, threads, walletIds.length, seconds, updates, before, stats(layout));
+    }
+
+    /**
+     * Сумма по самой таблице или по всем её секциям: у секционированной таблицы
+     * своей кучи нет и статистика ведётся только по секциям.
+     */
+    private TableStats stats(Layout layout) throws SQLException {
+        String query = """
+                SELECT COALESCE(SUM(s.n_tup_upd), 0), COALESCE(SUM(s.n_tup_hot_upd), 0),
+                       COALESCE(SUM(s.n_dead_tup), 0),
+                       COALESCE(SUM(pg_table_size(s.relid)), 0), COALESCE(SUM(pg_indexes_size(s.relid)), 0)
+                FROM pg_stat_user_tables s
+                WHERE s.relid = ?::regclass
+                   OR s.relid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = ?::regclass)""";
+        try (Connection connection = database.connect(); PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, layout.table());
+            statement.setString(2, layout.table());
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return new TableStats(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5));
+            }
+        }
+    }
+
+    private static void write(Path path, List<Result> results) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < results.size(); i++) {
+            json.append(i > 0 ? "," : "").append(results.get(i).json());
+        }
+        json.append("]\n");
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.writeString(path, json);
+        System.out.println("Отчёт: " + path.toAbsolutePath());
+    }
+
+    private enum Layout {
+        PLAIN("bloat_plain", List.of("""
+                CREATE TABLE bloat_plain (
+                    id UUID PRIMARY KEY,
+                    balance NUMERIC(19, 4) NOT NULL,
+                    version BIGINT NOT NULL DEFAULT 1,
+                    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)""")),
+        PARTITIONED("bloat_partitioned", partitionedDdl());
+
+        private final String table;
+        private final List<String> ddl;
+
+        Layout(String table, List<String> ddl) {
+            this.table = table;
+            this.ddl = ddl;
+        }
+
+        String table() {
+            return table;
+        }
+
+        List<String> ddl() {
+            return ddl;
+        }
+
+        private static List<String> partitionedDdl() {
+            List<String> ddl = new ArrayList<>();
+            ddl.add("""
+                    CREATE TABLE bloat_partitioned (
+                        id UUID NOT NULL,
+                        balance NUMERIC(19, 4) NOT NULL,
+                        version BIGINT NOT NULL DEFAULT 1,
+                        created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                        updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                        PRIMARY KEY (id)
+                    ) PARTITION BY HASH (id)""");
+            for (int part = 0; part < 16; part++) {
+                ddl.add(String.format(Locale.ROOT, "CREATE TABLE bloat_partitioned_p%02d PARTITION OF bloat_partitioned"
+                        + " FOR VALUES WITH (MODULUS 16, REMAINDER %d)"
+                        + " WITH (fillfactor = 70, autovacuum_vacuum_scale_factor = 0.02)", part, part));
+            }
+            return ddl;
+        }
+    }
+
+    private record TableStats(long updates, long hotUpdates, long deadTuples, long heapBytes, long indexBytes) {
+    }
+
+    private record Result(Layout layout, LoadMix mix, int threads, int wallets, double seconds, long updates,
+                          TableStats before, TableStats after) {
+
+        double updatesPerSecond() {
+            return updates / seconds;
+        }
+
+        double hotShare() {
+            long total = after.updates() - before.updates();
+            return total == 0 ? Double.NaN : (double) (after.hotUpdates() - before.hotUpdates()) / total;
+        }
+
+        void print() {
+            System.out.printf(Locale.ROOT,
+                    "layout=%s mix=%s threads=%d wallets=%d seconds=%.1f updatesPerSecond=%.0f hotShare=%.3f"
+                            + " deadTuples=%d heap=%dKB->%dKB indexes=%dKB->%dKB%n",
+                    layout.name().toLowerCase(Locale.ROOT), mix, threads, wallets, seconds, updatesPerSecond(),
+                    hotShare(), after.deadTuples(), before.heapBytes() / 1024, after.heapBytes() / 1024,
+                    before.indexBytes() / 1024, after.indexBytes() / 1024);
+        }
+
+        String json() {
+            return String.format(Locale.ROOT,
+                    "{\"layout\":\"%s\",\"mix\":\"%s\",\"threads\":%d,\"wallets\":%d,\"seconds\":%.3f,"
+                            + "\"updates\":%d,\"updatesPerSecond\":%.1f,\"hotShare\":%s,\"deadTuples\":%d,"
+                            + "\"heapBytesBefore\":%d,\"heapBytesAfter\":%d,"
+                            + "\"indexBytesBefore\":%d,\"indexBytesAfter\":%d}",
+                    layout.name().toLowerCase(Locale.ROOT), mix, threads, wallets, seconds, updates,
+                    updatesPerSecond(), Double.isNaN(hotShare()) ? "null" : String.format(Locale.ROOT, "%.4f", hotShare()),
+                    after.deadTuples(), before.heapBytes(), after.heapBytes(), before.indexBytes(), after.indexBytes());
+        }
+    }
+}
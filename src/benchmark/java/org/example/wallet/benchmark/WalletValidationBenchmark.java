@@ -0,0 +1,59 @@
+package org.example.wallet.benchmark;
+
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletRequestRejection;
+import org.example.wallet.model.OperationType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка запроса: корректный запрос и запрос с неверным UUID и суммой.
+ * Вместе с {@link WalletJsonBenchmark} покрывает разбор и проверку каждого запроса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletValidationBenchmark {
+    private WalletRequest validRequest;
+    private WalletRequest invalidRequest;
+
+    @Setup
+    public void setUp() {
+        validRequest = request(UUID.randomUUID().toString(), new BigDecimal("1000.50"));
+        invalidRequest = request("not-a-uuid", BigDecimal.ZERO);
+    }
+
+    @Benchmark
+    public List<WalletRequestRejection> validRequest() {
+        return validRequest.validate();
+    }
+
+    @Benchmark
+    public List<WalletRequestRejection> invalidRequest() {
+        return invalidRequest.validate();
+    }
+
+    private static WalletRequest request(String walletId, BigDecimal amount) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId);
+        request.setOperationType(OperationType.DEPOSIT);
+        request.setAmount(amount);
+        return request;
+    }
+}
@@ -0,0 +1,284 @@
+package org.example.wallet.benchmark;
+
+import com.sun.management.OperatingSystemMXBean;
+import org.example.wallet.WalletApplication;
+import org.example.wallet.controller.BinaryWalletServer;
+import org.example.wallet.dto.BinaryWalletCodec;
+import org.example.wallet.model.Money;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пополнения через JSON API и через двоичный протокол ({@link BinaryWalletCodec}) на одном
+ * экземпляре сервиса: байты на операцию в обе стороны и процессорное время сервиса на операцию.
+ * <p>
+ * JSON-клиент — HTTP/1.1 с постоянными соединениями, один запрос в полёте на соединение, как
+ * у платёжного шлюза сейчас; двоичный — то же число соединений с окном из {@code --window}
+ * запросов без ожидания ответов. Байты считаются по сокету клиента, включая заголовки HTTP.
+ * Время сервиса — процессорное время JVM за прогон минус время потоков клиента
+ * (сервис запускается в том же процессе).
+ * <p>
+ * Ключи: {@code --operations=200000}, {@code --connections=8}, {@code --window=128},
+ * {@code --wallets=10000}. Остальные ключи передаются приложению.
+ */
+public final class WireProtocolScenario {
+    private static final long AMOUNT_UNITS = Money.of("1.00").units();
+
+    private final int connections;
+    private final int window;
+    private final UUID[] walletIds;
+    private final int httpPort;
+    private final int binaryPort;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final OperatingSystemMXBean osBean =
+            ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
+
+    private WireProtocolScenario(int connections, int window, int wallets,
+                                 int httpPort, int binaryPort) {
+        this.connections = connections;
+        this.window = window;
+        this.walletIds = LoadMix.walletIds(wallets);
+        this.httpPort = httpPort;
+        this.binaryPort = binaryPort;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            String name = separator > 2 ? arg.substring(2, separator) : "";
+            switch (name) {
+                case "operations", "connections", "window", "wallets" -> options.put(name, arg.substring(separator + 1));
+                default -> applicationArgs.add(arg);
+            }
+        }
+        int operations = Integer.parseInt(options.getOrDefault("operations", "200000"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "8"));
+        int window = Integer.parseInt(options.getOrDefault("window", "128"));
+        int wallets = Integer.parseInt(options.getOrDefault("wallets", "10000"));
+
+        try (BenchmarkDatabase database = BenchmarkDatabase.start()) {
+            applicationArgs.addAll(0, database.applicationArgs());
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WalletApplication.class)
+                    .properties("server.port=0", "wallet.binary.enabled=true", "wallet.binary.port=0")
+                    .run(applicationArgs.toArray(String[]::new))) {
+                WireProtocolScenario scenario = new WireProtocolScenario(connections, window, wallets,
+                        Integer.parseInt(context.getEnvironment().getProperty("local.server.port")),
+                        context.getBean(BinaryWalletServer.class).getPort());
+                // Прогрев обоих путей и создание кошельков
+                scenario.run("json", operations / 10);
+                scenario.run("binary", operations / 10);
+                scenario.run("json", operations).print();
+                scenario.run("binary", operations).print();
+            }
+        }
+    }
+
+    private Result run(String protocol, int total) throws Exception {
+        int perConnection = total / connections;
+        AtomicLong sent = new AtomicLong();
+        AtomicLong received = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong clientCpuNanos = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(connections * 2);
+        long cpuBefore = osBean.getProcessCpuTime();
+        long startedAt = System.nanoTime();
+        try {
+            List<Future<?>> clients = new ArrayList<>(connections);
+            for (int c = 0; c < connections; c++) {
+                long seed = c;
+                clients.add(executor.submit(() -> {
+                    if (protocol.equals("json")) {
+                        runJson(seed, perConnection, sent, received, failed, clientCpuNanos);
+                    } else {
+                        runBinary(executor, seed, perConnection, sent, received, failed, clientCpuNanos);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : clients) {
+                client.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        long serviceCpuNanos = osBean.getProcessCpuTime() - cpuBefore - clientCpuNanos.get();
+        long done = (long) perConnection * connections;
+        return new Result(protocol, done, seconds, sent.get(), received.get(), serviceCpuNanos, failed.get());
+    }
+
+    private void runJson(long seed, int count, AtomicLong sent, AtomicLong received, AtomicLong failed,
+                         AtomicLong clientCpuNanos) throws IOException {
+        long cpuStart = threadBean.getCurrentThreadCpuTime();
+        SplittableRandom random = new SplittableRandom(seed);
+        try (Socket socket = new Socket("localhost", httpPort)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            for (int i = 0; i < count; i++) {
+                byte[] body = ("{\"walletId\":\"" + walletIds[random.nextInt(walletIds.length)]
+                        + "\",\"operationType\":\"DEPOSIT\",\"amount\":1.00}").getBytes(StandardCharsets.UTF_8);
+                byte[] head = ("POST /api/v1/wallets HTTP/1.1\r\nHost: localhost\r\n"
+                        + "Content-Type: application/json\r\nContent-Length: " + body.length + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII);
+                byte[] request = Arrays.copyOf(head, head.length + body.length);
+                System.arraycopy(body, 0, request, head.length, body.length);
+                out.write(request);
+                sent.addAndGet(request.length);
+                int status = readHttpResponse(in, received);
+                if (status != 200) {
+                    failed.incrementAndGet();
+                }
+            }
+        }
+        clientCpuNanos.addAndGet(threadBean.getCurrentThreadCpuTime() - cpuStart);
+    }
+
+    /**
+     * Читает ответ HTTP/1.1 с телом по Content-Length или частями (chunked).
+     *
+     * @return код статуса
+     */
+    private static int readHttpResponse(InputStream in, AtomicLong received) throws IOException {
+        String statusLine = readLine(in, received);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        int contentLength = 0;
+        boolean chunked = false;
+        for (String header = readLine(in, received); !header.isEmpty(); header = readLine(in, received)) {
+            String lower = header.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("content-length:")) {
+                contentLength = Integer.parseInt(lower.substring(15).trim());
+            } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                chunked = true;
+            }
+        }
+        if (!chunked) {
+            received.addAndGet(in.readNBytes(contentLength).length);
+            return status;
+        }
+        while (true) {
+            int size = Integer.parseInt(readLine(in, received), 16);
+            received.addAndGet(in.readNBytes(size).length);
+            readLine(in, received);
+            if (size == 0) {
+                return status;
+            }
+        }
+    }
+
+    private static String readLine(InputStream in, AtomicLong received) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Соединение закрыто сервисом");
+            }
+            line.write(b);
+        }
+        received.addAndGet(line.size() + 1);
+        return line.toString(StandardCharsets.US_ASCII).stripTrailing();
+    }
+
+    private void runBinary(ExecutorService executor, long seed, int count, AtomicLong sent, AtomicLong received,
+                           AtomicLong failed, AtomicLong clientCpuNanos) throws Exception {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", binaryPort))) {
+            Semaphore inFlight = new Semaphore(window);
+            Future<?> reader = executor.submit(() -> {
+                long cpuStart = threadBean.getCurrentThreadCpuTime();
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                int answered = 0;
+                while (answered < count) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("Соединение закрыто сервисом");
+                    }
+                    buffer.flip();
+                    while (buffer.remaining() >= Integer.BYTES
+                            && buffer.remaining() >= Integer.BYTES + buffer.getInt(buffer.position())) {
+                        int length = buffer.getInt();
+                        BinaryWalletCodec.Response response =
+                                BinaryWalletCodec.decodeResponse(buffer.slice(buffer.position(), length));
+                        buffer.position(buffer.position() + length);
+                        received.addAndGet(Integer.BYTES + length);
+                        if (response.status() != BinaryWalletCodec.STATUS_OK) {
+                            failed.incrementAndGet();
+                        }
+                        inFlight.release();
+                        answered++;
+                    }
+                    buffer.compact();
+                }
+                clientCpuNanos.addAndGet(threadBean.getCurrentThreadCpuTime() - cpuStart);
+                return null;
+            });
+
+            long cpuStart = threadBean.getCurrentThreadCpuTime();
+            SplittableRandom random = new SplittableRandom(seed);
+            ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+            for (int i = 0; i < count; i++) {
+                // Пока окно открыто, запросы копятся в буфере и уходят одной записью
+                if (!inFlight.tryAcquire()) {
+                    sent.addAndGet(flush(channel, out));
+                    inFlight.acquire();
+                }
+                BinaryWalletCodec.encodeRequest(out, new BinaryWalletCodec.Request(i, BinaryWalletCodec.OP_DEPOSIT,
+                        walletIds[random.nextInt(walletIds.length)], AMOUNT_UNITS, null, null));
+                if (out.remaining() < BinaryWalletCodec.MAX_FRAME_LENGTH) {
+                    sent.addAndGet(flush(channel, out));
+                }
+            }
+            sent.addAndGet(flush(channel, out));
+            clientCpuNanos.addAndGet(threadBean.getCurrentThreadCpuTime() - cpuStart);
+            reader.get();
+        }
+    }
+
+    private static int flush(SocketChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        int written = out.remaining();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+        return written;
+    }
+
+    private record Result(String protocol, long operations, double seconds, long bytesSent, long bytesReceived,
+                          long serviceCpuNanos, long failed) {
+
+        void print() {
+            System.out.printf(Locale.ROOT,
+                    "%-6s операций %d  ошибок %d  %.0f оп/с  байт/оп: запрос %.1f, ответ %.1f  CPU сервиса %.1f мкс/оп%n",
+                    protocol, operations, failed, operations / seconds,
+                    (double) bytesSent / operations, (double) bytesReceived / operations,
+                    serviceCpuNanos / 1e3 / operations);
+        }
+    }
+}
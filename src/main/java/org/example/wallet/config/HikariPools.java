@@ -0,0 +1,71 @@
+package org.example.wallet.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Дополнительные пулы (шарды, реплики) с настройками spring.datasource.hikari:
+ * метрики Micrometer и ограничитель ожидания соединения в режиме виртуальных потоков
+ * подключаются так же, как у основного пула.
+ */
+final class HikariPools {
+    private final HikariConfig template;
+    private final String driverClassName;
+    private final boolean virtualThreads;
+    private final Duration acquireTimeout;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private String applicationName;
+
+    HikariPools(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.template = Binder.get(environment)
+                .bind("spring.datasource.hikari", HikariConfig.class)
+                .orElseGet(HikariConfig::new);
+        this.driverClassName = environment.getProperty("spring.datasource.driver-class-name");
+        this.virtualThreads = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        this.acquireTimeout = environment.getProperty(
+                "wallet.concurrency.connection-acquire-timeout", Duration.class, Duration.ofSeconds(30));
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Имя приложения в pg_stat_activity для соединений создаваемых пулов.
+     */
+    HikariPools applicationName(String applicationName) {
+        this.applicationName = applicationName;
+        return this;
+    }
+
+    DataSource create(String poolName, String url, String username, String password,
+                      Integer maximumPoolSize, boolean readOnly) {
+        HikariConfig config = new HikariConfig();
+        template.copyStateTo(config);
+        config.setPoolName(poolName);
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setReadOnly(readOnly);
+        if (driverClassName != null) {
+            config.setDriverClassName(driverClassName);
+        }
+        if (maximumPoolSize != null) {
+            config.setMaximumPoolSize(maximumPoolSize);
+        }
+        if (applicationName != null) {
+            config.addDataSourceProperty("ApplicationName", applicationName);
+        }
+        meterRegistry.ifAvailable(registry ->
+                config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+        HikariDataSource pool = new HikariDataSource(config);
+        return virtualThreads
+                ? new ConnectionLimitingDataSource(pool, pool.getMaximumPoolSize(), acquireTimeout)
+                : pool;
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.wallet.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.wallet.service.ReplicaLagMonitor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Чтение с реплик (wallet.replicas.enabled=true): транзакции только для чтения
+ * получают соединение реплики, остальные — основного сервера. Основной DataSource
+ * берёт соединение при первом запросе, когда признак readOnly транзакции уже известен.
+ * С шардированием не совмещается: у шардов нет своих списков реплик.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(ReplicaProperties.class)
+@ConditionalOnExpression("${wallet.replicas.enabled:false} and !${wallet.sharding.enabled:false}")
+public class ReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("wallet-primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(ReplicaProperties properties,
+                                                             @Qualifier("primaryDataSource") DataSource primary,
+                                                             Environment environment,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        if (properties.getNodes().isEmpty()) {
+            throw new IllegalStateException("Не задано ни одной реплики в wallet.replicas.nodes");
+        }
+        HikariPools pools = new HikariPools(environment, meterRegistry);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (ReplicaProperties.Replica replica : properties.getNodes()) {
+            replicas.put(replica.getName(), pools.create("wallet-replica-" + replica.getName(), replica.getUrl(),
+                    replica.getUsername(), replica.getPassword(), replica.getMaximumPoolSize(), true));
+        }
+        return new ReplicaRoutingDataSource(replicas, primary);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(replicaRoutingDataSource);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                               ReplicaRoutingDataSource replicaRoutingDataSource,
+                                               ReplicaProperties properties,
+                                               MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(primary, replicaRoutingDataSource, properties, meterRegistry);
+    }
+}
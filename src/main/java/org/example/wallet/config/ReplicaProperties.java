@@ -0,0 +1,37 @@
+package org.example.wallet.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки чтения балансов с реплик (wallet.replicas). Реплика, отставшая
+ * от основного сервера больше чем на {@code maxLag}, из чтения исключается,
+ * пока не догонит; без доступных реплик чтения идут на основной сервер.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("wallet.replicas")
+public class ReplicaProperties {
+    private boolean enabled;
+    private Duration maxLag = Duration.ofSeconds(1);
+    private long lagCheckIntervalMs = 200;
+    private List<Replica> nodes = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        /**
+         * Размер пула реплики; по умолчанию spring.datasource.hikari.maximum-pool-size.
+         */
+        private Integer maximumPoolSize;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.wallet.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Источник соединений для транзакций только для чтения: случайная реплика
+ * из числа не отстающих. Список допустимых реплик обновляет монитор задержки;
+ * пока он пуст (старт, все реплики отстали или недоступны), соединение
+ * берётся у основного сервера.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    private final Map<String, DataSource> replicas;
+    private volatile List<String> healthy = List.of();
+
+    public ReplicaRoutingDataSource(Map<String, DataSource> replicas, DataSource primary) {
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        setTargetDataSources(new LinkedHashMap<>(replicas));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(true);
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public List<String> getHealthy() {
+        return healthy;
+    }
+
+    public void setHealthy(List<String> healthy) {
+        this.healthy = List.copyOf(healthy);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        List<String> candidates = healthy;
+        return candidates.isEmpty() ? null : candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+    }
+
+    @Override
+    public void close() {
+        for (DataSource dataSource : replicas.values()) {
+            while (dataSource instanceof DelegatingDataSource delegating) {
+                dataSource = delegating.getTargetDataSource();
+            }
+            if (dataSource instanceof HikariDataSource pool) {
+                pool.close();
+            }
+        }
+    }
+}
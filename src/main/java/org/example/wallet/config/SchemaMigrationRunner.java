@@ -0,0 +1,30 @@
+package org.example.wallet.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Разовый шаг развёртывания (профиль migrate): к моменту запуска контекст уже применил
+ * миграции Liquibase и проверил схему Hibernate, остаётся завершить процесс с кодом 0.
+ * Выход явный: потоки планировщика не дают JVM завершиться самой.
+ * Основные экземпляры с профилем fast-startup этих проверок не делают.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.schema.migrate-and-exit", havingValue = "true")
+public class SchemaMigrationRunner implements ApplicationRunner {
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Миграции применены, схема проверена — завершение");
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.wallet.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Кольцо согласованного хеширования кошельков по шардам. Позиция кошелька на кольце —
+ * старшие 64 бита его UUID (у случайных UUID v4 они распределены равномерно),
+ * позиции виртуальных узлов — хеш имени шарда и номера узла. Поэтому каждый участок
+ * кольца — непрерывный диапазон UUID, и перенос участка между шардами выбирается
+ * по первичному ключу: {@code id BETWEEN firstId AND lastId}.
+ * <p>
+ * Кольцо хранится как разбиение позиций [0, 2^64) без заворота: верхние границы
+ * участков отсортированы беззнаково, последняя граница — максимальная позиция.
+ * Экземпляры неизменяемы.
+ */
+public final class ShardRing {
+    private static final long MAX_POSITION = -1L;
+    private static final double POSITIONS = 0x1p64;
+
+    private final long[] bounds;
+    private final String[] owners;
+
+    private ShardRing(List<Long> bounds, List<String> owners) {
+        this.bounds = bounds.stream().mapToLong(Long::longValue).toArray();
+        this.owners = owners.toArray(String[]::new);
+    }
+
+    public static ShardRing of(List<String> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("Кольцо шардов должно содержать хотя бы один узел");
+        }
+        List<Node> nodes = new ArrayList<>(shards.size() * virtualNodes);
+        for (String shard : shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                byte[] key = (shard + '#' + i).getBytes(StandardCharsets.UTF_8);
+                nodes.add(new Node(UUID.nameUUIDFromBytes(key).getMostSignificantBits(), shard));
+            }
+        }
+        nodes.sort(Comparator.comparing(Node::position, Long::compareUnsigned));
+
+        Builder builder = new Builder();
+        nodes.forEach(node -> builder.add(node.position(), node.shard()));
+        // Участок после последнего узла заворачивается к первому узлу кольца
+        builder.add(MAX_POSITION, nodes.get(0).shard());
+        return builder.build();
+    }
+
+    public String owner(UUID walletId) {
+        return owner(walletId.getMostSignificantBits());
+    }
+
+    public String owner(long position) {
+        int low = 0;
+        int high = bounds.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(bounds[mid], position) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return owners[low];
+    }
+
+    /**
+     * @return кольцо, в котором участок {@code segment} принадлежит его целевому шарду
+     */
+    public ShardRing assign(Segment segment) {
+        Builder builder = new Builder();
+        long lower = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            long bound = bounds[i];
+            if (Long.compareUnsigned(lower, segment.from()) < 0) {
+                builder.add(minUnsigned(bound, segment.from() - 1), owners[i]);
+            }
+            if (Long.compareUnsigned(lower, segment.to()) <= 0 && Long.compareUnsigned(bound, segment.from()) >= 0) {
+                builder.add(minUnsigned(bound, segment.to()), segment.target());
+            }
+            if (Long.compareUnsigned(bound, segment.to()) > 0) {
+                builder.add(bound, owners[i]);
+            }
+            lower = bound + 1;
+        }
+        return builder.build();
+    }
+
+    /**
+     * Участки, которые в кольце {@code target} принадлежат другому шарду, по возрастанию позиций.
+     */
+    public List<Segment> segmentsMovedTo(ShardRing target) {
+        List<Segment> segments = new ArrayList<>();
+        long lower = 0;
+        int i = 0;
+        int j = 0;
+        while (true) {
+            long upper = minUnsigned(bounds[i], target.bounds[j]);
+            String source = owners[i];
+            String destination = target.owners[j];
+            if (!source.equals(destination)) {
+                Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+                if (last != null && last.to() == lower - 1
+                        && last.source().equals(source) && last.target().equals(destination)) {
+                    segments.set(segments.size() - 1, new Segment(last.from(), upper, source, destination));
+                } else {
+                    segments.add(new Segment(lower, upper, source, destination));
+                }
+            }
+            if (upper == MAX_POSITION) {
+                return segments;
+            }
+            lower = upper + 1;
+            if (bounds[i] == upper) {
+                i++;
+            }
+            if (target.bounds[j] == upper) {
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Доля позиций кольца, принадлежащая каждому шарду.
+     */
+    public Map<String, Double> shares() {
+        Map<String, Double> shares = new LinkedHashMap<>();
+        long lower = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            double length = unsignedToDouble(bounds[i] - lower) + 1;
+            shares.merge(owners[i], length / POSITIONS, Double::sum);
+            lower = bounds[i] + 1;
+        }
+        return shares;
+    }
+
+    private static long minUnsigned(long a, long b) {
+        return Long.compareUnsigned(a, b) <= 0 ? a : b;
+    }
+
+    private static double unsignedToDouble(long value) {
+        return value >= 0 ? value : (value >>> 1) * 2.0 + (value & 1);
+    }
+
+    /**
+     * Непрерывный диапазон позиций [from, to] (беззнаково), переходящий с шарда source на шард target.
+     */
+    public record Segment(long from, long to, String source, String target) {
+        public UUID firstId() {
+            return new UUID(from, 0L);
+        }
+
+        public UUID lastId() {
+            return new UUID(to, -1L);
+        }
+    }
+
+    private record Node(long position, String shard) {
+    }
+
+    private static final class Builder {
+        private final List<Long> bounds = new ArrayList<>();
+        private final List<String> owners = new ArrayList<>();
+
+        private void add(long bound, String owner) {
+            int last = bounds.size() - 1;
+            if (last >= 0 && owners.get(last).equals(owner)) {
+                bounds.set(last, bound);
+            } else if (last < 0 || bounds.get(last) != bound) {
+                bounds.add(bound);
+                owners.add(owner);
+            }
+        }
+
+        private ShardRing build() {
+            return new ShardRing(bounds, owners);
+        }
+    }
+}
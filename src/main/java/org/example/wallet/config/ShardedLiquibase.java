@@ -0,0 +1,31 @@
+package org.example.wallet.config;
+
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Применяет changelog к каждому шарду по очереди. Зарегистрирован как единственный
+ * {@link SpringLiquibase}, поэтому автонастройка Liquibase отключается, а фабрика
+ * EntityManager по-прежнему создаётся после миграций.
+ */
+@Slf4j
+public class ShardedLiquibase extends SpringLiquibase {
+    private final Map<String, DataSource> shards;
+
+    public ShardedLiquibase(Map<String, DataSource> shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws LiquibaseException {
+        for (Map.Entry<String, DataSource> shard : shards.entrySet()) {
+            log.info("Миграции шарда {}", shard.getKey());
+            setDataSource(shard.getValue());
+            super.afterPropertiesSet();
+        }
+    }
+}
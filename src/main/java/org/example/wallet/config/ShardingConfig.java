@@ -0,0 +1,80 @@
+package org.example.wallet.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import liquibase.integration.spring.SpringLiquibase;
+import org.example.wallet.controller.ShardsEndpoint;
+import org.example.wallet.service.ShardRebalancer;
+import org.example.wallet.service.ShardRouter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Шардированное хранилище (wallet.sharding.enabled=true): у каждого шарда свой пул Hikari
+ * с настройками spring.datasource.hikari и свои миграции Liquibase. Основной DataSource
+ * выбирает пул по шарду, закреплённому за потоком, и берёт соединение только при первом
+ * запросе, чтобы транзакция успела закрепить шард кошелька.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "wallet.sharding.enabled", havingValue = "true")
+    public ShardRoutingDataSource shardRoutingDataSource(ShardingProperties properties,
+                                                         Environment environment,
+                                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        if (properties.activeShardNames().isEmpty()) {
+            throw new IllegalStateException("Не задано ни одного активного шарда в wallet.sharding.shards");
+        }
+        HikariPools pools = new HikariPools(environment, meterRegistry)
+                .applicationName(ShardRebalancer.INSTANCE_APPLICATION_NAME);
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            shards.put(shard.getName(), pools.create("wallet-" + shard.getName(), shard.getUrl(),
+                    shard.getUsername(), shard.getPassword(), shard.getMaximumPoolSize(), false));
+        }
+        return new ShardRoutingDataSource(shards, properties.activeShardNames().get(0));
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "wallet.sharding.enabled", havingValue = "true")
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "wallet.sharding.enabled", havingValue = "true")
+    public ShardedLiquibase liquibase(ShardRoutingDataSource shardRoutingDataSource, Environment environment) {
+        ShardedLiquibase liquibase = new ShardedLiquibase(shardRoutingDataSource.getShards());
+        liquibase.setChangeLog(environment.getRequiredProperty("spring.liquibase.change-log"));
+        liquibase.setShouldRun(environment.getProperty("spring.liquibase.enabled", Boolean.class, true));
+        return liquibase;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "wallet.sharding.enabled", havingValue = "true")
+    public ShardRebalancer shardRebalancer(ShardRouter shardRouter,
+                                           ShardingProperties properties,
+                                           ShardRoutingDataSource shardRoutingDataSource,
+                                           SpringLiquibase liquibase) {
+        // Зависимость от миграций: при создании восстанавливаются переносы из shard_moves
+        return new ShardRebalancer(shardRouter, properties, shardRoutingDataSource.getShards());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "wallet.sharding.enabled", havingValue = "true")
+    public ShardsEndpoint shardsEndpoint(ShardRouter shardRouter, ShardRebalancer shardRebalancer) {
+        return new ShardsEndpoint(shardRouter, shardRebalancer);
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.wallet.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки шардирования хранилища кошельков (wallet.sharding).
+ * Шард с {@code joining: true} получает пул и миграции, но кошельки на него
+ * не направляются, пока перебалансировка не перенесёт на него его диапазоны.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("wallet.sharding")
+public class ShardingProperties {
+    private boolean enabled;
+    private int virtualNodes = 64;
+    private Duration drainTimeout = Duration.ofSeconds(30);
+    private List<Shard> shards = new ArrayList<>();
+
+    public List<String> activeShardNames() {
+        return shards.stream().filter(shard -> !shard.isJoining()).map(Shard::getName).toList();
+    }
+
+    public List<String> shardNames() {
+        return shards.stream().map(Shard::getName).toList();
+    }
+
+    @Getter
+    @Setter
+    public static class Shard {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        /**
+         * Размер пула шарда; по умолчанию spring.datasource.hikari.maximum-pool-size.
+         */
+        private Integer maximumPoolSize;
+        private boolean joining;
+    }
+}
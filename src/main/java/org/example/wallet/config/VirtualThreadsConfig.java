@@ -0,0 +1,37 @@
+package org.example.wallet.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Режим виртуальных потоков (spring.threads.virtual.enabled=true): Tomcat, планировщик
+ * и паузы между повторами операций работают на виртуальных потоках.
+ * Число запросов в обработке больше не ограничено пулом потоков Tomcat,
+ * поэтому перед пулом соединений ставится ограничитель с очередью ожидания.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionLimitingPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    Duration acquireTimeout = environment.getProperty(
+                            "wallet.concurrency.connection-acquire-timeout", Duration.class, Duration.ofSeconds(30));
+                    return new ConnectionLimitingDataSource(dataSource, dataSource.getMaximumPoolSize(), acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,277 @@
+package org.example.wallet.controller;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.BinaryWalletCodec;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletRequestRejection;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.ConcurrentWalletOperationException;
+import org.example.wallet.exceptions.IdempotencyKeyMismatchException;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.service.WalletService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * TCP-приём операций в формате {@link BinaryWalletCodec} рядом с HTTP API. Клиент держит
+ * одно соединение и отправляет запросы не дожидаясь ответов; каждый запрос выполняется
+ * {@link WalletService} с той же семантикой, что у {@link WalletController}, ответы
+ * пишутся по мере готовности и сопоставляются по requestId. Ответы, готовые одновременно,
+ * уходят одной записью в сокет.
+ * <p>
+ * Число запросов в обработке на соединение ограничено: при превышении сервер перестаёт
+ * читать сокет и клиента сдерживает окно TCP. Кадр, не соответствующий формату, закрывает соединение.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.binary.enabled", havingValue = "true")
+public class BinaryWalletServer {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RESPONSES_PER_WRITE = 64;
+
+    private final WalletService walletService;
+    private final String host;
+    private final int port;
+    private final int maxInFlight;
+    private final int workerThreads;
+    private final boolean virtualThreads;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    private ServerSocketChannel serverChannel;
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public BinaryWalletServer(WalletService walletService,
+                              @Value("${wallet.binary.host:0.0.0.0}") String host,
+                              @Value("${wallet.binary.port:9090}") int port,
+                              @Value("${wallet.binary.max-in-flight:256}") int maxInFlight,
+                              @Value("${wallet.binary.worker-threads:200}") int workerThreads,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.walletService = walletService;
+        this.host = host;
+        this.port = port;
+        this.maxInFlight = maxInFlight;
+        this.workerThreads = workerThreads;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(host, port));
+        workers = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(workerThreads, threads("wallet-binary-worker"));
+        running = true;
+        threads("wallet-binary-accept").newThread(this::acceptConnections).start();
+        log.info("Двоичный протокол операций на порту {}", getPort());
+    }
+
+    /**
+     * Фактический порт, в том числе при {@code wallet.binary.port=0}.
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Порт двоичного протокола недоступен", ex);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ex) {
+            log.warn("Не удалось закрыть порт двоичного протокола", ex);
+        }
+        connections.forEach(Connection::close);
+        workers.shutdown();
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel);
+                connections.add(connection);
+                threads("wallet-binary-connection").newThread(connection::readRequests).start();
+            } catch (ClosedChannelException ex) {
+                return;
+            } catch (IOException ex) {
+                if (running) {
+                    log.warn("Ошибка приёма соединения двоичного протокола", ex);
+                }
+            }
+        }
+    }
+
+    private ByteBuffer execute(BinaryWalletCodec.Request request) {
+        ByteBuffer out = ByteBuffer.allocate(BinaryWalletCodec.maxResponseLength());
+        long requestId = request.requestId();
+        try {
+            WalletResponse response;
+            if (request.isBalanceQuery()) {
+                response = walletService.getBalance(request.walletId(), request.value() >= 0 ? request.value() : null);
+            } else {
+                WalletRequest walletRequest = request.toWalletRequest();
+                List<WalletRequestRejection> rejections = walletRequest.validate();
+                if (!rejections.isEmpty()) {
+                    BinaryWalletCodec.encodeError(out, requestId, BinaryWalletCodec.STATUS_BAD_REQUEST,
+                            WalletRequestRejection.message(rejections));
+                    return out.flip();
+                }
+                response = walletService.processTransaction(walletRequest);
+            }
+            BinaryWalletCodec.encodeResult(out, requestId, response);
+        } catch (ValidationException | IdempotencyKeyMismatchException ex) {
+            BinaryWalletCodec.encodeError(out, requestId, BinaryWalletCodec.STATUS_BAD_REQUEST, ex.getMessage());
+        } catch (WalletNotFoundException ex) {
+            BinaryWalletCodec.encodeError(out, requestId, BinaryWalletCodec.STATUS_NOT_FOUND, ex.getMessage());
+        } catch (InsufficientFundsException ex) {
+            BinaryWalletCodec.encodeError(out, requestId, BinaryWalletCodec.STATUS_INSUFFICIENT_FUNDS, ex.getMessage());
+        } catch (ConcurrentWalletOperationException ex) {
+            BinaryWalletCodec.encodeError(out, requestId, BinaryWalletCodec.STATUS_BUSY, ex.getMessage());
+        } catch (RuntimeException ex) {
+            log.error("Сбой запроса {} двоичного протокола", requestId, ex);
+            BinaryWalletCodec.encodeError(out, requestId, BinaryWalletCodec.STATUS_ERROR, "Internal server error");
+        }
+        return out.flip();
+    }
+
+    private ThreadFactory threads(String name) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name(name).factory();
+        }
+        return Thread.ofPlatform().name(name).daemon(true).factory();
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final ConcurrentLinkedQueue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean writing = new AtomicBoolean();
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void readRequests() {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            try {
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.remaining() >= Integer.BYTES) {
+                        int length = buffer.getInt(buffer.position());
+                        if (length <= 0 || length > BinaryWalletCodec.MAX_FRAME_LENGTH) {
+                            throw new IllegalArgumentException("Недопустимая длина кадра " + length);
+                        }
+                        if (buffer.remaining() < Integer.BYTES + length) {
+                            break;
+                        }
+                        int bodyStart = buffer.position() + Integer.BYTES;
+                        BinaryWalletCodec.Request request =
+                                BinaryWalletCodec.decodeRequest(buffer.slice(bodyStart, length));
+                        buffer.position(bodyStart + length);
+                        inFlight.acquire();
+                        workers.execute(() -> {
+                            try {
+                                send(execute(request));
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    }
+                    buffer.compact();
+                }
+                // Клиент закончил отправку: дождаться ответов на уже принятые запросы
+                inFlight.acquire(maxInFlight);
+            } catch (IllegalArgumentException ex) {
+                log.warn("Некорректный кадр двоичного протокола, соединение закрыто: {}", ex.getMessage());
+            } catch (IOException | RejectedExecutionException ex) {
+                log.debug("Соединение двоичного протокола прервано: {}", ex.toString());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Ставит ответ в очередь; поток, захвативший запись, отправляет все накопившиеся ответы.
+         */
+        private void send(ByteBuffer response) {
+            responses.add(response);
+            while (!responses.isEmpty() && writing.compareAndSet(false, true)) {
+                try {
+                    writeQueued();
+                } catch (IOException ex) {
+                    log.debug("Ответ двоичного протокола не отправлен: {}", ex.toString());
+                    close();
+                    return;
+                } finally {
+                    writing.set(false);
+                }
+            }
+        }
+
+        private void writeQueued() throws IOException {
+            ByteBuffer[] batch = new ByteBuffer[MAX_RESPONSES_PER_WRITE];
+            int count;
+            while ((count = poll(batch)) > 0) {
+                long remaining = 0;
+                for (int i = 0; i < count; i++) {
+                    remaining += batch[i].remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(batch, 0, count);
+                }
+            }
+        }
+
+        private int poll(ByteBuffer[] batch) {
+            int count = 0;
+            ByteBuffer response;
+            while (count < batch.length && (response = responses.poll()) != null) {
+                batch[count++] = response;
+            }
+            return count;
+        }
+
+        void close() {
+            connections.remove(this);
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.debug("Соединение двоичного протокола закрыто с ошибкой: {}", ex.toString());
+            }
+        }
+    }
+}
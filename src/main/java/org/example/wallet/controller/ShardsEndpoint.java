@@ -0,0 +1,35 @@
+package org.example.wallet.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.example.wallet.service.ShardRebalancer;
+import org.example.wallet.service.ShardRouter;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.Map;
+
+/**
+ * /actuator/shards: доли кольца по шардам и запуск перебалансировки (POST)
+ * после добавления шарда с joining: true. Перебалансировку запускают на единственном
+ * работающем экземпляре сервиса, остальные на это время останавливают.
+ */
+@Endpoint(id = "shards")
+@RequiredArgsConstructor
+public class ShardsEndpoint {
+    private final ShardRouter shardRouter;
+    private final ShardRebalancer shardRebalancer;
+
+    @ReadOperation
+    public Map<String, Object> shards() {
+        return Map.of(
+                "shards", shardRouter.shardNames(),
+                "shares", shardRouter.ring().shares(),
+                "rebalancing", shardRebalancer.isRunning());
+    }
+
+    @WriteOperation
+    public ShardRebalancer.Result rebalance() {
+        return shardRebalancer.rebalance();
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.wallet.controller;
+
+import jakarta.validation.ValidationException;
+import lombok.RequiredArgsConstructor;
+import org.example.wallet.service.WalletBulkService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Потоковый импорт и экспорт балансов для загрузки партнёров и ночной сверки.
+ */
+@RestController
+@RequestMapping("/api/v1/wallets")
+@RequiredArgsConstructor
+public class WalletBulkController {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+
+    private final WalletBulkService walletBulkService;
+
+    @PostMapping(path = "/import", consumes = NDJSON)
+    public ResponseEntity<?> importNdjson(InputStream body) {
+        try {
+            return ResponseEntity.ok(walletBulkService.importNdjson(body));
+        } catch (ValidationException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @PostMapping(path = "/import", consumes = CSV)
+    public ResponseEntity<?> importCsv(InputStream body) {
+        try {
+            return ResponseEntity.ok(walletBulkService.importCsv(body));
+        } catch (ValidationException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping(path = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportNdjson() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(walletBulkService::exportNdjson);
+    }
+
+    @GetMapping(path = "/export", produces = CSV)
+    public ResponseEntity<StreamingResponseBody> exportCsv() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(CSV))
+                .body(walletBulkService::exportCsv);
+    }
+}
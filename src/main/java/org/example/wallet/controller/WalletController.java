@@ -1,7 +1,10 @@
 package org.example.wallet.controller;
 
 import jakarta.validation.ValidationException;
+import org.example.wallet.dto.BatchTransactionRequest;
+import org.example.wallet.dto.BatchTransactionResponse;
 import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletRequestRejection;
 import org.example.wallet.dto.WalletResponse;
 import org.example.wallet.service.WalletService;
 import jakarta.validation.Valid;
@@ -9,6 +12,9 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -19,7 +25,11 @@ public class WalletController {
     private final WalletService walletService;
 
     @PostMapping
-    public ResponseEntity<?> processTransaction(@RequestBody @Valid WalletRequest request) {
+    public ResponseEntity<?> processTransaction(@RequestBody WalletRequest request) {
+        List<WalletRequestRejection> rejections = request.validate();
+        if (!rejections.isEmpty()) {
+            return ResponseEntity.badRequest().body(WalletRequestRejection.body(rejections));
+        }
         try {
             return ResponseEntity.ok(walletService.processTransaction(request));
         } catch (ValidationException e) {
@@ -27,9 +37,38 @@ public class WalletController {
         }
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<?> processBatch(@RequestBody @Valid BatchTransactionRequest request) {
+        List<WalletRequest> operations = request.getOperations();
+        Map<String, String> rejections = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            WalletRequestRejection.collect(rejections, "operations[" + i + "].", operations.get(i).validate());
+        }
+        if (!rejections.isEmpty()) {
+            return ResponseEntity.badRequest().body(rejections);
+        }
+        try {
+            BatchTransactionResponse response = walletService.processBatch(request);
+            return response.isCommitted()
+                    ? ResponseEntity.ok(response)
+                    : ResponseEntity.badRequest().body(response);
+        } catch (ValidationException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * @param at момент в ISO-8601 ({@code 2026-01-01T00:00:00Z}): баланс на этот момент
+     *           вместо текущего, {@code minVersion} при этом не учитывается
+     */
     @GetMapping("/{walletId}")
-    public ResponseEntity<WalletResponse> getBalance(@PathVariable UUID walletId) {
-        return ResponseEntity.ok(walletService.getBalance(walletId));
+    public ResponseEntity<WalletResponse> getBalance(@PathVariable UUID walletId,
+                                                     @RequestParam(required = false) Long minVersion,
+                                                     @RequestParam(required = false) Instant at) {
+        if (at != null) {
+            return ResponseEntity.ok(walletService.getBalanceAt(walletId, at));
+        }
+        return ResponseEntity.ok(walletService.getBalance(walletId, minVersion));
     }
 
 }
\ No newline at end of file
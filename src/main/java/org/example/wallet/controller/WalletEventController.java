@@ -0,0 +1,79 @@
+package org.example.wallet.controller;
+
+import org.example.wallet.dto.WalletEventMessage;
+import org.example.wallet.service.WalletEventHub;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Подписка на изменения балансов: поток SSE и long-poll для клиентов без него.
+ * Номер события передаётся как id SSE, поэтому браузер при переподключении
+ * присылает Last-Event-ID и получает пропущенное из буфера {@link WalletEventHub}.
+ * Поток клиента, не успевающего читать события, завершается хабом; клиент переподключается
+ * тем же путём.
+ */
+@RestController
+@RequestMapping("/api/v1/wallets/events")
+@ConditionalOnProperty(name = "wallet.outbox.enabled", havingValue = "true")
+public class WalletEventController {
+    private final WalletEventHub eventHub;
+    private final Duration sseTimeout;
+    private final Duration pollTimeout;
+
+    public WalletEventController(WalletEventHub eventHub,
+                                 @Value("${wallet.outbox.sse-timeout:30m}") Duration sseTimeout,
+                                 @Value("${wallet.outbox.poll-timeout:25s}") Duration pollTimeout) {
+        this.eventHub = eventHub;
+        this.sseTimeout = sseTimeout;
+        this.pollTimeout = pollTimeout;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) UUID walletId,
+                             @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        WalletEventHub.Subscription subscription = eventHub.subscribe(walletId, lastEventId, events -> {
+            try {
+                for (WalletEventMessage event : events) {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(event.sequence()))
+                            .name("balance-changed")
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+                return true;
+            } catch (IOException ex) {
+                return false;
+            }
+        });
+        subscription.onDropped(emitter::complete);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(ex -> subscription.close());
+        return emitter;
+    }
+
+    /**
+     * Отвечает, как только появится событие с номером больше {@code after},
+     * или пустым списком по истечении ожидания.
+     */
+    @GetMapping("/poll")
+    public DeferredResult<List<WalletEventMessage>> poll(@RequestParam(required = false) UUID walletId,
+                                                         @RequestParam(defaultValue = "0") long after) {
+        DeferredResult<List<WalletEventMessage>> result = new DeferredResult<>(pollTimeout.toMillis(), List.of());
+        WalletEventHub.Subscription subscription = eventHub.subscribe(walletId, after, events -> {
+            result.setResult(events);
+            return false;
+        });
+        result.onCompletion(subscription::close);
+        return result;
+    }
+}
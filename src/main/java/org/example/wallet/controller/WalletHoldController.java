@@ -0,0 +1,55 @@
+package org.example.wallet.controller;
+
+import jakarta.validation.Valid;
+import jakarta.validation.ValidationException;
+import lombok.RequiredArgsConstructor;
+import org.example.wallet.dto.CaptureRequest;
+import org.example.wallet.dto.HoldRequest;
+import org.example.wallet.service.WalletHoldService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Удержания средств для карточных сценариев: сумма резервируется до того, как известна
+ * окончательная, и затем списывается или освобождается. Не снятое удержание освобождается
+ * по истечении срока.
+ */
+@RestController
+@RequestMapping("/api/v1/wallets/{walletId}/holds")
+@RequiredArgsConstructor
+public class WalletHoldController {
+    private final WalletHoldService holdService;
+
+    @PostMapping
+    public ResponseEntity<?> authorize(@PathVariable UUID walletId, @RequestBody @Valid HoldRequest request) {
+        try {
+            Duration ttl = request.getTtlSeconds() != null ? Duration.ofSeconds(request.getTtlSeconds()) : null;
+            return ResponseEntity.ok(holdService.authorize(walletId, request.getAmount(), ttl));
+        } catch (ValidationException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{holdId}/capture")
+    public ResponseEntity<?> capture(@PathVariable UUID walletId, @PathVariable UUID holdId,
+                                     @RequestBody @Valid CaptureRequest request) {
+        try {
+            return ResponseEntity.ok(holdService.capture(walletId, holdId, request.getAmount()));
+        } catch (ValidationException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{holdId}")
+    public ResponseEntity<?> release(@PathVariable UUID walletId, @PathVariable UUID holdId) {
+        try {
+            return ResponseEntity.ok(holdService.release(walletId, holdId));
+        } catch (ValidationException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+}
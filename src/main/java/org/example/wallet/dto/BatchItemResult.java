@@ -0,0 +1,19 @@
+package org.example.wallet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.wallet.model.BatchItemStatus;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+    private UUID walletId;
+    private BatchItemStatus status;
+    private BigDecimal balance;
+    private String message;
+}
@@ -0,0 +1,19 @@
+package org.example.wallet.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import org.example.wallet.model.BatchMode;
+
+import java.util.List;
+
+@Data
+public class BatchTransactionRequest {
+    @NotNull(message = "Укажите режим: ALL_OR_NOTHING (всё или ничего) или BEST_EFFORT (по возможности)")
+    private BatchMode mode = BatchMode.ALL_OR_NOTHING;
+
+    @NotEmpty(message = "Список операций не должен быть пустым")
+    @Size(max = 10000, message = "Не более 10000 операций в одном пакете")
+    private List<@NotNull WalletRequest> operations;
+}
@@ -0,0 +1,167 @@
+package org.example.wallet.dto;
+
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Двоичный протокол операций для клиентов с большим потоком запросов. Кадр — длина тела
+ * (int) и тело; числа в порядке big-endian, сумма — целые единицы {@link Money}.
+ * <pre>
+ * запрос: requestId:long op:byte walletId:16 value:long [targetWalletId:16] keyLength:byte key:UTF-8
+ * ответ:  requestId:long status:byte, при OK — balance:long version:long, иначе messageLength:short message:UTF-8
+ * </pre>
+ * {@code value} — сумма для операций и minVersion для {@link #OP_BALANCE} (-1 — без ограничения),
+ * {@code targetWalletId} есть только у {@link #OP_TRANSFER}, version в ответе -1, если неизвестна.
+ * Ответы приходят по мере выполнения, не в порядке запросов: их сопоставляют по requestId.
+ */
+public final class BinaryWalletCodec {
+    public static final int MAX_FRAME_LENGTH = 1024;
+
+    public static final byte OP_DEPOSIT = 1;
+    public static final byte OP_WITHDRAW = 2;
+    public static final byte OP_TRANSFER = 3;
+    public static final byte OP_BALANCE = 4;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_BAD_REQUEST = 1;
+    public static final byte STATUS_NOT_FOUND = 2;
+    public static final byte STATUS_INSUFFICIENT_FUNDS = 3;
+    public static final byte STATUS_BUSY = 4;
+    public static final byte STATUS_ERROR = 5;
+
+    private static final int MAX_MESSAGE_BYTES = 512;
+    private static final int RESULT_LENGTH = 8 + 1 + 8 + 8;
+
+    private BinaryWalletCodec() {
+    }
+
+    /**
+     * @param value сумма операции или minVersion для {@link #OP_BALANCE}
+     */
+    public record Request(long requestId, byte op, UUID walletId, long value, UUID targetWalletId,
+                          String idempotencyKey) {
+
+        public boolean isBalanceQuery() {
+            return op == OP_BALANCE;
+        }
+
+        /**
+         * @return запрос операции для {@link org.example.wallet.service.WalletService}
+         */
+        public WalletRequest toWalletRequest() {
+            OperationType operationType = switch (op) {
+                case OP_DEPOSIT -> OperationType.DEPOSIT;
+                case OP_WITHDRAW -> OperationType.WITHDRAW;
+                case OP_TRANSFER -> OperationType.TRANSFER;
+                default -> null;
+            };
+            return WalletRequest.of(walletId, operationType, Money.ofUnits(value), targetWalletId, idempotencyKey);
+        }
+    }
+
+    /**
+     * @param balance {@code null}, если статус не {@link #STATUS_OK}
+     * @param version -1, если версия неизвестна
+     */
+    public record Response(long requestId, byte status, Money balance, long version, String message) {
+    }
+
+    /**
+     * Читает тело кадра запроса (без длины).
+     *
+     * @throws IllegalArgumentException если тело не соответствует формату
+     */
+    public static Request decodeRequest(ByteBuffer body) {
+        try {
+            long requestId = body.getLong();
+            byte op = body.get();
+            if (op < OP_DEPOSIT || op > OP_BALANCE) {
+                throw new IllegalArgumentException("Неизвестная операция " + op);
+            }
+            UUID walletId = new UUID(body.getLong(), body.getLong());
+            long value = body.getLong();
+            UUID targetWalletId = op == OP_TRANSFER ? new UUID(body.getLong(), body.getLong()) : null;
+            int keyLength = body.get() & 0xFF;
+            String idempotencyKey = null;
+            if (keyLength > 0) {
+                byte[] key = new byte[keyLength];
+                body.get(key);
+                idempotencyKey = new String(key, StandardCharsets.UTF_8);
+            }
+            if (body.hasRemaining()) {
+                throw new IllegalArgumentException("Лишние байты в кадре запроса " + requestId);
+            }
+            return new Request(requestId, op, walletId, value, targetWalletId, idempotencyKey);
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Кадр запроса короче формата", ex);
+        }
+    }
+
+    /**
+     * Пишет кадр запроса вместе с длиной.
+     */
+    public static void encodeRequest(ByteBuffer out, Request request) {
+        byte[] key = request.idempotencyKey() != null
+                ? request.idempotencyKey().getBytes(StandardCharsets.UTF_8)
+                : new byte[0];
+        if (key.length > 255) {
+            throw new IllegalArgumentException("Ключ идемпотентности длиннее 255 байт");
+        }
+        int length = 8 + 1 + 16 + 8 + (request.op() == OP_TRANSFER ? 16 : 0) + 1 + key.length;
+        out.putInt(length)
+                .putLong(request.requestId())
+                .put(request.op())
+                .putLong(request.walletId().getMostSignificantBits())
+                .putLong(request.walletId().getLeastSignificantBits())
+                .putLong(request.value());
+        if (request.op() == OP_TRANSFER) {
+            out.putLong(request.targetWalletId().getMostSignificantBits())
+                    .putLong(request.targetWalletId().getLeastSignificantBits());
+        }
+        out.put((byte) key.length).put(key);
+    }
+
+    public static void encodeResult(ByteBuffer out, long requestId, WalletResponse response) {
+        out.putInt(RESULT_LENGTH)
+                .putLong(requestId)
+                .put(STATUS_OK)
+                .putLong(response.balance().units())
+                .putLong(response.getVersion() != null ? response.getVersion() : -1);
+    }
+
+    public static void encodeError(ByteBuffer out, long requestId, byte status, String message) {
+        byte[] text = (message != null ? message : "").getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(text.length, MAX_MESSAGE_BYTES);
+        out.putInt(8 + 1 + 2 + length)
+                .putLong(requestId)
+                .put(status)
+                .putShort((short) length)
+                .put(text, 0, length);
+    }
+
+    /**
+     * Наибольший размер кадра ответа с длиной: по нему выделяются буферы записи.
+     */
+    public static int maxResponseLength() {
+        return 4 + 8 + 1 + 2 + MAX_MESSAGE_BYTES;
+    }
+
+    /**
+     * Читает тело кадра ответа (без длины).
+     */
+    public static Response decodeResponse(ByteBuffer body) {
+        long requestId = body.getLong();
+        byte status = body.get();
+        if (status == STATUS_OK) {
+            return new Response(requestId, status, Money.ofUnits(body.getLong()), body.getLong(), null);
+        }
+        byte[] message = new byte[body.getShort() & 0xFFFF];
+        body.get(message);
+        return new Response(requestId, status, null, -1, new String(message, StandardCharsets.UTF_8));
+    }
+}
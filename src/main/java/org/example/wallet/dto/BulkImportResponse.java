@@ -0,0 +1,14 @@
+package org.example.wallet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResponse {
+    private long received;
+    private long imported;
+    private long skipped;
+}
@@ -0,0 +1,14 @@
+package org.example.wallet.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.example.wallet.model.Money;
+
+/**
+ * Запрос списания удержания: сумма не больше удержанной, остаток удержания освобождается
+ */
+@Data
+public class CaptureRequest {
+    @NotNull(message = "Сумма обязательна")
+    private Money amount;
+}
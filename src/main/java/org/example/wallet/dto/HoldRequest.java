@@ -0,0 +1,17 @@
+package org.example.wallet.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.example.wallet.model.Money;
+
+/**
+ * Запрос удержания средств кошелька
+ */
+@Data
+public class HoldRequest {
+    @NotNull(message = "Сумма обязательна")
+    private Money amount;
+
+    /** Срок удержания в секундах; без значения — wallet.holds.default-ttl. */
+    private Long ttlSeconds;
+}
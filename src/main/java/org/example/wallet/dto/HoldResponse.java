@@ -0,0 +1,25 @@
+package org.example.wallet.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.wallet.model.Money;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Созданное удержание. {@code availableBalance} — баланс за вычетом всех удержаний кошелька;
+ * version не передаётся: удержание не меняет баланс и версию кошелька.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldResponse {
+    private UUID holdId;
+    private UUID walletId;
+    private Money amount;
+    private Money balance;
+    private Money availableBalance;
+    private Instant expiresAt;
+}
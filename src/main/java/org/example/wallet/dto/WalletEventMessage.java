@@ -0,0 +1,16 @@
+package org.example.wallet.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Опубликованное изменение баланса.
+ *
+ * @param sequence   номер в потоке этого экземпляра сервиса, возрастает; используется
+ *                   как Last-Event-ID и параметр after при переподключении
+ * @param version    версия кошелька после изменения: доставка «хотя бы раз», и потребитель
+ *                   отбрасывает события с версией не выше уже виденной
+ */
+public record WalletEventMessage(long sequence, UUID walletId, BigDecimal balance, long version, Instant occurredAt) {
+}
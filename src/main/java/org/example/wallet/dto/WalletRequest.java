@@ -1,34 +1,198 @@
 package org.example.wallet.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import jakarta.validation.ValidationException;
-import jakarta.validation.constraints.DecimalMin;
-import jakarta.validation.constraints.Pattern;
-import org.example.wallet.model.OperationType;
-import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.Positive;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.UUID;
 
+/**
+ * Запрос операции по кошельку. Идентификатор разбирается в UUID один раз при установке,
+ * проверки выполняет {@link #validate()} без Bean Validation и регулярных выражений.
+ */
 @Data
+@JsonDeserialize(using = WalletRequestDeserializer.class)
 public class WalletRequest {
-    @NotNull(message = "Идентификатор кошелька обязателен")
-    @Pattern(regexp = "^[0-9a-f]{8}-[0-9a-f]{4}-4[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}$",
-            message = "Неверный формат UUID")
+    private static final Money MIN_AMOUNT = Money.ofUnits(100);
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
     private String walletId;
-    @NotNull(message = "Укажите тип операции: DEPOSIT (пополнение) или WITHDRAW (списание)")
     private OperationType operationType;
+    @Setter(AccessLevel.NONE)
+    private Money amount;
+    private String idempotencyKey;
+    /** Кошелёк получателя, только для {@link OperationType#TRANSFER}. */
+    private String targetWalletId;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private UUID walletUuid;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private UUID targetWalletUuid;
 
-    @NotNull(message = "Сумма операции обязательна")
-    @DecimalMin(value = "0.01", message = "Сумма должна быть положительным числом")
-    private BigDecimal amount;
+    /**
+     * Запрос с уже разобранными идентификаторами, например из двоичного протокола:
+     * строковые walletId и targetWalletId не заполняются.
+     */
+    public static WalletRequest of(UUID walletId, OperationType operationType, Money amount,
+                                   UUID targetWalletId, String idempotencyKey) {
+        WalletRequest request = new WalletRequest();
+        request.walletUuid = walletId;
+        request.operationType = operationType;
+        request.amount = amount;
+        request.targetWalletUuid = targetWalletId;
+        request.idempotencyKey = idempotencyKey;
+        return request;
+    }
+
+    public void setWalletId(String walletId) {
+        this.walletId = walletId;
+        this.walletUuid = parseVersion4Uuid(walletId);
+    }
+
+    public void setTargetWalletId(String targetWalletId) {
+        this.targetWalletId = targetWalletId;
+        this.targetWalletUuid = parseVersion4Uuid(targetWalletId);
+    }
 
+    public void setAmount(Money amount) {
+        this.amount = amount;
+    }
+
+    /**
+     * Сумма с прежним типом для вызывающего кода вне горячего пути, например тестов.
+     */
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount != null ? Money.of(amount) : null;
+    }
+
+    @JsonIgnore
     public UUID getWalletIdAsUUID() {
-        try {
-            return UUID.fromString(walletId);
-        } catch (IllegalArgumentException e) {
+        if (walletUuid == null) {
+            throw new ValidationException("Неверный формат UUID");
+        }
+        return walletUuid;
+    }
+
+    @JsonIgnore
+    public UUID getTargetWalletIdAsUUID() {
+        if (targetWalletUuid == null) {
             throw new ValidationException("Неверный формат UUID");
         }
+        return targetWalletUuid;
+    }
+
+    /**
+     * Отпечаток операции для сверки повтора с ключом идемпотентности: SHA-256 от типа,
+     * суммы и кошелька получателя. Кошелёк операции входит в сам ключ и не учитывается.
+     */
+    public String fingerprint() {
+        String operation = operationType + "|" + amount.units() + "|" + targetWalletUuid;
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(operation.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @return все причины отклонения, не больше одной на поле; пустой общий список,
+     * если запрос корректен — корректный запрос проверяется без выделения памяти
+     */
+    public List<WalletRequestRejection> validate() {
+        List<WalletRequestRejection> rejections = List.of();
+        if (walletUuid == null) {
+            rejections = add(rejections, walletId == null
+                    ? WalletRequestRejection.WALLET_ID_REQUIRED
+                    : WalletRequestRejection.WALLET_ID_INVALID);
+        }
+        if (operationType == null) {
+            rejections = add(rejections, WalletRequestRejection.OPERATION_TYPE_REQUIRED);
+        }
+        if (amount == null) {
+            rejections = add(rejections, WalletRequestRejection.AMOUNT_REQUIRED);
+        } else if (amount.isLessThan(MIN_AMOUNT)) {
+            rejections = add(rejections, WalletRequestRejection.AMOUNT_NOT_POSITIVE);
+        }
+        if (idempotencyKey != null && idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            rejections = add(rejections, WalletRequestRejection.IDEMPOTENCY_KEY_TOO_LONG);
+        }
+        if (operationType == OperationType.TRANSFER) {
+            if (targetWalletUuid == null) {
+                rejections = add(rejections, targetWalletId == null
+                        ? WalletRequestRejection.TARGET_WALLET_ID_REQUIRED
+                        : WalletRequestRejection.TARGET_WALLET_ID_INVALID);
+            } else if (targetWalletUuid.equals(walletUuid)) {
+                rejections = add(rejections, WalletRequestRejection.TARGET_WALLET_ID_SAME);
+            }
+        }
+        return rejections;
+    }
+
+    private static List<WalletRequestRejection> add(List<WalletRequestRejection> rejections,
+                                                    WalletRequestRejection rejection) {
+        if (rejections.isEmpty()) {
+            rejections = new ArrayList<>(4);
+        }
+        rejections.add(rejection);
+        return rejections;
+    }
+
+    /**
+     * Разбирает UUID версии 4 в каноническом виде со строчными буквами,
+     * например {@code 3f2504e0-4f89-41d3-9a0c-0305e82c3301}.
+     *
+     * @return UUID или {@code null}, если строка не соответствует формату
+     */
+    static UUID parseVersion4Uuid(String value) {
+        if (value == null || value.length() != 36 || value.charAt(14) != '4') {
+            return null;
+        }
+        char variant = value.charAt(19);
+        if (variant != '8' && variant != '9' && variant != 'a' && variant != 'b') {
+            return null;
+        }
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        int digits = 0;
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return null;
+                }
+                continue;
+            }
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else {
+                return null;
+            }
+            if (digits++ < 16) {
+                mostSigBits = (mostSigBits << 4) | digit;
+            } else {
+                leastSigBits = (leastSigBits << 4) | digit;
+            }
+        }
+        return new UUID(mostSigBits, leastSigBits);
     }
-}
\ No newline at end of file
+}
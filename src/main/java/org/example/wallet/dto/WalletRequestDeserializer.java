@@ -0,0 +1,97 @@
+package org.example.wallet.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+
+import java.io.IOException;
+
+/**
+ * Потоковый разбор {@link WalletRequest} без отражения. Сумма разбирается в {@link Money}
+ * из буфера парсера, тип операции сравнивается с буфером без создания строки.
+ * Ошибки формата сообщаются теми же исключениями Jackson, что и у стандартного разбора.
+ */
+public class WalletRequestDeserializer extends StdDeserializer<WalletRequest> {
+    private static final char[] DEPOSIT = OperationType.DEPOSIT.name().toCharArray();
+    private static final char[] WITHDRAW = OperationType.WITHDRAW.name().toCharArray();
+    private static final char[] TRANSFER = OperationType.TRANSFER.name().toCharArray();
+
+    public WalletRequestDeserializer() {
+        super(WalletRequest.class);
+    }
+
+    @Override
+    public WalletRequest deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        String field;
+        if (parser.isExpectedStartObjectToken()) {
+            field = parser.nextFieldName();
+        } else if (parser.hasToken(JsonToken.FIELD_NAME)) {
+            field = parser.currentName();
+        } else {
+            return (WalletRequest) context.handleUnexpectedToken(WalletRequest.class, parser);
+        }
+
+        WalletRequest request = new WalletRequest();
+        for (; field != null; field = parser.nextFieldName()) {
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "walletId" -> request.setWalletId(readString(parser, context, token));
+                case "operationType" -> request.setOperationType(readOperationType(parser, context, token));
+                case "amount" -> request.setAmount(Money.Reader.read(parser, context));
+                case "idempotencyKey" -> request.setIdempotencyKey(readString(parser, context, token));
+                case "targetWalletId" -> request.setTargetWalletId(readString(parser, context, token));
+                default -> context.handleUnknownProperty(parser, this, WalletRequest.class, field);
+            }
+        }
+        return request;
+    }
+
+    private static String readString(JsonParser parser, DeserializationContext context, JsonToken token)
+            throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isScalarValue()) {
+            return parser.getText();
+        }
+        return (String) context.handleUnexpectedToken(String.class, parser);
+    }
+
+    private static OperationType readOperationType(JsonParser parser, DeserializationContext context,
+                                                   JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            return (OperationType) context.handleUnexpectedToken(OperationType.class, parser);
+        }
+        if (textEquals(parser, DEPOSIT)) {
+            return OperationType.DEPOSIT;
+        }
+        if (textEquals(parser, WITHDRAW)) {
+            return OperationType.WITHDRAW;
+        }
+        if (textEquals(parser, TRANSFER)) {
+            return OperationType.TRANSFER;
+        }
+        return (OperationType) context.handleWeirdStringValue(OperationType.class, parser.getText(),
+                "ожидается DEPOSIT, WITHDRAW или TRANSFER");
+    }
+
+    private static boolean textEquals(JsonParser parser, char[] expected) throws IOException {
+        if (parser.getTextLength() != expected.length) {
+            return false;
+        }
+        char[] buffer = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.wallet.dto;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Причины отклонения {@link WalletRequest}. Тело ответа с одной причиной создаётся один раз,
+ * поэтому такой отказ не выделяет память на каждый запрос.
+ */
+@Getter
+public enum WalletRequestRejection {
+    WALLET_ID_REQUIRED("walletId", "Идентификатор кошелька обязателен"),
+    WALLET_ID_INVALID("walletId", "Неверный формат UUID"),
+    OPERATION_TYPE_REQUIRED("operationType",
+            "Укажите тип операции: DEPOSIT (пополнение), WITHDRAW (списание) или TRANSFER (перевод)"),
+    TARGET_WALLET_ID_REQUIRED("targetWalletId", "Для перевода укажите кошелёк получателя"),
+    TARGET_WALLET_ID_INVALID("targetWalletId", "Неверный формат UUID"),
+    TARGET_WALLET_ID_SAME("targetWalletId", "Кошелёк получателя должен отличаться от кошелька отправителя"),
+    AMOUNT_REQUIRED("amount", "Сумма операции обязательна"),
+    AMOUNT_NOT_POSITIVE("amount", "Сумма должна быть положительным числом"),
+    IDEMPOTENCY_KEY_TOO_LONG("idempotencyKey", "Ключ идемпотентности не должен превышать 64 символа");
+
+    private final String field;
+    private final String message;
+    private final Map<String, String> body;
+
+    WalletRequestRejection(String field, String message) {
+        this.field = field;
+        this.message = message;
+        this.body = Map.of(field, message);
+    }
+
+    /**
+     * Тело ответа {@code {поле: сообщение}} со всеми причинами.
+     */
+    public static Map<String, String> body(List<WalletRequestRejection> rejections) {
+        if (rejections.size() == 1) {
+            return rejections.get(0).body;
+        }
+        Map<String, String> body = new LinkedHashMap<>();
+        collect(body, "", rejections);
+        return body;
+    }
+
+    /**
+     * Добавляет причины в общее тело ответа, например с префиксом {@code operations[i].} для пакета.
+     */
+    public static void collect(Map<String, String> body, String prefix, List<WalletRequestRejection> rejections) {
+        for (WalletRequestRejection rejection : rejections) {
+            body.put(prefix + rejection.field, rejection.message);
+        }
+    }
+
+    /**
+     * Все причины одной строкой — для ответов без полей, как в двоичном протоколе.
+     */
+    public static String message(List<WalletRequestRejection> rejections) {
+        return rejections.size() == 1
+                ? rejections.get(0).message
+                : rejections.stream().map(WalletRequestRejection::getMessage).collect(Collectors.joining("; "));
+    }
+}
@@ -1,8 +1,14 @@
 package org.example.wallet.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.example.wallet.model.Money;
 
 import java.math.BigDecimal;
 import java.util.UUID;
@@ -12,9 +18,38 @@ import java.util.UUID;
 @AllArgsConstructor
 public class WalletResponse {
     private UUID walletId;
-    private BigDecimal balance;
+    /**
+     * В JSON пишется числом через {@link Money}; {@link #getBalance()} оставлен для кода,
+     * которому нужен {@link BigDecimal}.
+     */
+    @JsonProperty
+    @Getter(AccessLevel.NONE)
+    private Money balance;
+    /**
+     * Версия кошелька после операции. Передаётся в GET ?minVersion=, чтобы чтение
+     * с реплики не вернуло состояние старше собственной записи клиента.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
 
-    public BigDecimal balance() {
+    public WalletResponse(UUID walletId, Money balance) {
+        this(walletId, balance, null);
+    }
+
+    public WalletResponse(UUID walletId, BigDecimal balance, Long version) {
+        this(walletId, balance != null ? Money.of(balance) : null, version);
+    }
+
+    public WalletResponse(UUID walletId, BigDecimal balance) {
+        this(walletId, balance, null);
+    }
+
+    public Money balance() {
         return this.balance;
     }
-}
\ No newline at end of file
+
+    @JsonIgnore
+    public BigDecimal getBalance() {
+        return balance != null ? balance.toBigDecimal() : null;
+    }
+}
@@ -3,6 +3,8 @@ package org.example.wallet.exceptions;
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.model.Money;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -13,6 +15,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -28,6 +31,11 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
     }
 
+    @ExceptionHandler(HoldNotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleHoldNotFound(HoldNotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", ex.getMessage()));
+    }
+
     @ExceptionHandler(InsufficientFundsException.class)
     public ResponseEntity<Map<String, String>> handleInsufficientFunds(
             InsufficientFundsException ex) {
@@ -36,6 +44,24 @@ public class GlobalExceptionHandler {
                 .body(Map.of("error", ex.getMessage()));
     }
 
+    /**
+     * Ключ идемпотентности повторён с другой операцией: запрос не выполняется и не заменяет первый.
+     */
+    @ExceptionHandler(IdempotencyKeyMismatchException.class)
+    public ResponseEntity<Map<String, String>> handleIdempotencyKeyMismatch(IdempotencyKeyMismatchException ex) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("message", ex.getMessage()));
+    }
+
+    /**
+     * Очередь операций кошелька переполнена: клиенту стоит повторить запрос позже, а не сразу.
+     */
+    @ExceptionHandler(ConcurrentWalletOperationException.class)
+    public ResponseEntity<Map<String, String>> handleConcurrentOperation(ConcurrentWalletOperationException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", ex.getMessage()));
+    }
+
     @ExceptionHandler({MethodArgumentNotValidException.class})
     public ResponseEntity<Map<String, String>> handleValidationExceptions(MethodArgumentNotValidException ex) {
         Map<String, String> errors = new HashMap<>();
@@ -66,6 +92,10 @@ public class GlobalExceptionHandler {
             response.put("message", "Неверный формат UUID");
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         }
+        if (ex.getRequiredType() == Instant.class) {
+            response.put("message", "Неверный формат времени, ожидается ISO-8601, например 2026-01-01T00:00:00Z");
+            return ResponseEntity.badRequest().body(response);
+        }
         response.put("message", "Неверный тип параметра");
         return ResponseEntity.badRequest().body(response);
     }
@@ -76,7 +106,7 @@ public class GlobalExceptionHandler {
 
         if (ex.getCause() instanceof InvalidFormatException) {
             InvalidFormatException ife = (InvalidFormatException) ex.getCause();
-            if (ife.getTargetType() == BigDecimal.class) {
+            if (ife.getTargetType() == Money.class || ife.getTargetType() == BigDecimal.class) {
                 error.put("message", "Неверный формат суммы. Укажите числовое значение");
                 return ResponseEntity.badRequest().body(error);
             }
@@ -0,0 +1,13 @@
+package org.example.wallet.exceptions;
+
+
+/**
+ * Исключение, выбрасываемое при обращении к удержанию, которого нет:
+ * оно не создавалось, уже списано, освобождено или истекло
+ */
+public class HoldNotFoundException extends RuntimeException {
+    public HoldNotFoundException(String message) {
+        super(message, null, false, false);
+    }
+
+}
@@ -0,0 +1,13 @@
+package org.example.wallet.exceptions;
+
+
+/**
+ * Исключение, выбрасываемое при повторе ключа идемпотентности с другой операцией:
+ * другим типом, суммой или получателем, чем у запроса, за которым ключ закреплён
+ */
+public class IdempotencyKeyMismatchException extends RuntimeException {
+    public IdempotencyKeyMismatchException(String key) {
+        super("Ключ идемпотентности " + key + " уже использован для другой операции", null, false, false);
+    }
+
+}
@@ -1,5 +1,7 @@
 package org.example.wallet.exceptions;
 
+import org.example.wallet.model.Money;
+
 /**
  * Исключение, выбрасываемое при попытке списания средств,
  * когда на счету недостаточно денег
@@ -8,10 +10,29 @@ public class InsufficientFundsException extends RuntimeException {
     private final boolean logStackTrace;
 
     public InsufficientFundsException(String message, boolean logStackTrace) {
-        super(message);
+        super(message, null, false, logStackTrace);
         this.logStackTrace = logStackTrace;
     }
 
+    public InsufficientFundsException(Money balance, Money requested) {
+        this(message(balance, requested), false);
+    }
+
+    /**
+     * Отказ по остатку, прочитанному отдельным запросом после отказавшего списания. Если
+     * параллельное пополнение успело поднять остаток до запрошенного, сумма в сообщение
+     * не попадает, чтобы ответ не противоречил сам себе.
+     */
+    public static InsufficientFundsException afterRejectedDebit(Money available, Money requested) {
+        return available.isLessThan(requested)
+                ? new InsufficientFundsException(available, requested)
+                : new InsufficientFundsException("Недостаточно средств. Запрашиваемый: " + requested, false);
+    }
+
+    public static String message(Money balance, Money requested) {
+        return "Недостаточно средств. Текущий баланс: " + balance + ", запрашиваемый: " + requested;
+    }
+
     public boolean shouldLogStackTrace() {
         return logStackTrace;
     }
@@ -6,7 +6,7 @@ package org.example.wallet.exceptions;
  */
 public class WalletNotFoundException extends RuntimeException {
     public WalletNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package org.example.wallet.model;
+
+public enum BatchItemStatus {
+    APPLIED,
+    WALLET_NOT_FOUND,
+    INSUFFICIENT_FUNDS,
+    ROLLED_BACK
+}
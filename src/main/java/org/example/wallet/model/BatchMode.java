@@ -0,0 +1,6 @@
+package org.example.wallet.model;
+
+public enum BatchMode {
+    ALL_OR_NOTHING,
+    BEST_EFFORT
+}
@@ -0,0 +1,54 @@
+package org.example.wallet.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "idempotency_keys")
+@IdClass(IdempotencyKey.WalletScopedId.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class IdempotencyKey {
+
+    @Id
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private UUID walletId;
+
+    @Id
+    @Column(name = "idempotency_key", updatable = false, nullable = false)
+    private String key;
+
+    @Column(nullable = false, updatable = false)
+    private BigDecimal balance;
+
+    @Column(name = "version", updatable = false)
+    private Long version;
+
+    /** Отпечаток операции, см. {@code WalletRequest#fingerprint()}; пуст у строк до его появления. */
+    @Column(name = "request_hash", updatable = false)
+    private String requestHash;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    /**
+     * Ключ идемпотентности действует в пределах кошелька.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class WalletScopedId implements Serializable {
+        private UUID walletId;
+        private String key;
+    }
+}
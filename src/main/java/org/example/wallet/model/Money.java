@@ -0,0 +1,229 @@
+package org.example.wallet.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежная сумма как {@code long} в десятитысячных — масштаб колонок NUMERIC(19, 4).
+ * Сравнение и арифметика не выделяют память, переполнение даёт {@link ArithmeticException}.
+ * В JSON пишется и читается числом, как прежний {@link BigDecimal}, без промежуточных строк.
+ * <p>
+ * В базу суммы передаются целыми единицами ({@code :amount * 0.0001}) и читаются
+ * {@code CAST(balance * 10000 AS BIGINT)}: драйвер не разбирает NUMERIC в {@link BigDecimal}.
+ * {@link BigDecimal} остаётся только на границах: совместимые методы DTO, пакетные и
+ * служебные запросы вне горячего пути.
+ *
+ * @param units сумма в единицах {@link #SCALE}
+ */
+@JsonSerialize(using = Money.Writer.class)
+@JsonDeserialize(using = Money.Reader.class)
+public record Money(long units) implements Comparable<Money> {
+    public static final int SCALE = 4;
+    public static final long UNITS_PER_ONE = 10_000;
+    public static final Money ZERO = new Money(0);
+
+    /** Самая длинная запись: знак, 15 цифр целой части, точка и 4 знака дробной. */
+    private static final int MAX_CHARS = 21;
+
+    public static Money ofUnits(long units) {
+        return units == 0 ? ZERO : new Money(units);
+    }
+
+    /**
+     * Лишние знаки дробной части округляются половиной вверх, как при записи в NUMERIC(19, 4).
+     *
+     * @throws ArithmeticException если сумма не помещается в {@code long}
+     */
+    public static Money of(BigDecimal amount) {
+        return ofUnits(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public static Money of(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    public Money plus(Money other) {
+        return ofUnits(Math.addExact(units, other.units));
+    }
+
+    public Money minus(Money other) {
+        return ofUnits(Math.subtractExact(units, other.units));
+    }
+
+    public Money negate() {
+        return ofUnits(Math.negateExact(units));
+    }
+
+    public boolean isLessThan(Money other) {
+        return units < other.units;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(units, other.units);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    /**
+     * Запись как у {@code toBigDecimal().toPlainString()}: всегда четыре знака после точки.
+     */
+    @Override
+    public String toString() {
+        char[] buffer = new char[MAX_CHARS];
+        int start = format(buffer);
+        return new String(buffer, start, MAX_CHARS - start);
+    }
+
+    /**
+     * Пишет сумму в конец {@code buffer} длиной не меньше {@link #MAX_CHARS}.
+     *
+     * @return индекс первого символа
+     */
+    private int format(char[] buffer) {
+        // Через отрицательные значения: у Long.MIN_VALUE нет положительной пары
+        long remaining = units > 0 ? -units : units;
+        int position = buffer.length;
+        for (int digit = 0; digit < SCALE; digit++) {
+            buffer[--position] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        }
+        buffer[--position] = '.';
+        do {
+            buffer[--position] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (units < 0) {
+            buffer[--position] = '-';
+        }
+        return position;
+    }
+
+    /**
+     * Разбор десятичной записи из буфера парсера. Запись с экспонентой разбирается
+     * через {@link BigDecimal}: в запросах она встречается редко.
+     *
+     * @throws NumberFormatException если запись не является числом
+     * @throws ArithmeticException   если сумма не помещается в {@code long}
+     */
+    public static Money parse(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int position = offset;
+        boolean negative = false;
+        if (position < end && (chars[position] == '-' || chars[position] == '+')) {
+            negative = chars[position] == '-';
+            position++;
+        }
+        long units = 0;
+        int digits = 0;
+        int fraction = -1;
+        boolean roundUp = false;
+        for (; position < end; position++) {
+            char c = chars[position];
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (fraction < SCALE) {
+                    // Накопление в отрицательных значениях, как в Long.parseLong
+                    units = Math.subtractExact(Math.multiplyExact(units, 10), c - '0');
+                    if (fraction >= 0) {
+                        fraction++;
+                    }
+                } else if (fraction == SCALE) {
+                    roundUp = c >= '5';
+                    fraction++;
+                }
+            } else if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (c == 'e' || c == 'E') {
+                return of(new BigDecimal(chars, offset, length));
+            } else {
+                throw new NumberFormatException("Неверный формат суммы: " + new String(chars, offset, length));
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Неверный формат суммы: " + new String(chars, offset, length));
+        }
+        for (int scale = Math.max(fraction, 0); scale < SCALE; scale++) {
+            units = Math.multiplyExact(units, 10);
+        }
+        if (roundUp) {
+            units = Math.subtractExact(units, 1);
+        }
+        return ofUnits(negative ? units : Math.negateExact(units));
+    }
+
+    public static final class Writer extends StdSerializer<Money> {
+        private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[MAX_CHARS]);
+
+        public Writer() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            char[] buffer = BUFFER.get();
+            int start = value.format(buffer);
+            generator.writeNumber(buffer, start, MAX_CHARS - start);
+        }
+    }
+
+    public static final class Reader extends StdDeserializer<Money> {
+        public Reader() {
+            super(Money.class);
+        }
+
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return read(parser, context);
+        }
+
+        /**
+         * Число или строка с числом; пустая строка и {@code null} дают {@code null}.
+         */
+        public static Money read(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT
+                    && token != JsonToken.VALUE_STRING) {
+                return (Money) context.handleUnexpectedToken(Money.class, parser);
+            }
+            char[] chars = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            if (token == JsonToken.VALUE_STRING) {
+                while (length > 0 && Character.isWhitespace(chars[offset])) {
+                    offset++;
+                    length--;
+                }
+                while (length > 0 && Character.isWhitespace(chars[offset + length - 1])) {
+                    length--;
+                }
+                if (length == 0) {
+                    return null;
+                }
+            }
+            try {
+                return parse(chars, offset, length);
+            } catch (NumberFormatException ex) {
+                return (Money) context.handleWeirdStringValue(Money.class, parser.getText(), "не является числом");
+            } catch (ArithmeticException ex) {
+                return (Money) context.handleWeirdStringValue(Money.class, parser.getText(), "слишком большая сумма");
+            }
+        }
+    }
+}
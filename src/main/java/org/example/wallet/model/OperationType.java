@@ -2,5 +2,10 @@ package org.example.wallet.model;
 
 public enum OperationType {
     DEPOSIT,
-    WITHDRAW
+    WITHDRAW,
+    /**
+     * Перевод между кошельками. В журнале операций отражается двумя записями:
+     * с отрицательной суммой у источника и с положительной у получателя.
+     */
+    TRANSFER
 }
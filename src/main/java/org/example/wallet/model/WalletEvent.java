@@ -0,0 +1,38 @@
+package org.example.wallet.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Событие об изменении баланса в outbox: строка пишется в транзакции операции
+ * и удаляется после публикации фоновой пересылкой.
+ */
+@Entity
+@Table(name = "wallet_events")
+@Getter
+@Setter
+@NoArgsConstructor
+public class WalletEvent {
+
+    @Id
+    @Column(updatable = false, nullable = false)
+    private Long id;
+
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private UUID walletId;
+
+    @Column(nullable = false, updatable = false)
+    private BigDecimal balance;
+
+    @Column(nullable = false, updatable = false)
+    private Long version;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+}
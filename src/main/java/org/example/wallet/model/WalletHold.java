@@ -0,0 +1,37 @@
+package org.example.wallet.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Действующее удержание средств кошелька. Строка удаляется при списании, освобождении
+ * или истечении; сумма всех удержаний кошелька хранится в wallets.held.
+ */
+@Entity
+@Table(name = "wallet_holds")
+@Getter
+@Setter
+@NoArgsConstructor
+public class WalletHold {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private UUID walletId;
+
+    @Column(nullable = false, updatable = false)
+    private BigDecimal amount;
+
+    @Column(name = "expires_at", nullable = false, updatable = false)
+    private Instant expiresAt;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+}
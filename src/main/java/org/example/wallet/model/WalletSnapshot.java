@@ -0,0 +1,31 @@
+package org.example.wallet.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Снимок балансов: строки в wallet_snapshot_balances с этим id есть только у кошельков,
+ * изменившихся с предыдущего снимка.
+ */
+@Entity
+@Table(name = "wallet_snapshots")
+@Getter
+@Setter
+@NoArgsConstructor
+public class WalletSnapshot {
+
+    @Id
+    @Column(updatable = false, nullable = false)
+    private Long id;
+
+    @Column(name = "taken_at", nullable = false, updatable = false)
+    private Instant takenAt;
+
+    /** Число строк, записанных этим снимком. */
+    @Column(nullable = false, updatable = false)
+    private Long wallets;
+}
@@ -0,0 +1,47 @@
+package org.example.wallet.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "wallet_transactions")
+@Getter
+@Setter
+@NoArgsConstructor
+public class WalletTransaction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "wallet_transactions_seq")
+    @SequenceGenerator(name = "wallet_transactions_seq", sequenceName = "wallet_transactions_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "wallet_id", nullable = false, updatable = false)
+    private UUID walletId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation_type", nullable = false, updatable = false)
+    private OperationType operationType;
+
+    @Column(nullable = false, updatable = false)
+    private BigDecimal amount;
+
+    @Column(name = "balance_after", nullable = false, updatable = false)
+    private BigDecimal balanceAfter;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    public WalletTransaction(UUID walletId, OperationType operationType, BigDecimal amount, BigDecimal balanceAfter) {
+        this.walletId = walletId;
+        this.operationType = operationType;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,8 @@
+package org.example.wallet.repository;
+
+/**
+ * Результат удержания: состояние кошелька, если удержание прошло.
+ * При отказе остаток читает {@link WalletHoldRepository#findAvailableUnits}.
+ */
+public interface AuthorizeHoldResult extends HoldStateView {
+}
@@ -0,0 +1,15 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.Money;
+
+/**
+ * Результат списания удержания: состояние кошелька, если списание прошло,
+ * и удержанная сумма на момент запроса, если удержание существовало
+ */
+public interface CaptureHoldResult extends HoldStateView {
+    Long getHoldUnits();
+
+    default Money getHold() {
+        return Money.ofUnits(getHoldUnits());
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.Money;
+
+/**
+ * Баланс, доступный остаток и версия кошелька после операции с удержанием
+ */
+public interface HoldStateView {
+    Long getBalanceUnits();
+
+    Long getAvailableUnits();
+
+    Long getVersion();
+
+    default Money getBalance() {
+        return Money.ofUnits(getBalanceUnits());
+    }
+
+    default Money getAvailable() {
+        return Money.ofUnits(getAvailableUnits());
+    }
+
+    default boolean isApplied() {
+        return getBalanceUnits() != null;
+    }
+}
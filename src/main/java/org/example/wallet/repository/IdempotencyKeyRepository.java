@@ -0,0 +1,25 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, IdempotencyKey.WalletScopedId> {
+    @Modifying
+    @Query(nativeQuery = true, value = WalletSql.INSERT_IDEMPOTENCY_KEY)
+    int insertIfAbsent(@Param("walletId") UUID walletId,
+                       @Param("key") String key,
+                       @Param("balance") BigDecimal balance,
+                       @Param("version") Long version,
+                       @Param("requestHash") String requestHash);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "DELETE FROM idempotency_keys WHERE created_at < :threshold")
+    int deleteCreatedBefore(@Param("threshold") Instant threshold);
+}
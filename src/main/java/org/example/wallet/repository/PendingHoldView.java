@@ -0,0 +1,14 @@
+package org.example.wallet.repository;
+
+import java.util.UUID;
+
+/**
+ * Удержание и время до его истечения по часам базы
+ */
+public interface PendingHoldView {
+    UUID getId();
+
+    UUID getWalletId();
+
+    long getRemainingMillis();
+}
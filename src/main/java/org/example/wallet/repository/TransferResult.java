@@ -0,0 +1,37 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.Money;
+
+/**
+ * Результат атомарного перевода: новые балансы и версии обоих кошельков, если перевод прошёл,
+ * баланс источника на момент блокировки и число найденных кошельков
+ */
+public interface TransferResult {
+    Long getSourceBalanceUnits();
+
+    Long getSourceVersion();
+
+    Long getTargetBalanceUnits();
+
+    Long getTargetVersion();
+
+    Long getCurrentBalanceUnits();
+
+    long getWalletsFound();
+
+    default Money getSourceBalance() {
+        return Money.ofUnits(getSourceBalanceUnits());
+    }
+
+    default Money getTargetBalance() {
+        return Money.ofUnits(getTargetBalanceUnits());
+    }
+
+    default Money getCurrentBalance() {
+        return Money.ofUnits(getCurrentBalanceUnits());
+    }
+
+    default boolean isApplied() {
+        return getSourceBalanceUnits() != null;
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.Money;
+
+import java.util.UUID;
+
+public interface WalletBalanceView {
+    UUID getId();
+
+    Long getBalanceUnits();
+
+    Long getHeldUnits();
+
+    default Money getBalance() {
+        return Money.ofUnits(getBalanceUnits());
+    }
+
+    /**
+     * Остаток для списаний: баланс без действующих удержаний.
+     */
+    default Money getAvailable() {
+        return Money.ofUnits(getBalanceUnits() - getHeldUnits());
+    }
+}
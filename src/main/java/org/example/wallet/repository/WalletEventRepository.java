@@ -0,0 +1,41 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.WalletEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface WalletEventRepository extends JpaRepository<WalletEvent, Long> {
+    /**
+     * Снимает состояние кошельков после UPDATE той же транзакции: баланс и версия
+     * в событии совпадают с зафиксированными, без передачи их из кода.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO wallet_events (id, wallet_id, balance, version, created_at)
+            SELECT nextval('wallet_events_seq'), id, balance, version, NOW()
+            FROM wallets
+            WHERE id = ANY(:ids)
+            ORDER BY id""")
+    int insertForWallets(@Param("ids") UUID[] walletIds);
+
+    /**
+     * Старейшие неопубликованные события. Строки, заблокированные пересылкой
+     * другого экземпляра, пропускаются, а не ожидаются.
+     */
+    @Query(nativeQuery = true, value = """
+            SELECT id, wallet_id, balance, version, created_at
+            FROM wallet_events
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED""")
+    List<WalletEvent> lockOldest(@Param("limit") int limit);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "DELETE FROM wallet_events WHERE id = ANY(:ids)")
+    int deleteByIds(@Param("ids") Long[] ids);
+}
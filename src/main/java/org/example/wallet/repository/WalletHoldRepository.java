@@ -0,0 +1,48 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.WalletHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface WalletHoldRepository extends JpaRepository<WalletHold, UUID> {
+    @Query(nativeQuery = true, value = WalletSql.AUTHORIZE_HOLD)
+    AuthorizeHoldResult authorize(@Param("walletId") UUID walletId,
+                                  @Param("holdId") UUID holdId,
+                                  @Param("amount") long amountUnits,
+                                  @Param("ttlMillis") long ttlMillis);
+
+    @Query(nativeQuery = true, value = WalletSql.FIND_AVAILABLE)
+    Optional<Long> findAvailableUnits(@Param("id") UUID walletId);
+
+    @Query(nativeQuery = true, value = WalletSql.CAPTURE_HOLD)
+    CaptureHoldResult capture(@Param("walletId") UUID walletId,
+                              @Param("holdId") UUID holdId,
+                              @Param("amount") long amountUnits);
+
+    @Query(nativeQuery = true, value = WalletSql.RELEASE_HOLD)
+    Optional<HoldStateView> release(@Param("walletId") UUID walletId,
+                                    @Param("holdId") UUID holdId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = WalletSql.RELEASE_EXPIRED_HOLDS)
+    int releaseAll(@Param("ids") UUID[] holdIds);
+
+    @Query(nativeQuery = true, value = WalletSql.FIND_OVERDUE_HOLDS)
+    List<UUID> findOverdue(@Param("graceMillis") long graceMillis,
+                           @Param("limit") int limit);
+
+    /**
+     * Читает основной сервер, а не реплику: удержание, созданное перед перезапуском, не должно потеряться.
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = WalletSql.FIND_HOLDS_AFTER)
+    List<PendingHoldView> findPendingAfter(@Param("after") UUID after,
+                                           @Param("limit") int limit);
+}
@@ -5,37 +5,84 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface WalletRepository extends JpaRepository<Wallet, UUID> {
+    @Query(nativeQuery = true, value = WalletSql.DEPOSIT)
+    Optional<WalletStateView> depositAmount(@Param("id") UUID id,
+                                       @Param("amount") long amountUnits);
+
+    @Query(nativeQuery = true, value = WalletSql.WITHDRAW)
+    WithdrawResult withdrawAmount(@Param("id") UUID id,
+                                  @Param("amount") long amountUnits);
+
+    @Query(nativeQuery = true, value = WalletSql.FIND_AVAILABLE)
+    Optional<Long> findAvailableUnits(@Param("id") UUID id);
+
+    /**
+     * Перевод одним запросом. Обе строки блокируются в порядке id, поэтому встречные
+     * переводы ждут друг друга, а не взаимоблокируются. Изменение применяется,
+     * только если найдены оба кошелька и на источнике достаточно средств.
+     */
+    @Query(nativeQuery = true, value = WalletSql.TRANSFER)
+    TransferResult transferAmount(@Param("sourceId") UUID sourceId,
+                                  @Param("targetId") UUID targetId,
+                                  @Param("amount") long amountUnits);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO wallets (id, balance, version, created_at, updated_at)
+        VALUES (:id, 0, 1, NOW(), NOW())
+        ON CONFLICT (id) DO NOTHING""")
+    int insertIfAbsent(@Param("id") UUID id);
+
+    @Query(nativeQuery = true, value = """
+        SELECT id, CAST(balance * 10000 AS BIGINT) AS "balanceUnits", CAST(held * 10000 AS BIGINT) AS "heldUnits"
+        FROM wallets WHERE id = :id FOR UPDATE""")
+    Optional<WalletBalanceView> lockBalanceById(@Param("id") UUID id);
+
+    /**
+     * Итог пакета операций одним UPDATE. Версия растёт на число применённых операций,
+     * как если бы каждая выполнялась отдельно; возвращается версия после последней.
+     */
     @Query(nativeQuery = true, value = """
-        WITH inserted AS (
-            INSERT INTO wallets (id, balance, version, created_at, updated_at)
-            VALUES (:id, 0, 1, NOW(), NOW())
-            ON CONFLICT (id) DO NOTHING
-            RETURNING id
-        )
         UPDATE wallets
-        SET balance = balance + :amount,
-            version = version + 1,
+        SET balance = balance + :delta * 0.0001,
+            version = version + :steps,
             updated_at = NOW()
         WHERE id = :id
-        RETURNING balance""")
-    Optional<BigDecimal> depositAmount(@Param("id") UUID id,
-                                       @Param("amount") BigDecimal amount);
+        RETURNING version""")
+    Optional<Long> applyBalanceDelta(@Param("id") UUID id,
+                                     @Param("delta") long deltaUnits,
+                                     @Param("steps") int steps);
 
     @Modifying
-    @Query(nativeQuery = true, value = """
-    UPDATE wallets 
-    SET balance = balance - :amount,
-        version = version + 1
-    WHERE id = :id AND balance >= :amount""")
-    int withdrawAmount(@Param("id") UUID id,
-                       @Param("amount") BigDecimal amount);
-
-    @Query("SELECT balance FROM Wallet WHERE id = :id")
-    Optional<BigDecimal> findBalanceById(@Param("id") UUID id);
+    @Query(nativeQuery = true, value = WalletSql.INSERT_ALL_IF_ABSENT)
+    int insertAllIfAbsent(@Param("ids") UUID[] ids);
+
+    @Query(nativeQuery = true, value = WalletSql.LOCK_BALANCES)
+    List<WalletBalanceView> lockBalancesByIds(@Param("ids") UUID[] ids);
+
+    @Modifying
+    @Query(nativeQuery = true, value = WalletSql.UPDATE_BALANCES)
+    int updateBalances(@Param("ids") UUID[] ids,
+                       @Param("balances") Long[] balanceUnits);
+
+    /**
+     * Чтение в транзакции только для чтения: при настроенных репликах идёт на реплику.
+     */
+    @Transactional(readOnly = true)
+    @Query(nativeQuery = true, value = WalletSql.FIND_STATE)
+    Optional<WalletStateView> findStateById(@Param("id") UUID id);
+
+    /**
+     * То же чтение в транзакции записи: соединение берётся у основного сервера, минуя реплики.
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = WalletSql.FIND_STATE)
+    Optional<WalletStateView> findCurrentStateById(@Param("id") UUID id);
 }
\ No newline at end of file
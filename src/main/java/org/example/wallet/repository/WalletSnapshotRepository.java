@@ -0,0 +1,69 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.WalletSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface WalletSnapshotRepository extends JpaRepository<WalletSnapshot, Long> {
+    @Query(nativeQuery = true, value = "SELECT nextval('wallet_snapshots_seq')")
+    long nextId();
+
+    /**
+     * Не даёт двум экземплярам сервиса снимать одну базу одновременно; снимается с фиксацией транзакции.
+     */
+    @Query(nativeQuery = true, value = "SELECT pg_try_advisory_xact_lock(:key)")
+    boolean tryLock(@Param("key") long key);
+
+    /**
+     * Копирует кошельки, версия которых отличается от их последней строки в снимках.
+     * Обычный SELECT по wallets читает согласованный MVCC-срез без блокировок строк,
+     * а для каждого кошелька сравнение идёт одним поиском по первичному ключу снимков.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO wallet_snapshot_balances (wallet_id, snapshot_id, balance, version)
+            SELECT w.id, :snapshotId, w.balance, w.version
+            FROM wallets w
+            WHERE NOT EXISTS (
+                SELECT 1
+                FROM (SELECT s.version
+                      FROM wallet_snapshot_balances s
+                      WHERE s.wallet_id = w.id
+                      ORDER BY s.snapshot_id DESC
+                      LIMIT 1) last
+                WHERE last.version = w.version)""")
+    int copyChangedBalances(@Param("snapshotId") long snapshotId);
+
+    /**
+     * Время снимка берётся после копирования: изменения, зафиксированные позже среза,
+     * имеют метку раньше taken_at и находятся по журналу операций.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO wallet_snapshots (id, taken_at, wallets)
+            VALUES (:id, clock_timestamp(), :wallets)""")
+    int insertSnapshot(@Param("id") long id, @Param("wallets") long wallets);
+
+    @Query(nativeQuery = true, value = """
+            SELECT id, taken_at, wallets
+            FROM wallet_snapshots
+            WHERE taken_at <= :at
+            ORDER BY taken_at DESC
+            LIMIT 1""")
+    Optional<WalletSnapshot> findLatestTakenAtOrBefore(@Param("at") Instant at);
+
+    @Query(nativeQuery = true, value = """
+            SELECT balance
+            FROM wallet_snapshot_balances
+            WHERE wallet_id = :walletId AND snapshot_id <= :snapshotId
+            ORDER BY snapshot_id DESC
+            LIMIT 1""")
+    Optional<BigDecimal> findBalance(@Param("walletId") UUID walletId, @Param("snapshotId") long snapshotId);
+}
@@ -0,0 +1,207 @@
+package org.example.wallet.repository;
+
+/**
+ * SQL операций над балансами. Общий для JPA-репозиториев и реактивного варианта API,
+ * чтобы оба стека выполняли одни и те же запросы.
+ * <p>
+ * Суммы передаются и возвращаются целыми единицами {@link org.example.wallet.model.Money}:
+ * в NUMERIC и обратно их переводит база, драйвер не создаёт {@link java.math.BigDecimal}.
+ * Списания проверяют доступный остаток {@code balance - held}: удержанные средства не списываются.
+ */
+public final class WalletSql {
+    public static final String DEPOSIT = """
+            INSERT INTO wallets (id, balance, version, created_at, updated_at)
+            VALUES (:id, :amount * 0.0001, 1, NOW(), NOW())
+            ON CONFLICT (id) DO UPDATE
+            SET balance = wallets.balance + EXCLUDED.balance,
+                version = wallets.version + 1,
+                updated_at = NOW()
+            RETURNING CAST(balance * 10000 AS BIGINT) AS "balanceUnits", version""";
+
+    /**
+     * Остаток при отказе не возвращается: подзапрос видел бы снимок начала запроса, а UPDATE
+     * проверяет последнюю версию строки, и после параллельного списания снимок показал бы
+     * остаток больше запрошенного. Остаток читает отдельный {@link #FIND_AVAILABLE}.
+     */
+    public static final String WITHDRAW = """
+            WITH updated AS (
+                UPDATE wallets
+                SET balance = balance - :amount * 0.0001,
+                    version = version + 1,
+                    updated_at = NOW()
+                WHERE id = :id AND balance - held >= :amount * 0.0001
+                RETURNING balance, version
+            )
+            SELECT (SELECT CAST(balance * 10000 AS BIGINT) FROM updated) AS "newBalanceUnits",
+                   (SELECT version FROM updated) AS "newVersion\"""";
+
+    /**
+     * Доступный остаток после отказа в списании: новый запрос видит уже зафиксированное
+     * параллельное списание, из-за которого отказал UPDATE.
+     */
+    public static final String FIND_AVAILABLE = """
+            SELECT CAST((balance - held) * 10000 AS BIGINT) AS "availableUnits" FROM wallets WHERE id = :id""";
+
+    public static final String TRANSFER = """
+            WITH locked AS (
+                SELECT id, balance - held AS available FROM wallets
+                WHERE id IN (:sourceId, :targetId)
+                ORDER BY id
+                FOR UPDATE
+            ), updated AS (
+                UPDATE wallets w
+                SET balance = CASE WHEN w.id = :sourceId THEN w.balance - :amount * 0.0001
+                                   ELSE w.balance + :amount * 0.0001 END,
+                    version = w.version + 1,
+                    updated_at = NOW()
+                FROM locked l
+                WHERE w.id = l.id
+                  AND (SELECT count(*) FROM locked) = 2
+                  AND (SELECT available FROM locked WHERE id = :sourceId) >= :amount * 0.0001
+                RETURNING w.id, w.balance, w.version
+            )
+            SELECT (SELECT CAST(balance * 10000 AS BIGINT) FROM updated WHERE id = :sourceId) AS "sourceBalanceUnits",
+                   (SELECT version FROM updated WHERE id = :sourceId) AS "sourceVersion",
+                   (SELECT CAST(balance * 10000 AS BIGINT) FROM updated WHERE id = :targetId) AS "targetBalanceUnits",
+                   (SELECT version FROM updated WHERE id = :targetId) AS "targetVersion",
+                   (SELECT CAST(available * 10000 AS BIGINT) FROM locked WHERE id = :sourceId) AS "currentBalanceUnits",
+                   (SELECT count(*) FROM locked) AS "walletsFound\"""";
+
+    public static final String FIND_STATE = """
+            SELECT CAST(balance * 10000 AS BIGINT) AS "balanceUnits", version FROM wallets WHERE id = :id""";
+
+    public static final String INSERT_ALL_IF_ABSENT = """
+            INSERT INTO wallets (id, balance, version, created_at, updated_at)
+            SELECT id, 0, 1, NOW(), NOW()
+            FROM unnest(:ids) AS t(id)
+            ORDER BY id
+            ON CONFLICT (id) DO NOTHING""";
+
+    public static final String LOCK_BALANCES = """
+            SELECT id, CAST(balance * 10000 AS BIGINT) AS "balanceUnits", CAST(held * 10000 AS BIGINT) AS "heldUnits"
+            FROM wallets
+            WHERE id = ANY(:ids)
+            ORDER BY id
+            FOR UPDATE""";
+
+    public static final String UPDATE_BALANCES = """
+            UPDATE wallets w
+            SET balance = v.units * 0.0001,
+                version = w.version + 1,
+                updated_at = NOW()
+            FROM unnest(:ids, :balances) AS v(id, units)
+            WHERE w.id = v.id""";
+
+    /**
+     * Удержание на доступном остатке тем же условным UPDATE, что у списания; строка удержания
+     * вставляется, только если UPDATE прошёл. Версия кошелька не меняется: баланс прежний.
+     * Как и {@link #WITHDRAW}, при отказе остаток не возвращает: его читает {@link #FIND_AVAILABLE}.
+     */
+    public static final String AUTHORIZE_HOLD = """
+            WITH updated AS (
+                UPDATE wallets
+                SET held = held + :amount * 0.0001,
+                    updated_at = NOW()
+                WHERE id = :walletId AND balance - held >= :amount * 0.0001
+                RETURNING balance, held, version
+            ), hold AS (
+                INSERT INTO wallet_holds (id, wallet_id, amount, expires_at, created_at)
+                SELECT :holdId, :walletId, :amount * 0.0001, NOW() + :ttlMillis * INTERVAL '1 millisecond', NOW()
+                FROM updated
+            )
+            SELECT (SELECT CAST(balance * 10000 AS BIGINT) FROM updated) AS "balanceUnits",
+                   (SELECT CAST((balance - held) * 10000 AS BIGINT) FROM updated) AS "availableUnits",
+                   (SELECT version FROM updated) AS "version\"""";
+
+    /**
+     * Списание удержанной суммы или её части; остаток удержания освобождается. {@code holdUnits}
+     * читается из снимка до удаления: по нему сумма больше удержанной отличается от удержания,
+     * которого нет или которое уже завершено.
+     */
+    public static final String CAPTURE_HOLD = """
+            WITH hold AS (
+                DELETE FROM wallet_holds
+                WHERE id = :holdId AND wallet_id = :walletId AND amount >= :amount * 0.0001
+                RETURNING amount
+            ), updated AS (
+                UPDATE wallets w
+                SET balance = w.balance - :amount * 0.0001,
+                    held = w.held - h.amount,
+                    version = w.version + 1,
+                    updated_at = NOW()
+                FROM hold h
+                WHERE w.id = :walletId
+                RETURNING w.balance, w.held, w.version
+            )
+            SELECT (SELECT CAST(balance * 10000 AS BIGINT) FROM updated) AS "balanceUnits",
+                   (SELECT CAST((balance - held) * 10000 AS BIGINT) FROM updated) AS "availableUnits",
+                   (SELECT version FROM updated) AS "version",
+                   (SELECT CAST(amount * 10000 AS BIGINT) FROM wallet_holds
+                    WHERE id = :holdId AND wallet_id = :walletId) AS "holdUnits\"""";
+
+    public static final String RELEASE_HOLD = """
+            WITH hold AS (
+                DELETE FROM wallet_holds WHERE id = :holdId AND wallet_id = :walletId
+                RETURNING amount
+            )
+            UPDATE wallets w
+            SET held = w.held - h.amount,
+                updated_at = NOW()
+            FROM hold h
+            WHERE w.id = :walletId
+            RETURNING CAST(w.balance * 10000 AS BIGINT) AS "balanceUnits",
+                      CAST((w.balance - w.held) * 10000 AS BIGINT) AS "availableUnits",
+                      w.version AS "version\"""";
+
+    /**
+     * Снимает пачку истёкших удержаний. Кошельки блокируются в порядке id, как в переводах
+     * и пакетах, поэтому пачка не взаимоблокируется с ними. Удержания, уже завершённые
+     * списанием или освобождением, в пачке не находятся и пропускаются.
+     */
+    public static final String RELEASE_EXPIRED_HOLDS = """
+            WITH expired AS (
+                DELETE FROM wallet_holds WHERE id = ANY(:ids)
+                RETURNING wallet_id, amount
+            ), totals AS (
+                SELECT wallet_id, SUM(amount) AS amount FROM expired GROUP BY wallet_id
+            ), locked AS (
+                SELECT w.id, t.amount FROM wallets w
+                JOIN totals t ON t.wallet_id = w.id
+                ORDER BY w.id
+                FOR UPDATE OF w
+            )
+            UPDATE wallets w
+            SET held = w.held - l.amount,
+                updated_at = NOW()
+            FROM locked l
+            WHERE w.id = l.id""";
+
+    /**
+     * Удержания, просроченные больше чем на {@code graceMillis}, в порядке истечения:
+     * поиск по индексу idx_wallet_holds_expires, а не просмотр таблицы.
+     */
+    public static final String FIND_OVERDUE_HOLDS = """
+            SELECT id FROM wallet_holds
+            WHERE expires_at < NOW() - :graceMillis * INTERVAL '1 millisecond'
+            ORDER BY expires_at
+            LIMIT :limit""";
+
+    /**
+     * Страница удержаний по возрастанию id для загрузки колеса таймеров при запуске.
+     */
+    public static final String FIND_HOLDS_AFTER = """
+            SELECT id, wallet_id AS "walletId",
+                   CAST(EXTRACT(EPOCH FROM (expires_at - NOW())) * 1000 AS BIGINT) AS "remainingMillis"
+            FROM wallet_holds
+            WHERE id > :after
+            ORDER BY id
+            LIMIT :limit""";
+
+    public static final String INSERT_IDEMPOTENCY_KEY = """
+            INSERT INTO idempotency_keys (wallet_id, idempotency_key, balance, version, request_hash, created_at)
+            VALUES (:walletId, :key, :balance, CAST(:version AS BIGINT), :requestHash, NOW())
+            ON CONFLICT (wallet_id, idempotency_key) DO NOTHING""";
+
+    private WalletSql() {
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.Money;
+
+/**
+ * Баланс кошелька и версия строки, к которой он относится
+ */
+public interface WalletStateView {
+    Long getBalanceUnits();
+
+    Long getVersion();
+
+    default Money getBalance() {
+        return Money.ofUnits(getBalanceUnits());
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.WalletTransaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface WalletTransactionRepository extends JpaRepository<WalletTransaction, Long> {
+    /**
+     * Вставляет пакет записей одним запросом. Идентификаторы берутся из последовательности
+     * той базы, куда идёт вставка: при шардировании у каждого шарда своя последовательность,
+     * и выделенный Hibernate диапазон одного шарда мог бы совпасть с диапазоном другого.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO wallet_transactions (id, wallet_id, operation_type, amount, balance_after, created_at)
+        SELECT nextval('wallet_transactions_seq'), t.wallet_id, t.operation_type, t.amount, t.balance_after, t.created_at
+        FROM unnest(:walletIds, :operationTypes, :amounts, :balancesAfter, :createdAt)
+            AS t(wallet_id, operation_type, amount, balance_after, created_at)""")
+    int insertAll(@Param("walletIds") UUID[] walletIds,
+                  @Param("operationTypes") String[] operationTypes,
+                  @Param("amounts") BigDecimal[] amounts,
+                  @Param("balancesAfter") BigDecimal[] balancesAfter,
+                  @Param("createdAt") Instant[] createdAt);
+
+    /**
+     * Баланс после последней операции кошелька в интервале (from, at]:
+     * один поиск по индексу (wallet_id, created_at) при любом размере журнала.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT balance_after
+        FROM wallet_transactions
+        WHERE wallet_id = :walletId AND created_at > :from AND created_at <= :at
+        ORDER BY created_at DESC, id DESC
+        LIMIT 1""")
+    Optional<BigDecimal> findLastBalanceBetween(@Param("walletId") UUID walletId,
+                                                @Param("from") Instant from,
+                                                @Param("at") Instant at);
+
+    /**
+     * Есть ли у кошелька операции позже {@code at}: тот же поиск по индексу (wallet_id, created_at).
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT EXISTS (SELECT 1 FROM wallet_transactions WHERE wallet_id = :walletId AND created_at > :at)""")
+    boolean existsAfter(@Param("walletId") UUID walletId, @Param("at") Instant at);
+}
@@ -0,0 +1,21 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.model.Money;
+
+/**
+ * Результат атомарного списания: новый баланс и версия, если списание прошло.
+ * При отказе остаток читает {@link WalletRepository#findAvailableUnits}.
+ */
+public interface WithdrawResult {
+    Long getNewBalanceUnits();
+
+    Long getNewVersion();
+
+    default Money getNewBalance() {
+        return Money.ofUnits(getNewBalanceUnits());
+    }
+
+    default boolean isApplied() {
+        return getNewBalanceUnits() != null;
+    }
+}
@@ -0,0 +1,629 @@
+package org.example.wallet.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.ConcurrentWalletOperationException;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.WalletTransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Движок балансов в памяти (wallet.engine.enabled=true): источник истины для балансов —
+ * память процесса и журнал на диске, Postgres получает изменения контрольными точками.
+ * <p>
+ * Кошельки разделены по хешу id между {@code partitions} потоками-писателями
+ * ({@link EnginePartition}); у каждого свои балансы вне кучи ({@link OffHeapBalanceMap})
+ * и свой журнал в отображённых в память файлах ({@link EngineJournal}). Ответ клиенту
+ * уходит после записи в журнал: по умолчанию ({@code sync-on-ack}) — после сброса на диск,
+ * одного на пачку операций раздела. Без него журнал сбрасывается фоном раз в
+ * {@code sync-interval}, и при отказе машины (не процесса) теряется не больше этого интервала.
+ * <p>
+ * Контрольная точка раз в {@code checkpoint-interval-ms} останавливает всех писателей
+ * на барьере, снимает номера последних записей и незавершённые переводы, затем без
+ * остановки писателей переносит записи журналов до этих номеров в wallets
+ * и wallet_transactions одной транзакцией и удаляет перенесённые сегменты.
+ * При запуске балансы читаются из wallets, поверх них повторяются журналы после
+ * контрольной точки, а незавершённые переводы зачисляются повторно.
+ * <p>
+ * Пока движок включён, все записи идут только через него: события outbox, кэш балансов,
+ * ключи идемпотентности, пакетные операции и загрузка CSV не поддерживаются,
+ * история баланса отстаёт от ответов на одну контрольную точку. Не совмещается с шардированием.
+ */
+@Slf4j
+@Component
+public class BalanceEngine {
+    private static final int CHUNK_SIZE = 10_000;
+    private static final String UPSERT_WALLETS = """
+            INSERT INTO wallets (id, balance, version, created_at, updated_at)
+            SELECT t.id, t.units * 0.0001, t.version, t.created_at, t.updated_at
+            FROM unnest(?::uuid[], ?::bigint[], ?::bigint[], ?::timestamp[], ?::timestamp[])
+                AS t(id, units, version, created_at, updated_at)
+            ON CONFLICT (id) DO UPDATE
+            SET balance = EXCLUDED.balance,
+                version = EXCLUDED.version,
+                updated_at = EXCLUDED.updated_at
+            WHERE wallets.version < EXCLUDED.version""";
+    private static final String INSERT_PENDING_TRANSFERS = """
+            INSERT INTO engine_pending_transfers
+                (source_partition, source_lsn, source_wallet_id, target_wallet_id, amount)
+            SELECT t.source_partition, t.source_lsn, t.source_wallet_id, t.target_wallet_id, t.units * 0.0001
+            FROM unnest(?::int[], ?::bigint[], ?::uuid[], ?::uuid[], ?::bigint[])
+                AS t(source_partition, source_lsn, source_wallet_id, target_wallet_id, units)""";
+    private static final String UPSERT_CHECKPOINTS = """
+            INSERT INTO engine_checkpoints (partition_index, lsn, checkpointed_at)
+            SELECT t.partition_index, t.lsn, NOW() FROM unnest(?::int[], ?::bigint[]) AS t(partition_index, lsn)
+            ON CONFLICT (partition_index) DO UPDATE
+            SET lsn = EXCLUDED.lsn,
+                checkpointed_at = EXCLUDED.checkpointed_at""";
+
+    private final boolean enabled;
+    private final int partitionCount;
+    private final int queueCapacity;
+    private final Path journalDirectory;
+    private final long segmentBytes;
+    private final boolean syncOnAck;
+    private final Duration syncInterval;
+    private final Duration barrierTimeout;
+    private final Duration operationTimeout;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WalletTransactionRepository transactionRepository;
+    private final Object checkpointLock = new Object();
+    private EnginePartition[] partitions;
+    private Thread[] writers;
+    private long[] checkpointLsns;
+    private ExecutorService preallocator;
+    private ScheduledExecutorService journalSync;
+    private volatile boolean running;
+
+    public BalanceEngine(DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         WalletTransactionRepository transactionRepository,
+                         ShardRouter shardRouter,
+                         @Value("${wallet.engine.enabled:false}") boolean enabled,
+                         @Value("${wallet.engine.partitions:8}") int partitionCount,
+                         @Value("${wallet.engine.queue-capacity:65536}") int queueCapacity,
+                         @Value("${wallet.engine.journal.directory:data/engine-journal}") Path journalDirectory,
+                         @Value("${wallet.engine.journal.segment-size:64MB}") DataSize segmentSize,
+                         @Value("${wallet.engine.journal.sync-on-ack:true}") boolean syncOnAck,
+                         @Value("${wallet.engine.journal.sync-interval:10ms}") Duration syncInterval,
+                         @Value("${wallet.engine.barrier-timeout:1s}") Duration barrierTimeout,
+                         @Value("${wallet.engine.operation-timeout:5s}") Duration operationTimeout) {
+        if (enabled && shardRouter.isEnabled()) {
+            throw new IllegalStateException("Движок балансов не совмещается с шардированием");
+        }
+        if (partitionCount < 1 || partitionCount > 0xFFFF) {
+            throw new IllegalStateException("wallet.engine.partitions должно быть от 1 до 65535: " + partitionCount);
+        }
+        this.enabled = enabled;
+        this.partitionCount = partitionCount;
+        this.queueCapacity = queueCapacity;
+        this.journalDirectory = journalDirectory;
+        this.segmentBytes = segmentSize.toBytes();
+        this.syncOnAck = syncOnAck;
+        this.syncInterval = syncInterval;
+        this.barrierTimeout = barrierTimeout;
+        this.operationTimeout = operationTimeout;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(CHUNK_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setTimeout(60);
+        this.transactionRepository = transactionRepository;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        preallocator = Executors.newSingleThreadExecutor(daemon("wallet-engine-journal"));
+        recover();
+        writers = new Thread[partitions.length];
+        for (int p = 0; p < partitions.length; p++) {
+            writers[p] = daemon("wallet-engine-" + p).newThread(partitions[p]);
+            writers[p].start();
+        }
+        if (!syncOnAck) {
+            journalSync = Executors.newSingleThreadScheduledExecutor(daemon("wallet-engine-sync"));
+            journalSync.scheduleWithFixedDelay(this::forceJournals, syncInterval.toNanos(), syncInterval.toNanos(),
+                    TimeUnit.NANOSECONDS);
+        }
+        running = true;
+    }
+
+    /**
+     * Выполняет операцию в разделе кошелька-источника и ждёт подтверждения записи в журнал.
+     */
+    public WalletResponse execute(WalletRequest request) {
+        if (request.getIdempotencyKey() != null) {
+            throw new ValidationException("Ключ идемпотентности не поддерживается движком балансов");
+        }
+        if (!running) {
+            throw new ConcurrentWalletOperationException("Движок балансов остановлен");
+        }
+        UUID walletId = request.getWalletIdAsUUID();
+        UUID targetId = request.getOperationType() == OperationType.TRANSFER ? request.getTargetWalletIdAsUUID() : null;
+        CompletableFuture<WalletResponse> result = new CompletableFuture<>();
+        partitions[partitionOf(walletId, partitions.length)]
+                .submit(request.getOperationType(), walletId, targetId, request.getAmount().units(), result);
+        try {
+            return result.get(operationTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Сбой операции движка балансов", ex.getCause());
+        } catch (TimeoutException ex) {
+            // Операция может быть ещё выполнена: повторять её вслепую нельзя
+            throw new IllegalStateException("Движок балансов не подтвердил операцию за " + operationTimeout);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание операции движка балансов прервано", ex);
+        }
+    }
+
+    public WalletResponse getBalance(UUID walletId) {
+        OffHeapBalanceMap.WalletState state = partitions[partitionOf(walletId, partitions.length)]
+                .balances().read(walletId);
+        if (state == null) {
+            throw new WalletNotFoundException("Кошелёк не найден: " + walletId);
+        }
+        return new WalletResponse(walletId, Money.ofUnits(state.balance()), state.version());
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.engine.checkpoint-interval-ms:1000}")
+    public void checkpoint() {
+        if (!running) {
+            return;
+        }
+        synchronized (checkpointLock) {
+            Cut cut = captureCut();
+            if (cut != null) {
+                writeCheckpoint(cut);
+            }
+        }
+    }
+
+    /**
+     * Останавливает писателей и переносит журналы в базу. После удачной контрольной
+     * точки сегменты удаляются; если база недоступна, журналы остаются и повторяются при запуске.
+     */
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        haltWriters();
+        synchronized (checkpointLock) {
+            try {
+                writeCheckpoint(currentCut());
+                for (EnginePartition partition : partitions) {
+                    partition.journal().deleteSegments();
+                }
+                log.info("Движок балансов остановлен, журналы перенесены в базу");
+            } catch (RuntimeException ex) {
+                log.error("Контрольная точка при остановке не записана, журналы будут повторены при запуске", ex);
+            }
+        }
+        preallocator.shutdown();
+    }
+
+    /**
+     * Остановка без контрольной точки, как при падении процесса: журналы остаются на диске.
+     */
+    void halt() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        haltWriters();
+        preallocator.shutdown();
+    }
+
+    private void haltWriters() {
+        for (EnginePartition partition : partitions) {
+            partition.stop();
+        }
+        for (Thread writer : writers) {
+            try {
+                writer.join(operationTimeout.toMillis());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (journalSync != null) {
+            journalSync.shutdownNow();
+        }
+        for (EnginePartition partition : partitions) {
+            partition.journal().close();
+        }
+    }
+
+    private void recover() {
+        int[] replayed = {0};
+        Map<Long, EnginePartition.PendingTransfer> unmatched = new HashMap<>();
+        Set<Long> credited = new HashSet<>();
+        OffHeapBalanceMap[] balances = new OffHeapBalanceMap[partitionCount];
+        EngineJournal[] journals = new EngineJournal[partitionCount];
+        checkpointLsns = new long[partitionCount];
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Integer, Long> checkpoints = new HashMap<>();
+            jdbcTemplate.query("SELECT partition_index, lsn FROM engine_checkpoints",
+                    rs -> {
+                        checkpoints.put(rs.getInt(1), rs.getLong(2));
+                    });
+            List<EnginePartition.PendingTransfer> pending = jdbcTemplate.query("""
+                            SELECT source_partition, source_lsn, source_wallet_id, target_wallet_id,
+                                   CAST(amount * 10000 AS BIGINT)
+                            FROM engine_pending_transfers""",
+                    (rs, row) -> new EnginePartition.PendingTransfer(rs.getInt(1), rs.getLong(2),
+                            rs.getObject(3, UUID.class), rs.getObject(4, UUID.class), rs.getLong(5)));
+            checkPartitionCount(checkpoints, pending);
+            pending.forEach(transfer -> unmatched.put(reference(transfer.partition(), transfer.lsn()), transfer));
+            checkpoints.forEach((p, lsn) -> checkpointLsns[p] = lsn);
+
+            for (int p = 0; p < partitionCount; p++) {
+                balances[p] = new OffHeapBalanceMap(1 << 16);
+            }
+            jdbcTemplate.query("SELECT id, CAST(balance * 10000 AS BIGINT), version FROM wallets", rs -> {
+                UUID walletId = rs.getObject(1, UUID.class);
+                balances[partitionOf(walletId, partitionCount)].put(walletId.getMostSignificantBits(),
+                        walletId.getLeastSignificantBits(), rs.getLong(2), rs.getLong(3));
+            });
+        });
+
+        for (int p = 0; p < partitionCount; p++) {
+            int partition = p;
+            OffHeapBalanceMap map = balances[p];
+            journals[p] = EngineJournal.open(journalDirectory, p, segmentBytes, preallocator, checkpointLsns[p],
+                    record -> {
+                        replayed[0]++;
+                        long msb = record.walletId().getMostSignificantBits();
+                        long lsb = record.walletId().getLeastSignificantBits();
+                        OffHeapBalanceMap.WalletState state = map.get(msb, lsb);
+                        if (state == null || state.version() < record.version()) {
+                            map.put(msb, lsb, record.balanceAfter(), record.version());
+                        }
+                        switch (record.kind()) {
+                            case TRANSFER_OUT -> unmatched.put(reference(partition, record.lsn()),
+                                    new EnginePartition.PendingTransfer(partition, record.lsn(), record.walletId(),
+                                            record.counterpartId(), record.amount()));
+                            case TRANSFER_IN -> credited.add(record.reference());
+                            default -> {
+                            }
+                        }
+                    });
+        }
+        // Зачисление может стоять в журнале получателя раньше, чем списание — в журнале отправителя
+        credited.forEach(unmatched::remove);
+
+        partitions = new EnginePartition[partitionCount];
+        for (int p = 0; p < partitionCount; p++) {
+            partitions[p] = new EnginePartition(p, balances[p], journals[p], partitions, queueCapacity, syncOnAck,
+                    barrierTimeout);
+        }
+        for (EnginePartition.PendingTransfer transfer : unmatched.values()) {
+            partitions[transfer.partition()].registerPending(transfer.lsn(), transfer);
+            partitions[partitionOf(transfer.targetId(), partitionCount)].credit(transfer.targetId(),
+                    transfer.sourceId(), transfer.amount(), reference(transfer.partition(), transfer.lsn()),
+                    null, null);
+        }
+        int wallets = 0;
+        for (OffHeapBalanceMap map : balances) {
+            wallets += map.size();
+        }
+        log.info("Движок балансов запущен: разделов {}, кошельков {}, повторено записей журнала {},"
+                + " незавершённых переводов {}", partitionCount, wallets, replayed[0], unmatched.size());
+    }
+
+    /**
+     * Число разделов можно сменить только после штатной остановки: журналы удалены,
+     * незавершённых переводов нет. Иначе записи журнала попали бы не в тот раздел.
+     */
+    private void checkPartitionCount(Map<Integer, Long> checkpoints, List<EnginePartition.PendingTransfer> pending) {
+        List<Integer> journalPartitions;
+        try {
+            journalPartitions = EngineJournal.partitionsIn(journalDirectory);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось прочитать каталог журнала " + journalDirectory, ex);
+        }
+        boolean changed = !checkpoints.isEmpty() && checkpoints.size() != partitionCount
+                || checkpoints.keySet().stream().anyMatch(p -> p >= partitionCount)
+                || journalPartitions.stream().anyMatch(p -> p >= partitionCount);
+        if (!changed) {
+            return;
+        }
+        if (!journalPartitions.isEmpty() || !pending.isEmpty()) {
+            throw new IllegalStateException("Число разделов движка изменилось (было " + checkpoints.size()
+                    + ", задано " + partitionCount + "), а журналы в " + journalDirectory
+                    + " не перенесены в базу: запустите с прежним wallet.engine.partitions и остановите штатно");
+        }
+        log.info("Число разделов движка изменено с {} на {}", checkpoints.size(), partitionCount);
+        jdbcTemplate.update("DELETE FROM engine_checkpoints");
+        checkpoints.clear();
+    }
+
+    /**
+     * Согласованный срез журналов: все писатели стоят на барьере, пока последний
+     * пришедший снимает номера записей и незавершённые переводы.
+     *
+     * @return {@code null}, если писатели не сошлись на барьере за отведённое время
+     */
+    private Cut captureCut() {
+        CompletableFuture<Cut> captured = new CompletableFuture<>();
+        CyclicBarrier barrier = new CyclicBarrier(partitions.length, () -> captured.complete(currentCut()));
+        for (EnginePartition partition : partitions) {
+            partition.barrier(barrier);
+        }
+        try {
+            return captured.get(barrierTimeout.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            barrier.reset();
+            log.warn("Контрольная точка пропущена: разделы не сошлись на барьере за {}", barrierTimeout);
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            barrier.reset();
+            return null;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Сбой снятия среза журналов", ex.getCause());
+        }
+    }
+
+    /**
+     * Срез, когда ни один писатель не пишет: в действии барьера или после остановки.
+     */
+    private Cut currentCut() {
+        long[] lsns = new long[partitions.length];
+        List<EnginePartition.PendingTransfer> pending = new ArrayList<>();
+        for (int p = 0; p < partitions.length; p++) {
+            lsns[p] = partitions[p].journal().lastLsn();
+            pending.addAll(partitions[p].pendingTransfers());
+        }
+        return new Cut(lsns, pending);
+    }
+
+    private void writeCheckpoint(Cut cut) {
+        boolean changed = false;
+        for (int p = 0; p < partitions.length; p++) {
+            changed |= cut.lsns()[p] != checkpointLsns[p];
+        }
+        if (!changed) {
+            // Незавершённые переводы меняются только вместе с записями журнала
+            return;
+        }
+        long startedAt = System.nanoTime();
+        // Записи должны быть на диске раньше, чем база сочтёт их перенесёнными
+        forceJournals();
+        int[] records = {0};
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<UUID, JournalRecord> latest = new HashMap<>();
+            Map<UUID, Long> firstSeen = new HashMap<>();
+            List<JournalRecord> ledger = new ArrayList<>(CHUNK_SIZE);
+            for (int p = 0; p < partitions.length; p++) {
+                partitions[p].journal().read(checkpointLsns[p], cut.lsns()[p], record -> {
+                    // Кошелёк принадлежит одному разделу, и его записи идут в порядке версий
+                    latest.put(record.walletId(), record);
+                    firstSeen.putIfAbsent(record.walletId(), record.timestampMicros());
+                    ledger.add(record);
+                    if (ledger.size() == CHUNK_SIZE) {
+                        insertLedger(ledger);
+                        records[0] += ledger.size();
+                        ledger.clear();
+                    }
+                });
+            }
+            insertLedger(ledger);
+            records[0] += ledger.size();
+            upsertWallets(latest.values(), firstSeen);
+            jdbcTemplate.update("DELETE FROM engine_pending_transfers");
+            insertPendingTransfers(cut.pending());
+            upsertCheckpoints(cut.lsns());
+        });
+        for (int p = 0; p < partitions.length; p++) {
+            checkpointLsns[p] = cut.lsns()[p];
+            partitions[p].journal().truncate(checkpointLsns[p]);
+        }
+        log.debug("Контрольная точка движка: записей {}, незавершённых переводов {}, {} мс",
+                records[0], cut.pending().size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private void insertLedger(List<JournalRecord> ledger) {
+        if (ledger.isEmpty()) {
+            return;
+        }
+        int size = ledger.size();
+        UUID[] walletIds = new UUID[size];
+        String[] operationTypes = new String[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        BigDecimal[] balancesAfter = new BigDecimal[size];
+        Instant[] createdAt = new Instant[size];
+        for (int i = 0; i < size; i++) {
+            JournalRecord record = ledger.get(i);
+            walletIds[i] = record.walletId();
+            operationTypes[i] = record.kind().operationType().name();
+            amounts[i] = Money.ofUnits(record.signedAmount()).toBigDecimal();
+            balancesAfter[i] = Money.ofUnits(record.balanceAfter()).toBigDecimal();
+            createdAt[i] = instantOf(record.timestampMicros());
+        }
+        transactionRepository.insertAll(walletIds, operationTypes, amounts, balancesAfter, createdAt);
+    }
+
+    /**
+     * Новые кошельки получают created_at первой записи среза, у существующих он не меняется.
+     */
+    private void upsertWallets(Collection<JournalRecord> records, Map<UUID, Long> firstSeen) {
+        List<JournalRecord> chunk = new ArrayList<>(Math.min(records.size(), CHUNK_SIZE));
+        for (JournalRecord record : records) {
+            chunk.add(record);
+            if (chunk.size() == CHUNK_SIZE) {
+                upsertWalletChunk(chunk, firstSeen);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            upsertWalletChunk(chunk, firstSeen);
+        }
+    }
+
+    private void upsertWalletChunk(List<JournalRecord> chunk, Map<UUID, Long> firstSeen) {
+        int size = chunk.size();
+        UUID[] ids = new UUID[size];
+        Long[] balances = new Long[size];
+        Long[] versions = new Long[size];
+        Timestamp[] createdAt = new Timestamp[size];
+        Timestamp[] updatedAt = new Timestamp[size];
+        for (int i = 0; i < size; i++) {
+            JournalRecord record = chunk.get(i);
+            ids[i] = record.walletId();
+            balances[i] = record.balanceAfter();
+            versions[i] = record.version();
+            createdAt[i] = Timestamp.from(instantOf(firstSeen.get(record.walletId())));
+            updatedAt[i] = Timestamp.from(instantOf(record.timestampMicros()));
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT_WALLETS);
+            statement.setArray(1, connection.createArrayOf("uuid", ids));
+            statement.setArray(2, connection.createArrayOf("bigint", balances));
+            statement.setArray(3, connection.createArrayOf("bigint", versions));
+            statement.setArray(4, connection.createArrayOf("timestamp", createdAt));
+            statement.setArray(5, connection.createArrayOf("timestamp", updatedAt));
+            return statement;
+        });
+    }
+
+    private void insertPendingTransfers(List<EnginePartition.PendingTransfer> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int size = pending.size();
+        Integer[] sourcePartitions = new Integer[size];
+        Long[] sourceLsns = new Long[size];
+        UUID[] sourceIds = new UUID[size];
+        UUID[] targetIds = new UUID[size];
+        Long[] amounts = new Long[size];
+        for (int i = 0; i < size; i++) {
+            EnginePartition.PendingTransfer transfer = pending.get(i);
+            sourcePartitions[i] = transfer.partition();
+            sourceLsns[i] = transfer.lsn();
+            sourceIds[i] = transfer.sourceId();
+            targetIds[i] = transfer.targetId();
+            amounts[i] = transfer.amount();
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_PENDING_TRANSFERS);
+            statement.setArray(1, connection.createArrayOf("int4", sourcePartitions));
+            statement.setArray(2, connection.createArrayOf("bigint", sourceLsns));
+            statement.setArray(3, connection.createArrayOf("uuid", sourceIds));
+            statement.setArray(4, connection.createArrayOf("uuid", targetIds));
+            statement.setArray(5, connection.createArrayOf("bigint", amounts));
+            return statement;
+        });
+    }
+
+    private void upsertCheckpoints(long[] lsns) {
+        Integer[] indexes = new Integer[lsns.length];
+        Long[] values = new Long[lsns.length];
+        for (int p = 0; p < lsns.length; p++) {
+            indexes[p] = p;
+            values[p] = lsns[p];
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT_CHECKPOINTS);
+            statement.setArray(1, connection.createArrayOf("int4", indexes));
+            statement.setArray(2, connection.createArrayOf("bigint", values));
+            return statement;
+        });
+    }
+
+    private void forceJournals() {
+        for (EnginePartition partition : partitions) {
+            try {
+                partition.journal().force();
+            } catch (RuntimeException ex) {
+                log.error("Не удалось сбросить журнал движка на диск", ex);
+            }
+        }
+    }
+
+    static int partitionOf(UUID walletId, int partitions) {
+        long bits = walletId.getMostSignificantBits() ^ walletId.getLeastSignificantBits();
+        return Math.floorMod((int) (bits ^ (bits >>> 32)), partitions);
+    }
+
+    /**
+     * Ссылка на запись журнала: номер раздела в старших 16 битах, номер записи — в младших 48.
+     */
+    static long reference(int partition, long lsn) {
+        return (long) partition << 48 | lsn;
+    }
+
+    static int partitionOfReference(long reference) {
+        return (int) (reference >>> 48);
+    }
+
+    static long lsnOfReference(long reference) {
+        return reference & 0xFFFF_FFFF_FFFFL;
+    }
+
+    private static Instant instantOf(long micros) {
+        return Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Cut(long[] lsns, List<EnginePartition.PendingTransfer> pending) {
+    }
+}
@@ -0,0 +1,325 @@
+package org.example.wallet.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал раздела движка балансов: записи фиксированного размера в файлах-сегментах,
+ * отображённых в память. Запись — обычная запись в отображённую страницу, без системного
+ * вызова; после падения процесса она уже в страничном кэше ОС. На диск сегмент сбрасывается
+ * {@link #force()} — пачкой, а не на каждую операцию.
+ * <p>
+ * Каждая запись хранит состояние кошелька после операции (баланс и версию), поэтому
+ * повтор журнала идемпотентен: запись применяется, только если её версия новее.
+ * Контрольная сумма CRC32C пишется последней и отсекает недописанный хвост.
+ * <p>
+ * Дописывает только поток раздела. Чтение диапазона и удаление сегментов идут из потока
+ * контрольной точки по номерам записей, которые уже переданы ему через барьер.
+ */
+@Slf4j
+final class EngineJournal implements AutoCloseable {
+    static final int RECORD_BYTES = 96;
+
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int partition;
+    private final int recordsPerSegment;
+    private final Executor preallocator;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final CRC32C crc = new CRC32C();
+    private volatile Segment current;
+    private CompletableFuture<Segment> next;
+    private long lastLsn;
+
+    private EngineJournal(Path directory, int partition, long segmentBytes, Executor preallocator) {
+        this.directory = directory;
+        this.partition = partition;
+        this.recordsPerSegment = (int) Math.min(Integer.MAX_VALUE / RECORD_BYTES, segmentBytes / RECORD_BYTES);
+        this.preallocator = preallocator;
+    }
+
+    /**
+     * Открывает журнал раздела и передаёт в {@code replay} все записи новее контрольной точки.
+     *
+     * @throws IllegalStateException если после контрольной точки в журнале пропуск
+     */
+    static EngineJournal open(Path directory, int partition, long segmentBytes, Executor preallocator,
+                              long checkpointLsn, Consumer<JournalRecord> replay) {
+        EngineJournal journal = new EngineJournal(directory, partition, segmentBytes, preallocator);
+        try {
+            Files.createDirectories(directory);
+            journal.recover(checkpointLsn, replay);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось открыть журнал раздела " + partition, ex);
+        }
+        return journal;
+    }
+
+    /**
+     * Номера разделов, для которых в каталоге есть сегменты.
+     */
+    static List<Integer> partitionsIn(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(0, name.indexOf('-'))))
+                    .distinct()
+                    .toList();
+        }
+    }
+
+    long lastLsn() {
+        return lastLsn;
+    }
+
+    long append(JournalRecord.Kind kind, UUID walletId, UUID counterpartId, long amount,
+                long balanceAfter, long version, long reference, long timestampMicros) {
+        Segment segment = current;
+        int slot = (int) (lastLsn + 1 - segment.firstLsn);
+        if (slot == recordsPerSegment) {
+            segment = roll();
+            slot = 0;
+        } else if (slot == recordsPerSegment / 2 && next == null) {
+            long firstLsn = segment.firstLsn + recordsPerSegment;
+            next = CompletableFuture.supplyAsync(() -> createSegment(firstLsn), preallocator);
+        }
+        long lsn = lastLsn + 1;
+        ByteBuffer buffer = segment.buffer;
+        int offset = slot * RECORD_BYTES;
+        buffer.putInt(offset + 4, kind.code());
+        buffer.putLong(offset + 8, lsn);
+        buffer.putLong(offset + 16, walletId.getMostSignificantBits());
+        buffer.putLong(offset + 24, walletId.getLeastSignificantBits());
+        buffer.putLong(offset + 32, counterpartId != null ? counterpartId.getMostSignificantBits() : 0);
+        buffer.putLong(offset + 40, counterpartId != null ? counterpartId.getLeastSignificantBits() : 0);
+        buffer.putLong(offset + 48, amount);
+        buffer.putLong(offset + 56, balanceAfter);
+        buffer.putLong(offset + 64, version);
+        buffer.putLong(offset + 72, reference);
+        buffer.putLong(offset + 80, timestampMicros);
+        buffer.putInt(offset, checksum(buffer, offset));
+        lastLsn = lsn;
+        return lsn;
+    }
+
+    /**
+     * Сбрасывает на диск текущий сегмент. Безопасно вызывать из любого потока.
+     */
+    void force() {
+        current.buffer.force();
+    }
+
+    /**
+     * Записи с номерами в (fromExclusive, toInclusive]. Вызывающий гарантирует,
+     * что записи до {@code toInclusive} уже дописаны и видимы ему.
+     */
+    void read(long fromExclusive, long toInclusive, Consumer<JournalRecord> consumer) {
+        for (Segment segment : segments) {
+            long first = Math.max(fromExclusive + 1, segment.firstLsn);
+            long last = Math.min(toInclusive, segment.firstLsn + recordsPerSegment - 1);
+            ByteBuffer view = segment.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            for (long lsn = first; lsn <= last; lsn++) {
+                consumer.accept(decode(view, (int) (lsn - segment.firstLsn) * RECORD_BYTES));
+            }
+        }
+    }
+
+    /**
+     * Удаляет сегменты, все записи которых не новее контрольной точки.
+     */
+    void truncate(long checkpointLsn) {
+        List<Segment> removable = new ArrayList<>();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (segments.get(i + 1).firstLsn <= checkpointLsn + 1) {
+                removable.add(segments.get(i));
+            }
+        }
+        for (Segment segment : removable) {
+            segments.remove(segment);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException ex) {
+                log.warn("Не удалось удалить сегмент журнала {}", segment.path, ex);
+            }
+        }
+    }
+
+    /**
+     * Удаляет все сегменты, включая заранее созданный. Только после остановки писателя,
+     * когда все записи перенесены в базу: следующий запуск начнёт журнал с номера после
+     * контрольной точки и сможет сменить число разделов.
+     */
+    void deleteSegments() {
+        List<Segment> removable = new ArrayList<>(segments);
+        if (next != null) {
+            try {
+                removable.add(next.join());
+            } catch (CompletionException ex) {
+                log.warn("Заранее создаваемый сегмент журнала раздела {} не создан", partition, ex);
+            }
+            next = null;
+        }
+        segments.clear();
+        for (Segment segment : removable) {
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException ex) {
+                log.warn("Не удалось удалить сегмент журнала {}", segment.path, ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    private void recover(long checkpointLsn, Consumer<JournalRecord> replay) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            String prefix = String.format("%04d-", partition);
+            files = listing.filter(path -> path.getFileName().toString().startsWith(prefix)
+                            && path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                    .toList();
+        }
+        if (files.isEmpty()) {
+            current = createSegment(checkpointLsn + 1);
+            segments.add(current);
+            lastLsn = checkpointLsn;
+            return;
+        }
+
+        lastLsn = -1;
+        boolean ended = false;
+        for (Path file : files) {
+            if (ended) {
+                // Заранее созданный пустой сегмент после конца журнала
+                Files.delete(file);
+                continue;
+            }
+            Segment segment = mapSegment(file, firstLsnOf(file));
+            if (lastLsn == -1) {
+                if (segment.firstLsn > checkpointLsn + 1) {
+                    throw new IllegalStateException("Журнал раздела " + partition + " начинается с записи "
+                            + segment.firstLsn + ", а контрольная точка — " + checkpointLsn);
+                }
+                lastLsn = segment.firstLsn - 1;
+            } else if (segment.firstLsn != lastLsn + 1) {
+                throw new IllegalStateException("Пропуск в журнале раздела " + partition + " перед " + file);
+            }
+            segments.add(segment);
+            current = segment;
+            ByteBuffer view = segment.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            for (int slot = 0; slot < recordsPerSegment && !ended; slot++) {
+                int offset = slot * RECORD_BYTES;
+                if (view.getLong(offset + 8) != lastLsn + 1 || view.getInt(offset) != checksum(view, offset)) {
+                    ended = true;
+                } else {
+                    lastLsn++;
+                    if (lastLsn > checkpointLsn) {
+                        replay.accept(decode(view, offset));
+                    }
+                }
+            }
+        }
+        if (lastLsn < checkpointLsn) {
+            throw new IllegalStateException("Журнал раздела " + partition + " обрывается на записи " + lastLsn
+                    + ", раньше контрольной точки " + checkpointLsn);
+        }
+    }
+
+    private Segment roll() {
+        Segment finished = current;
+        finished.buffer.force();
+        long firstLsn = finished.firstLsn + recordsPerSegment;
+        Segment segment = next != null ? next.join() : createSegment(firstLsn);
+        next = null;
+        segments.add(segment);
+        current = segment;
+        return segment;
+    }
+
+    /**
+     * Сегмент заполняется нулями при создании: запись в отображённый файл без выделенных
+     * блоков при нехватке места на диске обрушила бы процесс вместо ошибки ввода-вывода.
+     */
+    private Segment createSegment(long firstLsn) {
+        Path file = directory.resolve(String.format("%04d-%020d%s", partition, firstLsn, SUFFIX));
+        long size = (long) recordsPerSegment * RECORD_BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer zeros = ByteBuffer.allocateDirect(1 << 20);
+            for (long written = 0; written < size; ) {
+                zeros.clear().limit((int) Math.min(zeros.capacity(), size - written));
+                written += channel.write(zeros, written);
+            }
+            channel.force(true);
+            return mapSegment(file, firstLsn);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось создать сегмент журнала " + file, ex);
+        }
+    }
+
+    private Segment mapSegment(Path file, long firstLsn) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) recordsPerSegment * RECORD_BYTES);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new Segment(file, firstLsn, buffer);
+        }
+    }
+
+    private int checksum(ByteBuffer buffer, int offset) {
+        crc.reset();
+        crc.update(buffer.slice(offset + 4, RECORD_BYTES - 4));
+        return (int) crc.getValue();
+    }
+
+    private static JournalRecord decode(ByteBuffer buffer, int offset) {
+        long counterpartMsb = buffer.getLong(offset + 32);
+        long counterpartLsb = buffer.getLong(offset + 40);
+        return new JournalRecord(
+                buffer.getLong(offset + 8),
+                JournalRecord.Kind.of(buffer.getInt(offset + 4)),
+                new UUID(buffer.getLong(offset + 16), buffer.getLong(offset + 24)),
+                counterpartMsb == 0 && counterpartLsb == 0 ? null : new UUID(counterpartMsb, counterpartLsb),
+                buffer.getLong(offset + 48),
+                buffer.getLong(offset + 56),
+                buffer.getLong(offset + 64),
+                buffer.getLong(offset + 72),
+                buffer.getLong(offset + 80));
+    }
+
+    private static long firstLsnOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - SUFFIX.length()));
+    }
+
+    private record Segment(Path path, long firstLsn, MappedByteBuffer buffer) {
+    }
+}
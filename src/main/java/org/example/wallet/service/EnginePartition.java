@@ -0,0 +1,315 @@
+package org.example.wallet.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.ConcurrentWalletOperationException;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Раздел движка балансов: один поток-писатель владеет балансами своих кошельков
+ * и своим журналом, поэтому операции не берут блокировок и не ждут друг друга.
+ * <p>
+ * Писатель забирает команды пачкой, для каждой проверяет баланс, дописывает запись
+ * в журнал и только затем меняет баланс. Ответы отправляются в конце пачки:
+ * с {@code sync-on-ack} — после сброса журнала на диск, одним {@code force} на пачку.
+ * <p>
+ * Перевод между разделами идёт в два шага: раздел отправителя пишет списание и передаёт
+ * зачисление разделу получателя, тот пишет зачисление со ссылкой на списание и отвечает
+ * клиенту. Пока зачисление не записано, списание числится в {@link #pendingTransfers}.
+ */
+@Slf4j
+final class EnginePartition implements Runnable {
+    private static final int MAX_BATCH = 1024;
+
+    private final int index;
+    private final OffHeapBalanceMap balances;
+    private final EngineJournal journal;
+    private final EnginePartition[] partitions;
+    private final int queueCapacity;
+    private final boolean syncOnAck;
+    private final Duration barrierTimeout;
+    private final LinkedBlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentSkipListMap<Long, PendingTransfer> pendingTransfers = new ConcurrentSkipListMap<>();
+    private final List<CompletableFuture<WalletResponse>> acks = new ArrayList<>();
+    private final List<WalletResponse> ackResponses = new ArrayList<>();
+    private final List<Credit> credits = new ArrayList<>();
+    private boolean written;
+
+    EnginePartition(int index, OffHeapBalanceMap balances, EngineJournal journal, EnginePartition[] partitions,
+                    int queueCapacity, boolean syncOnAck, Duration barrierTimeout) {
+        this.index = index;
+        this.balances = balances;
+        this.journal = journal;
+        this.partitions = partitions;
+        this.queueCapacity = queueCapacity;
+        this.syncOnAck = syncOnAck;
+        this.barrierTimeout = barrierTimeout;
+    }
+
+    OffHeapBalanceMap balances() {
+        return balances;
+    }
+
+    EngineJournal journal() {
+        return journal;
+    }
+
+    /**
+     * Списания переводов без записанного зачисления. Читается в действии барьера,
+     * когда все писатели стоят.
+     */
+    List<PendingTransfer> pendingTransfers() {
+        return List.copyOf(pendingTransfers.values());
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    /**
+     * Операция клиента. Очередь ограничена: при переполнении операция отклоняется сразу.
+     */
+    void submit(OperationType type, UUID walletId, UUID targetId, long amount, CompletableFuture<WalletResponse> result) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            throw new ConcurrentWalletOperationException("Очередь раздела " + index + " движка балансов переполнена");
+        }
+        commands.add(new Operation(type, walletId, targetId, amount, result));
+    }
+
+    /**
+     * Зачисление перевода, в том числе повторное после восстановления. Не ограничивается
+     * очередью: списание уже записано, и отказать в зачислении нельзя.
+     */
+    void credit(UUID walletId, UUID sourceId, long amount, long reference,
+                CompletableFuture<WalletResponse> result, WalletResponse sourceResponse) {
+        commands.add(new Credit(walletId, sourceId, amount, reference, result, sourceResponse));
+    }
+
+    void registerPending(long lsn, PendingTransfer transfer) {
+        pendingTransfers.put(lsn, transfer);
+    }
+
+    void barrier(CyclicBarrier barrier) {
+        commands.add(new Barrier(barrier));
+    }
+
+    void stop() {
+        commands.add(Stop.INSTANCE);
+    }
+
+    @Override
+    public void run() {
+        List<Command> batch = new ArrayList<>(MAX_BATCH);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(commands.take());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                log.warn("Поток раздела {} движка балансов прерван", index);
+                return;
+            }
+            commands.drainTo(batch, MAX_BATCH - 1);
+            for (Command command : batch) {
+                switch (command) {
+                    case Operation operation -> {
+                        queued.decrementAndGet();
+                        apply(operation);
+                    }
+                    case Credit credit -> apply(credit);
+                    case Barrier barrier -> await(barrier.barrier());
+                    case Stop stop -> running = false;
+                }
+            }
+            batch.clear();
+            completeBatch();
+        }
+    }
+
+    private void apply(Operation operation) {
+        long msb = operation.walletId().getMostSignificantBits();
+        long lsb = operation.walletId().getLeastSignificantBits();
+        OffHeapBalanceMap.WalletState state = balances.get(msb, lsb);
+        try {
+            switch (operation.type()) {
+                case DEPOSIT -> {
+                    long balance = Math.addExact(state != null ? state.balance() : 0, operation.amount());
+                    long version = state != null ? state.version() + 1 : 1;
+                    journal.append(JournalRecord.Kind.DEPOSIT, operation.walletId(), null, operation.amount(),
+                            balance, version, 0, nowMicros());
+                    balances.put(msb, lsb, balance, version);
+                    acknowledge(operation.result(), response(operation.walletId(), balance, version));
+                }
+                case WITHDRAW -> {
+                    if (checkFunds(operation, state)) {
+                        long balance = state.balance() - operation.amount();
+                        long version = state.version() + 1;
+                        journal.append(JournalRecord.Kind.WITHDRAW, operation.walletId(), null, operation.amount(),
+                                balance, version, 0, nowMicros());
+                        balances.put(msb, lsb, balance, version);
+                        acknowledge(operation.result(), response(operation.walletId(), balance, version));
+                    }
+                }
+                case TRANSFER -> {
+                    UUID targetId = operation.targetId();
+                    if (!partitionOf(targetId).balances.contains(targetId)) {
+                        operation.result().completeExceptionally(new WalletNotFoundException("Кошелёк не найден"));
+                    } else if (checkFunds(operation, state)) {
+                        long balance = state.balance() - operation.amount();
+                        long version = state.version() + 1;
+                        long lsn = journal.append(JournalRecord.Kind.TRANSFER_OUT, operation.walletId(), targetId,
+                                operation.amount(), balance, version, 0, nowMicros());
+                        balances.put(msb, lsb, balance, version);
+                        pendingTransfers.put(lsn, new PendingTransfer(index, lsn, operation.walletId(), targetId,
+                                operation.amount()));
+                        credits.add(new Credit(targetId, operation.walletId(), operation.amount(),
+                                BalanceEngine.reference(index, lsn), operation.result(),
+                                response(operation.walletId(), balance, version)));
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.error("Сбой операции {} в разделе {} для кошелька {}", operation.type(), index, operation.walletId(), ex);
+            operation.result().completeExceptionally(ex);
+        }
+    }
+
+    private boolean checkFunds(Operation operation, OffHeapBalanceMap.WalletState state) {
+        if (state == null) {
+            operation.result().completeExceptionally(new WalletNotFoundException("Кошелёк не найден"));
+            return false;
+        }
+        if (state.balance() < operation.amount()) {
+            operation.result().completeExceptionally(new InsufficientFundsException(
+                    Money.ofUnits(state.balance()), Money.ofUnits(operation.amount())));
+            return false;
+        }
+        return true;
+    }
+
+    private void apply(Credit credit) {
+        long msb = credit.walletId().getMostSignificantBits();
+        long lsb = credit.walletId().getLeastSignificantBits();
+        OffHeapBalanceMap.WalletState state = balances.get(msb, lsb);
+        try {
+            long balance = Math.addExact(state != null ? state.balance() : 0, credit.amount());
+            long version = state != null ? state.version() + 1 : 1;
+            journal.append(JournalRecord.Kind.TRANSFER_IN, credit.walletId(), credit.sourceId(), credit.amount(),
+                    balance, version, credit.reference(), nowMicros());
+            balances.put(msb, lsb, balance, version);
+            written = true;
+            partitions[BalanceEngine.partitionOfReference(credit.reference())].pendingTransfers
+                    .remove(BalanceEngine.lsnOfReference(credit.reference()));
+            if (credit.result() != null) {
+                acknowledge(credit.result(), credit.sourceResponse());
+            }
+        } catch (RuntimeException ex) {
+            // Списание остаётся в незавершённых и будет зачислено повторно после перезапуска
+            log.error("Сбой зачисления перевода {} на кошелёк {}", credit.reference(), credit.walletId(), ex);
+            if (credit.result() != null) {
+                credit.result().completeExceptionally(ex);
+            }
+        }
+    }
+
+    private void acknowledge(CompletableFuture<WalletResponse> result, WalletResponse response) {
+        written = true;
+        acks.add(result);
+        ackResponses.add(response);
+    }
+
+    /**
+     * Конец пачки: сброс журнала, если ответы ждут диска, затем ответы и передача зачислений.
+     * Зачисления уходят после сброса, иначе запись получателя могла бы оказаться на диске
+     * раньше списания.
+     */
+    private void completeBatch() {
+        if (!written && credits.isEmpty()) {
+            return;
+        }
+        if (syncOnAck) {
+            journal.force();
+        }
+        for (int i = 0; i < acks.size(); i++) {
+            acks.get(i).complete(ackResponses.get(i));
+        }
+        for (Credit credit : credits) {
+            partitionOf(credit.walletId()).commands.add(credit);
+        }
+        acks.clear();
+        ackResponses.clear();
+        credits.clear();
+        written = false;
+    }
+
+    /**
+     * Барьер контрольной точки: писатель завершает пачку и ждёт остальных, чтобы номера
+     * последних записей всех разделов были сняты, пока ни один не пишет.
+     */
+    private void await(CyclicBarrier barrier) {
+        completeBatch();
+        try {
+            barrier.await(barrierTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (BrokenBarrierException | TimeoutException ex) {
+            log.debug("Барьер контрольной точки не пройден разделом {}", index);
+        }
+    }
+
+    private EnginePartition partitionOf(UUID walletId) {
+        return partitions[BalanceEngine.partitionOf(walletId, partitions.length)];
+    }
+
+    private static WalletResponse response(UUID walletId, long balance, long version) {
+        return new WalletResponse(walletId, Money.ofUnits(balance), version);
+    }
+
+    private static long nowMicros() {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    }
+
+    /**
+     * Списание перевода, зачисление которого ещё не записано разделом получателя.
+     */
+    record PendingTransfer(int partition, long lsn, UUID sourceId, UUID targetId, long amount) {
+    }
+
+    private sealed interface Command permits Operation, Credit, Barrier, Stop {
+    }
+
+    private record Operation(OperationType type, UUID walletId, UUID targetId, long amount,
+                             CompletableFuture<WalletResponse> result) implements Command {
+    }
+
+    private record Credit(UUID walletId, UUID sourceId, long amount, long reference,
+                          CompletableFuture<WalletResponse> result, WalletResponse sourceResponse) implements Command {
+    }
+
+    private record Barrier(CyclicBarrier barrier) implements Command {
+    }
+
+    private enum Stop implements Command {
+        INSTANCE
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.wallet.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.WalletEventMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Дописывает события в файл по одному JSON на строку (wallet.outbox.file.path).
+ * Пачка сбрасывается на диск до удаления из outbox, поэтому после сбоя в файле
+ * возможны повторы, но не пропуски.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${wallet.outbox.enabled:false} and '${wallet.outbox.file.path:}' != ''")
+public class FileWalletEventSink implements WalletEventSink {
+    private final ObjectMapper objectMapper;
+    private final FileChannel channel;
+
+    public FileWalletEventSink(ObjectMapper objectMapper,
+                               @Value("${wallet.outbox.file.path}") Path path) throws IOException {
+        this.objectMapper = objectMapper;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        log.info("События об изменении баланса пишутся в {}", path.toAbsolutePath());
+    }
+
+    @Override
+    public void publish(List<WalletEventMessage> events) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(events.size() * 160);
+            for (WalletEventMessage event : events) {
+                objectMapper.writeValue(buffer, event);
+                buffer.write('\n');
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось записать события в файл", ex);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,195 @@
+package org.example.wallet.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Иерархическое колесо таймеров истечения удержаний: четыре уровня по 256 ячеек, ячейка
+ * нижнего уровня — один тик. Удержание лежит на самом нижнем уровне, старшие разряды тика
+ * которого совпадают с текущим, и спускается на уровень ниже, когда колесо доходит до его
+ * ячейки. Постановка и отмена — O(1), тик обходит только истекающие и спускающиеся удержания,
+ * поэтому его стоимость не зависит от числа ожидающих.
+ * <p>
+ * {@link #schedule} и {@link #cancel} вызываются из любых потоков и только ставят команду в очередь;
+ * структуру колеса меняет {@link #advanceTo}, который вызывается не более чем одним потоком одновременно.
+ * Удержания со сроком за пределами четырёх уровней ждут в отдельном списке, который
+ * разбирается раз в 2<sup>32</sup> тиков.
+ */
+final class HoldExpiryWheel {
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final Entry[][] slots = new Entry[LEVELS][SLOTS];
+    private Entry overflow;
+    private final Map<UUID, Entry> index = new HashMap<>();
+    private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
+    private long currentTick;
+    private volatile int size;
+
+    /**
+     * Удержание, срок которого истёк
+     */
+    record Expired(UUID holdId, UUID walletId) {
+    }
+
+    private record Command(UUID holdId, UUID walletId, long deadlineMillis) {
+    }
+
+    private static final class Entry {
+        private final UUID holdId;
+        private final UUID walletId;
+        private final long deadlineTick;
+        private Entry prev;
+        private Entry next;
+        private int level;
+        private int slot;
+
+        private Entry(UUID holdId, UUID walletId, long deadlineTick) {
+            this.holdId = holdId;
+            this.walletId = walletId;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    HoldExpiryWheel(Duration tick, long startMillis) {
+        this.tickMillis = tick.toMillis();
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Тик колеса должен быть не меньше 1 мс");
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Ставит удержание на истечение; повторная постановка того же удержания заменяет срок.
+     */
+    void schedule(UUID holdId, UUID walletId, long deadlineMillis) {
+        commands.add(new Command(holdId, walletId, deadlineMillis));
+    }
+
+    /**
+     * Снимает удержание с колеса; неизвестное удержание пропускается.
+     */
+    void cancel(UUID holdId) {
+        commands.add(new Command(holdId, null, 0));
+    }
+
+    /**
+     * Число удержаний в колесе на момент последнего {@link #advanceTo}.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Применяет накопившиеся команды и проходит тики до {@code nowMillis}.
+     *
+     * @return удержания, срок которых наступил
+     */
+    List<Expired> advanceTo(long nowMillis) {
+        applyCommands();
+        List<Expired> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            if ((currentTick & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+                Entry entry = overflow;
+                overflow = null;
+                placeAll(entry);
+            }
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                }
+            }
+            Entry entry = detachSlot(0, (int) currentTick & SLOT_MASK);
+            while (entry != null) {
+                Entry next = entry.next;
+                index.remove(entry.holdId);
+                expired.add(new Expired(entry.holdId, entry.walletId));
+                entry = next;
+            }
+        }
+        size = index.size();
+        return expired;
+    }
+
+    private void applyCommands() {
+        Command command;
+        while ((command = commands.poll()) != null) {
+            Entry existing = index.remove(command.holdId());
+            if (existing != null) {
+                unlink(existing);
+            }
+            if (command.walletId() != null) {
+                // Срок округляется вверх: удержание не снимается раньше, чем истекло
+                long deadlineTick = Math.max(Math.floorDiv(command.deadlineMillis() + tickMillis - 1, tickMillis),
+                        currentTick + 1);
+                Entry entry = new Entry(command.holdId(), command.walletId(), deadlineTick);
+                index.put(entry.holdId, entry);
+                place(entry);
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        placeAll(detachSlot(level, slot));
+    }
+
+    private void placeAll(Entry entry) {
+        while (entry != null) {
+            Entry next = entry.next;
+            place(entry);
+            entry = next;
+        }
+    }
+
+    private void place(Entry entry) {
+        long deadline = entry.deadlineTick;
+        int level = 0;
+        while (level < LEVELS && deadline >>> (SLOT_BITS * (level + 1)) != currentTick >>> (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        entry.level = level;
+        entry.prev = null;
+        if (level == LEVELS) {
+            entry.next = overflow;
+            overflow = entry;
+        } else {
+            entry.slot = (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+            entry.next = slots[level][entry.slot];
+            slots[level][entry.slot] = entry;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+    }
+
+    private Entry detachSlot(int level, int slot) {
+        Entry head = slots[level][slot];
+        slots[level][slot] = null;
+        return head;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else if (entry.level == LEVELS) {
+            overflow = entry.next;
+        } else {
+            slots[entry.level][entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.wallet.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.IdempotencyKeyMismatchException;
+import org.example.wallet.model.IdempotencyKey;
+import org.example.wallet.repository.IdempotencyKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Хранит результаты запросов с ключом идемпотентности. Ключ действует в пределах
+ * кошелька операции и закрепляется вместе с отпечатком запроса: повтор ключа
+ * с другой операцией отклоняется {@link IdempotencyKeyMismatchException}.
+ * Повтор, найденный в ограниченном кэше, обслуживается без обращения к базе;
+ * первичный ключ (wallet_id, idempotency_key) в idempotency_keys защищает от повторов
+ * после вытеснения из кэша и от повторов, пришедших на другой экземпляр сервиса.
+ */
+@Slf4j
+@Component
+public class IdempotencyRegistry {
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<IdempotencyKey.WalletScopedId, StoredResponse> responses;
+    private final Duration retention;
+
+    public IdempotencyRegistry(IdempotencyKeyRepository idempotencyKeyRepository,
+                               ShardRouter shardRouter,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${wallet.idempotency.cache-size:100000}") long cacheSize,
+                               @Value("${wallet.idempotency.retention:24h}") Duration retention) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(retention)
+                .build();
+        this.retention = retention;
+    }
+
+    public WalletResponse findCached(WalletRequest request) {
+        StoredResponse stored = responses.getIfPresent(idOf(request));
+        return stored != null ? stored.replayFor(request) : null;
+    }
+
+    /**
+     * Закрепляет ключ запроса за результатом операции в текущей транзакции.
+     *
+     * @return {@code null}, если ключ новый, иначе ответ, сохранённый первым выполнением
+     * @throws IdempotencyKeyMismatchException если ключ закреплён за другой операцией
+     */
+    public WalletResponse register(WalletRequest request, WalletResponse response) {
+        String requestHash = request.fingerprint();
+        if (idempotencyKeyRepository.insertIfAbsent(request.getWalletIdAsUUID(), request.getIdempotencyKey(),
+                response.getBalance(), response.getVersion(), requestHash) > 0) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    responses.put(idOf(request), new StoredResponse(response, requestHash));
+                }
+            });
+            return null;
+        }
+        return findStored(request);
+    }
+
+    /**
+     * @throws IdempotencyKeyMismatchException если ключ закреплён за другой операцией
+     */
+    public WalletResponse findStored(WalletRequest request) {
+        IdempotencyKey.WalletScopedId id = idOf(request);
+        return idempotencyKeyRepository.findById(id)
+                .map(row -> {
+                    StoredResponse stored = new StoredResponse(
+                            new WalletResponse(row.getWalletId(), row.getBalance(), row.getVersion()),
+                            row.getRequestHash());
+                    responses.put(id, stored);
+                    return stored.replayFor(request);
+                })
+                .orElse(null);
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        Instant threshold = Instant.now().minus(retention);
+        int removed = 0;
+        for (String shard : shardRouter.shardNames()) {
+            removed += shardRouter.callOnShard(shard, () -> transactionTemplate.execute(
+                    status -> idempotencyKeyRepository.deleteCreatedBefore(threshold)));
+        }
+        if (removed > 0) {
+            log.info("Удалено устаревших ключей идемпотентности: {}", removed);
+        }
+    }
+
+    private static IdempotencyKey.WalletScopedId idOf(WalletRequest request) {
+        return new IdempotencyKey.WalletScopedId(request.getWalletIdAsUUID(), request.getIdempotencyKey());
+    }
+
+    /**
+     * @param requestHash {@code null} у ключей, записанных до появления отпечатков: они не сверяются
+     */
+    private record StoredResponse(WalletResponse response, String requestHash) {
+        WalletResponse replayFor(WalletRequest request) {
+            if (requestHash != null && !requestHash.equals(request.fingerprint())) {
+                throw new IdempotencyKeyMismatchException(request.getIdempotencyKey());
+            }
+            return response;
+        }
+    }
+}
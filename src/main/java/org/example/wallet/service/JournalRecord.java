@@ -0,0 +1,63 @@
+package org.example.wallet.service;
+
+import org.example.wallet.model.OperationType;
+
+import java.util.UUID;
+
+/**
+ * Запись журнала движка балансов. Суммы и балансы — в единицах {@link org.example.wallet.model.Money#SCALE}.
+ *
+ * @param walletId      кошелёк раздела, записавшего запись
+ * @param counterpartId второй кошелёк перевода или {@code null}
+ * @param reference     у зачисления перевода — ссылка на запись списания ({@link BalanceEngine#reference})
+ */
+record JournalRecord(long lsn,
+                     Kind kind,
+                     UUID walletId,
+                     UUID counterpartId,
+                     long amount,
+                     long balanceAfter,
+                     long version,
+                     long reference,
+                     long timestampMicros) {
+
+    enum Kind {
+        DEPOSIT(1, OperationType.DEPOSIT),
+        WITHDRAW(2, OperationType.WITHDRAW),
+        /** Списание перевода; зачисление делает раздел получателя отдельной записью. */
+        TRANSFER_OUT(3, OperationType.TRANSFER),
+        TRANSFER_IN(4, OperationType.TRANSFER);
+
+        private final int code;
+        private final OperationType operationType;
+
+        Kind(int code, OperationType operationType) {
+            this.code = code;
+            this.operationType = operationType;
+        }
+
+        int code() {
+            return code;
+        }
+
+        OperationType operationType() {
+            return operationType;
+        }
+
+        static Kind of(int code) {
+            for (Kind kind : values()) {
+                if (kind.code == code) {
+                    return kind;
+                }
+            }
+            throw new IllegalStateException("Неизвестный тип записи журнала: " + code);
+        }
+    }
+
+    /**
+     * Сумма для wallet_transactions: списание перевода пишется со знаком минус, как в {@code WalletService}.
+     */
+    long signedAmount() {
+        return kind == Kind.TRANSFER_OUT ? -amount : amount;
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.wallet.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Месячные секции журнала wallet_transactions на всех шардах.
+ * <p>
+ * Каждый запуск создаёт секции текущего месяца и {@code partitions-ahead} следующих,
+ * чтобы вставки журнала не попадали в секцию по умолчанию. Если строки туда всё же
+ * попали (сервис долго не запускался), они переносятся в создаваемую секцию в той же
+ * транзакции. С {@code ledger-retention-months} больше нуля месяцы старше срока
+ * удаляются целиком: DROP секции не оставляет мёртвых строк, в отличие от DELETE.
+ * <p>
+ * Присоединение и удаление секции ждут блокировку родительской таблицы не дольше
+ * {@link #LOCK_TIMEOUT}: при долгой транзакции журнала обслуживание откладывается
+ * до следующего запуска, а не останавливает вставки в очереди за собой.
+ */
+@Slf4j
+@Component
+public class LedgerPartitionMaintainer {
+    static final String PARTITION_PREFIX = "wallet_transactions_p";
+    /** Ключ pg_try_advisory_xact_lock для обслуживания секций. */
+    private static final long PARTITION_LOCK_KEY = 0x6c6564676572L;
+    private static final String LOCK_TIMEOUT = "5s";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String SELECT_PARTITIONS = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'wallet_transactions'::regclass""";
+    private static final String MOVE_FROM_DEFAULT = """
+            WITH moved AS (
+                DELETE FROM wallet_transactions_default
+                WHERE created_at >= ? AND created_at < ?
+                RETURNING id, wallet_id, operation_type, amount, balance_after, created_at
+            )
+            INSERT INTO %s (id, wallet_id, operation_type, amount, balance_after, created_at)
+            SELECT id, wallet_id, operation_type, amount, balance_after, created_at FROM moved""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final int partitionsAhead;
+    private final int retentionMonths;
+
+    public LedgerPartitionMaintainer(DataSource dataSource,
+                                     ShardRouter shardRouter,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${wallet.history.partitions-ahead:3}") int partitionsAhead,
+                                     @Value("${wallet.history.ledger-retention-months:0}") int retentionMonths) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setTimeout(300);
+        this.partitionsAhead = partitionsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.history.partition-check-interval-ms:3600000}")
+    public void maintainPartitions() {
+        maintainPartitions(YearMonth.now(ZoneOffset.UTC));
+    }
+
+    void maintainPartitions(YearMonth current) {
+        for (String shard : shardRouter.shardNames()) {
+            try {
+                shardRouter.callOnShard(shard, () -> transactionTemplate.execute(status -> maintain(shard, current)));
+            } catch (RuntimeException ex) {
+                log.warn("Не удалось обслужить секции журнала шарда {}, повтор при следующем запуске", shard, ex);
+            }
+        }
+    }
+
+    private Void maintain(String shard, YearMonth current) {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, PARTITION_LOCK_KEY))) {
+            log.debug("Секции журнала шарда {} обслуживает другой экземпляр", shard);
+            return null;
+        }
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '" + LOCK_TIMEOUT + "'");
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class));
+
+        for (int i = 0; i <= partitionsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            String name = partitionName(month);
+            if (!existing.contains(name)) {
+                int moved = createPartition(name, month);
+                log.info("Создана секция журнала {} на шарде {}, перенесено из секции по умолчанию: {}",
+                        name, shard, moved);
+            }
+        }
+
+        if (retentionMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            for (String name : existing) {
+                YearMonth month = partitionMonth(name);
+                if (month != null && month.isBefore(oldestKept)) {
+                    jdbcTemplate.execute("DROP TABLE " + name);
+                    log.info("Удалена секция журнала {} на шарде {}: старше {} мес.", name, shard, retentionMonths);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Секция создаётся отдельной таблицей и присоединяется после переноса строк:
+     * CREATE TABLE ... PARTITION OF завершился бы ошибкой, если в секции по умолчанию
+     * уже есть строки этого месяца.
+     */
+    private int createPartition(String name, YearMonth month) {
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE wallet_transactions INCLUDING DEFAULTS)");
+        int moved = jdbcTemplate.update(MOVE_FROM_DEFAULT.formatted(name), from, to);
+        jdbcTemplate.execute("ALTER TABLE wallet_transactions ATTACH PARTITION " + name
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        return moved;
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + SUFFIX.format(month);
+    }
+
+    private static YearMonth partitionMonth(String name) {
+        if (!name.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(name.substring(PARTITION_PREFIX.length()), SUFFIX);
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+}
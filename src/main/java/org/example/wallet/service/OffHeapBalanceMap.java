@@ -0,0 +1,166 @@
+package org.example.wallet.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Балансы раздела движка вне кучи: открытая адресация с линейным пробированием
+ * в прямом буфере, ключ — две половины UUID, без объектов на кошелёк и без нагрузки на GC.
+ * Ячейка — 32 байта: старшая и младшая половины id, баланс в единицах и версия;
+ * версия 0 означает пустую ячейку. Кошельки не удаляются.
+ * <p>
+ * Пишет только поток раздела, под блокировкой записи {@link StampedLock}. Читатели
+ * из других потоков идут оптимистично и повторяют чтение под блокировкой чтения,
+ * если за это время была запись или таблица выросла.
+ * <p>
+ * Прямой буфер адресуется int-смещениями, поэтому таблица не растёт дальше
+ * {@link #MAX_CAPACITY} ячеек (1 ГиБ); больше кошельков на раздел — больше разделов.
+ */
+final class OffHeapBalanceMap {
+    private static final int SLOT_BYTES = 32;
+    private static final double MAX_LOAD = 0.7;
+    private static final long NOT_FOUND = -1;
+    private static final int MAX_CAPACITY = 1 << 25;
+
+    private final StampedLock lock = new StampedLock();
+    private volatile ByteBuffer slots;
+    private int capacity;
+    private int size;
+
+    OffHeapBalanceMap(int expectedWallets) {
+        long wanted = Math.min(MAX_CAPACITY, Math.max(16, (long) (expectedWallets / MAX_LOAD)));
+        int initial = Integer.highestOneBit((int) wanted - 1) << 1;
+        this.capacity = initial;
+        this.slots = allocate(initial);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Состояние кошелька для потоков вне раздела.
+     *
+     * @return {@code null}, если кошелька нет
+     */
+    WalletState read(UUID walletId) {
+        long msb = walletId.getMostSignificantBits();
+        long lsb = walletId.getLeastSignificantBits();
+        long stamp = lock.tryOptimisticRead();
+        WalletState state = find(slots, msb, lsb);
+        if (lock.validate(stamp)) {
+            return state;
+        }
+        stamp = lock.readLock();
+        try {
+            return find(slots, msb, lsb);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean contains(UUID walletId) {
+        return read(walletId) != null;
+    }
+
+    /**
+     * Чтение из потока раздела: запись идёт только из него, блокировка не нужна.
+     */
+    WalletState get(long msb, long lsb) {
+        return find(slots, msb, lsb);
+    }
+
+    void put(long msb, long lsb, long balance, long version) {
+        long stamp = lock.writeLock();
+        try {
+            if (size + 1 > capacity * MAX_LOAD) {
+                if (capacity == MAX_CAPACITY) {
+                    throw new IllegalStateException("Раздел движка заполнен: " + size + " кошельков");
+                }
+                grow();
+            }
+            ByteBuffer table = slots;
+            int mask = capacity - 1;
+            for (int index = hash(msb, lsb) & mask; ; index = (index + 1) & mask) {
+                int offset = index * SLOT_BYTES;
+                if (table.getLong(offset + 24) == 0) {
+                    table.putLong(offset, msb);
+                    table.putLong(offset + 8, lsb);
+                    size++;
+                } else if (table.getLong(offset) != msb || table.getLong(offset + 8) != lsb) {
+                    continue;
+                }
+                table.putLong(offset + 16, balance);
+                table.putLong(offset + 24, version);
+                return;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private WalletState find(ByteBuffer table, long msb, long lsb) {
+        int tableCapacity = table.capacity() / SLOT_BYTES;
+        int mask = tableCapacity - 1;
+        // Число шагов ограничено: при оптимистичном чтении таблица может меняться на ходу
+        for (int step = 0, index = hash(msb, lsb) & mask; step < tableCapacity; step++, index = (index + 1) & mask) {
+            int offset = index * SLOT_BYTES;
+            long version = table.getLong(offset + 24);
+            if (version == 0) {
+                return null;
+            }
+            if (table.getLong(offset) == msb && table.getLong(offset + 8) == lsb) {
+                return new WalletState(table.getLong(offset + 16), version);
+            }
+        }
+        return null;
+    }
+
+    private void grow() {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        capacity = oldCapacity << 1;
+        ByteBuffer table = allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            int from = i * SLOT_BYTES;
+            long version = old.getLong(from + 24);
+            if (version == 0) {
+                continue;
+            }
+            long msb = old.getLong(from);
+            long lsb = old.getLong(from + 8);
+            int index = hash(msb, lsb) & mask;
+            while (table.getLong(index * SLOT_BYTES + 24) != 0) {
+                index = (index + 1) & mask;
+            }
+            int to = index * SLOT_BYTES;
+            table.putLong(to, msb);
+            table.putLong(to + 8, lsb);
+            table.putLong(to + 16, old.getLong(from + 16));
+            table.putLong(to + 24, version);
+        }
+        slots = table;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        long bytes = (long) capacity * SLOT_BYTES;
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Таблица раздела больше 1 ГиБ: " + bytes + " байт");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static int hash(long msb, long lsb) {
+        long mixed = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    /**
+     * @param balance баланс в единицах {@link org.example.wallet.model.Money#SCALE}
+     */
+    record WalletState(long balance, long version) {
+    }
+}
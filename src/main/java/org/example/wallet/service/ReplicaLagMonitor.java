@@ -0,0 +1,116 @@
+package org.example.wallet.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.config.ReplicaProperties;
+import org.example.wallet.config.ReplicaRoutingDataSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Измеряет отставание реплик во времени. Позиция WAL основного сервера запоминается
+ * при каждом изменении вместе с моментом наблюдения; отставание реплики — возраст
+ * самой ранней запомненной позиции, которую она ещё не применила. В отличие от
+ * pg_last_xact_replay_timestamp() такая оценка не растёт, пока основной сервер простаивает.
+ * <p>
+ * Реплики с отставанием не больше wallet.replicas.max-lag получают чтения;
+ * отставание публикуется в метрике wallet.replica.lag (NaN — реплика недоступна).
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+    private static final String PRIMARY_LSN = "SELECT (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint";
+    private static final String REPLAY_LSN = "SELECT (pg_last_wal_replay_lsn() - '0/0'::pg_lsn)::bigint";
+    private static final Duration RETENTION = Duration.ofMinutes(1);
+
+    private final JdbcTemplate primary;
+    private final Map<String, JdbcTemplate> replicas = new LinkedHashMap<>();
+    private final ReplicaRoutingDataSource routing;
+    private final Duration maxLag;
+    private final Deque<Position> positions = new ArrayDeque<>();
+    private final Map<String, Double> lagSeconds = new ConcurrentHashMap<>();
+
+    public ReplicaLagMonitor(DataSource primary,
+                             ReplicaRoutingDataSource routing,
+                             ReplicaProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.routing = routing;
+        this.maxLag = properties.getMaxLag();
+        routing.getReplicas().forEach((name, dataSource) -> {
+            replicas.put(name, new JdbcTemplate(dataSource));
+            lagSeconds.put(name, Double.NaN);
+            Gauge.builder("wallet.replica.lag", lagSeconds, lags -> lags.getOrDefault(name, Double.NaN))
+                    .description("Отставание реплики от основного сервера")
+                    .baseUnit("seconds")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.replicas.lag-check-interval-ms:200}")
+    public void check() {
+        Instant now = Instant.now();
+        try {
+            long lsn = primary.queryForObject(PRIMARY_LSN, Long.class);
+            if (positions.isEmpty() || positions.peekLast().lsn() != lsn) {
+                positions.addLast(new Position(lsn, now));
+            }
+        } catch (DataAccessException ex) {
+            log.warn("Не удалось прочитать позицию WAL основного сервера: {}", ex.getMessage());
+            return;
+        }
+        // Самая ранняя позиция остаётся, даже устарев: по ней видно отставание застрявшей реплики
+        while (positions.size() > 1 && positions.peekFirst().observedAt().isBefore(now.minus(RETENTION))) {
+            positions.removeFirst();
+        }
+
+        List<String> healthy = new ArrayList<>(replicas.size());
+        replicas.forEach((name, jdbc) -> {
+            Duration lag = lag(name, jdbc, now);
+            lagSeconds.put(name, lag != null ? lag.toNanos() / 1e9 : Double.NaN);
+            if (lag != null && lag.compareTo(maxLag) <= 0) {
+                healthy.add(name);
+            }
+        });
+        if (!healthy.equals(routing.getHealthy())) {
+            log.info("Реплики для чтения: {}", healthy.isEmpty() ? "нет, чтения идут на основной сервер" : healthy);
+            routing.setHealthy(healthy);
+        }
+    }
+
+    private Duration lag(String name, JdbcTemplate jdbc, Instant now) {
+        Long replayed;
+        try {
+            replayed = jdbc.queryForObject(REPLAY_LSN, Long.class);
+        } catch (DataAccessException ex) {
+            log.debug("Реплика {} недоступна: {}", name, ex.getMessage());
+            return null;
+        }
+        if (replayed == null) {
+            // Сервер не в режиме восстановления: это не реплика
+            return null;
+        }
+        for (Position position : positions) {
+            if (position.lsn() > replayed) {
+                return Duration.between(position.observedAt(), now);
+            }
+        }
+        return Duration.ZERO;
+    }
+
+    private record Position(long lsn, Instant observedAt) {
+    }
+}
@@ -0,0 +1,295 @@
+package org.example.wallet.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.config.ShardRing;
+import org.example.wallet.config.ShardingProperties;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyOut;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Онлайн-перебалансировка при добавлении шарда. Участки кольца, которые в кольце
+ * из всех шардов (включая joining) принадлежат другому шарду, переносятся по одному:
+ * запись в участок закрывается, строки wallets, wallet_transactions и idempotency_keys
+ * копируются потоком COPY с исходного шарда на целевой, перенос фиксируется в shard_moves
+ * на всех шардах, участок переключается на целевой шард и удаляется с исходного.
+ * <p>
+ * Журнал и ключи идемпотентности идут через временные таблицы. Записи журнала получают
+ * на целевом шарде новые id из его wallet_transactions_seq в порядке created_at: id
+ * не переносятся между шардами, и ссылаться на запись журнала по id вне шарда нельзя.
+ * Ключи вливаются с ON CONFLICT DO NOTHING: уже записанный на целевом шарде ключ
+ * кошелька не обрывает перенос.
+ * <p>
+ * Записи shard_moves применяются к кольцу при старте, поэтому перезапуск посреди
+ * перебалансировки не возвращает перенесённые участки на старый шард. После завершения
+ * снимите у нового шарда joining; повторный запуск продолжает незавершённый перенос.
+ * <p>
+ * Закрытие участка и кольцо живут в памяти одного экземпляра: другие экземпляры
+ * продолжили бы писать в переносимый участок, а пополнение после удаления участка
+ * с исходного шарда заново создало бы там кошелёк. Поэтому перебалансировка выполняется
+ * только на единственном работающем экземпляре: перед запуском и перед каждым участком
+ * она проверяет по pg_stat_activity каждого шарда, что к нему не подключён другой
+ * экземпляр сервиса, и иначе отказывает. Остальные экземпляры на время перебалансировки
+ * останавливают и запускают после неё: при старте они применят переносы из shard_moves.
+ */
+@Slf4j
+public class ShardRebalancer {
+    /**
+     * Имя приложения в соединениях этого экземпляра с шардами; по нему перебалансировка
+     * находит другие экземпляры.
+     */
+    public static final String INSTANCE_APPLICATION_NAME = "wallet-service:" + UUID.randomUUID();
+
+    private static final String SELECT_OTHER_INSTANCES = """
+            SELECT DISTINCT application_name FROM pg_stat_activity
+            WHERE datname = current_database() AND application_name LIKE 'wallet-service:%'
+              AND application_name <> ?""";
+    private static final String SELECT_MOVES = """
+            SELECT range_from, range_to, source_shard, target_shard, moved_at FROM shard_moves""";
+    private static final String INSERT_MOVE = """
+            INSERT INTO shard_moves (range_from, range_to, source_shard, target_shard, moved_at)
+            VALUES (?, ?, ?, ?, ?)""";
+    private static final String CREATE_LEDGER_STAGING = """
+            CREATE TEMP TABLE ledger_import (wallet_id UUID, operation_type VARCHAR(16), amount NUMERIC(19, 4),
+                balance_after NUMERIC(19, 4), created_at TIMESTAMP) ON COMMIT DROP""";
+    private static final String CREATE_IDEMPOTENCY_STAGING = """
+            CREATE TEMP TABLE idempotency_import (wallet_id UUID, idempotency_key VARCHAR(64), balance NUMERIC(19, 4),
+                version BIGINT, request_hash VARCHAR(64), created_at TIMESTAMP) ON COMMIT DROP""";
+    private static final String MERGE_IDEMPOTENCY_STAGING = """
+            INSERT INTO idempotency_keys (wallet_id, idempotency_key, balance, version, request_hash, created_at)
+            SELECT wallet_id, idempotency_key, balance, version, request_hash, created_at
+            FROM idempotency_import
+            ON CONFLICT (wallet_id, idempotency_key) DO NOTHING""";
+    /**
+     * Id записей журнала выдаёт последовательность целевого шарда: исходные id могли
+     * совпасть с уже выданными там.
+     */
+    private static final String MERGE_LEDGER_STAGING = """
+            INSERT INTO wallet_transactions (id, wallet_id, operation_type, amount, balance_after, created_at)
+            SELECT nextval('wallet_transactions_seq'), wallet_id, operation_type, amount, balance_after, created_at
+            FROM ledger_import
+            ORDER BY created_at""";
+    private static final List<String> RANGE_TABLES = List.of(
+            "wallets WHERE id", "wallet_transactions WHERE wallet_id", "idempotency_keys WHERE wallet_id",
+            "wallet_holds WHERE wallet_id");
+
+    private final ShardRouter shardRouter;
+    private final ShardingProperties properties;
+    private final Map<String, Shard> shards = new LinkedHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ShardRebalancer(ShardRouter shardRouter, ShardingProperties properties, Map<String, DataSource> dataSources) {
+        this.shardRouter = shardRouter;
+        this.properties = properties;
+        dataSources.forEach((name, dataSource) -> shards.put(name, new Shard(dataSource)));
+    }
+
+    @PostConstruct
+    public void restoreMoves() {
+        Set<RecordedMove> moves = new LinkedHashSet<>();
+        shards.values().forEach(shard -> moves.addAll(shard.jdbc().query(SELECT_MOVES, (rs, row) -> new RecordedMove(
+                new ShardRing.Segment(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4)),
+                rs.getTimestamp(5).toInstant()))));
+        moves.stream()
+                .sorted((a, b) -> a.movedAt().compareTo(b.movedAt()))
+                .forEach(move -> shardRouter.restore(move.segment()));
+        if (!moves.isEmpty()) {
+            log.info("Восстановлено переносов участков кольца: {}", moves.size());
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public Result rebalance() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Перебалансировка уже выполняется");
+        }
+        try {
+            ensureSingleInstance();
+            ShardRing target = ShardRing.of(properties.shardNames(), properties.getVirtualNodes());
+            List<ShardRing.Segment> segments = shardRouter.ring().segmentsMovedTo(target);
+            log.info("Перебалансировка: участков к переносу {}", segments.size());
+            long wallets = 0;
+            for (ShardRing.Segment segment : segments) {
+                // Экземпляр, запущенный во время перебалансировки, получил кольцо без ещё не перенесённых участков
+                ensureSingleInstance();
+                wallets += move(segment);
+            }
+            purgeForeignRows();
+            log.info("Перебалансировка завершена: перенесено участков {}, кошельков {}", segments.size(), wallets);
+            return new Result(segments.size(), wallets, shardRouter.ring().shares());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Отказывает, если к какому-либо шарду подключён другой экземпляр сервиса.
+     */
+    private void ensureSingleInstance() {
+        shards.forEach((name, shard) -> {
+            List<String> others = shard.jdbc().queryForList(SELECT_OTHER_INSTANCES, String.class,
+                    INSTANCE_APPLICATION_NAME);
+            if (!others.isEmpty()) {
+                throw new IllegalStateException("Перебалансировка выполняется только на единственном экземпляре"
+                        + " сервиса: к шарду " + name + " подключены ещё " + others
+                        + ". Остановите остальные экземпляры и повторите");
+            }
+        });
+    }
+
+    private long move(ShardRing.Segment segment) {
+        Duration drainTimeout = properties.getDrainTimeout();
+        long wallets;
+        try {
+            shardRouter.closeForWrites(segment, drainTimeout);
+            wallets = copy(segment);
+            recordMove(segment);
+        } catch (TimeoutException ex) {
+            shardRouter.reopen();
+            throw new IllegalStateException("Участок " + segment + " не освободился для переноса", ex);
+        } catch (RuntimeException ex) {
+            shardRouter.reopen();
+            throw ex;
+        }
+
+        try {
+            shardRouter.switchOver(segment, drainTimeout);
+        } catch (TimeoutException ex) {
+            log.warn("Чтения участка {} на шарде {} не завершились, строки удалит итоговая очистка",
+                    segment, segment.source());
+            return wallets;
+        }
+        Shard source = shards.get(segment.source());
+        source.transactions().executeWithoutResult(status -> deleteRange(source, segment));
+        log.info("Участок {}..{} перенесён с {} на {}, кошельков {}",
+                segment.firstId(), segment.lastId(), segment.source(), segment.target(), wallets);
+        return wallets;
+    }
+
+    /**
+     * Копирует строки участка на целевой шард одной транзакцией. Копии, оставшиеся
+     * на целевом шарде от прерванного запуска, удаляются: участок на него ещё не направлялся.
+     */
+    private long copy(ShardRing.Segment segment) {
+        Shard source = shards.get(segment.source());
+        Shard target = shards.get(segment.target());
+        String range = " BETWEEN '" + segment.firstId() + "' AND '" + segment.lastId() + "'";
+        Long copied = target.transactions().execute(targetStatus -> {
+            deleteRange(target, segment);
+            target.jdbc().execute(CREATE_LEDGER_STAGING);
+            target.jdbc().execute(CREATE_IDEMPOTENCY_STAGING);
+            Long wallets = source.readOnlyTransactions().execute(sourceStatus -> {
+                Connection from = DataSourceUtils.getConnection(source.dataSource());
+                Connection to = DataSourceUtils.getConnection(target.dataSource());
+                long rows = pipe(from, "COPY (SELECT id, balance, held, version, created_at, updated_at FROM wallets"
+                                + " WHERE id" + range + ") TO STDOUT (FORMAT binary)",
+                        to, "COPY wallets (id, balance, held, version, created_at, updated_at) FROM STDIN (FORMAT binary)");
+                pipe(from, "COPY (SELECT wallet_id, operation_type, amount, balance_after, created_at"
+                                + " FROM wallet_transactions WHERE wallet_id" + range + ") TO STDOUT (FORMAT binary)",
+                        to, "COPY ledger_import FROM STDIN (FORMAT binary)");
+                pipe(from, "COPY (SELECT wallet_id, idempotency_key, balance, version, request_hash, created_at"
+                                + " FROM idempotency_keys WHERE wallet_id" + range + ") TO STDOUT (FORMAT binary)",
+                        to, "COPY idempotency_import FROM STDIN (FORMAT binary)");
+                pipe(from, "COPY (SELECT id, wallet_id, amount, expires_at, created_at FROM wallet_holds"
+                                + " WHERE wallet_id" + range + ") TO STDOUT (FORMAT binary)",
+                        to, "COPY wallet_holds (id, wallet_id, amount, expires_at, created_at) FROM STDIN (FORMAT binary)");
+                return rows;
+            });
+            target.jdbc().update(MERGE_LEDGER_STAGING);
+            target.jdbc().update(MERGE_IDEMPOTENCY_STAGING);
+            return wallets;
+        });
+        return copied != null ? copied : 0;
+    }
+
+    private void recordMove(ShardRing.Segment segment) {
+        Timestamp movedAt = Timestamp.from(Instant.now());
+        shards.values().forEach(shard -> shard.transactions().executeWithoutResult(status -> shard.jdbc().update(
+                INSERT_MOVE, segment.from(), segment.to(), segment.source(), segment.target(), movedAt)));
+    }
+
+    /**
+     * Удаляет с каждого шарда строки участков, которые кольцо направляет на другие шарды:
+     * остатки переносов, чьи чтения не завершились вовремя, и переносов, прерванных сбоем.
+     */
+    private void purgeForeignRows() {
+        ShardRing ring = shardRouter.ring();
+        shards.forEach((name, shard) -> {
+            // Участки «чужие» для шарда — те, что уходят с кольца на кольцо, целиком принадлежащее ему
+            List<ShardRing.Segment> foreign = ring.segmentsMovedTo(ShardRing.of(List.of(name), 1));
+            shard.transactions().executeWithoutResult(status -> foreign.forEach(segment -> deleteRange(shard, segment)));
+        });
+    }
+
+    private static void deleteRange(Shard shard, ShardRing.Segment segment) {
+        for (String table : RANGE_TABLES) {
+            shard.jdbc().update("DELETE FROM " + table + " BETWEEN ? AND ?", segment.firstId(), segment.lastId());
+        }
+    }
+
+    private static long pipe(Connection from, String copyOut, Connection to, String copyIn) {
+        try {
+            CopyOut out = from.unwrap(PGConnection.class).getCopyAPI().copyOut(copyOut);
+            CopyIn in = null;
+            try {
+                in = to.unwrap(PGConnection.class).getCopyAPI().copyIn(copyIn);
+                byte[] chunk;
+                while ((chunk = out.readFromCopy()) != null) {
+                    in.writeToCopy(chunk, 0, chunk.length);
+                }
+                return in.endCopy();
+            } finally {
+                if (out.isActive()) {
+                    out.cancelCopy();
+                }
+                if (in != null && in.isActive()) {
+                    in.cancelCopy();
+                }
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Сбой копирования участка между шардами", ex);
+        }
+    }
+
+    public record Result(int segments, long wallets, Map<String, Double> shares) {
+    }
+
+    private record RecordedMove(ShardRing.Segment segment, Instant movedAt) {
+    }
+
+    private record Shard(DataSource dataSource, JdbcTemplate jdbc,
+                         TransactionTemplate transactions, TransactionTemplate readOnlyTransactions) {
+        private Shard(DataSource dataSource) {
+            this(dataSource, new JdbcTemplate(dataSource), new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                    readOnly(new TransactionTemplate(new DataSourceTransactionManager(dataSource))));
+        }
+
+        private static TransactionTemplate readOnly(TransactionTemplate template) {
+            template.setReadOnly(true);
+            return template;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package org.example.wallet.service;
+
+import jakarta.validation.ValidationException;
+import org.example.wallet.config.ShardRing;
+import org.example.wallet.config.ShardingProperties;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Выбирает шард кошелька и закрепляет его за текущим потоком: соединение из
+ * маршрутизирующего DataSource берётся у шарда, закреплённого на момент первого
+ * запроса транзакции. Все кошельки одной транзакции должны лежать на одном шарде.
+ * <p>
+ * Каждая операция на время выполнения учитывается в счётчике своей полосы позиций
+ * кольца. Перебалансировка сначала закрывает полосы переносимого участка для записи
+ * и дожидается, пока счётчики опустеют, поэтому переносимые строки никто не меняет.
+ * Запись в закрытую полосу получает {@link CannotAcquireLockException} и повторяется
+ * через {@link WalletContentionControl}; чтение продолжает идти на старый шард до переключения.
+ * Закрытие действует только внутри экземпляра, поэтому {@link ShardRebalancer} работает
+ * лишь при единственном экземпляре сервиса.
+ * <p>
+ * Без wallet.sharding.enabled маршрутизация отключена и методы только выполняют действие.
+ */
+@Component
+public class ShardRouter {
+    public static final String DEFAULT_SHARD = "default";
+
+    private static final int STRIPE_BITS = 12;
+    private static final ThreadLocal<Binding> CURRENT = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final List<String> shardNames;
+    private final AtomicIntegerArray inFlight = new AtomicIntegerArray(1 << STRIPE_BITS);
+    private volatile ShardRing ring;
+    private volatile long[] closedStripes;
+
+    public ShardRouter(ShardingProperties properties) {
+        this.enabled = properties.isEnabled();
+        if (enabled) {
+            List<String> names = properties.shardNames();
+            if (new HashSet<>(names).size() != names.size() || names.contains(null)) {
+                throw new IllegalStateException("Имена шардов должны быть заданы и уникальны: " + names);
+            }
+            this.shardNames = names;
+            this.ring = ShardRing.of(properties.activeShardNames(), properties.getVirtualNodes());
+        } else {
+            this.shardNames = List.of(DEFAULT_SHARD);
+        }
+    }
+
+    /**
+     * Шард, закреплённый за текущим потоком, или {@code null}.
+     */
+    public static String currentShard() {
+        Binding binding = CURRENT.get();
+        return binding != null ? binding.shard : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<String> shardNames() {
+        return shardNames;
+    }
+
+    public ShardRing ring() {
+        return ring;
+    }
+
+    public String shardOf(UUID walletId) {
+        return enabled ? ring.owner(walletId) : DEFAULT_SHARD;
+    }
+
+    /**
+     * Закрепляет шард кошелька за текущей транзакцией до её завершения, для операции записи.
+     */
+    public void bindToTransaction(UUID walletId) {
+        if (!enabled) {
+            return;
+        }
+        long position = walletId.getMostSignificantBits();
+        enter(position, true);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                exit(position);
+            }
+        });
+    }
+
+    /**
+     * Выполняет чтение на шарде кошелька.
+     */
+    public <T> T callOn(UUID walletId, Supplier<T> action) {
+        return callOn(List.of(walletId), false, action);
+    }
+
+    /**
+     * Выполняет запись, затрагивающую кошельки одного шарда.
+     */
+    public <T> T callOnWallets(Collection<UUID> walletIds, Supplier<T> action) {
+        return callOn(walletIds, true, action);
+    }
+
+    /**
+     * Выполняет служебное действие на указанном шарде без учёта в полосах.
+     */
+    public <T> T callOnShard(String shard, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        bind(shard);
+        try {
+            return action.get();
+        } finally {
+            unbind();
+        }
+    }
+
+    /**
+     * Разбивает элементы по шардам их кошельков, сохраняя порядок внутри шарда.
+     */
+    public <T> Collection<List<T>> groupByShard(List<T> items, Function<T, UUID> walletId) {
+        if (!enabled) {
+            return List.of(items);
+        }
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(ring.owner(walletId.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups.values();
+    }
+
+    /**
+     * Закрывает для записи полосы участка [from, to] и ждёт завершения операций в них.
+     */
+    public void closeForWrites(ShardRing.Segment segment, Duration timeout) throws TimeoutException {
+        closedStripes = new long[]{stripe(segment.from()), stripe(segment.to())};
+        awaitDrained(segment, timeout);
+    }
+
+    /**
+     * Переключает участок на целевой шард, открывает его полосы для записи
+     * и ждёт завершения чтений, начатых на исходном шарде.
+     */
+    public void switchOver(ShardRing.Segment segment, Duration timeout) throws TimeoutException {
+        ring = ring.assign(segment);
+        closedStripes = null;
+        awaitDrained(segment, timeout);
+    }
+
+    /**
+     * Применяет к кольцу перенос, зафиксированный до перезапуска.
+     */
+    public void restore(ShardRing.Segment segment) {
+        ring = ring.assign(segment);
+    }
+
+    public void reopen() {
+        closedStripes = null;
+    }
+
+    private <T> T callOn(Collection<UUID> walletIds, boolean write, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        List<Long> entered = new ArrayList<>(walletIds.size());
+        try {
+            for (UUID walletId : walletIds) {
+                long position = walletId.getMostSignificantBits();
+                enter(position, write);
+                entered.add(position);
+            }
+            return action.get();
+        } finally {
+            entered.forEach(this::exit);
+        }
+    }
+
+    private void enter(long position, boolean write) {
+        int stripe = stripe(position);
+        // Счётчик увеличивается до проверки закрытых полос: перебалансировка,
+        // закрывшая полосу, либо увидит эту операцию, либо операция увидит закрытие
+        inFlight.incrementAndGet(stripe);
+        try {
+            long[] closed = closedStripes;
+            if (write && closed != null && stripe >= closed[0] && stripe <= closed[1]) {
+                throw new CannotAcquireLockException("Кошелёк переносится на другой шард, повторите операцию");
+            }
+            bind(ring.owner(position));
+        } catch (RuntimeException ex) {
+            inFlight.decrementAndGet(stripe);
+            throw ex;
+        }
+    }
+
+    private void exit(long position) {
+        inFlight.decrementAndGet(stripe(position));
+        unbind();
+    }
+
+    private void awaitDrained(ShardRing.Segment segment, Duration timeout) throws TimeoutException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (int stripe = stripe(segment.from()); stripe <= stripe(segment.to()); stripe++) {
+            while (inFlight.get(stripe) > 0) {
+                if (System.nanoTime() > deadline) {
+                    throw new TimeoutException("Не дождались завершения операций в полосе " + stripe);
+                }
+                LockSupport.parkNanos(100_000);
+            }
+        }
+    }
+
+    private static int stripe(long position) {
+        return (int) (position >>> (Long.SIZE - STRIPE_BITS));
+    }
+
+    private static void bind(String shard) {
+        Binding binding = CURRENT.get();
+        if (binding == null) {
+            CURRENT.set(new Binding(shard));
+        } else if (binding.shard.equals(shard)) {
+            binding.depth++;
+        } else {
+            throw new ValidationException("Операция затрагивает кошельки на разных шардах");
+        }
+    }
+
+    private static void unbind() {
+        Binding binding = CURRENT.get();
+        if (binding != null && --binding.depth == 0) {
+            CURRENT.remove();
+        }
+    }
+
+    private static final class Binding {
+        private final String shard;
+        private int depth = 1;
+
+        private Binding(String shard) {
+            this.shard = shard;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.wallet.service;
+
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.WalletTransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Журнал операций по кошелькам. Записи пишутся в транзакции самой операции:
+ * зафиксированное изменение баланса не остаётся без строки журнала, откат убирает обе.
+ * Записи транзакции копятся до её фиксации и вставляются в wallet_transactions одним
+ * многострочным запросом перед фиксацией, поэтому журнал добавляет не больше одного
+ * обращения к базе на транзакцию. Операции разных запросов попадают в одну вставку,
+ * когда их объединяет {@link WalletOperationCombiner} или пакетный запрос.
+ * Сбой вставки откатывает операцию.
+ * <p>
+ * {@code wallet.ledger.enabled=false} отключает журнал целиком: режим только для замера его
+ * накладных расходов, без журнала баланс на момент времени и сводка операций в логе неверны.
+ */
+@Component
+public class TransactionLedger {
+    private final WalletTransactionRepository transactionRepository;
+    private final TransactionLogSummary logSummary;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public TransactionLedger(WalletTransactionRepository transactionRepository,
+                             TransactionLogSummary logSummary,
+                             ShardRouter shardRouter,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${wallet.ledger.enabled:true}") boolean enabled) {
+        this.transactionRepository = transactionRepository;
+        this.logSummary = logSummary;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+    }
+
+    public void record(UUID walletId, OperationType operationType, Money amount, Money balanceAfter) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(walletId, operationType, amount, balanceAfter, Instant.now());
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            List<Entry> entries = List.of(entry);
+            shardRouter.callOnWallets(List.of(walletId), () -> transactionTemplate.execute(status -> insert(entries)));
+            summarize(entries);
+            return;
+        }
+        PendingEntries pending = (PendingEntries) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingEntries();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.entries.add(entry);
+    }
+
+    private int insert(List<Entry> entries) {
+        return transactionRepository.insertAll(
+                entries.stream().map(Entry::walletId).toArray(UUID[]::new),
+                entries.stream().map(entry -> entry.operationType().name()).toArray(String[]::new),
+                entries.stream().map(entry -> entry.amount().toBigDecimal()).toArray(BigDecimal[]::new),
+                entries.stream().map(entry -> entry.balanceAfter().toBigDecimal()).toArray(BigDecimal[]::new),
+                entries.stream().map(Entry::createdAt).toArray(Instant[]::new));
+    }
+
+    private void summarize(List<Entry> entries) {
+        for (Entry entry : entries) {
+            logSummary.record(entry.walletId(), entry.operationType(),
+                    entry.amount().units(), entry.balanceAfter().units());
+        }
+    }
+
+    private record Entry(UUID walletId, OperationType operationType, Money amount, Money balanceAfter,
+                         Instant createdAt) {
+    }
+
+    /**
+     * Записи одной транзакции. Все кошельки транзакции лежат на одном шарде,
+     * поэтому вставка идёт через соединение самой транзакции.
+     */
+    private final class PendingEntries implements TransactionSynchronization {
+        private final List<Entry> entries = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            insert(entries);
+        }
+
+        @Override
+        public void afterCommit() {
+            summarize(entries);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResource(TransactionLedger.this);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.wallet.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сводка успешных операций вместо строки журнала на каждый запрос. Данные приходят
+ * из {@link TransactionLedger} после фиксации транзакции операции, в потоке самого запроса,
+ * и раз в интервал выводятся одной строкой итогов и строками по самым активным кошелькам.
+ * Построчный вывод операций доступен на уровне DEBUG логгера {@link WalletService}.
+ * <p>
+ * Запись не берёт блокировок: счётчики кошелька — {@link LongAdder} в единицах {@link Money},
+ * таблица кошельков — {@link ConcurrentHashMap}. Число отслеживаемых за интервал кошельков
+ * ограничено {@code wallet.logging.summary-tracked-wallets}; операции сверх него попадают
+ * только в итоговую строку. Сводка приблизительна: операция, записанная одновременно
+ * со сменой интервала, может не попасть ни в один из них.
+ */
+@Slf4j
+@Component
+public class TransactionLogSummary {
+    private final int maxWallets;
+    private final int maxTrackedWallets;
+    private volatile Interval interval = new Interval();
+
+    public TransactionLogSummary(@Value("${wallet.logging.summary-max-wallets:20}") int maxWallets,
+                                 @Value("${wallet.logging.summary-tracked-wallets:10000}") int maxTrackedWallets) {
+        this.maxWallets = maxWallets;
+        this.maxTrackedWallets = maxTrackedWallets;
+    }
+
+    public void record(UUID walletId, OperationType operationType, long amountUnits, long balanceAfterUnits) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        Interval current = interval;
+        current.operations.increment();
+        WalletActivity wallet = current.activity.get(walletId);
+        if (wallet == null) {
+            if (current.activity.size() >= maxTrackedWallets) {
+                current.untracked.increment();
+                return;
+            }
+            wallet = current.activity.computeIfAbsent(walletId, id -> new WalletActivity());
+        }
+        wallet.add(operationType, amountUnits, balanceAfterUnits);
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.logging.summary-interval-ms:10000}")
+    public void flush() {
+        Interval snapshot = interval;
+        if (snapshot.operations.sum() == 0) {
+            return;
+        }
+        interval = new Interval();
+
+        log.info("Выполнено операций: {}, кошельков: {}{}", snapshot.operations.sum(), snapshot.activity.size(),
+                snapshot.untracked.sum() > 0 ? ", операций вне отслеживаемых кошельков: " + snapshot.untracked.sum() : "");
+
+        List<Map.Entry<UUID, WalletActivity>> wallets = new ArrayList<>(snapshot.activity.entrySet());
+        wallets.sort(Comparator.comparingLong((Map.Entry<UUID, WalletActivity> entry) -> entry.getValue().operations())
+                .reversed());
+        for (Map.Entry<UUID, WalletActivity> entry : wallets.subList(0, Math.min(maxWallets, wallets.size()))) {
+            WalletActivity wallet = entry.getValue();
+            log.info("Кошелёк {}: поступлений {} на {}, списаний {} на {}. Баланс: {}", entry.getKey(),
+                    wallet.deposits.sum(), Money.ofUnits(wallet.depositedUnits.sum()),
+                    wallet.withdrawals.sum(), Money.ofUnits(wallet.withdrawnUnits.sum()),
+                    Money.ofUnits(wallet.balanceUnits));
+        }
+    }
+
+    private static final class Interval {
+        private final ConcurrentHashMap<UUID, WalletActivity> activity = new ConcurrentHashMap<>();
+        private final LongAdder operations = new LongAdder();
+        private final LongAdder untracked = new LongAdder();
+    }
+
+    private static final class WalletActivity {
+        private final LongAdder deposits = new LongAdder();
+        private final LongAdder withdrawals = new LongAdder();
+        private final LongAdder depositedUnits = new LongAdder();
+        private final LongAdder withdrawnUnits = new LongAdder();
+        // Баланс последней записанной операции; при параллельных записях — любой из них
+        private volatile long balanceUnits;
+
+        void add(OperationType operationType, long amountUnits, long balanceAfterUnits) {
+            if (operationType == OperationType.DEPOSIT
+                    || operationType == OperationType.TRANSFER && amountUnits > 0) {
+                deposits.increment();
+                depositedUnits.add(amountUnits);
+            } else {
+                withdrawals.increment();
+                withdrawnUnits.add(Math.abs(amountUnits));
+            }
+            this.balanceUnits = balanceAfterUnits;
+        }
+
+        long operations() {
+            return deposits.sum() + withdrawals.sum();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.example.wallet.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.example.wallet.model.Money;
+import org.example.wallet.repository.WalletStateView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Кэш балансов для чтения. Отсутствующий кошелёк тоже кэшируется, чтобы повторные
+ * запросы неизвестных идентификаторов не доходили до базы. Изменение баланса
+ * вытесняет запись после фиксации транзакции, поэтому чтение не возвращает
+ * значение старше последней локальной записи.
+ * <p>
+ * Загрузка из базы выполняется вне блокировок кэша: запрос внутри
+ * {@code ConcurrentHashMap.compute} закрепил бы виртуальный поток за несущим
+ * на всё время обращения к базе. Чтобы загруженное до фиксации значение не попало
+ * в кэш после вытеснения, каждое вытеснение увеличивает счётчик своей полосы,
+ * и загрузка публикуется, только если счётчик не изменился.
+ * <p>
+ * При чтении с реплик (wallet.replicas.enabled=true) вытеснение оставляет вместо
+ * значения нижнюю границу версии. Загрузка с реплики, отстающей от этой границы
+ * или от версии, переданной клиентом, повторяется на основном сервере.
+ * Вытеснение без известной версии требует чтения с основного сервера.
+ */
+@Component
+public class WalletBalanceCache {
+    public static final String CACHE_NAME = "wallet-balances";
+
+    private static final Object MISSING = new Object();
+    private static final Floor PRIMARY_ONLY = new Floor(Long.MAX_VALUE);
+    private static final int STRIPES = 1024;
+
+    private final Cache<Object, Object> cache;
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+    private final boolean replicaReads;
+
+    public WalletBalanceCache(CacheManager cacheManager,
+                              @Value("${wallet.replicas.enabled:false}") boolean replicaReads) {
+        CaffeineCache springCache = (CaffeineCache) Objects.requireNonNull(
+                cacheManager.getCache(CACHE_NAME), "Не настроен кэш " + CACHE_NAME);
+        this.cache = springCache.getNativeCache();
+        this.replicaReads = replicaReads;
+    }
+
+    /**
+     * @param minVersion  версия, не старше которой должен быть ответ, или {@code null}
+     * @param reader      чтение в транзакции только для чтения (с реплики, если они настроены)
+     * @param primaryReader чтение с основного сервера
+     * @return состояние кошелька или {@code null}, если кошелёк не существует
+     */
+    public Snapshot get(UUID walletId, Long minVersion,
+                        Supplier<Optional<WalletStateView>> reader,
+                        Supplier<Optional<WalletStateView>> primaryReader) {
+        Object cached = cache.getIfPresent(walletId);
+        if (cached == MISSING && minVersion == null) {
+            return null;
+        }
+        if (cached instanceof Snapshot snapshot && (minVersion == null || snapshot.version() >= minVersion)) {
+            return snapshot;
+        }
+
+        int stripe = stripe(walletId);
+        long generation = invalidations.get(stripe);
+        long required = Math.max(minVersion != null ? minVersion : Long.MIN_VALUE,
+                cached instanceof Floor floor ? floor.version() : Long.MIN_VALUE);
+        Object loaded = load(reader);
+        if (replicaReads && required != Long.MIN_VALUE && !reaches(loaded, required)) {
+            loaded = load(primaryReader);
+        }
+        Object result = loaded;
+        cache.asMap().compute(walletId, (id, current) ->
+                invalidations.get(stripe) == generation && replaceable(current, result) ? result : current);
+        return result == MISSING ? null : (Snapshot) result;
+    }
+
+    /**
+     * Вытесняет запись после фиксации; следующее чтение пойдёт на основной сервер.
+     */
+    public void evict(UUID walletId) {
+        evict(walletId, PRIMARY_ONLY);
+    }
+
+    /**
+     * Вытесняет запись после фиксации; следующее чтение примет реплику,
+     * уже применившую версию {@code version}.
+     */
+    public void evict(UUID walletId, long version) {
+        evict(walletId, new Floor(version));
+    }
+
+    public void evictAll() {
+        afterCommit(() -> {
+            for (int i = 0; i < STRIPES; i++) {
+                invalidations.incrementAndGet(i);
+            }
+            cache.invalidateAll();
+        });
+    }
+
+    private void evict(UUID walletId, Floor floor) {
+        afterCommit(() -> {
+            invalidations.incrementAndGet(stripe(walletId));
+            if (replicaReads) {
+                cache.asMap().merge(walletId, floor, (current, next) ->
+                        current instanceof Floor existing && existing.version() > floor.version() ? existing : floor);
+            } else {
+                cache.invalidate(walletId);
+            }
+        });
+    }
+
+    private static Object load(Supplier<Optional<WalletStateView>> reader) {
+        return reader.get().<Object>map(state -> new Snapshot(state.getBalance(), state.getVersion())).orElse(MISSING);
+    }
+
+    private static boolean reaches(Object loaded, long required) {
+        return loaded instanceof Snapshot snapshot && snapshot.version() >= required;
+    }
+
+    private static boolean replaceable(Object current, Object loaded) {
+        return current == null
+                || current instanceof Floor
+                || current instanceof Snapshot old && loaded instanceof Snapshot fresh && fresh.version() > old.version();
+    }
+
+    private static int stripe(UUID walletId) {
+        return (walletId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public record Snapshot(Money balance, long version) {
+    }
+
+    private record Floor(long version) {
+    }
+}
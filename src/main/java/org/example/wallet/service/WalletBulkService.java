@@ -0,0 +1,228 @@
+package org.example.wallet.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.BulkImportResponse;
+import org.example.wallet.dto.WalletResponse;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.util.PSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/**
+ * Потоковая загрузка и выгрузка балансов. Импорт идёт через COPY FROM STDIN
+ * во временную таблицу и переносится в wallets одним INSERT, экспорт читает
+ * таблицу серверным курсором порциями. Память не зависит от числа строк.
+ * При шардировании выгрузка проходит шарды по очереди, а импорт недоступен:
+ * COPY одного потока нельзя разложить по нескольким базам. С движком балансов импорт
+ * тоже недоступен: балансы движка читаются из wallets только при запуске.
+ */
+@Slf4j
+@Service
+public class WalletBulkService {
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+    private static final int EXPORT_FETCH_SIZE = 10_000;
+
+    private static final String CREATE_STAGING = """
+            CREATE TEMP TABLE wallet_import (id UUID, balance NUMERIC(19, 4)) ON COMMIT DROP""";
+    private static final String COPY_CSV = """
+            COPY wallet_import (id, balance) FROM STDIN (FORMAT csv, HEADER true)""";
+    private static final String COPY_ROWS = """
+            COPY wallet_import (id, balance) FROM STDIN (FORMAT csv)""";
+    private static final String MERGE_STAGING = """
+            INSERT INTO wallets (id, balance, version, created_at, updated_at)
+            SELECT id, balance, 1, NOW(), NOW()
+            FROM wallet_import
+            WHERE id IS NOT NULL AND balance >= 0
+            ON CONFLICT (id) DO NOTHING""";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectReader rowReader;
+    private final WalletBalanceCache balanceCache;
+    private final ShardRouter shardRouter;
+    private final BalanceEngine balanceEngine;
+    private final TransactionTemplate exportTransaction;
+
+    public WalletBulkService(DataSource dataSource, ObjectMapper objectMapper, WalletBalanceCache balanceCache,
+                             ShardRouter shardRouter, BalanceEngine balanceEngine,
+                             PlatformTransactionManager transactionManager) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(EXPORT_FETCH_SIZE);
+        this.rowReader = objectMapper.readerFor(WalletResponse.class);
+        this.balanceCache = balanceCache;
+        this.shardRouter = shardRouter;
+        this.balanceEngine = balanceEngine;
+        this.exportTransaction = new TransactionTemplate(transactionManager);
+        this.exportTransaction.setReadOnly(true);
+        this.exportTransaction.setTimeout(3600);
+    }
+
+    @Transactional(timeout = 3600)
+    public BulkImportResponse importCsv(InputStream csv) {
+        rejectIfSharded();
+        jdbcTemplate.execute(CREATE_STAGING);
+        long received;
+        try {
+            received = copyManager().copyIn(COPY_CSV, csv);
+        } catch (SQLException ex) {
+            throw translate(ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return mergeStaging(received);
+    }
+
+    @Transactional(timeout = 3600)
+    public BulkImportResponse importNdjson(InputStream ndjson) {
+        rejectIfSharded();
+        jdbcTemplate.execute(CREATE_STAGING);
+        long received = 0;
+        try (MappingIterator<WalletResponse> rows = rowReader.readValues(ndjson)) {
+            CopyIn copy = copyManager().copyIn(COPY_ROWS);
+            try {
+                StringBuilder chunk = new StringBuilder(COPY_CHUNK_SIZE + 128);
+                while (rows.hasNextValue()) {
+                    WalletResponse row = rows.nextValue();
+                    received++;
+                    if (row.getWalletId() == null || row.getBalance() == null) {
+                        throw new ValidationException("Строка " + received + ": укажите walletId и balance");
+                    }
+                    chunk.append(row.getWalletId()).append(',').append(row.getBalance().toPlainString()).append('\n');
+                    if (chunk.length() >= COPY_CHUNK_SIZE) {
+                        writeChunk(copy, chunk);
+                    }
+                }
+                writeChunk(copy, chunk);
+                copy.endCopy();
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        } catch (SQLException ex) {
+            throw translate(ex);
+        } catch (IOException ex) {
+            throw new ValidationException("Строка " + (received + 1) + ": неверный формат JSON");
+        }
+        return mergeStaging(received);
+    }
+
+    /**
+     * Пишет все кошельки в формате NDJSON, по одному объекту {@code {"walletId":..,"balance":..}} на строку.
+     */
+    public long exportNdjson(OutputStream out) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), COPY_CHUNK_SIZE);
+        long[] exported = {0};
+        forEachShard(() -> jdbcTemplate.query("SELECT id, balance FROM wallets", rs -> {
+            try {
+                writer.write("{\"walletId\":\"");
+                writer.write(rs.getString(1));
+                writer.write("\",\"balance\":");
+                writer.write(rs.getBigDecimal(2).toPlainString());
+                writer.write("}\n");
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            exported[0]++;
+        }));
+        flush(writer);
+        log.info("Выгружено кошельков: {}", exported[0]);
+        return exported[0];
+    }
+
+    /**
+     * Пишет все кошельки в CSV с заголовком {@code walletId,balance} через COPY TO STDOUT.
+     */
+    public long exportCsv(OutputStream out) {
+        long[] exported = {0};
+        boolean[] header = {true};
+        forEachShard(() -> {
+            String options = header[0] ? "(FORMAT csv, HEADER true)" : "(FORMAT csv)";
+            header[0] = false;
+            try {
+                exported[0] += copyManager().copyOut(
+                        "COPY (SELECT id AS \"walletId\", balance FROM wallets) TO STDOUT " + options, out);
+            } catch (SQLException ex) {
+                throw translate(ex);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        log.info("Выгружено кошельков: {}", exported[0]);
+        return exported[0];
+    }
+
+    private void forEachShard(Runnable export) {
+        for (String shard : shardRouter.shardNames()) {
+            shardRouter.callOnShard(shard, () -> exportTransaction.execute(status -> {
+                export.run();
+                return null;
+            }));
+        }
+    }
+
+    private void rejectIfSharded() {
+        if (shardRouter.isEnabled()) {
+            throw new ValidationException("Импорт недоступен при шардированном хранилище");
+        }
+        if (balanceEngine.isEnabled()) {
+            throw new ValidationException("Импорт недоступен при включённом движке балансов");
+        }
+    }
+
+    private BulkImportResponse mergeStaging(long received) {
+        int imported = jdbcTemplate.update(MERGE_STAGING);
+        balanceCache.evictAll();
+        log.info("Импорт кошельков: получено {}, создано {}", received, imported);
+        return new BulkImportResponse(received, imported, received - imported);
+    }
+
+    private CopyManager copyManager() throws SQLException {
+        return DataSourceUtils.getConnection(dataSource).unwrap(PGConnection.class).getCopyAPI();
+    }
+
+    private static void writeChunk(CopyIn copy, StringBuilder chunk) throws SQLException {
+        if (!chunk.isEmpty()) {
+            byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+            chunk.setLength(0);
+        }
+    }
+
+    private static void flush(Writer writer) {
+        try {
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static RuntimeException translate(SQLException ex) {
+        if (ex instanceof PSQLException && ex.getSQLState() != null && ex.getSQLState().startsWith("22")) {
+            return new ValidationException("Неверные данные импорта: " + ex.getMessage());
+        }
+        return new IllegalStateException("Сбой потоковой операции с кошельками", ex);
+    }
+}
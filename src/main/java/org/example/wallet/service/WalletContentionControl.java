@@ -0,0 +1,223 @@
+package org.example.wallet.service;
+
+import org.example.wallet.exceptions.ConcurrentWalletOperationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Повторы операций при конфликтах блокировок с учётом нагрузки на кошелёк.
+ * <p>
+ * Операции одного кошелька ждут своей очереди здесь, в справедливом семафоре,
+ * а не на блокировке строки в базе: ожидающий не держит соединение из пула и поток
+ * транзакции. Когда в очереди кошелька больше {@code max-in-flight-per-wallet}
+ * операций, новая сразу отклоняется {@link ConcurrentWalletOperationException}.
+ * Пауза перед повтором случайна в пределах экспоненциально растущего окна, и окно
+ * шире у кошельков с частыми конфликтами, поэтому повторы не приходят в базу разом.
+ * <p>
+ * С wallet.contention.enabled=false очереди нет и повторы идут с прежними
+ * фиксированными паузами 100 мс × 2.
+ */
+@Component
+public class WalletContentionControl {
+    /** Вес последней попытки в скользящей доле конфликтов кошелька. */
+    private static final double CONFLICT_RATE_WEIGHT = 0.2;
+    private static final Duration LEGACY_BACKOFF = Duration.ofMillis(100);
+
+    private final WalletMetrics walletMetrics;
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final int permitsPerWallet;
+    private final int maxInFlightPerWallet;
+    private final Duration queueTimeout;
+    private final ConcurrentHashMap<UUID, WalletSlot> slots = new ConcurrentHashMap<>();
+
+    public WalletContentionControl(WalletMetrics walletMetrics,
+                                   @Value("${wallet.contention.enabled:true}") boolean enabled,
+                                   @Value("${wallet.contention.max-attempts:5}") int maxAttempts,
+                                   @Value("${wallet.contention.backoff:20ms}") Duration backoff,
+                                   @Value("${wallet.contention.max-backoff:1s}") Duration maxBackoff,
+                                   @Value("${wallet.contention.permits-per-wallet:1}") int permitsPerWallet,
+                                   @Value("${wallet.contention.max-in-flight-per-wallet:256}") int maxInFlightPerWallet,
+                                   @Value("${wallet.contention.queue-timeout:3s}") Duration queueTimeout) {
+        this.walletMetrics = walletMetrics;
+        this.enabled = enabled;
+        this.maxAttempts = maxAttempts;
+        this.backoffNanos = (enabled ? backoff : LEGACY_BACKOFF).toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.permitsPerWallet = permitsPerWallet;
+        this.maxInFlightPerWallet = maxInFlightPerWallet;
+        this.queueTimeout = queueTimeout;
+        walletMetrics.registerContentionGauge(slots::size);
+    }
+
+    /**
+     * Выполняет попытку в очереди каждого из кошельков и повторяет её при конфликте.
+     * Очереди занимаются в порядке id, как и строки в базе, поэтому переводы
+     * навстречу друг другу не блокируют друг друга.
+     *
+     * @param walletIds кошельки операции; пустой набор — только повторы, без очереди
+     * @param attempt   одна попытка в отдельной транзакции
+     */
+    public <T> T execute(Collection<UUID> walletIds, Supplier<T> attempt) {
+        if (!enabled || walletIds.isEmpty()) {
+            return retry(List.of(), attempt);
+        }
+        List<WalletSlot> entered = new ArrayList<>(walletIds.size());
+        try {
+            for (UUID walletId : new TreeSet<>(walletIds)) {
+                entered.add(enter(walletId));
+            }
+            return retry(entered, attempt);
+        } finally {
+            entered.forEach(this::leave);
+        }
+    }
+
+    private <T> T retry(List<WalletSlot> queues, Supplier<T> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            RuntimeException conflict;
+            int acquired = acquire(queues);
+            try {
+                T result = attempt.get();
+                queues.forEach(slot -> slot.recordAttempt(false));
+                return result;
+            } catch (RuntimeException ex) {
+                if (!isRetryable(ex)) {
+                    throw ex;
+                }
+                conflict = ex;
+            } finally {
+                release(queues, acquired);
+            }
+
+            walletMetrics.recordFailedAttempt(conflict);
+            queues.forEach(slot -> slot.recordAttempt(true));
+            if (attemptNumber >= maxAttempts) {
+                walletMetrics.recordRetriesExhausted(conflict);
+                throw conflict;
+            }
+            pause(backoff(attemptNumber, queues));
+        }
+    }
+
+    private WalletSlot enter(UUID walletId) {
+        int[] inFlight = new int[1];
+        WalletSlot slot = slots.compute(walletId, (id, existing) -> {
+            WalletSlot target = existing != null ? existing : new WalletSlot(walletId, permitsPerWallet);
+            inFlight[0] = ++target.inFlight;
+            return target;
+        });
+        if (inFlight[0] > maxInFlightPerWallet) {
+            leave(slot);
+            walletMetrics.recordContentionRejected();
+            throw new ConcurrentWalletOperationException(
+                    "Слишком много одновременных операций по кошельку " + walletId + ", повторите позже");
+        }
+        return slot;
+    }
+
+    private void leave(WalletSlot slot) {
+        slots.computeIfPresent(slot.walletId, (id, existing) -> --existing.inFlight == 0 ? null : existing);
+    }
+
+    private int acquire(List<WalletSlot> queues) {
+        int acquired = 0;
+        try {
+            for (WalletSlot slot : queues) {
+                if (!slot.permits.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    walletMetrics.recordContentionRejected();
+                    throw new ConcurrentWalletOperationException(
+                            "Очередь операций по кошельку " + slot.walletId + " не продвинулась за " + queueTimeout);
+                }
+                acquired++;
+            }
+            return acquired;
+        } catch (InterruptedException ex) {
+            release(queues, acquired);
+            Thread.currentThread().interrupt();
+            throw new ConcurrentWalletOperationException("Ожидание очереди кошелька прервано");
+        } catch (RuntimeException ex) {
+            release(queues, acquired);
+            throw ex;
+        }
+    }
+
+    private static void release(List<WalletSlot> queues, int acquired) {
+        for (int i = 0; i < acquired; i++) {
+            queues.get(i).permits.release();
+        }
+    }
+
+    private long backoff(int attemptNumber, List<WalletSlot> queues) {
+        long window = Math.min(maxBackoffNanos, backoffNanos << Math.min(attemptNumber - 1, 20));
+        if (!enabled) {
+            return window;
+        }
+        double conflictRate = queues.stream().mapToDouble(slot -> slot.conflictRate).max().orElse(0);
+        long widened = Math.min(maxBackoffNanos, (long) (window * (1 + 3 * conflictRate)));
+        return ThreadLocalRandom.current().nextLong(widened / 2, widened + 1);
+    }
+
+    private static void pause(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentWalletOperationException("Пауза перед повтором операции прервана");
+        }
+    }
+
+    static boolean isRetryable(Throwable error) {
+        if (error instanceof PessimisticLockingFailureException
+                || error instanceof OptimisticLockingFailureException
+                || error instanceof TransientDataAccessException) {
+            return true;
+        }
+        // Нехватка соединений приходит обёрнутой в исключение начала транзакции
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Очередь кошелька живёт, пока в ней есть операции; счётчик {@code inFlight}
+     * меняется только внутри {@code compute}, доля конфликтов обновляется без
+     * синхронизации и приблизительна.
+     */
+    private static final class WalletSlot {
+        private final UUID walletId;
+        private final Semaphore permits;
+        private int inFlight;
+        private volatile double conflictRate;
+
+        private WalletSlot(UUID walletId, int permits) {
+            this.walletId = walletId;
+            this.permits = new Semaphore(permits, true);
+        }
+
+        private void recordAttempt(boolean conflict) {
+            conflictRate += CONFLICT_RATE_WEIGHT * ((conflict ? 1 : 0) - conflictRate);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package org.example.wallet.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.WalletEventMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Получатель внутри процесса: хранит последние события для переподключений
+ * и раздаёт новые подписчикам SSE и long-poll. Видит только события, пересланные
+ * этим экземпляром сервиса; при нескольких экземплярах подписчикам нужен внешний
+ * получатель.
+ * <p>
+ * Из транзакции пересылки события принимаются только после её фиксации: до удаления
+ * пачки из outbox подписчики её не видят, и повтор после отката не доставляется дважды.
+ * Под общей блокировкой события лишь раскладываются по очередям подписчиков, чтобы повтор
+ * пропущенных событий при подписке не перемешался с новыми. Отправку клиенту каждая
+ * подписка выполняет сама в отдельной задаче, поэтому медленный клиент не задерживает
+ * ни пересылку, ни других подписчиков. Подписка, очередь которой переполнилась,
+ * отключается: клиент переподключается с последним полученным номером и получает
+ * пропущенное из буфера.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.outbox.enabled", havingValue = "true")
+public class WalletEventHub implements WalletEventSink {
+    /** Наибольшая пачка, передаваемая подписчику за один вызов. */
+    private static final int MAX_DELIVERY_BATCH = 500;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<WalletEventMessage> recent;
+    private final int capacity;
+    private final int subscriberQueueCapacity;
+    private final Executor deliveryExecutor;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public WalletEventHub(@Value("${wallet.outbox.replay-buffer:10000}") int capacity,
+                          @Value("${wallet.outbox.subscriber-queue:1000}") int subscriberQueueCapacity) {
+        this(capacity, subscriberQueueCapacity, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    WalletEventHub(int capacity, int subscriberQueueCapacity, Executor deliveryExecutor) {
+        this.capacity = capacity;
+        this.recent = new ArrayDeque<>(capacity);
+        this.subscriberQueueCapacity = subscriberQueueCapacity;
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    @Override
+    public void publish(List<WalletEventMessage> events) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    distribute(events);
+                }
+            });
+            return;
+        }
+        distribute(events);
+    }
+
+    private void distribute(List<WalletEventMessage> events) {
+        lock.lock();
+        try {
+            for (WalletEventMessage event : events) {
+                if (recent.size() == capacity) {
+                    recent.pollFirst();
+                }
+                recent.addLast(event);
+            }
+            for (Subscription subscription : subscriptions) {
+                subscription.enqueue(events, subscriberQueueCapacity);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param walletId кошелёк, события которого нужны; {@code null} — все кошельки
+     * @param after    последний полученный номер: более поздние события из буфера
+     *                 доставляются первыми; {@code null} — только новые события
+     */
+    public Subscription subscribe(UUID walletId, Long after, Listener listener) {
+        Subscription subscription = new Subscription(walletId, listener);
+        lock.lock();
+        try {
+            if (after != null) {
+                List<WalletEventMessage> missed = recent.stream()
+                        .filter(event -> event.sequence() > after)
+                        .toList();
+                // Пропущенное ограничено буфером повтора и в очередь ставится целиком
+                subscription.enqueue(missed, Integer.MAX_VALUE);
+            }
+            subscriptions.add(subscription);
+            return subscription;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Вызывается в задаче доставки подписки, не более одного вызова одновременно.
+         *
+         * @return {@code false}, чтобы отписаться после этой доставки
+         */
+        boolean onEvents(List<WalletEventMessage> events);
+    }
+
+    public final class Subscription implements AutoCloseable {
+        private final UUID walletId;
+        private final Listener listener;
+        private final LinkedBlockingQueue<WalletEventMessage> queue = new LinkedBlockingQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean dropped;
+        private volatile Runnable onDropped;
+
+        private Subscription(UUID walletId, Listener listener) {
+            this.walletId = walletId;
+            this.listener = listener;
+        }
+
+        /**
+         * Действие при отключении из-за переполнения очереди, например завершение потока SSE,
+         * чтобы клиент переподключился. Выполняется в задаче доставки.
+         */
+        public void onDropped(Runnable action) {
+            this.onDropped = action;
+            if (dropped) {
+                action.run();
+            }
+        }
+
+        /**
+         * Вызывается под блокировкой хаба: события одной подписки ставятся в очередь
+         * в порядке пересылки.
+         */
+        private void enqueue(List<WalletEventMessage> events, int limit) {
+            if (closed.get()) {
+                return;
+            }
+            for (WalletEventMessage event : events) {
+                if (walletId != null && !walletId.equals(event.walletId())) {
+                    continue;
+                }
+                if (queue.size() >= limit) {
+                    drop();
+                    return;
+                }
+                queue.add(event);
+            }
+            scheduleDrain();
+        }
+
+        private void drop() {
+            log.debug("Подписчик событий отключён: очередь из {} событий переполнена", queue.size());
+            dropped = true;
+            close();
+            queue.clear();
+            try {
+                deliveryExecutor.execute(() -> {
+                    Runnable action = onDropped;
+                    if (action != null) {
+                        action.run();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                log.debug("Задача отключения подписчика не запущена: {}", ex.getMessage());
+            }
+        }
+
+        private void scheduleDrain() {
+            if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                deliveryExecutor.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                draining.set(false);
+                close();
+            }
+        }
+
+        private void drain() {
+            List<WalletEventMessage> batch = new ArrayList<>();
+            try {
+                while (!closed.get()) {
+                    batch.clear();
+                    queue.drainTo(batch, MAX_DELIVERY_BATCH);
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    if (!deliver(List.copyOf(batch))) {
+                        close();
+                        return;
+                    }
+                }
+            } finally {
+                draining.set(false);
+            }
+            // Событие, поставленное после последнего drainTo, но до сброса флага
+            if (!closed.get()) {
+                scheduleDrain();
+            }
+        }
+
+        private boolean deliver(List<WalletEventMessage> events) {
+            try {
+                return listener.onEvents(events);
+            } catch (RuntimeException ex) {
+                log.debug("Подписчик событий отключён: {}", ex.getMessage());
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.wallet.service;
+
+import org.example.wallet.repository.WalletEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Запись событий об изменении баланса в wallet_events (wallet.outbox.enabled=true).
+ * Вызывается после обновления балансов в транзакции операции: событие фиксируется
+ * вместе с изменением или не фиксируется вовсе. Публикует события {@link WalletEventRelay}.
+ */
+@Component
+public class WalletEventOutbox {
+    private final WalletEventRepository walletEventRepository;
+    private final boolean enabled;
+
+    public WalletEventOutbox(WalletEventRepository walletEventRepository,
+                             @Value("${wallet.outbox.enabled:false}") boolean enabled) {
+        this.walletEventRepository = walletEventRepository;
+        this.enabled = enabled;
+    }
+
+    public void record(UUID walletId) {
+        if (enabled) {
+            walletEventRepository.insertForWallets(new UUID[]{walletId});
+        }
+    }
+
+    public void record(Collection<UUID> walletIds) {
+        if (enabled && !walletIds.isEmpty()) {
+            walletEventRepository.insertForWallets(walletIds.toArray(UUID[]::new));
+        }
+    }
+}
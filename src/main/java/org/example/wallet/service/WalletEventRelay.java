@@ -0,0 +1,91 @@
+package org.example.wallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.WalletEventMessage;
+import org.example.wallet.model.WalletEvent;
+import org.example.wallet.repository.WalletEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая пересылка outbox: на каждом шарде забирает пачку старейших событий
+ * с FOR UPDATE SKIP LOCKED, передаёт её всем {@link WalletEventSink} и удаляет
+ * в той же транзакции. Несколько экземпляров сервиса делят события без ожидания
+ * друг друга; порядок между пачками разных экземпляров не гарантирован, поэтому
+ * потребители упорядочивают события кошелька по version.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.outbox.enabled", havingValue = "true")
+public class WalletEventRelay {
+    /** Ограничение пачек за один запуск, чтобы разбор накопившихся событий не занимал планировщик надолго. */
+    private static final int MAX_BATCHES_PER_RUN = 20;
+
+    private final WalletEventRepository walletEventRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final List<WalletEventSink> sinks;
+    private final int batchSize;
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Counter published;
+
+    public WalletEventRelay(WalletEventRepository walletEventRepository,
+                            ShardRouter shardRouter,
+                            PlatformTransactionManager transactionManager,
+                            List<WalletEventSink> sinks,
+                            MeterRegistry meterRegistry,
+                            @Value("${wallet.outbox.batch-size:500}") int batchSize) {
+        this.walletEventRepository = walletEventRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setTimeout(30);
+        this.sinks = sinks;
+        this.batchSize = batchSize;
+        this.published = Counter.builder("wallet.outbox.published")
+                .description("События об изменении баланса, переданные получателям")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.outbox.relay-interval-ms:100}")
+    public void relay() {
+        for (String shard : shardRouter.shardNames()) {
+            try {
+                for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+                    Integer relayed = shardRouter.callOnShard(shard,
+                            () -> transactionTemplate.execute(status -> relayBatch()));
+                    if (relayed == null || relayed < batchSize) {
+                        break;
+                    }
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Сбой пересылки событий шарда {}, повтор при следующем запуске", shard, ex);
+            }
+        }
+    }
+
+    private int relayBatch() {
+        List<WalletEvent> rows = walletEventRepository.lockOldest(batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<WalletEventMessage> events = rows.stream()
+                .map(row -> new WalletEventMessage(sequence.incrementAndGet(), row.getWalletId(),
+                        row.getBalance(), row.getVersion(), row.getCreatedAt()))
+                .toList();
+        for (WalletEventSink sink : sinks) {
+            sink.publish(events);
+        }
+        walletEventRepository.deleteByIds(rows.stream().map(WalletEvent::getId).toArray(Long[]::new));
+        published.increment(events.size());
+        return rows.size();
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.wallet.service;
+
+import org.example.wallet.dto.WalletEventMessage;
+
+import java.util.List;
+
+/**
+ * Получатель событий, пересылаемых из outbox. Вызывается из транзакции выборки
+ * до удаления событий: исключение оставляет пачку в wallet_events, и она будет
+ * отправлена повторно, в том числе получателям, уже принявшим её. Получатель, которому
+ * повтор не нужен, откладывает приём до фиксации, как {@link WalletEventHub}.
+ * Вызов не должен ждать внешних клиентов: транзакция держит блокировки строк outbox.
+ */
+public interface WalletEventSink {
+    void publish(List<WalletEventMessage> events);
+}
@@ -0,0 +1,174 @@
+package org.example.wallet.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.Wallet;
+import org.example.wallet.model.WalletSnapshot;
+import org.example.wallet.repository.WalletRepository;
+import org.example.wallet.repository.WalletSnapshotRepository;
+import org.example.wallet.repository.WalletTransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Баланс кошелька на момент времени и периодические снимки балансов.
+ * <p>
+ * Каждая запись журнала хранит баланс после операции, поэтому ответ — последняя
+ * операция кошелька не позже заданного момента. Поиск ограничен хвостом журнала
+ * после ближайшего снимка, а если в хвосте операций нет, ответом служит сам снимок.
+ * Снимок начинается на {@code replay-margin} раньше своего времени: операции, чья
+ * транзакция началась до снимка, а зафиксирована после, тоже попадают в хвост.
+ * <p>
+ * Источник истины для истории — журнал. Текущий баланс отвечает без него, только если
+ * и wallets.updated_at, и журнал согласны, что позже заданного момента операций не было:
+ * updated_at ставит база, а время записи журнала — приложение, и часы могут расходиться.
+ */
+@Slf4j
+@Component
+public class WalletHistoryService {
+    /** Ключ pg_try_advisory_xact_lock для снимков. */
+    private static final long SNAPSHOT_LOCK_KEY = 0x77616c6c6574L;
+
+    private final WalletRepository walletRepository;
+    private final WalletTransactionRepository transactionRepository;
+    private final WalletSnapshotRepository snapshotRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate snapshotTransaction;
+    private final boolean snapshotsEnabled;
+    private final Duration replayMargin;
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wallet-snapshots");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+
+    public WalletHistoryService(WalletRepository walletRepository,
+                                WalletTransactionRepository transactionRepository,
+                                WalletSnapshotRepository snapshotRepository,
+                                ShardRouter shardRouter,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${wallet.history.snapshots-enabled:false}") boolean snapshotsEnabled,
+                                @Value("${wallet.history.replay-margin:60s}") Duration replayMargin,
+                                @Value("${wallet.history.snapshot-timeout:30m}") Duration snapshotTimeout) {
+        this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.shardRouter = shardRouter;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.readTransaction.setTimeout(5);
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setTimeout((int) snapshotTimeout.toSeconds());
+        this.snapshotsEnabled = snapshotsEnabled;
+        this.replayMargin = replayMargin;
+    }
+
+    public WalletResponse getBalanceAt(UUID walletId, Instant at) {
+        BigDecimal balance = shardRouter.callOn(walletId,
+                () -> readTransaction.execute(status -> findBalanceAt(walletId, at)));
+        if (balance == null) {
+            throw new WalletNotFoundException("История кошелька недоступна на момент " + at + ": " + walletId);
+        }
+        return new WalletResponse(walletId, balance);
+    }
+
+    private BigDecimal findBalanceAt(UUID walletId, Instant at) {
+        Wallet wallet = walletRepository.findById(walletId)
+                .filter(found -> !found.getCreatedAt().isAfter(at))
+                .orElseThrow(() -> new WalletNotFoundException("Кошелёк не найден на момент " + at + ": " + walletId));
+        if (!wallet.getUpdatedAt().isAfter(at) && !transactionRepository.existsAfter(walletId, at)) {
+            return wallet.getBalance();
+        }
+
+        Optional<WalletSnapshot> snapshot = snapshotRepository.findLatestTakenAtOrBefore(at);
+        if (snapshot.isPresent()) {
+            Optional<BigDecimal> tail = transactionRepository.findLastBalanceBetween(
+                    walletId, snapshot.get().getTakenAt().minus(replayMargin), at);
+            if (tail.isPresent()) {
+                return tail.get();
+            }
+            Optional<BigDecimal> snapshotBalance = snapshotRepository.findBalance(walletId, snapshot.get().getId());
+            if (snapshotBalance.isPresent()) {
+                return snapshotBalance.get();
+            }
+        }
+        // Снимков до этого момента нет или кошелёк перенесён с другого шарда вместе с журналом
+        return transactionRepository.findLastBalanceBetween(walletId, Instant.EPOCH, at).orElse(null);
+    }
+
+    /**
+     * Запускает снимки в собственном потоке: снимок большой базы идёт до {@code snapshot-timeout}
+     * и не должен занимать поток планировщика, на котором работают проверка отставания реплик,
+     * истечение удержаний и отправка событий. Запуск пропускается, пока не закончился предыдущий.
+     */
+    @Scheduled(fixedDelayString = "${wallet.history.snapshot-interval-ms:3600000}",
+            initialDelayString = "${wallet.history.snapshot-interval-ms:3600000}")
+    public void scheduleSnapshots() {
+        if (!snapshotsEnabled || !snapshotRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            snapshotExecutor.execute(() -> {
+                try {
+                    takeSnapshots();
+                } finally {
+                    snapshotRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            snapshotRunning.set(false);
+        }
+    }
+
+    @PreDestroy
+    void stopSnapshots() {
+        snapshotExecutor.shutdownNow();
+    }
+
+    /**
+     * Снимает на каждом шарде кошельки, изменившиеся с их предыдущей строки в снимках.
+     * Копирование — один INSERT ... SELECT на стороне базы: таблица wallets читается
+     * потоком и не блокируется для операций.
+     */
+    public void takeSnapshots() {
+        if (!snapshotsEnabled) {
+            return;
+        }
+        for (String shard : shardRouter.shardNames()) {
+            try {
+                shardRouter.callOnShard(shard, () -> snapshotTransaction.execute(status -> takeSnapshot(shard)));
+            } catch (RuntimeException ex) {
+                log.warn("Не удалось снять балансы шарда {}, повтор при следующем запуске", shard, ex);
+            }
+        }
+    }
+
+    private Void takeSnapshot(String shard) {
+        if (!snapshotRepository.tryLock(SNAPSHOT_LOCK_KEY)) {
+            log.debug("Снимок шарда {} уже снимает другой экземпляр", shard);
+            return null;
+        }
+        long snapshotId = snapshotRepository.nextId();
+        int wallets = snapshotRepository.copyChangedBalances(snapshotId);
+        snapshotRepository.insertSnapshot(snapshotId, wallets);
+        log.info("Снимок балансов {} шарда {}: изменившихся кошельков {}", snapshotId, shard, wallets);
+        return null;
+    }
+}
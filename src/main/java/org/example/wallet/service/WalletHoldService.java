@@ -0,0 +1,313 @@
+package org.example.wallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.HoldResponse;
+import org.example.wallet.dto.WalletRequestRejection;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.HoldNotFoundException;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.AuthorizeHoldResult;
+import org.example.wallet.repository.CaptureHoldResult;
+import org.example.wallet.repository.HoldStateView;
+import org.example.wallet.repository.PendingHoldView;
+import org.example.wallet.repository.WalletHoldRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Удержания средств: authorize резервирует часть баланса, capture списывает удержанное
+ * (полностью или частично), release освобождает. Доступный остаток — баланс минус сумма
+ * удержаний (wallets.held); его проверяют удержание, списания и переводы в том же условном UPDATE.
+ * Удержание и освобождение не меняют баланс и version кошелька, списание удержания попадает
+ * в журнал операций как WITHDRAW.
+ * <p>
+ * Истечение ведёт {@link HoldExpiryWheel} в памяти: истёкшие удержания снимаются пачками
+ * по шардам, таблица удержаний периодически не просматривается. Первый тик после запуска
+ * загружает в колесо все удержания из базы. Удержания, которые колесо остановленного
+ * экземпляра уже не снимет, раз в {@code takeover-interval-ms} снимает любой работающий
+ * экземпляр: поиск просроченных больше чем на {@code takeover-grace} идёт по индексу
+ * на expires_at. Одно удержание может оказаться в колёсах нескольких экземпляров
+ * или в обоих путях: повторное снятие ничего не меняет.
+ * С включённым {@link BalanceEngine} удержания недоступны.
+ */
+@Slf4j
+@Service
+public class WalletHoldService {
+    private static final Money MIN_AMOUNT = Money.ofUnits(100);
+    /** Пачка, которую не удалось снять, повторяется через столько тиков. */
+    private static final int RETRY_TICKS = 10;
+
+    private final WalletHoldRepository holdRepository;
+    private final TransactionLedger transactionLedger;
+    private final WalletBalanceCache balanceCache;
+    private final WalletEventOutbox eventOutbox;
+    private final ShardRouter shardRouter;
+    private final WalletContentionControl contentionControl;
+    private final BalanceEngine balanceEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate expiryTransactionTemplate;
+    private final HoldExpiryWheel expiryWheel;
+    private final Duration tick;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final int expiryBatchSize;
+    private final int recoveryPageSize;
+    private final Duration takeoverGrace;
+    private final Counter expired;
+    private boolean recovered;
+
+    public WalletHoldService(WalletHoldRepository holdRepository,
+                             TransactionLedger transactionLedger,
+                             WalletBalanceCache balanceCache,
+                             WalletEventOutbox eventOutbox,
+                             ShardRouter shardRouter,
+                             WalletContentionControl contentionControl,
+                             BalanceEngine balanceEngine,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${wallet.holds.tick-ms:100}") long tickMillis,
+                             @Value("${wallet.holds.default-ttl:15m}") Duration defaultTtl,
+                             @Value("${wallet.holds.max-ttl:30d}") Duration maxTtl,
+                             @Value("${wallet.holds.expiry-batch-size:500}") int expiryBatchSize,
+                             @Value("${wallet.holds.recovery-page-size:10000}") int recoveryPageSize,
+                             @Value("${wallet.holds.takeover-grace:30s}") Duration takeoverGrace) {
+        this.holdRepository = holdRepository;
+        this.transactionLedger = transactionLedger;
+        this.balanceCache = balanceCache;
+        this.eventOutbox = eventOutbox;
+        this.shardRouter = shardRouter;
+        this.contentionControl = contentionControl;
+        this.balanceEngine = balanceEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setTimeout(5);
+        this.expiryTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.expiryTransactionTemplate.setTimeout(30);
+        this.tick = Duration.ofMillis(tickMillis);
+        this.expiryWheel = new HoldExpiryWheel(tick, System.currentTimeMillis());
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.expiryBatchSize = expiryBatchSize;
+        this.recoveryPageSize = recoveryPageSize;
+        this.takeoverGrace = takeoverGrace;
+        this.expired = Counter.builder("wallet.holds.expired")
+                .description("Удержания, снятые по истечении срока")
+                .register(meterRegistry);
+        Gauge.builder("wallet.holds.pending", expiryWheel, HoldExpiryWheel::size)
+                .description("Удержания в колесе истечения этого экземпляра")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param ttl срок удержания; {@code null} — wallet.holds.default-ttl
+     */
+    public HoldResponse authorize(UUID walletId, Money amount, Duration ttl) {
+        requireDatabaseMode();
+        requirePositive(amount);
+        Duration holdTtl = ttl != null ? ttl : defaultTtl;
+        if (holdTtl.compareTo(Duration.ofSeconds(1)) < 0 || holdTtl.compareTo(maxTtl) > 0) {
+            throw new ValidationException("Срок удержания должен быть от 1 до " + maxTtl.toSeconds() + " секунд");
+        }
+        UUID holdId = UUID.randomUUID();
+        long expiresAt = System.currentTimeMillis() + holdTtl.toMillis();
+        AuthorizeHoldResult result = contentionControl.execute(List.of(walletId),
+                () -> transactionTemplate.execute(status -> {
+                    shardRouter.bindToTransaction(walletId);
+                    return holdRepository.authorize(walletId, holdId, amount.units(), holdTtl.toMillis());
+                }));
+
+        if (result.isApplied()) {
+            expiryWheel.schedule(holdId, walletId, expiresAt);
+            log.debug("Удержано {} на кошельке {}, удержание {}. Доступно: {}",
+                    amount, walletId, holdId, result.getAvailable());
+            return new HoldResponse(holdId, walletId, amount, result.getBalance(), result.getAvailable(),
+                    Instant.ofEpochMilli(expiresAt));
+        }
+        Money available = shardRouter.callOn(walletId, () -> holdRepository.findAvailableUnits(walletId))
+                .map(Money::ofUnits)
+                .orElse(null);
+        if (available == null) {
+            log.warn("Кошелёк не найден: {}", walletId);
+            throw new WalletNotFoundException("Кошелёк не найден");
+        }
+        InsufficientFundsException exception = InsufficientFundsException.afterRejectedDebit(available, amount);
+        log.warn(exception.getMessage());
+        throw exception;
+    }
+
+    /**
+     * Списывает {@code amount} из удержания; остаток удержания освобождается.
+     */
+    public WalletResponse capture(UUID walletId, UUID holdId, Money amount) {
+        requireDatabaseMode();
+        requirePositive(amount);
+        CaptureHoldResult result = contentionControl.execute(List.of(walletId),
+                () -> transactionTemplate.execute(status -> {
+                    shardRouter.bindToTransaction(walletId);
+                    CaptureHoldResult captured = holdRepository.capture(walletId, holdId, amount.units());
+                    if (captured.isApplied()) {
+                        transactionLedger.record(walletId, OperationType.WITHDRAW, amount, captured.getBalance());
+                        eventOutbox.record(walletId);
+                        balanceCache.evict(walletId, captured.getVersion());
+                    }
+                    return captured;
+                }));
+
+        if (result.isApplied()) {
+            expiryWheel.cancel(holdId);
+            log.debug("Списано {} из удержания {} кошелька {}. Новый баланс: {}",
+                    amount, holdId, walletId, result.getBalance());
+            return new WalletResponse(walletId, result.getBalance(), result.getVersion());
+        }
+        if (result.getHoldUnits() == null) {
+            throw new HoldNotFoundException("Удержание не найдено: " + holdId);
+        }
+        throw new ValidationException("Сумма списания " + amount + " больше удержанной " + result.getHold());
+    }
+
+    public WalletResponse release(UUID walletId, UUID holdId) {
+        requireDatabaseMode();
+        HoldStateView state = contentionControl.execute(List.of(walletId),
+                () -> transactionTemplate.execute(status -> {
+                    shardRouter.bindToTransaction(walletId);
+                    return holdRepository.release(walletId, holdId).orElse(null);
+                }));
+        if (state == null) {
+            throw new HoldNotFoundException("Удержание не найдено: " + holdId);
+        }
+        expiryWheel.cancel(holdId);
+        log.debug("Освобождено удержание {} кошелька {}. Доступно: {}", holdId, walletId, state.getAvailable());
+        return new WalletResponse(walletId, state.getBalance(), state.getVersion());
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.holds.tick-ms:100}")
+    public void expireHolds() {
+        if (balanceEngine.isEnabled()) {
+            return;
+        }
+        if (!recovered) {
+            recovered = recover();
+        }
+        List<HoldExpiryWheel.Expired> due = expiryWheel.advanceTo(System.currentTimeMillis());
+        for (List<HoldExpiryWheel.Expired> shardHolds : shardRouter.groupByShard(due, HoldExpiryWheel.Expired::walletId)) {
+            for (int from = 0; from < shardHolds.size(); from += expiryBatchSize) {
+                releaseExpired(shardHolds.subList(from, Math.min(from + expiryBatchSize, shardHolds.size())));
+            }
+        }
+    }
+
+    private void releaseExpired(List<HoldExpiryWheel.Expired> batch) {
+        UUID[] holdIds = batch.stream().map(HoldExpiryWheel.Expired::holdId).toArray(UUID[]::new);
+        Set<UUID> walletIds = batch.stream().map(HoldExpiryWheel.Expired::walletId).collect(Collectors.toSet());
+        try {
+            Integer released = shardRouter.callOnWallets(walletIds,
+                    () -> expiryTransactionTemplate.execute(status -> holdRepository.releaseAll(holdIds)));
+            expired.increment(released != null ? released : 0);
+        } catch (RuntimeException ex) {
+            log.warn("Не удалось снять {} истёкших удержаний, повтор позже", batch.size(), ex);
+            long retryAt = System.currentTimeMillis() + tick.toMillis() * RETRY_TICKS;
+            batch.forEach(hold -> expiryWheel.schedule(hold.holdId(), hold.walletId(), retryAt));
+        }
+    }
+
+    /**
+     * Снимает на каждом шарде удержания, просроченные больше чем на {@code takeover-grace},
+     * пачками по expiry-batch-size. Удержания работающих экземпляров к этому времени уже
+     * сняты их колёсами, поэтому находятся только удержания остановленных.
+     */
+    @Scheduled(fixedDelayString = "${wallet.holds.takeover-interval-ms:10000}",
+            initialDelayString = "${wallet.holds.takeover-interval-ms:10000}")
+    public void takeOverOverdueHolds() {
+        if (balanceEngine.isEnabled()) {
+            return;
+        }
+        for (String shard : shardRouter.shardNames()) {
+            try {
+                int released = 0;
+                int found;
+                do {
+                    int[] page = shardRouter.callOnShard(shard,
+                            () -> expiryTransactionTemplate.execute(status -> releaseOverdue()));
+                    found = page[0];
+                    released += page[1];
+                } while (found == expiryBatchSize);
+                if (released > 0) {
+                    expired.increment(released);
+                    log.info("Сняты просроченные удержания остановленных экземпляров на шарде {}: {}", shard, released);
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Не удалось снять просроченные удержания шарда {}, повтор позже", shard, ex);
+            }
+        }
+    }
+
+    /**
+     * @return число найденных просроченных удержаний и число снятых
+     */
+    private int[] releaseOverdue() {
+        List<UUID> overdue = holdRepository.findOverdue(takeoverGrace.toMillis(), expiryBatchSize);
+        if (overdue.isEmpty()) {
+            return new int[]{0, 0};
+        }
+        return new int[]{overdue.size(), holdRepository.releaseAll(overdue.toArray(UUID[]::new))};
+    }
+
+    /**
+     * Загружает удержания всех шардов постранично по id. Срок пересчитывается из остатка
+     * по часам базы, чтобы расхождение часов сервиса и базы не сдвигало истечение.
+     *
+     * @return {@code false}, если загрузку нужно повторить на следующем тике
+     */
+    private boolean recover() {
+        int loaded = 0;
+        try {
+            for (String shard : shardRouter.shardNames()) {
+                UUID after = new UUID(0, 0);
+                List<PendingHoldView> page;
+                do {
+                    UUID from = after;
+                    page = shardRouter.callOnShard(shard, () -> holdRepository.findPendingAfter(from, recoveryPageSize));
+                    long now = System.currentTimeMillis();
+                    for (PendingHoldView hold : page) {
+                        expiryWheel.schedule(hold.getId(), hold.getWalletId(), now + hold.getRemainingMillis());
+                        after = hold.getId();
+                    }
+                    loaded += page.size();
+                } while (page.size() == recoveryPageSize);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Не удалось загрузить удержания в колесо истечения, повтор на следующем тике", ex);
+            return false;
+        }
+        log.info("Удержаний загружено в колесо истечения: {}", loaded);
+        return true;
+    }
+
+    private void requireDatabaseMode() {
+        if (balanceEngine.isEnabled()) {
+            throw new ValidationException("Удержания не поддерживаются движком балансов");
+        }
+    }
+
+    private static void requirePositive(Money amount) {
+        if (amount.isLessThan(MIN_AMOUNT)) {
+            throw new ValidationException(WalletRequestRejection.AMOUNT_NOT_POSITIVE.getMessage());
+        }
+    }
+}
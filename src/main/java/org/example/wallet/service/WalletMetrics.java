@@ -0,0 +1,145 @@
+package org.example.wallet.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.wallet.exceptions.ConcurrentWalletOperationException;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.BatchMode;
+import org.example.wallet.model.OperationType;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Метрики горячего пути кошельков. Теги ограничены перечислениями, все счётчики
+ * и таймеры создаются заранее, чтобы запись метрики не искала их в реестре.
+ * <p>
+ * Время обращений к базе даёт {@code spring.data.repository.invocations},
+ * ожидание соединения из пула — {@code hikaricp.connections.acquire},
+ * полное время запроса — {@code http.server.requests}.
+ * Неудачные попытки и операции, не выполненные после всех повторов, передаёт
+ * {@link WalletContentionControl}.
+ */
+@Component
+public class WalletMetrics {
+    public enum Outcome {
+        SUCCESS, WALLET_NOT_FOUND, INSUFFICIENT_FUNDS, LOCK_CONFLICT, ERROR;
+
+        private final String tag = name().toLowerCase();
+
+        static Outcome of(Throwable error) {
+            return error == null ? SUCCESS : of(error.getClass());
+        }
+
+        static Outcome of(Class<?> errorType) {
+            if (WalletNotFoundException.class.isAssignableFrom(errorType)) {
+                return WALLET_NOT_FOUND;
+            }
+            if (InsufficientFundsException.class.isAssignableFrom(errorType)) {
+                return INSUFFICIENT_FUNDS;
+            }
+            if (PessimisticLockingFailureException.class.isAssignableFrom(errorType)
+                    || OptimisticLockingFailureException.class.isAssignableFrom(errorType)
+                    || ConcurrentWalletOperationException.class.isAssignableFrom(errorType)) {
+                return LOCK_CONFLICT;
+            }
+            return ERROR;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Timer[][] transactionTimers;
+    private final Timer[][] batchTimers;
+    private final Timer balanceReadTimer;
+    private final Timer balanceNotFoundTimer;
+    private final Map<Class<?>, Counter> retryCounters = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Counter> exhaustedCounters = new ConcurrentHashMap<>();
+    private final Counter contentionRejected;
+
+    public WalletMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.transactionTimers = new Timer[OperationType.values().length][Outcome.values().length];
+        for (OperationType type : OperationType.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                transactionTimers[type.ordinal()][outcome.ordinal()] = Timer.builder("wallet.transactions")
+                        .description("Операция по кошельку целиком: очередь кошелька, транзакция и её фиксация"
+                                + " вместе с записью журнала операций")
+                        .tag("operation", type.name().toLowerCase())
+                        .tag("outcome", outcome.tag)
+                        .register(registry);
+            }
+        }
+        this.batchTimers = new Timer[BatchMode.values().length][2];
+        for (BatchMode mode : BatchMode.values()) {
+            for (int committed = 0; committed < 2; committed++) {
+                batchTimers[mode.ordinal()][committed] = Timer.builder("wallet.batches")
+                        .description("Выполнение пакета операций")
+                        .tag("mode", mode.name().toLowerCase())
+                        .tag("committed", Boolean.toString(committed == 1))
+                        .register(registry);
+            }
+        }
+        this.balanceReadTimer = balanceTimer(Outcome.SUCCESS);
+        this.balanceNotFoundTimer = balanceTimer(Outcome.WALLET_NOT_FOUND);
+        this.contentionRejected = Counter.builder("wallet.contention.rejected")
+                .description("Операции, отклонённые из-за переполненной очереди кошелька")
+                .register(registry);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void recordTransaction(Timer.Sample sample, OperationType type, Throwable error) {
+        sample.stop(transactionTimers[type.ordinal()][Outcome.of(error).ordinal()]);
+    }
+
+    public void recordBatch(Timer.Sample sample, BatchMode mode, boolean committed) {
+        sample.stop(batchTimers[mode.ordinal()][committed ? 1 : 0]);
+    }
+
+    public void recordBalanceRead(Timer.Sample sample, boolean found) {
+        sample.stop(found ? balanceReadTimer : balanceNotFoundTimer);
+    }
+
+    public void recordFailedAttempt(Throwable error) {
+        retryCounters.computeIfAbsent(error.getClass(), type -> retryCounter("wallet.attempts.failed", type))
+                .increment();
+    }
+
+    public void recordRetriesExhausted(Throwable error) {
+        exhaustedCounters.computeIfAbsent(error.getClass(), type -> retryCounter("wallet.retries.exhausted", type))
+                .increment();
+    }
+
+    public void recordContentionRejected() {
+        contentionRejected.increment();
+    }
+
+    public void registerContentionGauge(Supplier<Number> queuedWallets) {
+        Gauge.builder("wallet.contention.queued.wallets", queuedWallets)
+                .description("Кошельки, у которых есть операции в очереди")
+                .register(registry);
+    }
+
+    private Counter retryCounter(String name, Class<?> type) {
+        return Counter.builder(name)
+                .tag("exception", type.getSimpleName())
+                .tag("outcome", Outcome.of(type).tag)
+                .register(registry);
+    }
+
+    private Timer balanceTimer(Outcome outcome) {
+        return Timer.builder("wallet.balance.reads")
+                .description("Чтение баланса, включая обращение к кэшу")
+                .tag("outcome", outcome.tag)
+                .register(registry);
+    }
+}
@@ -0,0 +1,205 @@
+package org.example.wallet.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.WalletBalanceView;
+import org.example.wallet.repository.WalletRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Объединяет параллельные операции над одним кошельком в одну транзакцию.
+ * Поток, заставший очередь кошелька свободной, становится исполнителем:
+ * он забирает накопившиеся операции, применяет их по порядку под одной блокировкой
+ * строки и записывает итоговое изменение баланса одним UPDATE. Остальные ждут
+ * результата не дольше окна объединения и затем сами пробуют стать исполнителем.
+ * Каждый вызывающий получает свой баланс после операции или свою ошибку.
+ */
+@Slf4j
+@Component
+public class WalletOperationCombiner {
+    private final WalletRepository walletRepository;
+    private final TransactionLedger transactionLedger;
+    private final WalletBalanceCache balanceCache;
+    private final WalletEventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ConcurrentHashMap<UUID, Lane> lanes = new ConcurrentHashMap<>();
+
+    public WalletOperationCombiner(WalletRepository walletRepository,
+                                   TransactionLedger transactionLedger,
+                                   WalletBalanceCache balanceCache,
+                                   WalletEventOutbox eventOutbox,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${wallet.combining.enabled:false}") boolean enabled,
+                                   @Value("${wallet.combining.max-batch-size:256}") int maxBatchSize,
+                                   @Value("${wallet.combining.window-millis:1}") long windowMillis) {
+        this.walletRepository = walletRepository;
+        this.transactionLedger = transactionLedger;
+        this.balanceCache = balanceCache;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setTimeout(5);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public WalletResponse submit(UUID walletId, OperationType operationType, Money amount) {
+        PendingOperation operation = new PendingOperation(operationType, amount, new CompletableFuture<>());
+        Lane lane = lanes.compute(walletId, (id, existing) -> {
+            Lane target = existing != null ? existing : new Lane();
+            target.queue.add(operation);
+            return target;
+        });
+
+        while (true) {
+            if (lane.combining.compareAndSet(false, true)) {
+                try {
+                    combine(walletId, lane, operation.result());
+                } finally {
+                    lane.combining.set(false);
+                }
+                if (lane.queue.isEmpty()) {
+                    lanes.computeIfPresent(walletId, (id, existing) -> existing.isIdle() ? null : existing);
+                }
+            }
+
+            try {
+                return operation.result().get(windowMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                // Операция ещё в очереди: пробуем сами стать исполнителем
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Ожидание операции прервано", ex);
+            }
+        }
+    }
+
+    private void combine(UUID walletId, Lane lane, CompletableFuture<WalletResponse> ownResult) {
+        do {
+            List<PendingOperation> batch = new ArrayList<>();
+            PendingOperation next;
+            while (batch.size() < maxBatchSize && (next = lane.queue.poll()) != null) {
+                batch.add(next);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            applyBatch(walletId, batch);
+        } while (!ownResult.isDone());
+    }
+
+    private void applyBatch(UUID walletId, List<PendingOperation> batch) {
+        List<Object> outcomes;
+        try {
+            outcomes = transactionTemplate.execute(status -> applyInTransaction(walletId, batch));
+        } catch (RuntimeException ex) {
+            log.error("Сбой пакетной транзакции для кошелька: {}", walletId, ex);
+            batch.forEach(operation -> operation.result().completeExceptionally(ex));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            Object outcome = outcomes.get(i);
+            if (outcome instanceof WalletResponse response) {
+                batch.get(i).result().complete(response);
+            } else {
+                batch.get(i).result().completeExceptionally((RuntimeException) outcome);
+            }
+        }
+        log.debug("Применено {} операций одной транзакцией для кошелька {}", batch.size(), walletId);
+    }
+
+    private List<Object> applyInTransaction(UUID walletId, List<PendingOperation> batch) {
+        if (batch.stream().anyMatch(operation -> operation.operationType() == OperationType.DEPOSIT)) {
+            walletRepository.insertIfAbsent(walletId);
+        }
+        WalletBalanceView locked = walletRepository.lockBalanceById(walletId).orElse(null);
+        Money initialBalance = locked != null ? locked.getBalance() : null;
+        Money held = locked != null ? Money.ofUnits(locked.getHeldUnits()) : Money.ZERO;
+
+        // Успешной операции пока соответствует её баланс: версия станет известна после UPDATE
+        List<Object> outcomes = new ArrayList<>(batch.size());
+        Money balance = initialBalance;
+        int applied = 0;
+        for (PendingOperation operation : batch) {
+            if (balance == null) {
+                outcomes.add(new WalletNotFoundException("Кошелёк не найден"));
+            } else if (operation.operationType() == OperationType.DEPOSIT) {
+                balance = balance.plus(operation.amount());
+                transactionLedger.record(walletId, OperationType.DEPOSIT, operation.amount(), balance);
+                outcomes.add(balance);
+                applied++;
+            } else if (balance.minus(held).isLessThan(operation.amount())) {
+                outcomes.add(new InsufficientFundsException(balance.minus(held), operation.amount()));
+            } else {
+                balance = balance.minus(operation.amount());
+                transactionLedger.record(walletId, OperationType.WITHDRAW, operation.amount(), balance);
+                outcomes.add(balance);
+                applied++;
+            }
+        }
+
+        if (applied == 0) {
+            return outcomes;
+        }
+        long lastVersion = walletRepository.applyBalanceDelta(walletId, balance.minus(initialBalance).units(), applied)
+                .orElseThrow(() -> new IllegalStateException("Кошелёк пропал под блокировкой строки: " + walletId));
+        eventOutbox.record(walletId);
+        balanceCache.evict(walletId, lastVersion);
+
+        long version = lastVersion - applied;
+        for (int i = 0; i < outcomes.size(); i++) {
+            if (outcomes.get(i) instanceof Money operationBalance) {
+                outcomes.set(i, new WalletResponse(walletId, operationBalance, ++version));
+            }
+        }
+        return outcomes;
+    }
+
+    private record PendingOperation(OperationType operationType,
+                                    Money amount,
+                                    CompletableFuture<WalletResponse> result) {
+    }
+
+    private static final class Lane {
+        private final Queue<PendingOperation> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean combining = new AtomicBoolean();
+
+        private boolean isIdle() {
+            return queue.isEmpty() && !combining.get();
+        }
+    }
+}
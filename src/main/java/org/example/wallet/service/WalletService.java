@@ -1,48 +1,172 @@
 package org.example.wallet.service;
 
+import jakarta.validation.ValidationException;
+import org.example.wallet.dto.BatchItemResult;
+import org.example.wallet.dto.BatchTransactionRequest;
+import org.example.wallet.dto.BatchTransactionResponse;
 import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletRequestRejection;
 import org.example.wallet.dto.WalletResponse;
-import org.example.wallet.exceptions.ConcurrentWalletOperationException;
+import org.example.wallet.exceptions.IdempotencyKeyMismatchException;
 import org.example.wallet.exceptions.InsufficientFundsException;
 import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.BatchItemStatus;
+import org.example.wallet.model.BatchMode;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.TransferResult;
+import org.example.wallet.repository.WalletBalanceView;
 import org.example.wallet.repository.WalletRepository;
-import lombok.RequiredArgsConstructor;
+import org.example.wallet.repository.WithdrawResult;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.OptimisticLockingFailureException;
-import org.springframework.dao.PessimisticLockingFailureException;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
-import java.sql.SQLTransientConnectionException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class WalletService {
     private final WalletRepository walletRepository;
+    private final WalletOperationCombiner operationCombiner;
+    private final TransactionLedger transactionLedger;
+    private final IdempotencyRegistry idempotencyRegistry;
+    private final WalletBalanceCache balanceCache;
+    private final WalletEventOutbox eventOutbox;
+    private final WalletHistoryService historyService;
+    private final WalletMetrics walletMetrics;
+    private final ShardRouter shardRouter;
+    private final WalletContentionControl contentionControl;
+    private final BalanceEngine balanceEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate batchTransactionTemplate;
 
-    @Transactional(isolation = Isolation.REPEATABLE_READ, timeout = 5)
-    @Retryable(maxAttempts = 5, backoff = @Backoff(delay = 100, multiplier = 2),
-            retryFor = {
-                    OptimisticLockingFailureException.class,
-                    PessimisticLockingFailureException.class,
-                    SQLTransientConnectionException.class
-            })
+    public WalletService(WalletRepository walletRepository,
+                         WalletOperationCombiner operationCombiner,
+                         TransactionLedger transactionLedger,
+                         IdempotencyRegistry idempotencyRegistry,
+                         WalletBalanceCache balanceCache,
+                         WalletEventOutbox eventOutbox,
+                         WalletHistoryService historyService,
+                         WalletMetrics walletMetrics,
+                         ShardRouter shardRouter,
+                         WalletContentionControl contentionControl,
+                         BalanceEngine balanceEngine,
+                         PlatformTransactionManager transactionManager) {
+        this.walletRepository = walletRepository;
+        this.operationCombiner = operationCombiner;
+        this.transactionLedger = transactionLedger;
+        this.idempotencyRegistry = idempotencyRegistry;
+        this.balanceCache = balanceCache;
+        this.eventOutbox = eventOutbox;
+        this.historyService = historyService;
+        this.walletMetrics = walletMetrics;
+        this.shardRouter = shardRouter;
+        this.contentionControl = contentionControl;
+        this.balanceEngine = balanceEngine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setTimeout(5);
+        this.batchTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchTransactionTemplate.setTimeout(30);
+    }
+
+    /**
+     * Каждая попытка — отдельная транзакция; повторы при конфликтах и очередь
+     * операций кошелька ведёт {@link WalletContentionControl}. Операции, которые
+     * объединяет {@link WalletOperationCombiner}, в очередь не ставятся:
+     * объединителю нужны одновременные вызовы. С включённым {@link BalanceEngine}
+     * операция выполняется им, без транзакции базы.
+     */
     public WalletResponse processTransaction(WalletRequest request) {
-        validateRequest(request);
+        checkValid(request);
+        Timer.Sample sample = walletMetrics.start();
+        try {
+            if (balanceEngine.isEnabled()) {
+                WalletResponse response = balanceEngine.execute(request);
+                walletMetrics.recordTransaction(sample, request.getOperationType(), null);
+                return response;
+            }
+            List<UUID> queuedWallets = isCombined(request) ? List.of()
+                    : request.getOperationType() == OperationType.TRANSFER
+                    ? List.of(request.getWalletIdAsUUID(), request.getTargetWalletIdAsUUID())
+                    : List.of(request.getWalletIdAsUUID());
+            WalletResponse response = contentionControl.execute(queuedWallets,
+                    () -> transactionTemplate.execute(status -> executeTransaction(request, status)));
+            walletMetrics.recordTransaction(sample, request.getOperationType(), null);
+            return response;
+        } catch (RuntimeException ex) {
+            walletMetrics.recordTransaction(sample, request.getOperationType(), ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Страховка для вызовов мимо контроллеров: те отвечают на отклонения сами, со всеми полями.
+     */
+    private static void checkValid(WalletRequest request) {
+        List<WalletRequestRejection> rejections = request.validate();
+        if (!rejections.isEmpty()) {
+            throw new ValidationException(WalletRequestRejection.message(rejections));
+        }
+    }
+
+    private boolean isCombined(WalletRequest request) {
+        return request.getIdempotencyKey() == null
+                && operationCombiner.isEnabled()
+                && request.getOperationType() != OperationType.TRANSFER;
+    }
+
+    private WalletResponse executeTransaction(WalletRequest request, TransactionStatus status) {
         UUID walletId = request.getWalletIdAsUUID();
+        String idempotencyKey = request.getIdempotencyKey();
+        shardRouter.bindToTransaction(walletId);
+        if (request.getOperationType() == OperationType.TRANSFER) {
+            shardRouter.bindToTransaction(request.getTargetWalletIdAsUUID());
+        }
+
+        if (idempotencyKey != null) {
+            WalletResponse cached = idempotencyRegistry.findCached(request);
+            if (cached != null) {
+                return cached;
+            }
+        } else if (isCombined(request)) {
+            return operationCombiner.submit(walletId, request.getOperationType(), request.getAmount());
+        }
 
         try {
-            return switch (request.getOperationType()) {
+            WalletResponse response = switch (request.getOperationType()) {
                 case DEPOSIT -> deposit(walletId, request.getAmount());
                 case WITHDRAW -> withdraw(walletId, request.getAmount());
+                case TRANSFER -> transfer(walletId, request.getTargetWalletIdAsUUID(), request.getAmount());
             };
+            if (idempotencyKey != null) {
+                WalletResponse stored = idempotencyRegistry.register(request, response);
+                if (stored != null) {
+                    log.info("Повтор запроса с ключом {}, операция отменена", idempotencyKey);
+                    status.setRollbackOnly();
+                    return stored;
+                }
+            }
+            return response;
         } catch (WalletNotFoundException | InsufficientFundsException ex) {
+            WalletResponse stored = idempotencyKey != null ? idempotencyRegistry.findStored(request) : null;
+            if (stored != null) {
+                return stored;
+            }
+            throw ex;
+        } catch (IdempotencyKeyMismatchException ex) {
+            log.warn(ex.getMessage());
             throw ex;
         } catch (Exception ex) {
             log.error("Сбой транзакции для кошелька: {}", walletId, ex);
@@ -50,54 +174,197 @@ public class WalletService {
         }
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Выполняет пакет операций в одной транзакции за ограниченное число SQL-запросов:
+     * создание кошельков для пополнений, блокировка всех строк в порядке id
+     * (порядок исключает взаимоблокировки между пакетами) и одно обновление всех балансов.
+     */
+    public BatchTransactionResponse processBatch(BatchTransactionRequest request) {
+        if (balanceEngine.isEnabled()) {
+            throw new ValidationException("Пакетные операции не поддерживаются движком балансов");
+        }
+        request.getOperations().forEach(WalletService::checkValid);
+        Timer.Sample sample = walletMetrics.start();
+        BatchTransactionResponse response = contentionControl.execute(List.of(),
+                () -> batchTransactionTemplate.execute(status -> executeBatch(request, status)));
+        walletMetrics.recordBatch(sample, request.getMode(), response.isCommitted());
+        return response;
+    }
+
+    private BatchTransactionResponse executeBatch(BatchTransactionRequest request, TransactionStatus status) {
+        List<WalletRequest> operations = request.getOperations();
+        List<UUID> walletIds = new ArrayList<>(operations.size());
+        Set<UUID> depositWalletIds = new TreeSet<>();
+        for (WalletRequest operation : operations) {
+            if (operation.getIdempotencyKey() != null) {
+                throw new ValidationException("Ключ идемпотентности не поддерживается в пакетных операциях");
+            }
+            if (operation.getOperationType() == OperationType.TRANSFER) {
+                throw new ValidationException("Переводы не поддерживаются в пакетных операциях");
+            }
+            UUID walletId = operation.getWalletIdAsUUID();
+            walletIds.add(walletId);
+            if (operation.getOperationType() == OperationType.DEPOSIT) {
+                depositWalletIds.add(walletId);
+            }
+        }
+
+        Set<UUID> lockedWalletIds = new TreeSet<>(walletIds);
+        lockedWalletIds.forEach(shardRouter::bindToTransaction);
+        if (!depositWalletIds.isEmpty()) {
+            walletRepository.insertAllIfAbsent(depositWalletIds.toArray(UUID[]::new));
+        }
+        Map<UUID, Money> balances = new HashMap<>();
+        Map<UUID, Money> held = new HashMap<>();
+        for (WalletBalanceView wallet : walletRepository.lockBalancesByIds(lockedWalletIds.toArray(UUID[]::new))) {
+            balances.put(wallet.getId(), wallet.getBalance());
+            held.put(wallet.getId(), Money.ofUnits(wallet.getHeldUnits()));
+        }
+
+        Map<UUID, Money> changedBalances = new TreeMap<>();
+        List<BatchItemResult> results = new ArrayList<>(operations.size());
+        boolean rejected = false;
+        for (int i = 0; i < operations.size(); i++) {
+            WalletRequest operation = operations.get(i);
+            UUID walletId = walletIds.get(i);
+            Money amount = operation.getAmount();
+            Money balance = balances.get(walletId);
+
+            if (balance == null) {
+                rejected = true;
+                results.add(new BatchItemResult(walletId, BatchItemStatus.WALLET_NOT_FOUND, null, "Кошелёк не найден"));
+                continue;
+            }
+            Money available = balance.minus(held.get(walletId));
+            if (operation.getOperationType() == OperationType.WITHDRAW && available.isLessThan(amount)) {
+                rejected = true;
+                results.add(new BatchItemResult(walletId, BatchItemStatus.INSUFFICIENT_FUNDS, null,
+                        InsufficientFundsException.message(available, amount)));
+                continue;
+            }
+
+            Money newBalance = operation.getOperationType() == OperationType.DEPOSIT
+                    ? balance.plus(amount)
+                    : balance.minus(amount);
+            balances.put(walletId, newBalance);
+            changedBalances.put(walletId, newBalance);
+            transactionLedger.record(walletId, operation.getOperationType(), amount, newBalance);
+            results.add(new BatchItemResult(walletId, BatchItemStatus.APPLIED, newBalance.toBigDecimal(), null));
+        }
+
+        if (rejected && request.getMode() == BatchMode.ALL_OR_NOTHING) {
+            status.setRollbackOnly();
+            results.replaceAll(result -> result.getStatus() == BatchItemStatus.APPLIED
+                    ? new BatchItemResult(result.getWalletId(), BatchItemStatus.ROLLED_BACK, null, null)
+                    : result);
+            log.warn("Пакет из {} операций отклонён целиком", operations.size());
+            return new BatchTransactionResponse(false, results);
+        }
+
+        if (!changedBalances.isEmpty()) {
+            walletRepository.updateBalances(changedBalances.keySet().toArray(UUID[]::new),
+                    changedBalances.values().stream().map(Money::units).toArray(Long[]::new));
+            eventOutbox.record(changedBalances.keySet());
+            changedBalances.keySet().forEach(balanceCache::evict);
+        }
+        log.info("Пакет из {} операций применён, изменено кошельков: {}", operations.size(), changedBalances.size());
+        return new BatchTransactionResponse(true, results);
+    }
+
     public WalletResponse getBalance(UUID walletId) {
-        BigDecimal balance = walletRepository.findBalanceById(walletId)
-                .orElseThrow(() -> new WalletNotFoundException("Кошелёк не найден: " + walletId));
-        return new WalletResponse(walletId, balance);
+        return getBalance(walletId, null);
     }
 
-    private WalletResponse deposit(UUID walletId, BigDecimal amount) {
-        return walletRepository.depositAmount(walletId, amount)
-                .map(newBalance -> {
-                    log.info("Пополнил на {} свой кошелек {}. Новый баланс: {}",
-                            amount, walletId, newBalance);
-                    return new WalletResponse(walletId, newBalance);
+    /**
+     * @param minVersion версия из ответа на запись клиента: баланс старше неё не возвращается,
+     *                   даже если реплика ещё не догнала основной сервер
+     */
+    public WalletResponse getBalance(UUID walletId, Long minVersion) {
+        Timer.Sample sample = walletMetrics.start();
+        if (balanceEngine.isEnabled()) {
+            // Баланс движка не бывает старше подтверждённой записи
+            try {
+                WalletResponse response = balanceEngine.getBalance(walletId);
+                walletMetrics.recordBalanceRead(sample, true);
+                return response;
+            } catch (WalletNotFoundException ex) {
+                walletMetrics.recordBalanceRead(sample, false);
+                throw ex;
+            }
+        }
+        WalletBalanceCache.Snapshot snapshot = balanceCache.get(walletId, minVersion,
+                () -> shardRouter.callOn(walletId, () -> walletRepository.findStateById(walletId)),
+                () -> shardRouter.callOn(walletId, () -> walletRepository.findCurrentStateById(walletId)));
+        walletMetrics.recordBalanceRead(sample, snapshot != null);
+        if (snapshot == null) {
+            throw new WalletNotFoundException("Кошелёк не найден: " + walletId);
+        }
+        return new WalletResponse(walletId, snapshot.balance(), snapshot.version());
+    }
+
+    /**
+     * Баланс на момент {@code at} по снимкам и журналу операций; версия в ответе не передаётся.
+     */
+    public WalletResponse getBalanceAt(UUID walletId, Instant at) {
+        return historyService.getBalanceAt(walletId, at);
+    }
+
+    private WalletResponse deposit(UUID walletId, Money amount) {
+        return walletRepository.depositAmount(walletId, amount.units())
+                .map(state -> {
+                    transactionLedger.record(walletId, OperationType.DEPOSIT, amount, state.getBalance());
+                    eventOutbox.record(walletId);
+                    balanceCache.evict(walletId, state.getVersion());
+                    log.debug("Пополнил на {} свой кошелек {}. Новый баланс: {}",
+                            amount, walletId, state.getBalance());
+                    return new WalletResponse(walletId, state.getBalance(), state.getVersion());
                 })
                 .orElseThrow(() -> new IllegalStateException("Сбой операции по внесению депозита"));
     }
 
-    private WalletResponse withdraw(UUID walletId, BigDecimal amount) {
-        BigDecimal currentBalance = walletRepository.findBalanceById(walletId)
-                .orElseThrow(() -> {
-                    log.warn("Кошелёк не найден: {}", walletId);
-                    return new WalletNotFoundException("Кошелёк не найден");
-                });
+    private WalletResponse withdraw(UUID walletId, Money amount) {
+        WithdrawResult result = walletRepository.withdrawAmount(walletId, amount.units());
 
-        if (currentBalance.compareTo(amount) < 0) {
-            String errorMessage = String.format("Недостаточно средств. Текущий баланс: %.4f, запрашиваемый: %.4f",
-                    currentBalance, amount);
-            log.warn(errorMessage);
-            throw new InsufficientFundsException(errorMessage, false);
+        if (result.isApplied()) {
+            transactionLedger.record(walletId, OperationType.WITHDRAW, amount, result.getNewBalance());
+            eventOutbox.record(walletId);
+            balanceCache.evict(walletId, result.getNewVersion());
+            log.debug("Снято {} с кошелька {}. Новый баланс: {}", amount, walletId, result.getNewBalance());
+            return new WalletResponse(walletId, result.getNewBalance(), result.getNewVersion());
         }
 
-        int updated = walletRepository.withdrawAmount(walletId, amount);
-
-        if (updated > 0) {
-            BigDecimal newBalance = currentBalance.subtract(amount);
-            log.info("Снято {} с кошелька {}. Новый баланс: {}", amount, walletId, newBalance);
-            return new WalletResponse(walletId, newBalance);
+        Money available = walletRepository.findAvailableUnits(walletId).map(Money::ofUnits).orElse(null);
+        if (available == null) {
+            log.warn("Кошелёк не найден: {}", walletId);
+            throw new WalletNotFoundException("Кошелёк не найден");
         }
 
-        throw new ConcurrentWalletOperationException("Обнаружена параллельная операция");
+        InsufficientFundsException exception = InsufficientFundsException.afterRejectedDebit(available, amount);
+        log.warn(exception.getMessage());
+        throw exception;
     }
 
-    private void validateRequest(WalletRequest request) {
-        if (request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Сумма должна быть положительной");
+    private WalletResponse transfer(UUID sourceId, UUID targetId, Money amount) {
+        TransferResult result = walletRepository.transferAmount(sourceId, targetId, amount.units());
+
+        if (result.isApplied()) {
+            transactionLedger.record(sourceId, OperationType.TRANSFER, amount.negate(), result.getSourceBalance());
+            transactionLedger.record(targetId, OperationType.TRANSFER, amount, result.getTargetBalance());
+            eventOutbox.record(List.of(sourceId, targetId));
+            balanceCache.evict(sourceId, result.getSourceVersion());
+            balanceCache.evict(targetId, result.getTargetVersion());
+            log.debug("Переведено {} с кошелька {} на кошелёк {}. Новый баланс: {}",
+                    amount, sourceId, targetId, result.getSourceBalance());
+            return new WalletResponse(sourceId, result.getSourceBalance(), result.getSourceVersion());
         }
-        if (request.getWalletId() == null) {
-            throw new IllegalArgumentException("Идентификатор кошелька не должен быть пустым");
+
+        if (result.getWalletsFound() < 2) {
+            log.warn("Кошелёк не найден: {} или {}", sourceId, targetId);
+            throw new WalletNotFoundException("Кошелёк не найден");
         }
+
+        InsufficientFundsException exception = new InsufficientFundsException(result.getCurrentBalance(), amount);
+        log.warn(exception.getMessage());
+        throw exception;
     }
 }
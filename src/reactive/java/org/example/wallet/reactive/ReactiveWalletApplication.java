@@ -0,0 +1,30 @@
+package org.example.wallet.reactive;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/**
+ * Реактивный вариант API кошельков (WebFlux + R2DBC): тот же контракт /api/v1/wallets
+ * и те же SQL-запросы, что у MVC-приложения, без блокирующих потоков на запрос.
+ * Собирается профилем Maven {@code reactive}, настройки читаются из reactive.yml.
+ * <p>
+ * Классы варианта создаются только в реактивном веб-приложении, поэтому сканирование
+ * пакетов MVC-приложения их пропускает.
+ */
+@SpringBootApplication
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWalletApplication {
+    public static final String CONFIG_NAME = "spring.config.name=reactive";
+
+    public static void main(String[] args) {
+        builder().run(args);
+    }
+
+    public static SpringApplicationBuilder builder() {
+        return new SpringApplicationBuilder(ReactiveWalletApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .properties(CONFIG_NAME);
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.wallet.reactive;
+
+import jakarta.validation.Valid;
+import jakarta.validation.ValidationException;
+import lombok.RequiredArgsConstructor;
+import org.example.wallet.dto.BatchTransactionRequest;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletRequestRejection;
+import org.example.wallet.dto.WalletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Контракт {@code WalletController} на WebFlux: те же пути, тела запросов и ответов, те же коды ошибок.
+ */
+@RestController
+@RequestMapping("/api/v1/wallets")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveWalletController {
+    private final ReactiveWalletService walletService;
+
+    @PostMapping
+    public Mono<ResponseEntity<?>> processTransaction(@RequestBody WalletRequest request) {
+        List<WalletRequestRejection> rejections = request.validate();
+        if (!rejections.isEmpty()) {
+            return Mono.just(ResponseEntity.badRequest().body(WalletRequestRejection.body(rejections)));
+        }
+        return walletService.processTransaction(request)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(ValidationException.class, e -> Mono.just(badRequest(e)));
+    }
+
+    @PostMapping("/batch")
+    public Mono<ResponseEntity<?>> processBatch(@RequestBody @Valid BatchTransactionRequest request) {
+        List<WalletRequest> operations = request.getOperations();
+        Map<String, String> rejections = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            WalletRequestRejection.collect(rejections, "operations[" + i + "].", operations.get(i).validate());
+        }
+        if (!rejections.isEmpty()) {
+            return Mono.just(ResponseEntity.badRequest().body(rejections));
+        }
+        return walletService.processBatch(request)
+                .<ResponseEntity<?>>map(response -> response.isCommitted()
+                        ? ResponseEntity.ok(response)
+                        : ResponseEntity.badRequest().body(response))
+                .onErrorResume(ValidationException.class, e -> Mono.just(badRequest(e)));
+    }
+
+    /**
+     * {@code minVersion} принимается ради совместимости контракта: реактивный вариант
+     * читает с основного сервера, и версия собственной записи клиента всегда видна.
+     */
+    @GetMapping("/{walletId}")
+    public Mono<WalletResponse> getBalance(@PathVariable UUID walletId,
+                                           @RequestParam(required = false) Long minVersion) {
+        return walletService.getBalance(walletId);
+    }
+
+    private static ResponseEntity<?> badRequest(ValidationException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    }
+}
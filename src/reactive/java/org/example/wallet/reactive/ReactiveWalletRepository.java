@@ -0,0 +1,182 @@
+package org.example.wallet.reactive;
+
+import lombok.RequiredArgsConstructor;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.WalletSql;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Запросы реактивного варианта через {@link DatabaseClient}. Операции над балансами
+ * выполняют SQL из {@link WalletSql}, что и JPA-репозитории MVC-приложения.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveWalletRepository {
+    private static final String FIND_IDEMPOTENCY_KEY = """
+            SELECT balance, version, request_hash FROM idempotency_keys
+            WHERE wallet_id = :walletId AND idempotency_key = :key""";
+    /**
+     * Записи журнала пишутся в транзакции операции, как и в MVC-приложении.
+     */
+    private static final String INSERT_TRANSACTIONS = """
+            INSERT INTO wallet_transactions (id, wallet_id, operation_type, amount, balance_after, created_at)
+            SELECT nextval('wallet_transactions_seq'), t.wallet_id, t.operation_type,
+                   t.amount * 0.0001, t.balance_after * 0.0001, NOW()
+            FROM unnest(:walletIds, :operationTypes, :amounts, :balancesAfter)
+                AS t(wallet_id, operation_type, amount, balance_after)""";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<WalletState> deposit(UUID walletId, Money amount) {
+        return databaseClient.sql(WalletSql.DEPOSIT)
+                .bind("id", walletId)
+                .bind("amount", amount.units())
+                .map(row -> new WalletState(money(row.get("balanceUnits", Long.class)), row.get("version", Long.class)))
+                .one();
+    }
+
+    public Mono<WithdrawOutcome> withdraw(UUID walletId, Money amount) {
+        return databaseClient.sql(WalletSql.WITHDRAW)
+                .bind("id", walletId)
+                .bind("amount", amount.units())
+                .map(row -> new WithdrawOutcome(
+                        money(row.get("newBalanceUnits", Long.class)),
+                        row.get("newVersion", Long.class)))
+                .one();
+    }
+
+    /**
+     * @return доступный остаток или пустой результат, если кошелька нет
+     */
+    public Mono<Money> findAvailable(UUID walletId) {
+        return databaseClient.sql(WalletSql.FIND_AVAILABLE)
+                .bind("id", walletId)
+                .map(row -> money(row.get("availableUnits", Long.class)))
+                .one();
+    }
+
+    public Mono<TransferOutcome> transfer(UUID sourceId, UUID targetId, Money amount) {
+        return databaseClient.sql(WalletSql.TRANSFER)
+                .bind("sourceId", sourceId)
+                .bind("targetId", targetId)
+                .bind("amount", amount.units())
+                .map(row -> new TransferOutcome(
+                        money(row.get("sourceBalanceUnits", Long.class)),
+                        row.get("sourceVersion", Long.class),
+                        money(row.get("targetBalanceUnits", Long.class)),
+                        money(row.get("currentBalanceUnits", Long.class)),
+                        row.get("walletsFound", Long.class)))
+                .one();
+    }
+
+    public Mono<WalletState> findState(UUID walletId) {
+        return databaseClient.sql(WalletSql.FIND_STATE)
+                .bind("id", walletId)
+                .map(row -> new WalletState(money(row.get("balanceUnits", Long.class)), row.get("version", Long.class)))
+                .one();
+    }
+
+    public Mono<Long> insertAllIfAbsent(UUID[] walletIds) {
+        return databaseClient.sql(WalletSql.INSERT_ALL_IF_ABSENT)
+                .bind("ids", walletIds)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Flux<WalletBalance> lockBalances(UUID[] walletIds) {
+        return databaseClient.sql(WalletSql.LOCK_BALANCES)
+                .bind("ids", walletIds)
+                .map(row -> new WalletBalance(row.get("id", UUID.class), money(row.get("balanceUnits", Long.class)),
+                        money(row.get("heldUnits", Long.class))))
+                .all();
+    }
+
+    public Mono<Long> updateBalances(UUID[] walletIds, Long[] balanceUnits) {
+        return databaseClient.sql(WalletSql.UPDATE_BALANCES)
+                .bind("ids", walletIds)
+                .bind("balances", balanceUnits)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> recordTransactions(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return databaseClient.sql(INSERT_TRANSACTIONS)
+                .bind("walletIds", entries.stream().map(LedgerEntry::walletId).toArray(UUID[]::new))
+                .bind("operationTypes", entries.stream().map(entry -> entry.operationType().name()).toArray(String[]::new))
+                .bind("amounts", entries.stream().map(entry -> entry.amount().units()).toArray(Long[]::new))
+                .bind("balancesAfter", entries.stream().map(entry -> entry.balanceAfter().units()).toArray(Long[]::new))
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<StoredResponse> findStoredResponse(UUID walletId, String idempotencyKey) {
+        return databaseClient.sql(FIND_IDEMPOTENCY_KEY)
+                .bind("walletId", walletId)
+                .bind("key", idempotencyKey)
+                .map(row -> new StoredResponse(
+                        new WalletResponse(walletId, row.get("balance", BigDecimal.class), row.get("version", Long.class)),
+                        row.get("request_hash", String.class)))
+                .one();
+    }
+
+    public Mono<Long> insertIdempotencyKey(String idempotencyKey, String requestHash, WalletResponse response) {
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql(WalletSql.INSERT_IDEMPOTENCY_KEY)
+                .bind("walletId", response.getWalletId())
+                .bind("key", idempotencyKey)
+                .bind("balance", response.getBalance())
+                .bind("requestHash", requestHash);
+        insert = response.getVersion() != null
+                ? insert.bind("version", response.getVersion())
+                : insert.bindNull("version", Long.class);
+        return insert.fetch().rowsUpdated();
+    }
+
+    private static Money money(Long units) {
+        return units != null ? Money.ofUnits(units) : null;
+    }
+
+    public record WalletState(Money balance, Long version) {
+    }
+
+    /**
+     * @param held сумма действующих удержаний: списывать можно только {@code balance - held}
+     */
+    public record WalletBalance(UUID id, Money balance, Money held) {
+    }
+
+    public record WithdrawOutcome(Money newBalance, Long newVersion) {
+        public boolean isApplied() {
+            return newBalance != null;
+        }
+    }
+
+    public record TransferOutcome(Money sourceBalance, Long sourceVersion, Money targetBalance,
+                                  Money currentBalance, Long walletsFound) {
+        public boolean isApplied() {
+            return sourceBalance != null;
+        }
+    }
+
+    /**
+     * @param requestHash {@code null} у ключей, записанных до появления отпечатков запросов
+     */
+    public record StoredResponse(WalletResponse response, String requestHash) {
+    }
+
+    public record LedgerEntry(UUID walletId, OperationType operationType, Money amount, Money balanceAfter) {
+    }
+}
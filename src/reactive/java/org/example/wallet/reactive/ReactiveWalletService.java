@@ -0,0 +1,270 @@
+package org.example.wallet.reactive;
+
+import jakarta.validation.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.BatchItemResult;
+import org.example.wallet.dto.BatchTransactionRequest;
+import org.example.wallet.dto.BatchTransactionResponse;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.IdempotencyKeyMismatchException;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.BatchItemStatus;
+import org.example.wallet.model.BatchMode;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.reactive.ReactiveWalletRepository.LedgerEntry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransaction;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Операции реактивного варианта с той же семантикой, что у {@code WalletService}:
+ * атомарные запросы над балансом, идемпотентность по ключу, пакеты «всё или ничего».
+ * Повторы при конфликтах блокировок идут с экспоненциальной паузой через таймер
+ * Reactor и не занимают поток на время ожидания.
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWalletService {
+    private static final Retry RETRY = Retry.backoff(4, Duration.ofMillis(100))
+            .maxBackoff(Duration.ofSeconds(2))
+            .filter(ex -> ex instanceof OptimisticLockingFailureException
+                    || ex instanceof PessimisticLockingFailureException
+                    || ex instanceof TransientDataAccessException)
+            .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+
+    private final ReactiveWalletRepository walletRepository;
+    private final TransactionalOperator transactions;
+    private final TransactionalOperator batchTransactions;
+
+    public ReactiveWalletService(ReactiveWalletRepository walletRepository,
+                                 ReactiveTransactionManager transactionManager) {
+        this.walletRepository = walletRepository;
+        this.transactions = TransactionalOperator.create(transactionManager, withTimeout(5));
+        this.batchTransactions = TransactionalOperator.create(transactionManager, withTimeout(30));
+    }
+
+    public Mono<WalletResponse> processTransaction(WalletRequest request) {
+        UUID walletId = request.getWalletIdAsUUID();
+        String idempotencyKey = request.getIdempotencyKey();
+        Mono<WalletResponse> operation = Mono.defer(() -> switch (request.getOperationType()) {
+            case DEPOSIT -> deposit(walletId, request.getAmount());
+            case WITHDRAW -> withdraw(walletId, request.getAmount());
+            case TRANSFER -> transfer(walletId, request.getTargetWalletIdAsUUID(), request.getAmount());
+        });
+        if (idempotencyKey == null) {
+            return transactions.transactional(operation).retryWhen(RETRY);
+        }
+
+        String requestHash = request.fingerprint();
+        Mono<WalletResponse> stored = Mono.defer(() -> walletRepository.findStoredResponse(walletId, idempotencyKey)
+                .map(found -> {
+                    if (found.requestHash() != null && !found.requestHash().equals(requestHash)) {
+                        throw new IdempotencyKeyMismatchException(idempotencyKey);
+                    }
+                    return found.response();
+                }));
+        Mono<WalletResponse> registered = stored
+                .switchIfEmpty(operation.flatMap(response -> walletRepository
+                        .insertIdempotencyKey(idempotencyKey, requestHash, response)
+                        .flatMap(inserted -> inserted > 0
+                                ? Mono.just(response)
+                                : Mono.<WalletResponse>error(new DuplicateRequestException()))));
+        return transactions.transactional(registered)
+                .retryWhen(RETRY)
+                .onErrorResume(DuplicateRequestException.class, ex -> {
+                    log.info("Повтор запроса с ключом {}, операция отменена", idempotencyKey);
+                    return stored;
+                })
+                .onErrorResume(ex -> ex instanceof WalletNotFoundException || ex instanceof InsufficientFundsException,
+                        ex -> stored.switchIfEmpty(Mono.error(ex)));
+    }
+
+    /**
+     * Чтение всегда идёт на основной сервер, поэтому версия из ответа на запись
+     * клиента уже достигнута и {@code minVersion} не проверяется.
+     */
+    public Mono<WalletResponse> getBalance(UUID walletId) {
+        return walletRepository.findState(walletId)
+                .map(state -> new WalletResponse(walletId, state.balance(), state.version()))
+                .switchIfEmpty(Mono.error(() -> new WalletNotFoundException("Кошелёк не найден: " + walletId)));
+    }
+
+    public Mono<BatchTransactionResponse> processBatch(BatchTransactionRequest request) {
+        for (WalletRequest operation : request.getOperations()) {
+            if (operation.getIdempotencyKey() != null) {
+                return Mono.error(new ValidationException("Ключ идемпотентности не поддерживается в пакетных операциях"));
+            }
+            if (operation.getOperationType() == OperationType.TRANSFER) {
+                return Mono.error(new ValidationException("Переводы не поддерживаются в пакетных операциях"));
+            }
+        }
+        return batchTransactions.execute(status -> executeBatch(request, status))
+                .single()
+                .retryWhen(RETRY);
+    }
+
+    private Mono<BatchTransactionResponse> executeBatch(BatchTransactionRequest request, ReactiveTransaction status) {
+        List<WalletRequest> operations = request.getOperations();
+        List<UUID> walletIds = new ArrayList<>(operations.size());
+        Set<UUID> depositWalletIds = new TreeSet<>();
+        for (WalletRequest operation : operations) {
+            UUID walletId = operation.getWalletIdAsUUID();
+            walletIds.add(walletId);
+            if (operation.getOperationType() == OperationType.DEPOSIT) {
+                depositWalletIds.add(walletId);
+            }
+        }
+        UUID[] lockedWalletIds = new TreeSet<>(walletIds).toArray(UUID[]::new);
+
+        Mono<Long> created = depositWalletIds.isEmpty()
+                ? Mono.just(0L)
+                : walletRepository.insertAllIfAbsent(depositWalletIds.toArray(UUID[]::new));
+        return created
+                .thenMany(walletRepository.lockBalances(lockedWalletIds))
+                .collectMap(ReactiveWalletRepository.WalletBalance::id, Function.identity(), HashMap::new)
+                .flatMap(locked -> applyBatch(request, walletIds, locked, status));
+    }
+
+    private Mono<BatchTransactionResponse> applyBatch(BatchTransactionRequest request, List<UUID> walletIds,
+                                                      Map<UUID, ReactiveWalletRepository.WalletBalance> locked,
+                                                      ReactiveTransaction status) {
+        List<WalletRequest> operations = request.getOperations();
+        Map<UUID, Money> balances = new HashMap<>();
+        locked.forEach((walletId, wallet) -> balances.put(walletId, wallet.balance()));
+        Map<UUID, Money> changedBalances = new TreeMap<>();
+        List<LedgerEntry> ledger = new ArrayList<>(operations.size());
+        List<BatchItemResult> results = new ArrayList<>(operations.size());
+        boolean rejected = false;
+        for (int i = 0; i < operations.size(); i++) {
+            WalletRequest operation = operations.get(i);
+            UUID walletId = walletIds.get(i);
+            Money amount = operation.getAmount();
+            Money balance = balances.get(walletId);
+
+            if (balance == null) {
+                rejected = true;
+                results.add(new BatchItemResult(walletId, BatchItemStatus.WALLET_NOT_FOUND, null, "Кошелёк не найден"));
+                continue;
+            }
+            Money available = balance.minus(locked.get(walletId).held());
+            if (operation.getOperationType() == OperationType.WITHDRAW && available.isLessThan(amount)) {
+                rejected = true;
+                results.add(new BatchItemResult(walletId, BatchItemStatus.INSUFFICIENT_FUNDS, null,
+                        InsufficientFundsException.message(available, amount)));
+                continue;
+            }
+
+            Money newBalance = operation.getOperationType() == OperationType.DEPOSIT
+                    ? balance.plus(amount)
+                    : balance.minus(amount);
+            balances.put(walletId, newBalance);
+            changedBalances.put(walletId, newBalance);
+            ledger.add(new LedgerEntry(walletId, operation.getOperationType(), amount, newBalance));
+            results.add(new BatchItemResult(walletId, BatchItemStatus.APPLIED, newBalance.toBigDecimal(), null));
+        }
+
+        if (rejected && request.getMode() == BatchMode.ALL_OR_NOTHING) {
+            status.setRollbackOnly();
+            results.replaceAll(result -> result.getStatus() == BatchItemStatus.APPLIED
+                    ? new BatchItemResult(result.getWalletId(), BatchItemStatus.ROLLED_BACK, null, null)
+                    : result);
+            log.warn("Пакет из {} операций отклонён целиком", operations.size());
+            return Mono.just(new BatchTransactionResponse(false, results));
+        }
+        if (changedBalances.isEmpty()) {
+            return Mono.just(new BatchTransactionResponse(true, results));
+        }
+        return walletRepository.updateBalances(changedBalances.keySet().toArray(UUID[]::new),
+                        changedBalances.values().stream().map(Money::units).toArray(Long[]::new))
+                .then(walletRepository.recordTransactions(ledger))
+                .doOnSuccess(rows -> log.info("Пакет из {} операций применён, изменено кошельков: {}",
+                        operations.size(), changedBalances.size()))
+                .thenReturn(new BatchTransactionResponse(true, results));
+    }
+
+    private Mono<WalletResponse> deposit(UUID walletId, Money amount) {
+        return walletRepository.deposit(walletId, amount)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Сбой операции по внесению депозита")))
+                .flatMap(state -> walletRepository
+                        .recordTransactions(List.of(new LedgerEntry(walletId, OperationType.DEPOSIT, amount, state.balance())))
+                        .thenReturn(new WalletResponse(walletId, state.balance(), state.version())));
+    }
+
+    private Mono<WalletResponse> withdraw(UUID walletId, Money amount) {
+        return walletRepository.withdraw(walletId, amount).flatMap(result -> {
+            if (result.isApplied()) {
+                return walletRepository
+                        .recordTransactions(List.of(new LedgerEntry(walletId, OperationType.WITHDRAW, amount, result.newBalance())))
+                        .thenReturn(new WalletResponse(walletId, result.newBalance(), result.newVersion()));
+            }
+            return walletRepository.findAvailable(walletId)
+                    .switchIfEmpty(Mono.defer(() -> {
+                        log.warn("Кошелёк не найден: {}", walletId);
+                        return Mono.error(new WalletNotFoundException("Кошелёк не найден"));
+                    }))
+                    .flatMap(available -> {
+                        InsufficientFundsException exception =
+                                InsufficientFundsException.afterRejectedDebit(available, amount);
+                        log.warn(exception.getMessage());
+                        return Mono.<WalletResponse>error(exception);
+                    });
+        });
+    }
+
+    private Mono<WalletResponse> transfer(UUID sourceId, UUID targetId, Money amount) {
+        return walletRepository.transfer(sourceId, targetId, amount).flatMap(result -> {
+            if (result.isApplied()) {
+                return walletRepository.recordTransactions(List.of(
+                                new LedgerEntry(sourceId, OperationType.TRANSFER, amount.negate(), result.sourceBalance()),
+                                new LedgerEntry(targetId, OperationType.TRANSFER, amount, result.targetBalance())))
+                        .thenReturn(new WalletResponse(sourceId, result.sourceBalance(), result.sourceVersion()));
+            }
+            if (result.walletsFound() < 2) {
+                log.warn("Кошелёк не найден: {} или {}", sourceId, targetId);
+                return Mono.error(new WalletNotFoundException("Кошелёк не найден"));
+            }
+            InsufficientFundsException exception = new InsufficientFundsException(result.currentBalance(), amount);
+            log.warn(exception.getMessage());
+            return Mono.error(exception);
+        });
+    }
+
+    private static DefaultTransactionDefinition withTimeout(int seconds) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setTimeout(seconds);
+        return definition;
+    }
+
+    /**
+     * Ключ уже закреплён параллельным запросом: транзакция откатывается,
+     * клиент получает ответ первого выполнения.
+     */
+    private static final class DuplicateRequestException extends RuntimeException {
+        private DuplicateRequestException() {
+            super(null, null, false, false);
+        }
+    }
+}
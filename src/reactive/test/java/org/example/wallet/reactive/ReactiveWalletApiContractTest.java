@@ -0,0 +1,19 @@
+package org.example.wallet.reactive;
+
+import org.example.wallet.controller.WalletApiContractTest;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+@SpringBootTest(classes = ReactiveWalletApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.main.web-application-type=reactive", ReactiveWalletApplication.CONFIG_NAME})
+class ReactiveWalletApiContractTest extends WalletApiContractTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Override
+    protected int port() {
+        return port;
+    }
+}
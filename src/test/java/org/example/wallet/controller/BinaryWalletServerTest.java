@@ -0,0 +1,142 @@
+package org.example.wallet.controller;
+
+import org.example.wallet.dto.BinaryWalletCodec;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.service.WalletService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BinaryWalletServerTest {
+
+    private final UUID walletId = UUID.randomUUID();
+    private final UUID otherWalletId = UUID.randomUUID();
+
+    private WalletService walletService;
+    private BinaryWalletServer server;
+    private SocketChannel client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        walletService = mock(WalletService.class);
+        server = new BinaryWalletServer(walletService, "127.0.0.1", 0, 16, 4, false);
+        server.start();
+        client = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    void pipelinedRequests_answeredAsReadyAndMatchedById() throws Exception {
+        CountDownLatch balanceAnswered = new CountDownLatch(1);
+        when(walletService.processTransaction(any(WalletRequest.class))).thenAnswer(invocation -> {
+            balanceAnswered.await(5, TimeUnit.SECONDS);
+            WalletRequest request = invocation.getArgument(0);
+            assertThat(request.getWalletIdAsUUID()).isEqualTo(walletId);
+            assertThat(request.getOperationType()).isEqualTo(OperationType.DEPOSIT);
+            return new WalletResponse(walletId, Money.of("150.5"), 7L);
+        });
+        when(walletService.getBalance(otherWalletId, null)).thenReturn(new WalletResponse(otherWalletId, Money.of("3")));
+
+        send(new BinaryWalletCodec.Request(1, BinaryWalletCodec.OP_DEPOSIT, walletId, Money.of("100.5").units(), null, null),
+                new BinaryWalletCodec.Request(2, BinaryWalletCodec.OP_BALANCE, otherWalletId, -1, null, null));
+
+        BinaryWalletCodec.Response balance = receive(1).get(0);
+        balanceAnswered.countDown();
+        BinaryWalletCodec.Response deposit = receive(1).get(0);
+
+        assertThat(balance.requestId()).isEqualTo(2);
+        assertThat(balance.balance()).isEqualTo(Money.of("3"));
+        assertThat(balance.version()).isEqualTo(-1);
+        assertThat(deposit.requestId()).isEqualTo(1);
+        assertThat(deposit.status()).isEqualTo(BinaryWalletCodec.STATUS_OK);
+        assertThat(deposit.balance()).isEqualTo(Money.of("150.5"));
+        assertThat(deposit.version()).isEqualTo(7);
+    }
+
+    @Test
+    void rejectedAndFailedOperations_returnStatusWithMessage() throws Exception {
+        when(walletService.processTransaction(argThat(request -> request.getOperationType() == OperationType.WITHDRAW)))
+                .thenThrow(new InsufficientFundsException(Money.of("1"), Money.of("5")));
+
+        send(new BinaryWalletCodec.Request(10, BinaryWalletCodec.OP_DEPOSIT, walletId, 0, null, null),
+                new BinaryWalletCodec.Request(11, BinaryWalletCodec.OP_TRANSFER, walletId, 10_000, walletId, null),
+                new BinaryWalletCodec.Request(12, BinaryWalletCodec.OP_WITHDRAW, walletId, 50_000, null, "key-12"));
+
+        List<BinaryWalletCodec.Response> responses = receive(3);
+        responses.sort((a, b) -> Long.compare(a.requestId(), b.requestId()));
+
+        assertThat(responses).extracting(BinaryWalletCodec.Response::status).containsExactly(
+                BinaryWalletCodec.STATUS_BAD_REQUEST,
+                BinaryWalletCodec.STATUS_BAD_REQUEST,
+                BinaryWalletCodec.STATUS_INSUFFICIENT_FUNDS);
+        assertThat(responses.get(0).message()).isEqualTo("Сумма должна быть положительным числом");
+        assertThat(responses.get(1).message()).isEqualTo("Кошелёк получателя должен отличаться от кошелька отправителя");
+        verify(walletService, never()).processTransaction(argThat(request ->
+                request.getOperationType() != OperationType.WITHDRAW));
+    }
+
+    @Test
+    void malformedFrame_closesConnection() throws Exception {
+        client.write(ByteBuffer.allocate(8).putInt(BinaryWalletCodec.MAX_FRAME_LENGTH + 1).putInt(0).flip());
+
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        assertThat(client.read(buffer)).isEqualTo(-1);
+    }
+
+    private void send(BinaryWalletCodec.Request... requests) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(BinaryWalletCodec.MAX_FRAME_LENGTH * requests.length);
+        for (BinaryWalletCodec.Request request : requests) {
+            BinaryWalletCodec.encodeRequest(out, request);
+        }
+        out.flip();
+        while (out.hasRemaining()) {
+            client.write(out);
+        }
+    }
+
+    private List<BinaryWalletCodec.Response> receive(int count) throws IOException {
+        List<BinaryWalletCodec.Response> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ByteBuffer length = readFully(Integer.BYTES);
+            responses.add(BinaryWalletCodec.decodeResponse(readFully(length.getInt())));
+        }
+        return responses;
+    }
+
+    private ByteBuffer readFully(int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                throw new IOException("Соединение закрыто");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.wallet.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MvcWalletApiContractTest extends WalletApiContractTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Override
+    protected int port() {
+        return port;
+    }
+}
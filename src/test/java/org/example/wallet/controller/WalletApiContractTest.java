@@ -0,0 +1,215 @@
+package org.example.wallet.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Поведение API /api/v1/wallets через HTTP, общее для MVC-приложения и реактивного варианта:
+ * наследники поднимают сервер на случайном порту и возвращают его из {@link #port()}.
+ */
+public abstract class WalletApiContractTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    protected abstract int port();
+
+    @Test
+    void deposit_thenGetBalance_returnsBalanceAndVersion() throws Exception {
+        UUID walletId = UUID.randomUUID();
+
+        Reply deposit = post("", operation(walletId, "DEPOSIT", "100", null, null));
+        Reply balance = get(walletId.toString());
+
+        assertThat(deposit.status()).isEqualTo(200);
+        assertThat(deposit.body().get("balance").decimalValue()).isEqualByComparingTo("100");
+        assertThat(balance.status()).isEqualTo(200);
+        assertThat(balance.body().get("walletId").asText()).isEqualTo(walletId.toString());
+        assertThat(balance.body().get("balance").decimalValue()).isEqualByComparingTo("100");
+        assertThat(balance.body().get("version").asLong()).isEqualTo(deposit.body().get("version").asLong());
+    }
+
+    @Test
+    void withdraw_insufficientFunds_returnsBadRequestWithError() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        post("", operation(walletId, "DEPOSIT", "10", null, null));
+
+        Reply reply = post("", operation(walletId, "WITHDRAW", "20", null, null));
+
+        assertThat(reply.status()).isEqualTo(400);
+        assertThat(reply.body().get("error").asText()).startsWith("Недостаточно средств");
+        assertThat(get(walletId.toString()).body().get("balance").decimalValue()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void withdraw_unknownWallet_returnsNotFound() throws Exception {
+        Reply reply = post("", operation(UUID.randomUUID(), "WITHDRAW", "1", null, null));
+
+        assertThat(reply.status()).isEqualTo(404);
+        assertThat(reply.body().has("message")).isTrue();
+    }
+
+    @Test
+    void getBalance_unknownWallet_returnsNotFound() throws Exception {
+        assertThat(get(UUID.randomUUID().toString()).status()).isEqualTo(404);
+    }
+
+    @Test
+    void getBalance_invalidUuid_returnsBadRequest() throws Exception {
+        Reply reply = get("invalid-uuid");
+
+        assertThat(reply.status()).isEqualTo(400);
+        assertThat(reply.body().get("message").asText()).isEqualTo("Неверный формат UUID");
+    }
+
+    @Test
+    void processTransaction_missingAmount_returnsFieldError() throws Exception {
+        Reply reply = post("", """
+                {"walletId": "%s", "operationType": "DEPOSIT"}""".formatted(UUID.randomUUID()));
+
+        assertThat(reply.status()).isEqualTo(400);
+        assertThat(reply.body().get("amount").asText()).isEqualTo("Сумма операции обязательна");
+    }
+
+    @Test
+    void transfer_withRepeatedIdempotencyKey_appliesOnce() throws Exception {
+        UUID source = UUID.randomUUID();
+        UUID target = UUID.randomUUID();
+        post("", operation(source, "DEPOSIT", "100", null, null));
+        post("", operation(target, "DEPOSIT", "1", null, null));
+        String key = UUID.randomUUID().toString();
+
+        Reply first = post("", operation(source, "TRANSFER", "30", target, key));
+        Reply repeat = post("", operation(source, "TRANSFER", "30", target, key));
+
+        assertThat(first.status()).isEqualTo(200);
+        assertThat(repeat.status()).isEqualTo(200);
+        assertThat(repeat.body().get("balance").decimalValue()).isEqualByComparingTo("70");
+        assertThat(get(source.toString()).body().get("balance").decimalValue()).isEqualByComparingTo("70");
+        assertThat(get(target.toString()).body().get("balance").decimalValue()).isEqualByComparingTo("31");
+    }
+
+    @Test
+    void deposit_withRepeatedIdempotencyKey_replaysOriginalResponse() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        String key = UUID.randomUUID().toString();
+
+        Reply first = post("", operation(walletId, "DEPOSIT", "100", null, key));
+        post("", operation(walletId, "DEPOSIT", "5", null, null));
+        Reply repeat = post("", operation(walletId, "DEPOSIT", "100", null, key));
+
+        assertThat(repeat.status()).isEqualTo(200);
+        assertThat(repeat.body()).isEqualTo(first.body());
+        assertThat(repeat.body().get("version").asLong()).isEqualTo(first.body().get("version").asLong());
+        assertThat(get(walletId.toString()).body().get("balance").decimalValue()).isEqualByComparingTo("105");
+    }
+
+    @Test
+    void idempotencyKey_reusedWithAnotherOperation_returnsUnprocessableEntity() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        String key = UUID.randomUUID().toString();
+        post("", operation(walletId, "DEPOSIT", "100", null, key));
+
+        Reply otherAmount = post("", operation(walletId, "DEPOSIT", "50", null, key));
+        Reply otherType = post("", operation(walletId, "WITHDRAW", "100", null, key));
+
+        assertThat(otherAmount.status()).isEqualTo(422);
+        assertThat(otherAmount.body().has("message")).isTrue();
+        assertThat(otherType.status()).isEqualTo(422);
+        assertThat(get(walletId.toString()).body().get("balance").decimalValue()).isEqualByComparingTo("100");
+    }
+
+    @Test
+    void idempotencyKey_reusedOnAnotherWallet_appliesSeparately() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        String key = UUID.randomUUID().toString();
+
+        post("", operation(first, "DEPOSIT", "100", null, key));
+        Reply reply = post("", operation(second, "DEPOSIT", "100", null, key));
+
+        assertThat(reply.status()).isEqualTo(200);
+        assertThat(reply.body().get("walletId").asText()).isEqualTo(second.toString());
+        assertThat(get(first.toString()).body().get("balance").decimalValue()).isEqualByComparingTo("100");
+        assertThat(get(second.toString()).body().get("balance").decimalValue()).isEqualByComparingTo("100");
+    }
+
+    @Test
+    void batch_allOrNothingWithRejectedItem_rollsBackEverything() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        post("", operation(walletId, "DEPOSIT", "5", null, null));
+
+        Reply reply = post("/batch", """
+                {"mode": "ALL_OR_NOTHING", "operations": [%s, %s]}"""
+                .formatted(operation(walletId, "DEPOSIT", "10", null, null),
+                        operation(walletId, "WITHDRAW", "100", null, null)));
+
+        assertThat(reply.status()).isEqualTo(400);
+        assertThat(reply.body().get("committed").asBoolean()).isFalse();
+        assertThat(reply.body().get("results").get(0).get("status").asText()).isEqualTo("ROLLED_BACK");
+        assertThat(reply.body().get("results").get(1).get("status").asText()).isEqualTo("INSUFFICIENT_FUNDS");
+        assertThat(get(walletId.toString()).body().get("balance").decimalValue()).isEqualByComparingTo("5");
+    }
+
+    @Test
+    void batch_bestEffort_appliesValidItems() throws Exception {
+        UUID walletId = UUID.randomUUID();
+
+        Reply reply = post("/batch", """
+                {"mode": "BEST_EFFORT", "operations": [%s, %s]}"""
+                .formatted(operation(walletId, "DEPOSIT", "10", null, null),
+                        operation(UUID.randomUUID(), "WITHDRAW", "1", null, null)));
+
+        assertThat(reply.status()).isEqualTo(200);
+        assertThat(reply.body().get("results").get(0).get("status").asText()).isEqualTo("APPLIED");
+        assertThat(reply.body().get("results").get(1).get("status").asText()).isEqualTo("WALLET_NOT_FOUND");
+        assertThat(get(walletId.toString()).body().get("balance").decimalValue()).isEqualByComparingTo("10");
+    }
+
+    private Reply get(String path) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri("/" + path)).GET().build());
+    }
+
+    private Reply post(String path, String json) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build());
+    }
+
+    private Reply send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return new Reply(response.statusCode(), MAPPER.readTree(response.body()));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port() + "/api/v1/wallets" + path);
+    }
+
+    private static String operation(UUID walletId, String type, String amount, UUID target, String idempotencyKey) {
+        StringBuilder json = new StringBuilder()
+                .append("{\"walletId\":\"").append(walletId)
+                .append("\",\"operationType\":\"").append(type)
+                .append("\",\"amount\":").append(amount);
+        if (target != null) {
+            json.append(",\"targetWalletId\":\"").append(target).append('"');
+        }
+        if (idempotencyKey != null) {
+            json.append(",\"idempotencyKey\":\"").append(idempotencyKey).append('"');
+        }
+        return json.append('}').toString();
+    }
+
+    private record Reply(int status, JsonNode body) {
+    }
+}
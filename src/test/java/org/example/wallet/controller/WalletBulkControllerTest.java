@@ -0,0 +1,79 @@
+package org.example.wallet.controller;
+
+import jakarta.validation.ValidationException;
+import org.example.wallet.dto.BulkImportResponse;
+import org.example.wallet.service.WalletBulkService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(WalletBulkController.class)
+class WalletBulkControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private WalletBulkService walletBulkService;
+
+    @Test
+    void importNdjson_returnsCounts() throws Exception {
+        given(walletBulkService.importNdjson(any(InputStream.class)))
+                .willReturn(new BulkImportResponse(2, 1, 1));
+
+        mockMvc.perform(post("/api/v1/wallets/import")
+                        .contentType(WalletBulkController.NDJSON)
+                        .content("""
+                                {"walletId":"550e8400-e29b-41d4-a716-446655440000","balance":10}
+                                {"walletId":"550e8400-e29b-41d4-a716-446655440000","balance":20}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.skipped").value(1));
+    }
+
+    @Test
+    void importCsv_invalidData_returnsBadRequest() throws Exception {
+        given(walletBulkService.importCsv(any(InputStream.class)))
+                .willThrow(new ValidationException("Неверные данные импорта"));
+
+        mockMvc.perform(post("/api/v1/wallets/import")
+                        .contentType(WalletBulkController.CSV)
+                        .content("walletId,balance\nnot-a-uuid,1\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Неверные данные импорта"));
+    }
+
+    @Test
+    void exportNdjson_streamsServiceOutput() throws Exception {
+        String line = "{\"walletId\":\"550e8400-e29b-41d4-a716-446655440000\",\"balance\":10.0000}\n";
+        given(walletBulkService.exportNdjson(any(OutputStream.class))).willAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write(line.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/v1/wallets/export").accept(WalletBulkController.NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WalletBulkController.NDJSON))
+                .andExpect(content().string(line));
+    }
+}
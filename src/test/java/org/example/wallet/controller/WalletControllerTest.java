@@ -1,8 +1,12 @@
 package org.example.wallet.controller;
 
+import org.example.wallet.dto.BatchItemResult;
+import org.example.wallet.dto.BatchTransactionRequest;
+import org.example.wallet.dto.BatchTransactionResponse;
 import org.example.wallet.dto.WalletRequest;
 import org.example.wallet.dto.WalletResponse;
 import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.BatchItemStatus;
 import org.example.wallet.model.OperationType;
 import org.example.wallet.service.WalletService;
 import org.junit.jupiter.api.Test;
@@ -14,8 +18,11 @@ import org.springframework.test.web.servlet.MockMvc;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.when;
@@ -109,6 +116,36 @@ class WalletControllerTest {
                 .andExpect(jsonPath("$.operationType").exists());
     }
 
+    @Test
+    void processTransaction_TooLongIdempotencyKey_ReturnsBadRequest() throws Exception {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(testWalletId.toString());
+        request.setOperationType(OperationType.DEPOSIT);
+        request.setAmount(testAmount);
+        request.setIdempotencyKey("k".repeat(65));
+
+        mockMvc.perform(post("/api/v1/wallets")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.idempotencyKey").exists());
+    }
+
+    @Test
+    void processTransaction_TransferToSameWallet_ReturnsBadRequest() throws Exception {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(testWalletId.toString());
+        request.setOperationType(OperationType.TRANSFER);
+        request.setAmount(testAmount);
+        request.setTargetWalletId(testWalletId.toString());
+
+        mockMvc.perform(post("/api/v1/wallets")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.targetWalletId").exists());
+    }
+
     @Test
     void processTransaction_WithdrawFromNonExistingWallet_ReturnsNotFound() throws Exception {
         WalletRequest request = new WalletRequest();
@@ -143,10 +180,67 @@ class WalletControllerTest {
                 .andExpect(jsonPath("$.message").value("Неверный формат суммы. Укажите числовое значение"));
     }
 
+    @Test
+    void processBatch_allApplied_returnsOkWithItemResults() throws Exception {
+        BatchTransactionResponse response = new BatchTransactionResponse(true, List.of(
+                new BatchItemResult(testWalletId, BatchItemStatus.APPLIED, testAmount, null)));
+        given(walletService.processBatch(any(BatchTransactionRequest.class))).willReturn(response);
+
+        mockMvc.perform(post("/api/v1/wallets/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                        {
+                            "mode": "BEST_EFFORT",
+                            "operations": [
+                                {"walletId": "%s", "operationType": "DEPOSIT", "amount": 2000}
+                            ]
+                        }
+                        """.formatted(testWalletId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed").value(true))
+                .andExpect(jsonPath("$.results[0].status").value("APPLIED"))
+                .andExpect(jsonPath("$.results[0].balance").value(2000));
+    }
+
+    @Test
+    void processBatch_rolledBack_returnsBadRequest() throws Exception {
+        BatchTransactionResponse response = new BatchTransactionResponse(false, List.of(
+                new BatchItemResult(testWalletId, BatchItemStatus.INSUFFICIENT_FUNDS, null, "Недостаточно средств")));
+        given(walletService.processBatch(any(BatchTransactionRequest.class))).willReturn(response);
+
+        mockMvc.perform(post("/api/v1/wallets/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                        {
+                            "operations": [
+                                {"walletId": "%s", "operationType": "WITHDRAW", "amount": 2000}
+                            ]
+                        }
+                        """.formatted(testWalletId)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.committed").value(false))
+                .andExpect(jsonPath("$.results[0].status").value("INSUFFICIENT_FUNDS"));
+    }
+
+    @Test
+    void processBatch_invalidItem_returnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/v1/wallets/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                        {
+                            "operations": [
+                                {"walletId": "invalid-uuid", "operationType": "DEPOSIT", "amount": 10}
+                            ]
+                        }
+                        """))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$['operations[0].walletId']").value("Неверный формат UUID"));
+    }
+
     @Test
     void getBalance_existingWallet_returnsOkWithBalance() throws Exception {
         WalletResponse response = new WalletResponse(testWalletId, testAmount);
-        when(walletService.getBalance(testWalletId)).thenReturn(response);
+        when(walletService.getBalance(testWalletId, null)).thenReturn(response);
 
         mockMvc.perform(get("/api/v1/wallets/{walletId}", testWalletId))
                 .andExpect(status().isOk())
@@ -154,9 +248,37 @@ class WalletControllerTest {
                 .andExpect(jsonPath("$.balance").value(2000.00));
     }
 
+    @Test
+    void getBalance_withMinVersion_passesVersionToService() throws Exception {
+        WalletResponse response = new WalletResponse(testWalletId, testAmount, 7L);
+        when(walletService.getBalance(testWalletId, 7L)).thenReturn(response);
+
+        mockMvc.perform(get("/api/v1/wallets/{walletId}", testWalletId).param("minVersion", "7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(7));
+    }
+
+    @Test
+    void getBalance_withAt_returnsHistoricalBalance() throws Exception {
+        Instant at = Instant.parse("2026-01-01T00:00:00Z");
+        when(walletService.getBalanceAt(testWalletId, at)).thenReturn(new WalletResponse(testWalletId, testAmount));
+
+        mockMvc.perform(get("/api/v1/wallets/{walletId}", testWalletId).param("at", "2026-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(2000.00))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    void getBalance_invalidAt_returnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/wallets/{walletId}", testWalletId).param("at", "yesterday"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(startsWith("Неверный формат времени")));
+    }
+
     @Test
     void getBalance_nonExistingWallet_returnsNotFound() throws Exception {
-        when(walletService.getBalance(testWalletId))
+        when(walletService.getBalance(testWalletId, null))
                 .thenThrow(new WalletNotFoundException("Счёт не найден"));
 
         mockMvc.perform(get("/api/v1/wallets/{walletId}", testWalletId))
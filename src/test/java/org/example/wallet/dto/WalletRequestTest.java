@@ -0,0 +1,79 @@
+package org.example.wallet.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WalletRequestTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void parseVersion4Uuid_matchesCanonicalLowerCaseFormatOnly() {
+        UUID walletId = UUID.randomUUID();
+
+        assertThat(WalletRequest.parseVersion4Uuid(walletId.toString())).isEqualTo(walletId);
+        assertThat(WalletRequest.parseVersion4Uuid(walletId.toString().toUpperCase())).isNull();
+        assertThat(WalletRequest.parseVersion4Uuid("3f2504e0-4f89-11d3-9a0c-0305e82c3301")).isNull();
+        assertThat(WalletRequest.parseVersion4Uuid("3f2504e0-4f89-41d3-7a0c-0305e82c3301")).isNull();
+        assertThat(WalletRequest.parseVersion4Uuid("3f2504e0-4f89-41d3-9a0c-0305e82c330")).isNull();
+        assertThat(WalletRequest.parseVersion4Uuid("3f2504e0x4f89-41d3-9a0c-0305e82c3301")).isNull();
+    }
+
+    @Test
+    void deserialize_readsFieldsOnceAndSkipsUnknown() throws Exception {
+        UUID walletId = UUID.randomUUID();
+
+        WalletRequest request = objectMapper.readValue("""
+                {"walletId":"%s","extra":{"a":[1]},"operationType":"WITHDRAW","amount":"10.50"}"""
+                .formatted(walletId), WalletRequest.class);
+
+        assertThat(request.validate()).isEmpty();
+        assertThat(request.getWalletIdAsUUID()).isEqualTo(walletId);
+        assertThat(request.getOperationType()).isEqualTo(OperationType.WITHDRAW);
+        assertThat(request.getAmount()).isEqualTo(Money.of("10.50"));
+    }
+
+    @Test
+    void deserialize_invalidValues_rejectedLikeStandardJackson() throws Exception {
+        assertThatThrownBy(() -> objectMapper.readValue("""
+                {"operationType":"REFUND"}""", WalletRequest.class))
+                .isInstanceOf(InvalidFormatException.class)
+                .satisfies(ex -> assertThat(((InvalidFormatException) ex).getTargetType()).isEqualTo(OperationType.class));
+        assertThatThrownBy(() -> objectMapper.readValue("""
+                {"amount":"много"}""", WalletRequest.class))
+                .isInstanceOf(InvalidFormatException.class)
+                .satisfies(ex -> assertThat(((InvalidFormatException) ex).getTargetType()).isEqualTo(Money.class));
+
+        WalletRequest request = objectMapper.readValue("""
+                {"walletId":"not-a-uuid","operationType":"DEPOSIT","amount":0}""", WalletRequest.class);
+        assertThat(request.validate()).containsExactly(
+                WalletRequestRejection.WALLET_ID_INVALID, WalletRequestRejection.AMOUNT_NOT_POSITIVE);
+    }
+
+    @Test
+    void validate_reportsEveryRejectedField() {
+        WalletRequest request = WalletRequest.of(null, OperationType.TRANSFER, null, null, "k".repeat(65));
+
+        List<WalletRequestRejection> rejections = request.validate();
+
+        assertThat(rejections).containsExactly(
+                WalletRequestRejection.WALLET_ID_REQUIRED,
+                WalletRequestRejection.AMOUNT_REQUIRED,
+                WalletRequestRejection.IDEMPOTENCY_KEY_TOO_LONG,
+                WalletRequestRejection.TARGET_WALLET_ID_REQUIRED);
+        assertThat(WalletRequestRejection.body(rejections)).containsOnlyKeys(
+                "walletId", "amount", "idempotencyKey", "targetWalletId");
+        assertThat(WalletRequestRejection.body(List.of(WalletRequestRejection.AMOUNT_REQUIRED)))
+                .isSameAs(WalletRequestRejection.AMOUNT_REQUIRED.getBody());
+    }
+}
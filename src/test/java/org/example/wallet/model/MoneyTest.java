@@ -0,0 +1,59 @@
+package org.example.wallet.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void parse_roundsLikeNumericColumn() {
+        assertThat(parse("10.5")).isEqualTo(Money.ofUnits(105_000));
+        assertThat(parse("0.00005")).isEqualTo(Money.ofUnits(1));
+        assertThat(parse("0.00004999")).isEqualTo(Money.ZERO);
+        assertThat(parse("-1.23456")).isEqualTo(Money.ofUnits(-12_346));
+        assertThat(parse("1.5e2")).isEqualTo(Money.of("150"));
+        assertThat(parse("922337203685477.5807")).isEqualTo(Money.ofUnits(Long.MAX_VALUE));
+        assertThatThrownBy(() -> parse("922337203685477.5808")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> parse("1.2.3")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> parse("-")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void toString_matchesBigDecimalPlainString() {
+        for (long units : new long[]{0, 1, -1, 10_000, 123_456_789, -50, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertThat(Money.ofUnits(units).toString()).isEqualTo(BigDecimal.valueOf(units, Money.SCALE).toPlainString());
+        }
+    }
+
+    @Test
+    void arithmetic_failsOnOverflow() {
+        assertThat(Money.of("10").minus(Money.of("0.01"))).isEqualTo(Money.of("9.99"));
+        assertThat(Money.of("1").isLessThan(Money.of("1.0001"))).isTrue();
+        assertThatThrownBy(() -> Money.ofUnits(Long.MAX_VALUE).plus(Money.ofUnits(1)))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void json_roundTripsAsNumber() throws Exception {
+        String json = objectMapper.writeValueAsString(Money.of("123.45"));
+
+        assertThat(json).isEqualTo("123.4500");
+        assertThat(objectMapper.readValue(json, Money.class)).isEqualTo(Money.of("123.45"));
+        assertThat(objectMapper.readValue("\" 7 \"", Money.class)).isEqualTo(Money.of("7"));
+        assertThatThrownBy(() -> objectMapper.readValue("1e30", Money.class))
+                .isInstanceOf(InvalidFormatException.class);
+    }
+
+    private static Money parse(String text) {
+        return Money.parse(text.toCharArray(), 0, text.length());
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.wallet.repository;
+
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.model.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class WalletRepositoryTest {
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void withdrawAmount_exceedingAvailable_notAppliedAndRereadShowsAvailable() {
+        UUID walletId = UUID.randomUUID();
+        inTransaction(() -> walletRepository.depositAmount(walletId, Money.of("50").units()));
+
+        WithdrawResult result = inTransaction(() -> walletRepository.withdrawAmount(walletId, Money.of("80").units()));
+
+        assertThat(result.isApplied()).isFalse();
+        assertThat(result.getNewVersion()).isNull();
+        assertThat(walletRepository.findAvailableUnits(walletId)).contains(Money.of("50").units());
+    }
+
+    @Test
+    void withdrawAmount_unknownWallet_notAppliedAndNothingToReread() {
+        UUID walletId = UUID.randomUUID();
+
+        WithdrawResult result = inTransaction(() -> walletRepository.withdrawAmount(walletId, 1));
+
+        assertThat(result.isApplied()).isFalse();
+        assertThat(walletRepository.findAvailableUnits(walletId)).isEmpty();
+    }
+
+    /**
+     * Второе списание ждёт блокировку строки, а после фиксации первого перепроверяет уже
+     * уменьшенный остаток: отказ не должен сообщать остаток из снимка до первого списания.
+     */
+    @Test
+    void withdrawAmount_rejectedAfterConcurrentDebit_reportsRemainingBalance() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        inTransaction(() -> walletRepository.depositAmount(walletId, Money.of("100").units()));
+        CountDownLatch firstApplied = new CountDownLatch(1);
+        CountDownLatch commitFirst = new CountDownLatch(1);
+
+        CompletableFuture<WithdrawResult> first = CompletableFuture.supplyAsync(() -> inTransaction(() -> {
+            WithdrawResult applied = walletRepository.withdrawAmount(walletId, Money.of("60").units());
+            firstApplied.countDown();
+            await(commitFirst);
+            return applied;
+        }));
+        assertThat(firstApplied.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<InsufficientFundsException> second = CompletableFuture.supplyAsync(() -> inTransaction(() -> {
+            WithdrawResult rejected = walletRepository.withdrawAmount(walletId, Money.of("60").units());
+            assertThat(rejected.isApplied()).isFalse();
+            return InsufficientFundsException.afterRejectedDebit(
+                    Money.ofUnits(walletRepository.findAvailableUnits(walletId).orElseThrow()), Money.of("60"));
+        }));
+        Thread.sleep(200);
+        commitFirst.countDown();
+
+        assertThat(first.get(10, TimeUnit.SECONDS).isApplied()).isTrue();
+        assertThat(second.get(10, TimeUnit.SECONDS).getMessage())
+                .isEqualTo(InsufficientFundsException.message(Money.of("40"), Money.of("60")));
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return new TransactionTemplate(transactionManager).execute(status -> action.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
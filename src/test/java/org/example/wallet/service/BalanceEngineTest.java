@@ -0,0 +1,159 @@
+package org.example.wallet.service;
+
+import jakarta.validation.ValidationException;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.WalletTransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "wallet.engine.enabled=true",
+        "wallet.engine.partitions=4",
+        "wallet.engine.checkpoint-interval-ms=3600000"
+})
+class BalanceEngineTest {
+
+    private static final Path JOURNAL = Path.of("target", "engine-journal-" + UUID.randomUUID());
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) {
+        registry.add("wallet.engine.journal.directory", JOURNAL::toString);
+    }
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private BalanceEngine balanceEngine;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private WalletTransactionRepository transactionRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Test
+    void processTransaction_appliesOperationsInMemory() {
+        UUID source = UUID.randomUUID();
+        UUID target = UUID.randomUUID();
+        walletService.processTransaction(request(source, OperationType.DEPOSIT, "100.50"));
+        walletService.processTransaction(request(target, OperationType.DEPOSIT, "1"));
+        walletService.processTransaction(request(source, OperationType.WITHDRAW, "0.50"));
+        var response = walletService.processTransaction(transfer(source, target, "40"));
+
+        assertThat(response.getBalance()).isEqualByComparingTo("60");
+        assertThat(response.getVersion()).isEqualTo(3);
+        assertThat(walletService.getBalance(target).getBalance()).isEqualByComparingTo("41");
+        assertThatThrownBy(() -> walletService.processTransaction(request(source, OperationType.WITHDRAW, "60.01")))
+                .isInstanceOf(InsufficientFundsException.class);
+        assertThatThrownBy(() -> walletService.processTransaction(transfer(source, UUID.randomUUID(), "1")))
+                .isInstanceOf(WalletNotFoundException.class);
+        assertThatThrownBy(() -> walletService.getBalance(UUID.randomUUID()))
+                .isInstanceOf(WalletNotFoundException.class);
+    }
+
+    @Test
+    void processTransaction_rejectsIdempotencyKeys() {
+        WalletRequest request = request(UUID.randomUUID(), OperationType.DEPOSIT, "1");
+        request.setIdempotencyKey("engine-" + UUID.randomUUID());
+
+        assertThatThrownBy(() -> walletService.processTransaction(request))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void checkpoint_writesBalancesAndLedger() {
+        UUID source = UUID.randomUUID();
+        UUID target = UUID.randomUUID();
+        walletService.processTransaction(request(source, OperationType.DEPOSIT, "10"));
+        walletService.processTransaction(request(target, OperationType.DEPOSIT, "5"));
+        walletService.processTransaction(transfer(source, target, "3"));
+
+        balanceEngine.checkpoint();
+
+        assertThat(balanceOf(source)).isEqualByComparingTo("7");
+        assertThat(balanceOf(target)).isEqualByComparingTo("8");
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT amount FROM wallet_transactions WHERE wallet_id = ? ORDER BY created_at, id",
+                BigDecimal.class, source))
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("10"), new BigDecimal("-3"));
+    }
+
+    @Test
+    @DirtiesContext
+    void start_replaysJournalAfterCrash() {
+        UUID source = UUID.randomUUID();
+        UUID target = UUID.randomUUID();
+        walletService.processTransaction(request(source, OperationType.DEPOSIT, "10"));
+        walletService.processTransaction(request(target, OperationType.DEPOSIT, "1"));
+        walletService.processTransaction(transfer(source, target, "4"));
+        balanceEngine.halt();
+        assertThat(countWallets(source, target)).isZero();
+
+        BalanceEngine recovered = new BalanceEngine(dataSource, transactionManager, transactionRepository,
+                shardRouter, true, 4, 1024, JOURNAL, DataSize.ofMegabytes(64), false, Duration.ofMillis(10),
+                Duration.ofSeconds(1), Duration.ofSeconds(5));
+        recovered.start();
+        try {
+            assertThat(recovered.getBalance(source).getBalance()).isEqualByComparingTo("6");
+            assertThat(recovered.getBalance(source).getVersion()).isEqualTo(2);
+            assertThat(recovered.getBalance(target).getBalance()).isEqualByComparingTo("5");
+        } finally {
+            recovered.stop();
+        }
+        assertThat(balanceOf(source)).isEqualByComparingTo("6");
+        assertThat(balanceOf(target)).isEqualByComparingTo("5");
+    }
+
+    private BigDecimal balanceOf(UUID walletId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM wallets WHERE id = ?", BigDecimal.class, walletId);
+    }
+
+    private int countWallets(UUID first, UUID second) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM wallets WHERE id IN (?, ?)", Integer.class,
+                first, second);
+    }
+
+    private static WalletRequest request(UUID walletId, OperationType type, String amount) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId.toString());
+        request.setOperationType(type);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+
+    private static WalletRequest transfer(UUID source, UUID target, String amount) {
+        WalletRequest request = request(source, OperationType.TRANSFER, amount);
+        request.setTargetWalletId(target.toString());
+        return request;
+    }
+}
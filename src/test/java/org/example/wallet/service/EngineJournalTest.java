@@ -0,0 +1,98 @@
+package org.example.wallet.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EngineJournalTest {
+    private static final Executor SAME_THREAD = Runnable::run;
+    private static final long SEGMENT_BYTES = 10L * EngineJournal.RECORD_BYTES;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void open_replaysRecordsAfterCheckpointAcrossSegments() {
+        UUID walletId = UUID.randomUUID();
+        EngineJournal journal = EngineJournal.open(directory, 0, SEGMENT_BYTES, SAME_THREAD, 0, record -> {
+        });
+        for (int i = 1; i <= 25; i++) {
+            journal.append(JournalRecord.Kind.DEPOSIT, walletId, null, 100, i * 100L, i, 0, i);
+        }
+        journal.close();
+
+        List<JournalRecord> replayed = new ArrayList<>();
+        EngineJournal reopened = EngineJournal.open(directory, 0, SEGMENT_BYTES, SAME_THREAD, 12, replayed::add);
+
+        assertThat(replayed).extracting(JournalRecord::lsn).containsExactlyElementsOf(lsns(13, 25));
+        assertThat(replayed.get(0).balanceAfter()).isEqualTo(1300);
+        assertThat(reopened.lastLsn()).isEqualTo(25);
+        assertThat(reopened.append(JournalRecord.Kind.WITHDRAW, walletId, null, 1, 2499, 26, 0, 26)).isEqualTo(26);
+    }
+
+    @Test
+    void open_stopsAtTornRecord() throws IOException {
+        UUID walletId = UUID.randomUUID();
+        EngineJournal journal = EngineJournal.open(directory, 0, SEGMENT_BYTES, SAME_THREAD, 0, record -> {
+        });
+        for (int i = 1; i <= 5; i++) {
+            journal.append(JournalRecord.Kind.DEPOSIT, walletId, null, 1, i, i, 0, i);
+        }
+        journal.close();
+        corruptRecord(4);
+
+        List<JournalRecord> replayed = new ArrayList<>();
+        EngineJournal reopened = EngineJournal.open(directory, 0, SEGMENT_BYTES, SAME_THREAD, 0, replayed::add);
+
+        assertThat(replayed).extracting(JournalRecord::lsn).containsExactly(1L, 2L, 3L);
+        assertThat(reopened.lastLsn()).isEqualTo(3);
+    }
+
+    @Test
+    void truncate_keepsSegmentsAfterCheckpoint() throws IOException {
+        UUID walletId = UUID.randomUUID();
+        EngineJournal journal = EngineJournal.open(directory, 0, SEGMENT_BYTES, SAME_THREAD, 0, record -> {
+        });
+        for (int i = 1; i <= 25; i++) {
+            journal.append(JournalRecord.Kind.DEPOSIT, walletId, null, 1, i, i, 0, i);
+        }
+
+        journal.truncate(15);
+
+        List<Long> read = new ArrayList<>();
+        journal.read(15, 25, record -> read.add(record.lsn()));
+        assertThat(read).containsExactlyElementsOf(lsns(16, 25));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()).sorted())
+                    .containsExactly("0000-00000000000000000011.journal", "0000-00000000000000000021.journal");
+        }
+    }
+
+    private void corruptRecord(long lsn) throws IOException {
+        Path segment = directory.resolve("0000-00000000000000000001.journal");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1}), (lsn - 1) * EngineJournal.RECORD_BYTES + 50);
+        }
+    }
+
+    private static List<Long> lsns(long from, long to) {
+        List<Long> lsns = new ArrayList<>();
+        for (long lsn = from; lsn <= to; lsn++) {
+            lsns.add(lsn);
+        }
+        return lsns;
+    }
+}
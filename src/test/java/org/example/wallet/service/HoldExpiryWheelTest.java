@@ -0,0 +1,107 @@
+package org.example.wallet.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HoldExpiryWheelTest {
+    private static final long START = 1_000_000_000L;
+
+    private final HoldExpiryWheel wheel = new HoldExpiryWheel(Duration.ofMillis(100), START);
+    private final UUID walletId = UUID.randomUUID();
+
+    @Test
+    void holdsExpireAtDeadlineRoundedUpToTick() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        wheel.schedule(first, walletId, START + 250);
+        wheel.schedule(second, walletId, START + 100);
+
+        assertThat(wheel.advanceTo(START + 99)).isEmpty();
+        assertThat(holdIds(wheel.advanceTo(START + 100))).containsExactly(second);
+        assertThat(wheel.advanceTo(START + 299)).isEmpty();
+        assertThat(holdIds(wheel.advanceTo(START + 300))).containsExactly(first);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cancelledAndRescheduledHolds() {
+        UUID cancelled = UUID.randomUUID();
+        UUID moved = UUID.randomUUID();
+        wheel.schedule(cancelled, walletId, START + 500);
+        wheel.schedule(moved, walletId, START + 500);
+        wheel.advanceTo(START);
+        assertThat(wheel.size()).isEqualTo(2);
+
+        wheel.cancel(cancelled);
+        wheel.cancel(UUID.randomUUID());
+        wheel.schedule(moved, walletId, START + 900);
+
+        assertThat(wheel.advanceTo(START + 500)).isEmpty();
+        assertThat(holdIds(wheel.advanceTo(START + 900))).containsExactly(moved);
+    }
+
+    @Test
+    void overdueHoldExpiresOnNextTick() {
+        UUID overdue = UUID.randomUUID();
+        wheel.schedule(overdue, walletId, START - 60_000);
+
+        assertThat(holdIds(wheel.advanceTo(START + 100))).containsExactly(overdue);
+    }
+
+    @Test
+    void distantDeadlinesCascadeThroughLevels() {
+        HoldExpiryWheel wheel = new HoldExpiryWheel(Duration.ofSeconds(1), START);
+        long[] delays = {
+                Duration.ofSeconds(30).toMillis(),
+                Duration.ofMinutes(15).toMillis(),
+                Duration.ofDays(3).toMillis(),
+                Duration.ofDays(400).toMillis()
+        };
+        List<UUID> holds = new ArrayList<>();
+        for (long delay : delays) {
+            UUID holdId = UUID.randomUUID();
+            holds.add(holdId);
+            wheel.schedule(holdId, walletId, START + delay);
+        }
+
+        for (int i = 0; i < delays.length; i++) {
+            long deadline = START + delays[i];
+            assertThat(wheel.advanceTo(deadline - 1000)).isEmpty();
+            assertThat(holdIds(wheel.advanceTo(deadline))).containsExactly(holds.get(i));
+        }
+    }
+
+    @Test
+    void deadlineBeyondTopLevelWaitsForItsRotation() {
+        long rotation = 1L << 32;
+        HoldExpiryWheel wheel = new HoldExpiryWheel(Duration.ofMillis(1), rotation - 10);
+        UUID holdId = UUID.randomUUID();
+        wheel.schedule(holdId, walletId, rotation + 5);
+
+        assertThat(wheel.advanceTo(rotation + 4)).isEmpty();
+        assertThat(holdIds(wheel.advanceTo(rotation + 5))).containsExactly(holdId);
+    }
+
+    @Test
+    void tickReturnsOnlyDueHoldsRegardlessOfPendingCount() {
+        for (int i = 0; i < 100_000; i++) {
+            wheel.schedule(UUID.randomUUID(), walletId, START + 3_600_000 + i % 1000 * 100L);
+        }
+        UUID due = UUID.randomUUID();
+        wheel.schedule(due, walletId, START + 200);
+
+        assertThat(holdIds(wheel.advanceTo(START + 200))).containsExactly(due);
+        assertThat(wheel.size()).isEqualTo(100_000);
+        assertThat(wheel.advanceTo(START + 3_600_000 + 99_900)).hasSize(100_000);
+    }
+
+    private static List<UUID> holdIds(List<HoldExpiryWheel.Expired> expired) {
+        return expired.stream().map(HoldExpiryWheel.Expired::holdId).toList();
+    }
+}
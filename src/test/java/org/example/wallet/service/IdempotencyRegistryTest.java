@@ -0,0 +1,124 @@
+package org.example.wallet.service;
+
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.IdempotencyKeyMismatchException;
+import org.example.wallet.model.IdempotencyKey;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.IdempotencyKeyRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdempotencyRegistryTest {
+
+    private final IdempotencyKeyRepository repository = mock(IdempotencyKeyRepository.class);
+    private final IdempotencyRegistry registry = new IdempotencyRegistry(repository, mock(ShardRouter.class),
+            mock(PlatformTransactionManager.class), 100, Duration.ofHours(1));
+    private final UUID walletId = UUID.randomUUID();
+
+    @BeforeEach
+    void startTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void endTransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void findCached_afterCommit_replaysResponseWithVersion() {
+        WalletRequest request = request(walletId, OperationType.DEPOSIT, "100", "key-1");
+        WalletResponse response = new WalletResponse(walletId, new BigDecimal("100"), 3L);
+        when(repository.insertIfAbsent(any(), anyString(), any(), anyLong(), anyString())).thenReturn(1);
+
+        assertThat(registry.register(request, response)).isNull();
+        assertThat(registry.findCached(request)).isNull();
+        commit();
+
+        assertThat(registry.findCached(request)).isEqualTo(response);
+        assertThat(registry.findCached(request(UUID.randomUUID(), OperationType.DEPOSIT, "100", "key-1"))).isNull();
+    }
+
+    @Test
+    void findCached_sameKeyWithAnotherOperation_isRejected() {
+        WalletRequest request = request(walletId, OperationType.DEPOSIT, "100", "key-2");
+        when(repository.insertIfAbsent(any(), anyString(), any(), anyLong(), anyString())).thenReturn(1);
+        registry.register(request, new WalletResponse(walletId, new BigDecimal("100"), 1L));
+        commit();
+
+        assertThatThrownBy(() -> registry.findCached(request(walletId, OperationType.DEPOSIT, "50", "key-2")))
+                .isInstanceOf(IdempotencyKeyMismatchException.class);
+        assertThatThrownBy(() -> registry.findCached(request(walletId, OperationType.WITHDRAW, "100", "key-2")))
+                .isInstanceOf(IdempotencyKeyMismatchException.class);
+    }
+
+    @Test
+    void register_keyTakenByConcurrentRequest_returnsStoredResponse() {
+        WalletRequest request = request(walletId, OperationType.WITHDRAW, "10", "key-3");
+        when(repository.insertIfAbsent(any(), anyString(), any(), anyLong(), anyString())).thenReturn(0);
+        when(repository.findById(new IdempotencyKey.WalletScopedId(walletId, "key-3")))
+                .thenReturn(Optional.of(stored(walletId, "key-3", "90", 7L, request.fingerprint())));
+
+        WalletResponse replay = registry.register(request, new WalletResponse(walletId, new BigDecimal("80"), 8L));
+
+        assertThat(replay.getBalance()).isEqualByComparingTo("90");
+        assertThat(replay.getVersion()).isEqualTo(7L);
+    }
+
+    @Test
+    void findStored_mismatchedFingerprint_isRejected() {
+        WalletRequest request = request(walletId, OperationType.DEPOSIT, "100", "key-4");
+        when(repository.findById(new IdempotencyKey.WalletScopedId(walletId, "key-4")))
+                .thenReturn(Optional.of(stored(walletId, "key-4", "100", 1L,
+                        request(walletId, OperationType.DEPOSIT, "99", "key-4").fingerprint())));
+
+        assertThatThrownBy(() -> registry.findStored(request))
+                .isInstanceOf(IdempotencyKeyMismatchException.class);
+    }
+
+    @Test
+    void findStored_rowWithoutFingerprint_isReplayed() {
+        WalletRequest request = request(walletId, OperationType.DEPOSIT, "100", "key-5");
+        when(repository.findById(new IdempotencyKey.WalletScopedId(walletId, "key-5")))
+                .thenReturn(Optional.of(stored(walletId, "key-5", "100", null, null)));
+
+        assertThat(registry.findStored(request).getBalance()).isEqualByComparingTo("100");
+    }
+
+    private static void commit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    }
+
+    private static WalletRequest request(UUID walletId, OperationType type, String amount, String key) {
+        return WalletRequest.of(walletId, type, Money.of(amount), null, key);
+    }
+
+    private static IdempotencyKey stored(UUID walletId, String key, String balance, Long version, String requestHash) {
+        IdempotencyKey stored = new IdempotencyKey();
+        stored.setWalletId(walletId);
+        stored.setKey(key);
+        stored.setBalance(new BigDecimal(balance));
+        stored.setVersion(version);
+        stored.setRequestHash(requestHash);
+        return stored;
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.wallet.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class LedgerPartitionMaintainerTest {
+
+    @Autowired
+    private LedgerPartitionMaintainer partitionMaintainer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void maintainPartitions_createsMonthsAheadAndMovesRowsFromDefaultPartition() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        YearMonth future = current.plusYears(5);
+        UUID walletId = UUID.randomUUID();
+        jdbcTemplate.update("""
+                INSERT INTO wallet_transactions (id, wallet_id, operation_type, amount, balance_after, created_at)
+                VALUES (nextval('wallet_transactions_seq'), ?, 'DEPOSIT', 10, 10, ?)""",
+                walletId, Timestamp.valueOf(future.atDay(15).atStartOfDay()));
+
+        partitionMaintainer.maintainPartitions(current);
+        partitionMaintainer.maintainPartitions(future);
+
+        assertThat(partitionOf(walletId)).isEqualTo(LedgerPartitionMaintainer.partitionName(future));
+        assertThat(partitionExists(LedgerPartitionMaintainer.partitionName(current.plusMonths(3)))).isTrue();
+        assertThat(partitionExists(LedgerPartitionMaintainer.partitionName(future.plusMonths(3)))).isTrue();
+    }
+
+    private String partitionOf(UUID walletId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT tableoid::regclass::text FROM wallet_transactions WHERE wallet_id = ?", String.class, walletId);
+    }
+
+    private boolean partitionExists(String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                               WHERE i.inhparent = 'wallet_transactions'::regclass AND c.relname = ?)""",
+                Boolean.class, name));
+    }
+}
@@ -0,0 +1,217 @@
+package org.example.wallet.service;
+
+import jakarta.validation.ValidationException;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Testcontainers
+@SpringBootTest(properties = {
+        "wallet.sharding.enabled=true",
+        "wallet.sharding.virtual-nodes=16",
+        "wallet.sharding.shards[0].name=shard-0",
+        "wallet.sharding.shards[1].name=shard-1",
+        "wallet.sharding.shards[2].name=shard-2",
+        "wallet.sharding.shards[2].joining=true"
+})
+class ShardedWalletStorageTest {
+
+    private static final List<String> SHARDS = List.of("shard-0", "shard-1", "shard-2");
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("100");
+
+    @Container
+    private static final PostgreSQLContainer<?> SHARD_0 = new PostgreSQLContainer<>("postgres:15-alpine");
+    @Container
+    private static final PostgreSQLContainer<?> SHARD_1 = new PostgreSQLContainer<>("postgres:15-alpine");
+    @Container
+    private static final PostgreSQLContainer<?> SHARD_2 = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) {
+        List<PostgreSQLContainer<?>> containers = List.of(SHARD_0, SHARD_1, SHARD_2);
+        for (int i = 0; i < containers.size(); i++) {
+            PostgreSQLContainer<?> container = containers.get(i);
+            registry.add("wallet.sharding.shards[" + i + "].url", container::getJdbcUrl);
+            registry.add("wallet.sharding.shards[" + i + "].username", container::getUsername);
+            registry.add("wallet.sharding.shards[" + i + "].password", container::getPassword);
+        }
+    }
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Test
+    void processTransaction_deposits_storeEachWalletOnlyOnItsRingShard() {
+        List<UUID> wallets = createWallets(200);
+
+        for (UUID walletId : wallets) {
+            assertThat(shardsHolding(walletId)).containsExactly(shardRouter.shardOf(walletId));
+            assertThat(walletService.getBalance(walletId).getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+        }
+        assertThat(wallets).extracting(shardRouter::shardOf).contains("shard-0", "shard-1");
+    }
+
+    @Test
+    void processTransaction_transferAcrossShards_isRejected() {
+        List<UUID> wallets = createWallets(50);
+        UUID source = wallets.get(0);
+        UUID sameShard = wallets.stream().skip(1)
+                .filter(id -> shardRouter.shardOf(id).equals(shardRouter.shardOf(source))).findFirst().orElseThrow();
+        UUID otherShard = wallets.stream()
+                .filter(id -> !shardRouter.shardOf(id).equals(shardRouter.shardOf(source))).findFirst().orElseThrow();
+
+        walletService.processTransaction(request(source, OperationType.TRANSFER, BigDecimal.TEN, sameShard));
+        assertThatThrownBy(() -> walletService.processTransaction(
+                request(source, OperationType.TRANSFER, BigDecimal.TEN, otherShard)))
+                .isInstanceOf(ValidationException.class);
+
+        assertThat(walletService.getBalance(source).getBalance()).isEqualByComparingTo("90");
+        assertThat(walletService.getBalance(otherShard).getBalance()).isEqualByComparingTo(INITIAL_BALANCE);
+    }
+
+    @Test
+    void rebalance_withConcurrentDeposits_movesWalletsToJoiningShardWithoutLosingMoney() throws Exception {
+        List<UUID> wallets = createWallets(300);
+        for (UUID walletId : wallets) {
+            walletService.processTransaction(keyedDeposit(walletId));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger deposits = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            writers.add(executor.submit(() -> {
+                for (int i = offset; running.get(); i += 4) {
+                    walletService.processTransaction(
+                            request(wallets.get(i % wallets.size()), OperationType.DEPOSIT, BigDecimal.ONE, null));
+                    deposits.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        ShardRebalancer.Result result = shardRebalancer.rebalance();
+        running.set(false);
+        for (Future<?> writer : writers) {
+            writer.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(result.segments()).isPositive();
+        assertThat(result.shares()).containsKey("shard-2");
+        BigDecimal total = BigDecimal.ZERO;
+        for (UUID walletId : wallets) {
+            assertThat(shardsHolding(walletId)).containsExactly(shardRouter.shardOf(walletId));
+            total = total.add(walletService.getBalance(walletId).getBalance());
+        }
+        assertThat(wallets).extracting(shardRouter::shardOf).contains("shard-2");
+        assertThat(total).isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(wallets.size()))
+                .add(BigDecimal.valueOf(deposits.get() + wallets.size())));
+
+        UUID moved = wallets.stream().filter(id -> shardRouter.shardOf(id).equals("shard-2")).findFirst().orElseThrow();
+        Integer history = jdbc("shard-2").queryForObject(
+                "SELECT count(*) FROM wallet_transactions WHERE wallet_id = ?", Integer.class, moved);
+        assertThat(history).isPositive();
+        Integer keys = jdbc("shard-2").queryForObject(
+                "SELECT count(*) FROM idempotency_keys WHERE wallet_id = ?", Integer.class, moved);
+        assertThat(keys).isEqualTo(1);
+        BigDecimal balance = walletService.getBalance(moved).getBalance();
+        assertThat(walletService.processTransaction(keyedDeposit(moved)).getBalance())
+                .isLessThanOrEqualTo(balance);
+        assertThat(walletService.getBalance(moved).getBalance()).isEqualByComparingTo(balance);
+    }
+
+    @Test
+    void rebalance_withAnotherInstanceConnected_isRejected() throws Exception {
+        Map<String, Double> shares = shardRouter.ring().shares();
+        Properties properties = new Properties();
+        properties.setProperty("user", SHARD_0.getUsername());
+        properties.setProperty("password", SHARD_0.getPassword());
+        properties.setProperty("ApplicationName", "wallet-service:" + UUID.randomUUID());
+
+        try (Connection ignored = DriverManager.getConnection(SHARD_0.getJdbcUrl(), properties)) {
+            assertThatThrownBy(() -> shardRebalancer.rebalance())
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("shard-0");
+        }
+        assertThat(shardRouter.ring().shares()).isEqualTo(shares);
+        assertThat(shardRebalancer.isRunning()).isFalse();
+    }
+
+    /**
+     * Повтор с тем же ключом после переноса отвечает сохранённым ответом и баланс не меняет.
+     */
+    private static WalletRequest keyedDeposit(UUID walletId) {
+        return WalletRequest.of(walletId, OperationType.DEPOSIT, Money.of("1"), null, "rebalance-" + walletId);
+    }
+
+    private List<UUID> createWallets(int count) {
+        List<UUID> wallets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UUID walletId = UUID.randomUUID();
+            walletService.processTransaction(request(walletId, OperationType.DEPOSIT, INITIAL_BALANCE, null));
+            wallets.add(walletId);
+        }
+        return wallets;
+    }
+
+    private List<String> shardsHolding(UUID walletId) {
+        return SHARDS.stream()
+                .filter(shard -> jdbc(shard).queryForObject(
+                        "SELECT count(*) FROM wallets WHERE id = ?", Integer.class, walletId) > 0)
+                .toList();
+    }
+
+    private static JdbcTemplate jdbc(String shard) {
+        PostgreSQLContainer<?> container = Map.of("shard-0", SHARD_0, "shard-1", SHARD_1, "shard-2", SHARD_2).get(shard);
+        return new JdbcTemplate(new DriverManagerDataSource(
+                container.getJdbcUrl(), container.getUsername(), container.getPassword()));
+    }
+
+    private static WalletRequest request(UUID walletId, OperationType operationType, BigDecimal amount, UUID target) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId.toString());
+        request.setOperationType(operationType);
+        request.setAmount(amount);
+        if (target != null) {
+            request.setTargetWalletId(target.toString());
+        }
+        return request;
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.wallet.service;
+
+import org.example.wallet.dto.BatchTransactionRequest;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Запись через {@link WalletService} вытесняет баланс из {@link WalletBalanceCache}:
+ * следующее чтение видит результат операции, а не закэшированное значение.
+ */
+@SpringBootTest
+class WalletBalanceCacheEvictionTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void deposit_evictsCachedBalance() {
+        UUID walletId = deposit("100");
+        readAndCache(walletId);
+
+        walletService.processTransaction(request(walletId, OperationType.DEPOSIT, "5"));
+
+        assertThat(cached(walletId)).isNull();
+        assertThat(walletService.getBalance(walletId).balance()).isEqualTo(Money.of("105"));
+        assertThat(cached(walletId)).isNotNull();
+    }
+
+    @Test
+    void withdraw_evictsCachedBalance() {
+        UUID walletId = deposit("100");
+        readAndCache(walletId);
+
+        walletService.processTransaction(request(walletId, OperationType.WITHDRAW, "30"));
+
+        assertThat(cached(walletId)).isNull();
+        assertThat(walletService.getBalance(walletId).balance()).isEqualTo(Money.of("70"));
+    }
+
+    @Test
+    void batch_evictsEveryChangedWallet() {
+        UUID first = deposit("100");
+        UUID second = deposit("100");
+        readAndCache(first);
+        readAndCache(second);
+
+        BatchTransactionRequest batch = new BatchTransactionRequest();
+        batch.setOperations(List.of(
+                request(first, OperationType.WITHDRAW, "40"),
+                request(second, OperationType.DEPOSIT, "40")));
+        assertThat(walletService.processBatch(batch).isCommitted()).isTrue();
+
+        assertThat(cached(first)).isNull();
+        assertThat(cached(second)).isNull();
+        assertThat(walletService.getBalance(first).balance()).isEqualTo(Money.of("60"));
+        assertThat(walletService.getBalance(second).balance()).isEqualTo(Money.of("140"));
+    }
+
+    @Test
+    void unknownWallet_absenceCachedUntilFirstDeposit() {
+        UUID walletId = UUID.randomUUID();
+
+        assertThatThrownBy(() -> walletService.getBalance(walletId)).isInstanceOf(WalletNotFoundException.class);
+        assertThat(cached(walletId)).isNotNull();
+        assertThatThrownBy(() -> walletService.getBalance(walletId)).isInstanceOf(WalletNotFoundException.class);
+
+        walletService.processTransaction(request(walletId, OperationType.DEPOSIT, "7"));
+
+        assertThat(walletService.getBalance(walletId).balance()).isEqualTo(Money.of("7"));
+    }
+
+    private void readAndCache(UUID walletId) {
+        walletService.getBalance(walletId);
+        assertThat(cached(walletId)).isNotNull();
+    }
+
+    private Cache.ValueWrapper cached(UUID walletId) {
+        return cacheManager.getCache(WalletBalanceCache.CACHE_NAME).get(walletId);
+    }
+
+    private UUID deposit(String amount) {
+        UUID walletId = UUID.randomUUID();
+        walletService.processTransaction(request(walletId, OperationType.DEPOSIT, amount));
+        return walletId;
+    }
+
+    private static WalletRequest request(UUID walletId, OperationType type, String amount) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId.toString());
+        request.setOperationType(type);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+}
@@ -0,0 +1,191 @@
+package org.example.wallet.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.wallet.model.Money;
+import org.example.wallet.repository.WalletStateView;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WalletBalanceCacheTest {
+
+    private final UUID walletId = UUID.randomUUID();
+    private final AtomicInteger replicaReads = new AtomicInteger();
+    private final AtomicInteger primaryReads = new AtomicInteger();
+
+    @Test
+    void get_secondRead_servedFromCache() {
+        WalletBalanceCache cache = cache(false);
+
+        WalletBalanceCache.Snapshot miss = cache.get(walletId, null, replica("10", 1), primary("10", 1));
+        WalletBalanceCache.Snapshot hit = cache.get(walletId, null, replica("99", 9), primary("99", 9));
+
+        assertThat(miss.balance()).isEqualTo(Money.of("10"));
+        assertThat(hit).isEqualTo(miss);
+        assertThat(replicaReads).hasValue(1);
+    }
+
+    @Test
+    void get_unknownWallet_cachesAbsence() {
+        WalletBalanceCache cache = cache(false);
+
+        assertThat(cache.get(walletId, null, absent(), absent())).isNull();
+        assertThat(cache.get(walletId, null, absent(), absent())).isNull();
+
+        assertThat(replicaReads).hasValue(1);
+    }
+
+    @Test
+    void get_unknownWalletWithMinVersion_readsAgain() {
+        WalletBalanceCache cache = cache(false);
+        cache.get(walletId, null, absent(), absent());
+
+        WalletBalanceCache.Snapshot snapshot = cache.get(walletId, 1L, replica("5", 1), primary("5", 1));
+
+        assertThat(snapshot.balance()).isEqualTo(Money.of("5"));
+        assertThat(replicaReads).hasValue(2);
+    }
+
+    @Test
+    void evict_insideTransaction_appliesOnlyAfterCommit() {
+        WalletBalanceCache cache = cache(false);
+        cache.get(walletId, null, replica("10", 1), primary("10", 1));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.evict(walletId, 2);
+            assertThat(cache.get(walletId, null, replica("20", 2), primary("20", 2)).version()).isEqualTo(1);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.get(walletId, null, replica("20", 2), primary("20", 2)).version()).isEqualTo(2);
+        assertThat(replicaReads).hasValue(2);
+    }
+
+    @Test
+    void evict_rolledBack_keepsEntry() {
+        WalletBalanceCache cache = cache(false);
+        cache.get(walletId, null, replica("10", 1), primary("10", 1));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.evict(walletId, 2);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.get(walletId, null, replica("20", 2), primary("20", 2)).version()).isEqualTo(1);
+        assertThat(replicaReads).hasValue(1);
+    }
+
+    @Test
+    void get_afterVersionedEvict_readsPrimaryWhileReplicaLags() {
+        WalletBalanceCache cache = cache(true);
+        cache.evict(walletId, 5);
+
+        WalletBalanceCache.Snapshot snapshot = cache.get(walletId, null, replica("10", 4), primary("20", 5));
+
+        assertThat(snapshot.balance()).isEqualTo(Money.of("20"));
+        assertThat(snapshot.version()).isEqualTo(5);
+        assertThat(primaryReads).hasValue(1);
+    }
+
+    @Test
+    void get_afterVersionedEvict_acceptsReplicaThatCaughtUp() {
+        WalletBalanceCache cache = cache(true);
+        cache.evict(walletId, 5);
+
+        WalletBalanceCache.Snapshot snapshot = cache.get(walletId, null, replica("20", 5), primary("20", 5));
+
+        assertThat(snapshot.version()).isEqualTo(5);
+        assertThat(replicaReads).hasValue(1);
+        assertThat(primaryReads).hasValue(0);
+    }
+
+    @Test
+    void get_afterEvictWithoutVersion_readsPrimary() {
+        WalletBalanceCache cache = cache(true);
+        cache.evict(walletId);
+
+        cache.get(walletId, null, replica("10", 9), primary("20", 9));
+
+        assertThat(primaryReads).hasValue(1);
+    }
+
+    @Test
+    void get_minVersionAboveCachedSnapshot_reloads() {
+        WalletBalanceCache cache = cache(true);
+        cache.get(walletId, null, replica("10", 3), primary("10", 3));
+
+        WalletBalanceCache.Snapshot snapshot = cache.get(walletId, 4L, replica("10", 3), primary("15", 4));
+
+        assertThat(snapshot.balance()).isEqualTo(Money.of("15"));
+        assertThat(cache.get(walletId, null, replica("10", 3), primary("15", 4)).version()).isEqualTo(4);
+        assertThat(primaryReads).hasValue(1);
+    }
+
+    @Test
+    void get_withoutReplicas_neverReadsTwice() {
+        WalletBalanceCache cache = cache(false);
+        cache.evict(walletId);
+
+        WalletBalanceCache.Snapshot snapshot = cache.get(walletId, null, replica("20", 5), primary("20", 5));
+
+        assertThat(snapshot.balance()).isEqualTo(Money.of("20"));
+        assertThat(replicaReads).hasValue(1);
+        assertThat(primaryReads).hasValue(0);
+    }
+
+    private static WalletBalanceCache cache(boolean replicaReads) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(WalletBalanceCache.CACHE_NAME);
+        cacheManager.setCaffeine(Caffeine.newBuilder().maximumSize(1000));
+        return new WalletBalanceCache(cacheManager, replicaReads);
+    }
+
+    private Supplier<Optional<WalletStateView>> replica(String balance, long version) {
+        return () -> {
+            replicaReads.incrementAndGet();
+            return Optional.of(state(balance, version));
+        };
+    }
+
+    private Supplier<Optional<WalletStateView>> absent() {
+        return () -> {
+            replicaReads.incrementAndGet();
+            return Optional.empty();
+        };
+    }
+
+    private Supplier<Optional<WalletStateView>> primary(String balance, long version) {
+        return () -> {
+            primaryReads.incrementAndGet();
+            return Optional.of(state(balance, version));
+        };
+    }
+
+    private static WalletStateView state(String balance, long version) {
+        return new WalletStateView() {
+            @Override
+            public Long getBalanceUnits() {
+                return Money.of(balance).units();
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.wallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.wallet.exceptions.ConcurrentWalletOperationException;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.model.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WalletContentionControlTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UUID walletId = UUID.randomUUID();
+
+    @Test
+    void execute_conflict_retriesUntilSuccess() {
+        WalletContentionControl control = control(256);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = control.execute(List.of(walletId), () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new PessimisticLockingFailureException("Строка заблокирована");
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(registry.get("wallet.attempts.failed").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_businessError_isNotRetried() {
+        WalletContentionControl control = control(256);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> control.execute(List.of(walletId), () -> {
+            attempts.incrementAndGet();
+            throw new InsufficientFundsException(Money.of("1"), Money.of("10"));
+        })).isInstanceOf(InsufficientFundsException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void execute_sameWallet_runsOneAttemptAtATime() throws Exception {
+        WalletContentionControl control = control(256);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Callable<Object> operation = () -> control.execute(List.of(walletId), () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(2);
+            running.decrementAndGet();
+            return null;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> futures = executor.invokeAll(Collections.nCopies(32, operation));
+            for (Future<Object> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(maxRunning).hasValue(1);
+    }
+
+    @Test
+    void execute_inFlightLimitReached_failsFast() throws Exception {
+        WalletContentionControl control = control(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> holder = executor.submit(() -> control.execute(List.of(walletId), () -> {
+                started.countDown();
+                await(release);
+                return null;
+            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            assertThatThrownBy(() -> control.execute(List.of(walletId), () -> "второй"))
+                    .isInstanceOf(ConcurrentWalletOperationException.class);
+            assertThat(control.execute(List.of(UUID.randomUUID()), () -> "другой кошелёк")).isEqualTo("другой кошелёк");
+
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(registry.get("wallet.contention.rejected").counter().count()).isEqualTo(1);
+        assertThat(control.execute(List.of(walletId), () -> "после освобождения")).isEqualTo("после освобождения");
+    }
+
+    private WalletContentionControl control(int maxInFlightPerWallet) {
+        return new WalletContentionControl(new WalletMetrics(registry), true, 5, Duration.ofMillis(1),
+                Duration.ofMillis(10), 1, maxInFlightPerWallet, Duration.ofSeconds(5));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.wallet.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.WalletApplication;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.model.OperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Одна и та же нагрузка с горячими кошельками (Zipf, s = 1.1) при прежней политике
+ * повторов и с очередью операций кошелька. Пул соединений меньше числа потоков,
+ * поэтому ожидание блокировки строки с занятым соединением сразу видно по повторам
+ * из-за нехватки соединений. Проверяются только счётчики: задержки зависят от машины
+ * и пишутся в лог для сравнения, но не сверяются.
+ */
+@Slf4j
+@Testcontainers
+class WalletContentionStressTest {
+
+    private static final int THREADS = 64;
+    private static final int WALLETS = 200;
+    private static final int OPERATIONS_PER_THREAD = 100;
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    @Container
+    private static final PostgreSQLContainer<?> DATABASE = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Test
+    void processTransaction_zipfianHotWallets_queueingCutsRetries() throws Exception {
+        List<UUID> wallets = new ArrayList<>();
+        for (int i = 0; i < WALLETS; i++) {
+            wallets.add(UUID.randomUUID());
+        }
+
+        Run fixed = run(false, wallets);
+        Run queued = run(true, wallets);
+        log.info("Прежние повторы: неудачных попыток {}, p99 {} мс; очередь кошелька: неудачных попыток {}, p99 {} мс",
+                fixed.failedAttempts(), fixed.p99Millis(), queued.failedAttempts(), queued.p99Millis());
+
+        assertThat(queued.failed()).isZero();
+        assertThat(queued.failedAttempts()).isLessThanOrEqualTo(fixed.failedAttempts());
+    }
+
+    private Run run(boolean contentionControl, List<UUID> wallets) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WalletApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + DATABASE.getJdbcUrl(),
+                        "spring.datasource.username=" + DATABASE.getUsername(),
+                        "spring.datasource.password=" + DATABASE.getPassword(),
+                        "wallet.contention.enabled=" + contentionControl,
+                        "spring.datasource.hikari.maximum-pool-size=8",
+                        "spring.datasource.hikari.connection-timeout=250")
+                .run()) {
+            WalletService walletService = context.getBean(WalletService.class);
+            for (UUID walletId : wallets) {
+                walletService.processTransaction(deposit(walletId));
+            }
+            double failedBefore = failedAttempts(context.getBean(MeterRegistry.class));
+
+            double[] cumulative = zipfCumulative();
+            long[][] latencies = new long[THREADS][OPERATIONS_PER_THREAD];
+            int[] failed = new int[THREADS];
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(thread);
+                    start.await();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        UUID walletId = wallets.get(sample(cumulative, random));
+                        long startedAt = System.nanoTime();
+                        try {
+                            walletService.processTransaction(deposit(walletId));
+                        } catch (RuntimeException ex) {
+                            failed[thread]++;
+                        }
+                        latencies[thread][i] = System.nanoTime() - startedAt;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(300, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            double p99 = all[(int) Math.ceil(all.length * 0.99) - 1] / 1e6;
+            return new Run(failedAttempts(context.getBean(MeterRegistry.class)) - failedBefore,
+                    Arrays.stream(failed).sum(), p99);
+        }
+    }
+
+    private static double[] zipfCumulative() {
+        double[] cumulative = new double[WALLETS];
+        double sum = 0;
+        for (int rank = 0; rank < WALLETS; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    private static double failedAttempts(MeterRegistry meterRegistry) {
+        return meterRegistry.find("wallet.attempts.failed").counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private static WalletRequest deposit(UUID walletId) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId.toString());
+        request.setOperationType(OperationType.DEPOSIT);
+        request.setAmount(BigDecimal.ONE);
+        return request;
+    }
+
+    private record Run(double failedAttempts, int failed, double p99Millis) {
+    }
+}
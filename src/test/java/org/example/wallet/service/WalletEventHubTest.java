@@ -0,0 +1,154 @@
+package org.example.wallet.service;
+
+import org.example.wallet.dto.WalletEventMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class WalletEventHubTest {
+
+    private final UUID walletId = UUID.randomUUID();
+    private final UUID otherWalletId = UUID.randomUUID();
+
+    @Test
+    void subscribe_afterSequence_replaysMissedEventsBeforeNewOnes() {
+        WalletEventHub hub = new WalletEventHub(100, 100, Runnable::run);
+        hub.publish(List.of(event(1, walletId), event(2, walletId)));
+        List<Long> received = new ArrayList<>();
+
+        hub.subscribe(walletId, 1L, events -> {
+            events.forEach(event -> received.add(event.sequence()));
+            return true;
+        });
+        hub.publish(List.of(event(3, walletId)));
+
+        assertThat(received).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void subscribe_withWalletId_receivesOnlyThatWallet() {
+        WalletEventHub hub = new WalletEventHub(100, 100, Runnable::run);
+        List<UUID> received = new ArrayList<>();
+        hub.subscribe(walletId, null, events -> {
+            events.forEach(event -> received.add(event.walletId()));
+            return true;
+        });
+
+        hub.publish(List.of(event(1, otherWalletId), event(2, walletId), event(3, otherWalletId)));
+
+        assertThat(received).containsExactly(walletId);
+    }
+
+    @Test
+    void subscribe_listenerReturningFalse_isRemovedAfterDelivery() {
+        WalletEventHub hub = new WalletEventHub(100, 100, Runnable::run);
+        hub.subscribe(null, null, events -> false);
+
+        hub.publish(List.of(event(1, walletId)));
+
+        assertThat(hub.subscriberCount()).isZero();
+    }
+
+    @Test
+    void publish_beyondCapacity_dropsOldestFromReplay() {
+        WalletEventHub hub = new WalletEventHub(2, 100, Runnable::run);
+        hub.publish(List.of(event(1, walletId), event(2, walletId), event(3, walletId)));
+        List<Long> received = new ArrayList<>();
+
+        hub.subscribe(null, 0L, events -> {
+            events.forEach(event -> received.add(event.sequence()));
+            return true;
+        });
+
+        assertThat(received).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void publish_blockingListener_doesNotDelayPublisherOrOtherSubscribers() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            WalletEventHub hub = new WalletEventHub(100, 2, executor);
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch dropped = new CountDownLatch(1);
+            WalletEventHub.Subscription slow = hub.subscribe(null, null, events -> {
+                blocked.countDown();
+                awaitQuietly(release);
+                return true;
+            });
+            slow.onDropped(dropped::countDown);
+            List<Long> received = new CopyOnWriteArrayList<>();
+            hub.subscribe(null, null, events -> {
+                events.forEach(event -> received.add(event.sequence()));
+                return true;
+            });
+
+            hub.publish(List.of(event(1, walletId)));
+            assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+            // Пока первый подписчик занят, его очередь растёт до предела и он отключается;
+            // второй получает каждое событие, не дожидаясь первого
+            for (long sequence = 2; sequence <= 5; sequence++) {
+                long start = System.nanoTime();
+                hub.publish(List.of(event(sequence, walletId)));
+                assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+                int expected = (int) sequence;
+                await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == expected);
+            }
+
+            assertThat(dropped.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(hub.subscriberCount()).isEqualTo(1);
+            assertThat(received).containsExactly(1L, 2L, 3L, 4L, 5L);
+            release.countDown();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void publish_insideTransaction_deliversOnlyAfterCommit() {
+        WalletEventHub hub = new WalletEventHub(100, 100, Runnable::run);
+        List<Long> received = new ArrayList<>();
+        hub.subscribe(null, null, events -> {
+            events.forEach(event -> received.add(event.sequence()));
+            return true;
+        });
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hub.publish(List.of(event(1, walletId)));
+            assertThat(received).isEmpty();
+            TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(received).containsExactly(1L);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static WalletEventMessage event(long sequence, UUID walletId) {
+        return new WalletEventMessage(sequence, walletId, BigDecimal.TEN, sequence, Instant.now());
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.wallet.service;
+
+import org.example.wallet.dto.WalletEventMessage;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.WalletEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = {
+        "wallet.outbox.enabled=true",
+        "wallet.outbox.relay-interval-ms=20"
+})
+class WalletEventOutboxTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletEventHub eventHub;
+
+    @Autowired
+    private WalletEventRepository walletEventRepository;
+
+    @Test
+    void processTransaction_publishesCommittedBalanceAndVersion() {
+        UUID source = UUID.randomUUID();
+        UUID target = UUID.randomUUID();
+        List<WalletEventMessage> received = new CopyOnWriteArrayList<>();
+        try (WalletEventHub.Subscription ignored = eventHub.subscribe(null, null, events -> {
+            events.stream()
+                    .filter(event -> event.walletId().equals(source) || event.walletId().equals(target))
+                    .forEach(received::add);
+            return true;
+        })) {
+            walletService.processTransaction(request(source, OperationType.DEPOSIT, "100", null));
+            walletService.processTransaction(request(target, OperationType.DEPOSIT, "1", null));
+            walletService.processTransaction(request(source, OperationType.TRANSFER, "30", target));
+
+            await().atMost(Duration.ofSeconds(5)).until(() -> received.size() == 4);
+        }
+
+        WalletEventMessage last = received.stream()
+                .filter(event -> event.walletId().equals(source))
+                .reduce((first, second) -> second)
+                .orElseThrow();
+        assertThat(last.balance()).isEqualByComparingTo("70");
+        assertThat(last.version()).isEqualTo(walletService.getBalance(source).getVersion());
+        assertThat(received).extracting(WalletEventMessage::sequence).isSorted();
+    }
+
+    @Test
+    void processTransaction_rolledBack_publishesNothing() {
+        UUID walletId = UUID.randomUUID();
+        List<WalletEventMessage> received = new CopyOnWriteArrayList<>();
+        try (WalletEventHub.Subscription ignored = eventHub.subscribe(walletId, null, events -> {
+            received.addAll(events);
+            return true;
+        })) {
+            walletService.processTransaction(request(walletId, OperationType.DEPOSIT, "10", null));
+            assertThatThrownBy(() -> walletService.processTransaction(
+                    request(walletId, OperationType.WITHDRAW, "20", null)))
+                    .isInstanceOf(InsufficientFundsException.class);
+            walletService.processTransaction(request(walletId, OperationType.DEPOSIT, "1", null));
+
+            await().atMost(Duration.ofSeconds(5)).until(() -> received.size() >= 2);
+        }
+
+        assertThat(received).hasSize(2);
+        assertThat(received.get(1).balance()).isEqualByComparingTo("11");
+        assertThat(received.get(1).version()).isEqualTo(received.get(0).version() + 1);
+        await().atMost(Duration.ofSeconds(5)).until(() -> walletEventRepository.count() == 0);
+    }
+
+    private static WalletRequest request(UUID walletId, OperationType type, String amount, UUID target) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId.toString());
+        request.setOperationType(type);
+        request.setAmount(new BigDecimal(amount));
+        if (target != null) {
+            request.setTargetWalletId(target.toString());
+        }
+        return request;
+    }
+}
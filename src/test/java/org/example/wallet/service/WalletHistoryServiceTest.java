@@ -0,0 +1,94 @@
+package org.example.wallet.service;
+
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.OperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "wallet.history.snapshots-enabled=true",
+        "wallet.history.replay-margin=0s"
+})
+class WalletHistoryServiceTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletHistoryService historyService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void getBalanceAt_answersFromLedgerTailAndSnapshot() throws InterruptedException {
+        UUID walletId = UUID.randomUUID();
+        Instant beforeCreation = tick();
+        walletService.processTransaction(request(walletId, OperationType.DEPOSIT, "100"));
+        Instant afterDeposit = tick();
+        walletService.processTransaction(request(walletId, OperationType.WITHDRAW, "30"));
+        historyService.takeSnapshots();
+        Instant afterSnapshot = tick();
+        walletService.processTransaction(request(walletId, OperationType.DEPOSIT, "5"));
+
+        assertThat(walletService.getBalanceAt(walletId, afterDeposit).getBalance()).isEqualByComparingTo("100");
+        assertThat(walletService.getBalanceAt(walletId, afterSnapshot).getBalance()).isEqualByComparingTo("70");
+        assertThat(walletService.getBalanceAt(walletId, tick()).getBalance()).isEqualByComparingTo("75");
+        assertThatThrownBy(() -> walletService.getBalanceAt(walletId, beforeCreation))
+                .isInstanceOf(WalletNotFoundException.class);
+    }
+
+    @Test
+    void takeSnapshots_skipsWalletsUnchangedSinceTheirLastRow() throws InterruptedException {
+        UUID walletId = UUID.randomUUID();
+        walletService.processTransaction(request(walletId, OperationType.DEPOSIT, "10"));
+        historyService.takeSnapshots();
+        historyService.takeSnapshots();
+        Instant afterSnapshots = tick();
+        walletService.processTransaction(request(walletId, OperationType.DEPOSIT, "1"));
+
+        assertThat(walletService.getBalanceAt(walletId, afterSnapshots).getBalance()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void getBalanceAt_ledgerAfterMomentOverridesWalletTimestamp() throws InterruptedException {
+        UUID walletId = UUID.randomUUID();
+        walletService.processTransaction(request(walletId, OperationType.DEPOSIT, "100"));
+        Instant at = tick();
+        // Часы базы отстают от часов приложения: updated_at раньше момента, запись журнала позже
+        jdbcTemplate.update("UPDATE wallets SET balance = 150, updated_at = ? WHERE id = ?",
+                Timestamp.from(at.minusSeconds(1)), walletId);
+        jdbcTemplate.update("INSERT INTO wallet_transactions (id, wallet_id, operation_type, amount, balance_after, created_at)"
+                        + " VALUES (nextval('wallet_transactions_seq'), ?, 'DEPOSIT', 50, 150, ?)",
+                walletId, Timestamp.from(at.plusSeconds(1)));
+
+        assertThat(walletService.getBalanceAt(walletId, at).getBalance()).isEqualByComparingTo("100");
+    }
+
+    /** Метка времени, строго отделённая от соседних операций. */
+    private static Instant tick() throws InterruptedException {
+        Thread.sleep(20);
+        Instant now = Instant.now();
+        Thread.sleep(20);
+        return now;
+    }
+
+    private static WalletRequest request(UUID walletId, OperationType type, String amount) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId.toString());
+        request.setOperationType(type);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+}
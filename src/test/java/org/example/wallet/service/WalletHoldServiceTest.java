@@ -0,0 +1,138 @@
+package org.example.wallet.service;
+
+import jakarta.validation.ValidationException;
+import org.example.wallet.dto.HoldResponse;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.HoldNotFoundException;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.WalletHoldRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = {
+        "wallet.holds.tick-ms=20",
+        "wallet.holds.takeover-grace=0s",
+        "wallet.holds.takeover-interval-ms=3600000"
+})
+class WalletHoldServiceTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletHoldService holdService;
+
+    @Autowired
+    private WalletHoldRepository holdRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void authorize_reducesAvailableBalanceForWithdrawals() {
+        UUID walletId = deposit("100");
+
+        HoldResponse hold = holdService.authorize(walletId, Money.of("70"), Duration.ofMinutes(5));
+
+        assertThat(hold.getBalance()).isEqualTo(Money.of("100"));
+        assertThat(hold.getAvailableBalance()).isEqualTo(Money.of("30"));
+        assertThatThrownBy(() -> walletService.processTransaction(request(walletId, OperationType.WITHDRAW, "40")))
+                .isInstanceOf(InsufficientFundsException.class);
+        assertThatThrownBy(() -> holdService.authorize(walletId, Money.of("40"), null))
+                .isInstanceOf(InsufficientFundsException.class);
+        assertThat(walletService.processTransaction(request(walletId, OperationType.WITHDRAW, "30")).balance())
+                .isEqualTo(Money.of("70"));
+    }
+
+    @Test
+    void capture_settlesPartOfHoldAndFreesTheRest() {
+        UUID walletId = deposit("100");
+        HoldResponse hold = holdService.authorize(walletId, Money.of("50"), Duration.ofMinutes(5));
+        long versionBefore = walletService.getBalance(walletId).getVersion();
+
+        assertThatThrownBy(() -> holdService.capture(walletId, hold.getHoldId(), Money.of("60")))
+                .isInstanceOf(ValidationException.class);
+        WalletResponse captured = holdService.capture(walletId, hold.getHoldId(), Money.of("45"));
+
+        assertThat(captured.balance()).isEqualTo(Money.of("55"));
+        assertThat(captured.getVersion()).isEqualTo(versionBefore + 1);
+        assertThat(walletService.processTransaction(request(walletId, OperationType.WITHDRAW, "55")).balance())
+                .isEqualTo(Money.ZERO);
+        assertThatThrownBy(() -> holdService.capture(walletId, hold.getHoldId(), Money.of("1")))
+                .isInstanceOf(HoldNotFoundException.class);
+    }
+
+    @Test
+    void release_restoresAvailableBalance() {
+        UUID walletId = deposit("100");
+        HoldResponse hold = holdService.authorize(walletId, Money.of("100"), Duration.ofMinutes(5));
+
+        assertThatThrownBy(() -> holdService.release(UUID.randomUUID(), hold.getHoldId()))
+                .isInstanceOf(HoldNotFoundException.class);
+        WalletResponse released = holdService.release(walletId, hold.getHoldId());
+
+        assertThat(released.balance()).isEqualTo(Money.of("100"));
+        assertThatThrownBy(() -> holdService.release(walletId, hold.getHoldId()))
+                .isInstanceOf(HoldNotFoundException.class);
+        assertThat(walletService.processTransaction(request(walletId, OperationType.WITHDRAW, "100")).balance())
+                .isEqualTo(Money.ZERO);
+    }
+
+    @Test
+    void expiredHold_releasedByWheel() {
+        UUID walletId = deposit("100");
+        HoldResponse hold = holdService.authorize(walletId, Money.of("100"), Duration.ofSeconds(1));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> !holdRepository.existsById(hold.getHoldId()));
+
+        assertThat(walletService.processTransaction(request(walletId, OperationType.WITHDRAW, "100")).balance())
+                .isEqualTo(Money.ZERO);
+        assertThatThrownBy(() -> holdService.capture(walletId, hold.getHoldId(), Money.of("1")))
+                .isInstanceOf(HoldNotFoundException.class);
+    }
+
+    @Test
+    void overdueHoldOfStoppedInstance_releasedByTakeover() {
+        UUID walletId = deposit("100");
+        UUID holdId = UUID.randomUUID();
+        // Удержание другого экземпляра: в колесо этого оно не попадает
+        new TransactionTemplate(transactionManager).execute(status ->
+                holdRepository.authorize(walletId, holdId, Money.of("100").units(), 200));
+
+        await().pollDelay(Duration.ofMillis(300)).atMost(Duration.ofSeconds(5)).until(() -> {
+            holdService.takeOverOverdueHolds();
+            return !holdRepository.existsById(holdId);
+        });
+
+        assertThat(walletService.processTransaction(request(walletId, OperationType.WITHDRAW, "100")).balance())
+                .isEqualTo(Money.ZERO);
+    }
+
+    private UUID deposit(String amount) {
+        UUID walletId = UUID.randomUUID();
+        walletService.processTransaction(request(walletId, OperationType.DEPOSIT, amount));
+        return walletId;
+    }
+
+    private static WalletRequest request(UUID walletId, OperationType type, String amount) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId.toString());
+        request.setOperationType(type);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.wallet.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.model.OperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WalletMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final WalletMetrics metrics = new WalletMetrics(registry);
+
+    @Test
+    void recordTransaction_taggedByOperationAndOutcome() {
+        metrics.recordTransaction(metrics.start(), OperationType.DEPOSIT, null);
+        metrics.recordTransaction(metrics.start(), OperationType.WITHDRAW,
+                new InsufficientFundsException("Недостаточно средств", false));
+
+        assertThat(registry.get("wallet.transactions")
+                .tags("operation", "deposit", "outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("wallet.transactions")
+                .tags("operation", "withdraw", "outcome", "insufficient_funds").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordFailedAttempt_countsAttemptsAndExhaustionByException() {
+        PessimisticLockingFailureException conflict = new PessimisticLockingFailureException("Строка заблокирована");
+
+        metrics.recordFailedAttempt(conflict);
+        metrics.recordFailedAttempt(conflict);
+        metrics.recordRetriesExhausted(conflict);
+
+        assertThat(registry.get("wallet.attempts.failed")
+                .tags("exception", "PessimisticLockingFailureException", "outcome", "lock_conflict")
+                .counter().count()).isEqualTo(2);
+        assertThat(registry.get("wallet.retries.exhausted").counter().count()).isEqualTo(1);
+    }
+}
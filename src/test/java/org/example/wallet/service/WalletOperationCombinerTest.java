@@ -0,0 +1,170 @@
+package org.example.wallet.service;
+
+import org.example.wallet.dto.WalletResponse;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.exceptions.WalletNotFoundException;
+import org.example.wallet.model.Money;
+import org.example.wallet.model.OperationType;
+import org.example.wallet.repository.WalletBalanceView;
+import org.example.wallet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WalletOperationCombinerTest {
+
+    private static final long ROW_LOCK_MILLIS = 2;
+
+    private final UUID walletId = UUID.randomUUID();
+    private final AtomicReference<BigDecimal> storedBalance = new AtomicReference<>();
+    private final AtomicLong storedVersion = new AtomicLong(1);
+    private final AtomicInteger transactions = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Long> batchSizes = new ConcurrentLinkedQueue<>();
+
+    private WalletRepository walletRepository;
+    private TransactionLedger transactionLedger;
+    private WalletBalanceCache balanceCache;
+    private WalletOperationCombiner combiner;
+
+    @BeforeEach
+    void setUp() {
+        walletRepository = mock(WalletRepository.class);
+        when(walletRepository.lockBalanceById(walletId)).thenAnswer(invocation -> {
+            transactions.incrementAndGet();
+            Thread.sleep(ROW_LOCK_MILLIS);
+            return Optional.ofNullable(storedBalance.get()).map(this::locked);
+        });
+        when(walletRepository.insertIfAbsent(walletId)).thenAnswer(invocation ->
+                storedBalance.compareAndSet(null, BigDecimal.ZERO) ? 1 : 0);
+        when(walletRepository.applyBalanceDelta(eq(walletId), anyLong(), anyInt())).thenAnswer(invocation -> {
+            batchSizes.add(invocation.<Long>getArgument(1) / Money.of("1").units());
+            storedBalance.accumulateAndGet(Money.ofUnits(invocation.getArgument(1)).toBigDecimal(), BigDecimal::add);
+            return Optional.of(storedVersion.addAndGet(invocation.<Integer>getArgument(2)));
+        });
+
+        transactionLedger = mock(TransactionLedger.class);
+        balanceCache = mock(WalletBalanceCache.class);
+        combiner = new WalletOperationCombiner(walletRepository, transactionLedger,
+                balanceCache, mock(WalletEventOutbox.class),
+                mock(PlatformTransactionManager.class),
+                true, 256, 1);
+    }
+
+    @Test
+    void submit_concurrentDeposits_coalescedIntoFewerTransactions() throws Exception {
+        int threads = 32;
+        int depositsPerThread = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<BigDecimal> balances = new ConcurrentLinkedQueue<>();
+        Set<Long> versions = ConcurrentHashMap.newKeySet();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < depositsPerThread; i++) {
+                    WalletResponse response = combiner.submit(walletId, OperationType.DEPOSIT, Money.of("1"));
+                    balances.add(response.getBalance());
+                    versions.add(response.getVersion());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int operations = threads * depositsPerThread;
+        assertThat(storedBalance.get()).isEqualByComparingTo(BigDecimal.valueOf(operations));
+
+        Set<BigDecimal> distinct = new HashSet<>();
+        balances.forEach(balance -> distinct.add(balance.stripTrailingZeros()));
+        assertThat(distinct).hasSize(operations);
+        // Каждая операция пакета получает свою версию, как при раздельных UPDATE
+        assertThat(versions).hasSize(operations);
+        assertThat(storedVersion.get()).isEqualTo(1 + operations);
+
+        // Пока исполнитель держит блокировку строки, остальные операции копятся в очереди:
+        // одна транзакция — одна блокировка и одно изменение баланса на пачку
+        assertThat(batchSizes).hasSize(transactions.get());
+        assertThat(batchSizes.stream().mapToLong(Long::longValue).sum()).isEqualTo(operations);
+        assertThat(batchSizes).allMatch(size -> size >= 1 && size <= 256);
+        assertThat(batchSizes).anyMatch(size -> size > 1);
+        assertThat(transactions.get()).isLessThan(operations / 4);
+        verify(transactionLedger, times(operations)).record(eq(walletId), eq(OperationType.DEPOSIT), any(), any());
+    }
+
+    @Test
+    void submit_withdrawExceedingBalance_failsOnlyThatOperation() {
+        storedBalance.set(new BigDecimal("10"));
+
+        WalletResponse first = combiner.submit(walletId, OperationType.WITHDRAW, Money.of("7"));
+        assertThat(first.getBalance()).isEqualByComparingTo("3");
+        assertThat(first.getVersion()).isEqualTo(2L);
+        verify(balanceCache).evict(walletId, 2L);
+
+        assertThatThrownBy(() -> combiner.submit(walletId, OperationType.WITHDRAW, Money.of("5")))
+                .isInstanceOf(InsufficientFundsException.class);
+        assertThat(storedBalance.get()).isEqualByComparingTo("3");
+    }
+
+    @Test
+    void submit_withdrawFromUnknownWallet_throwsNotFound() {
+        assertThatThrownBy(() -> combiner.submit(walletId, OperationType.WITHDRAW, Money.of("1")))
+                .isInstanceOf(WalletNotFoundException.class);
+        verify(walletRepository, never()).insertIfAbsent(any());
+        verify(walletRepository, never()).applyBalanceDelta(any(), anyLong(), anyInt());
+    }
+
+    private WalletBalanceView locked(BigDecimal balance) {
+        return new WalletBalanceView() {
+            @Override
+            public UUID getId() {
+                return walletId;
+            }
+
+            @Override
+            public Long getBalanceUnits() {
+                return Money.of(balance).units();
+            }
+
+            @Override
+            public Long getHeldUnits() {
+                return 0L;
+            }
+        };
+    }
+}
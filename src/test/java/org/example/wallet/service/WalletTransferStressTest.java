@@ -0,0 +1,131 @@
+package org.example.wallet.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.wallet.dto.WalletRequest;
+import org.example.wallet.exceptions.InsufficientFundsException;
+import org.example.wallet.model.OperationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@Testcontainers
+@SpringBootTest
+class WalletTransferStressTest {
+
+    private static final int WALLETS = 8;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 150;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000");
+
+    @Container
+    private static final PostgreSQLContainer<?> DATABASE = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", DATABASE::getJdbcUrl);
+        registry.add("spring.datasource.username", DATABASE::getUsername);
+        registry.add("spring.datasource.password", DATABASE::getPassword);
+    }
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void processTransaction_randomCrossTransfers_conserveMoneyWithoutLockConflicts() throws Exception {
+        List<UUID> wallets = new ArrayList<>();
+        for (int i = 0; i < WALLETS; i++) {
+            UUID walletId = UUID.randomUUID();
+            walletService.processTransaction(request(walletId, OperationType.DEPOSIT, INITIAL_BALANCE, null));
+            wallets.add(walletId);
+        }
+        double lockConflictsBefore = lockConflicts();
+
+        AtomicInteger applied = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int source = random.nextInt(WALLETS);
+                    int target = (source + 1 + random.nextInt(WALLETS - 1)) % WALLETS;
+                    BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 300));
+                    try {
+                        walletService.processTransaction(
+                                request(wallets.get(source), OperationType.TRANSFER, amount, wallets.get(target)));
+                        applied.incrementAndGet();
+                    } catch (InsufficientFundsException ex) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(120, TimeUnit.SECONDS);
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        executor.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (UUID walletId : wallets) {
+            BigDecimal balance = walletService.getBalance(walletId).getBalance();
+            assertThat(balance).isNotNegative();
+            total = total.add(balance);
+        }
+        int transfers = THREADS * TRANSFERS_PER_THREAD;
+        log.info("Переводов: {}, выполнено {}, отклонено {}, {} в секунду",
+                transfers, applied.get(), rejected.get(), Math.round(transfers / seconds));
+
+        assertThat(total).isEqualByComparingTo(INITIAL_BALANCE.multiply(BigDecimal.valueOf(WALLETS)));
+        assertThat(applied.get() + rejected.get()).isEqualTo(transfers);
+        assertThat(applied.get()).isPositive();
+        assertThat(lockConflicts()).isEqualTo(lockConflictsBefore);
+    }
+
+    private double lockConflicts() {
+        return meterRegistry.find("wallet.attempts.failed").tag("outcome", "lock_conflict").counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private static WalletRequest request(UUID walletId, OperationType operationType, BigDecimal amount, UUID target) {
+        WalletRequest request = new WalletRequest();
+        request.setWalletId(walletId.toString());
+        request.setOperationType(operationType);
+        request.setAmount(amount);
+        if (target != null) {
+            request.setTargetWalletId(target.toString());
+        }
+        return request;
+    }
+}